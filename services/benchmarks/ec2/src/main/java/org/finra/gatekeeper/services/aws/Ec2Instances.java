@@ -0,0 +1,57 @@
+/*
+ *
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.finra.gatekeeper.services.aws;
+
+import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.ec2.model.Tag;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Synthetic EC2 inventory shared by the EC2 benchmarks
+ */
+public class Ec2Instances {
+
+    public static final int APPLICATIONS = 500;
+    public static final String APP_IDENTITY_TAG = "Application";
+
+    public static String instanceId(int index) {
+        return String.format("i-%017x", index);
+    }
+
+    public static String application(int index) {
+        return "APP" + (index % APPLICATIONS);
+    }
+
+    /**
+     * Running instances spread out over the applications, 1 in 4 of them are windows boxes
+     */
+    public static List<Instance> instances(int count) {
+        List<Instance> instances = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            instances.add(new Instance()
+                    .withInstanceId(instanceId(i))
+                    .withPrivateIpAddress("10." + ((i >> 16) & 255) + "." + ((i >> 8) & 255) + "." + (i & 255))
+                    .withPlatform(i % 4 == 0 ? "windows" : null)
+                    .withTags(new Tag(APP_IDENTITY_TAG, application(i)),
+                            new Tag("Name", application(i).toLowerCase() + "-node-" + i)));
+        }
+        return instances;
+    }
+}
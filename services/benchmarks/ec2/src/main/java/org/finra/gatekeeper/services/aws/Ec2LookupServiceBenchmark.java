@@ -0,0 +1,96 @@
+/*
+ *
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.finra.gatekeeper.services.aws;
+
+import org.finra.gatekeeper.common.properties.GatekeeperEmailProperties;
+import org.finra.gatekeeper.configuration.properties.GatekeeperEC2Properties;
+import org.finra.gatekeeper.configuration.properties.GatekeeperSsmProperties;
+import org.finra.gatekeeper.services.aws.model.AWSEnvironment;
+import org.finra.gatekeeper.services.aws.model.GatekeeperAWSInstance;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Searches for EC2 instances over a synthetic inventory, every search also checks the SSM status of whatever matched
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class Ec2LookupServiceBenchmark {
+
+    @Param({"1000", "10000"})
+    private int instanceCount;
+
+    private AWSEnvironment environment;
+    private Ec2LookupService ec2LookupService;
+    private String instanceIdSearch;
+    private String applicationSearch;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        environment = new AWSEnvironment("Prod", "us-east-1");
+        AwsSessionService awsSessionService = new InMemoryAwsSessionService(
+                new StubAmazonEC2(Ec2Instances.instances(instanceCount)), new StubSimpleSystemsManagement());
+        SsmService ssmService = new SsmService(awsSessionService, new GatekeeperSsmProperties(), new GatekeeperEmailProperties());
+        ec2LookupService = new Ec2LookupService(ssmService, awsSessionService,
+                new GatekeeperEC2Properties().setAppIdentityTag(Ec2Instances.APP_IDENTITY_TAG));
+
+        int target = instanceCount / 2;
+        instanceIdSearch = Ec2Instances.instanceId(target);
+        applicationSearch = Ec2Instances.application(target);
+
+        // load the inventory up front so the searches measure the cached path
+        ec2LookupService.getInstances(environment, "Linux", "NAME", "node");
+    }
+
+    @Benchmark
+    public List<GatekeeperAWSInstance> searchByInstanceId() {
+        return ec2LookupService.getInstances(environment, "Linux", "INSTANCE ID", instanceIdSearch);
+    }
+
+    @Benchmark
+    public List<GatekeeperAWSInstance> searchByApplication() {
+        return ec2LookupService.getInstances(environment, "Linux", "APPLICATION", applicationSearch);
+    }
+
+    @Benchmark
+    public List<GatekeeperAWSInstance> searchMatchingEverything() {
+        return ec2LookupService.getInstances(environment, "Linux", "NAME", "node");
+    }
+
+    @Benchmark
+    public List<GatekeeperAWSInstance> searchMatchingNothing() {
+        return ec2LookupService.getInstances(environment, "Linux", "IP", "192.168.");
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ *
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.finra.gatekeeper.services.aws;
+
+import org.finra.gatekeeper.common.properties.GatekeeperEmailProperties;
+import org.finra.gatekeeper.configuration.properties.GatekeeperSsmProperties;
+import org.finra.gatekeeper.services.aws.model.AWSEnvironment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks the SSM status of a batch of instances, which gets split up into chunks of 50 (the most SSM takes per call)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SsmServiceBenchmark {
+
+    @Param({"50", "1000", "10000"})
+    private int instanceCount;
+
+    private AWSEnvironment environment;
+    private SsmService ssmService;
+    private List<String> instanceIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        environment = new AWSEnvironment("Prod", "us-east-1");
+        ssmService = new SsmService(new InMemoryAwsSessionService(new StubAmazonEC2(new ArrayList<>()), new StubSimpleSystemsManagement()),
+                new GatekeeperSsmProperties(), new GatekeeperEmailProperties());
+        instanceIds = new ArrayList<>(instanceCount);
+        for (int i = 0; i < instanceCount; i++) {
+            instanceIds.add(Ec2Instances.instanceId(i));
+        }
+    }
+
+    @Benchmark
+    public Map<String, String> checkInstancesWithSsm() {
+        return ssmService.checkInstancesWithSsm(environment, instanceIds);
+    }
+
+    @Benchmark
+    public String checkInstancesAreValidWithSsm() {
+        return ssmService.checkInstancesAreValidWithSsm(environment, instanceIds);
+    }
+}
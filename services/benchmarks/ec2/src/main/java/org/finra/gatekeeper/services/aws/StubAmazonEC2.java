@@ -0,0 +1,50 @@
+/*
+ *
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.finra.gatekeeper.services.aws;
+
+import com.amazonaws.services.ec2.AbstractAmazonEC2;
+import com.amazonaws.services.ec2.model.DescribeInstancesRequest;
+import com.amazonaws.services.ec2.model.DescribeInstancesResult;
+import com.amazonaws.services.ec2.model.Instance;
+import com.amazonaws.services.ec2.model.Reservation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory stand in for the EC2 API, hands back the instances it was given spread out over reservations
+ */
+public class StubAmazonEC2 extends AbstractAmazonEC2 {
+
+    private static final int INSTANCES_PER_RESERVATION = 10;
+
+    private final List<Reservation> reservations = new ArrayList<>();
+
+    public StubAmazonEC2(List<Instance> instances) {
+        for (int i = 0; i < instances.size(); i += INSTANCES_PER_RESERVATION) {
+            reservations.add(new Reservation()
+                    .withReservationId("r-" + i)
+                    .withInstances(instances.subList(i, Math.min(i + INSTANCES_PER_RESERVATION, instances.size()))));
+        }
+    }
+
+    @Override
+    public DescribeInstancesResult describeInstances(DescribeInstancesRequest request) {
+        return new DescribeInstancesResult().withReservations(reservations);
+    }
+}
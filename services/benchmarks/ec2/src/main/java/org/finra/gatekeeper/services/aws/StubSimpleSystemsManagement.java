@@ -0,0 +1,62 @@
+/*
+ *
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.finra.gatekeeper.services.aws;
+
+import com.amazonaws.services.simplesystemsmanagement.AbstractAWSSimpleSystemsManagement;
+import com.amazonaws.services.simplesystemsmanagement.model.DescribeInstanceInformationRequest;
+import com.amazonaws.services.simplesystemsmanagement.model.DescribeInstanceInformationResult;
+import com.amazonaws.services.simplesystemsmanagement.model.InstanceInformation;
+import com.amazonaws.services.simplesystemsmanagement.model.InstanceInformationFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory stand in for SSM, every instance that gets asked about is registered with SSM (1 in 10 of them has lost its
+ * connection). Pages through the results the same way AWS does, keyed off a next token.
+ */
+public class StubSimpleSystemsManagement extends AbstractAWSSimpleSystemsManagement {
+
+    private static final int DEFAULT_PAGE_SIZE = 50;
+
+    @Override
+    public DescribeInstanceInformationResult describeInstanceInformation(DescribeInstanceInformationRequest request) {
+        List<String> instanceIds = new ArrayList<>();
+        for (InstanceInformationFilter filter : request.getInstanceInformationFilterList()) {
+            if ("InstanceIds".equals(filter.getKey())) {
+                instanceIds.addAll(filter.getValueSet());
+            }
+        }
+
+        int pageSize = request.getMaxResults() != null ? request.getMaxResults() : DEFAULT_PAGE_SIZE;
+        int start = request.getNextToken() != null ? Integer.parseInt(request.getNextToken()) : 0;
+        int end = Math.min(start + pageSize, instanceIds.size());
+
+        List<InstanceInformation> instanceInformation = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            String instanceId = instanceIds.get(i);
+            instanceInformation.add(new InstanceInformation()
+                    .withInstanceId(instanceId)
+                    .withPingStatus(Math.floorMod(instanceId.hashCode(), 10) == 0 ? "ConnectionLost" : "Online"));
+        }
+
+        return new DescribeInstanceInformationResult()
+                .withInstanceInformationList(instanceInformation)
+                .withNextToken(end < instanceIds.size() ? String.valueOf(end) : null);
+    }
+}
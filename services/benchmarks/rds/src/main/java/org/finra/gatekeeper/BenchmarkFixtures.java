@@ -0,0 +1,134 @@
+/*
+ *
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.finra.gatekeeper;
+
+import org.finra.gatekeeper.common.properties.GatekeeperAuthProperties;
+import org.finra.gatekeeper.common.services.user.model.GatekeeperUserEntry;
+import org.finra.gatekeeper.configuration.GatekeeperApprovalProperties;
+import org.finra.gatekeeper.configuration.GatekeeperRdsAuthProperties;
+import org.finra.gatekeeper.rds.model.RoleType;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Synthetic configuration and LDAP data shared by the RDS benchmarks, modelled after the values in application.yml
+ */
+public class BenchmarkFixtures {
+
+    public static final String USER_ID = "BENCHUSER";
+    public static final String APPROVER_GROUP = "GATEKEEPER_RDS_APPROVER";
+    public static final String AUDITOR_GROUP = "GATEKEEPER_AUDITOR";
+    public static final String RESTRICTED_PREFIX = "APP_GK_";
+
+    private static final String[] GK_ROLES = {"RO", "DF", "DBA", "ROC", "DBAC"};
+    private static final String[] SDLCS = {"D", "Q", "P"};
+
+    /**
+     * Application names have to be letters only (2 - 8 of them) to satisfy the AD group patterns, so the index gets
+     * spelled out in base 26 behind an "AP" prefix (0 -> APA, 1 -> APB ... 26 -> APBA)
+     */
+    public static String applicationName(int index) {
+        StringBuilder name = new StringBuilder();
+        do {
+            name.insert(0, (char) ('A' + (index % 26)));
+            index /= 26;
+        } while (index > 0);
+        return "AP" + name;
+    }
+
+    public static GatekeeperUserEntry user() {
+        return new GatekeeperUserEntry(USER_ID, "CN=" + USER_ID + ",OU=USERS,DC=COMPANY,DC=COM", "bench@company.com", "Bench User");
+    }
+
+    public static GatekeeperAuthProperties authProperties() {
+        return new GatekeeperAuthProperties()
+                .setApproverGroup(APPROVER_GROUP)
+                .setAuditorGroup(AUDITOR_GROUP);
+    }
+
+    public static GatekeeperRdsAuthProperties rdsAuthProperties() {
+        GatekeeperRdsAuthProperties rdsAuthProperties = new GatekeeperRdsAuthProperties()
+                .setDbaGroupsPattern("COMPANY_([a-zA-Z]+)_ADBA")
+                .setOpsGroupsPattern("COMPANY_([a-zA-Z]+)_OPS")
+                .setDevGroupsPattern("COMPANY_([a-zA-Z]+)_(DEV|QC|QA|PROD)_INSTALL_ENGINEER");
+        rdsAuthProperties.setAdGroupsPattern("APP_GK_([A-Z]{2,8})_(RO|DF|DBA|ROC|DBAC)_(Q|D|P)");
+        rdsAuthProperties.setRestrictedPrefix(RESTRICTED_PREFIX);
+        rdsAuthProperties.setUnrestrictedSDLC("D");
+        return rdsAuthProperties;
+    }
+
+    public static GatekeeperApprovalProperties approvalProperties() {
+        return new GatekeeperApprovalProperties()
+                .setDev(thresholds(-1, 1))
+                .setOps(thresholds(30, 7))
+                .setDba(thresholds(180, -1));
+    }
+
+    /**
+     * The memberships of a user that's a DBA, an Ops person and a developer (for every sdlc) on each application, along
+     * with a restricted AD group per application and a pile of groups gatekeeper doesn't care about
+     */
+    public static Set<String> memberships(int applications, boolean approver) {
+        Set<String> memberships = new HashSet<>();
+        for (int i = 0; i < applications; i++) {
+            String application = applicationName(i);
+            switch (i % 3) {
+                case 0:
+                    memberships.add("COMPANY_" + application + "_ADBA");
+                    break;
+                case 1:
+                    memberships.add("COMPANY_" + application + "_OPS");
+                    break;
+                default:
+                    break;
+            }
+            memberships.add("COMPANY_" + application + "_DEV_INSTALL_ENGINEER");
+            memberships.add("COMPANY_" + application + "_QA_INSTALL_ENGINEER");
+            memberships.add("COMPANY_" + application + "_PROD_INSTALL_ENGINEER");
+            memberships.add(adGroupName(i));
+            memberships.add("DL_" + application + "_ANNOUNCEMENTS");
+            memberships.add("SHAREPOINT_" + application + "_READERS");
+        }
+        if (approver) {
+            memberships.add(APPROVER_GROUP);
+        }
+        return memberships;
+    }
+
+    /**
+     * A restricted AD group for the given application, cycling through the gatekeeper roles and sdlcs
+     */
+    public static String adGroupName(int index) {
+        return RESTRICTED_PREFIX + applicationName(index) + "_" + GK_ROLES[index % GK_ROLES.length] + "_" + SDLCS[index % SDLCS.length];
+    }
+
+    private static Map<String, Map<String, Integer>> thresholds(int lower, int prod) {
+        Map<String, Map<String, Integer>> thresholds = new HashMap<>();
+        for (RoleType roleType : RoleType.values()) {
+            Map<String, Integer> sdlcThresholds = new HashMap<>();
+            sdlcThresholds.put("dev", lower);
+            sdlcThresholds.put("qa", lower);
+            sdlcThresholds.put("prod", prod);
+            thresholds.put(roleType.toString().toLowerCase(), sdlcThresholds);
+        }
+        return thresholds;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ *
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.finra.gatekeeper.common.services.user.auth;
+
+import org.finra.gatekeeper.common.authfilter.parser.GatekeeperUserProfile;
+import org.finra.gatekeeper.common.services.user.model.GatekeeperUserEntry;
+
+import java.util.Set;
+
+/**
+ * Stands in for the LDAP backed authorization services, always hands back the same user and memberships
+ * (still going through the user / membership caches like the real thing does)
+ */
+public class InMemoryAuthorizationService extends GatekeeperAuthorizationService {
+
+    private final GatekeeperUserEntry user;
+    private final Set<String> memberships;
+
+    public InMemoryAuthorizationService(GatekeeperUserEntry user, Set<String> memberships) {
+        super(() -> new GatekeeperUserProfile(user.getUserId(), "benchmark"));
+        this.user = user;
+        this.memberships = memberships;
+    }
+
+    @Override
+    GatekeeperUserEntry loadUser(String userName) {
+        return user;
+    }
+
+    @Override
+    Set<String> loadUserMemberships(String userName) {
+        return memberships;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ *
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.finra.gatekeeper.configuration;
+
+import org.finra.gatekeeper.BenchmarkFixtures;
+import org.finra.gatekeeper.common.services.user.auth.InMemoryAuthorizationService;
+import org.finra.gatekeeper.services.auth.GatekeeperRoleService;
+import org.finra.gatekeeper.services.auth.model.AppApprovalThreshold;
+import org.finra.gatekeeper.services.auth.model.RoleMembership;
+import org.finra.gatekeeper.services.group.service.GatekeeperLdapParseService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Works out the approval thresholds for each application a user has a role on
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GatekeeperApprovalPropertiesBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int applicationCount;
+
+    private GatekeeperApprovalProperties approvalProperties;
+    private Map<String, RoleMembership> roleMemberships;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        approvalProperties = BenchmarkFixtures.approvalProperties();
+        roleMemberships = new GatekeeperRoleService(
+                new InMemoryAuthorizationService(BenchmarkFixtures.user(), BenchmarkFixtures.memberships(applicationCount, false)),
+                BenchmarkFixtures.authProperties(), BenchmarkFixtures.rdsAuthProperties(), approvalProperties,
+                new GatekeeperLdapParseService(BenchmarkFixtures.rdsAuthProperties()))
+                .getRoleMemberships();
+    }
+
+    @Benchmark
+    public Map<String, AppApprovalThreshold> getApprovalPolicy() {
+        return approvalProperties.getApprovalPolicy(roleMemberships);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ *
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.finra.gatekeeper.services.accessrequest;
+
+import org.finra.gatekeeper.BenchmarkFixtures;
+import org.finra.gatekeeper.common.services.user.auth.InMemoryAuthorizationService;
+import org.finra.gatekeeper.controllers.wrappers.CompletedAccessRequestWrapper;
+import org.finra.gatekeeper.services.auth.GatekeeperRoleService;
+import org.finra.gatekeeper.services.group.service.GatekeeperLdapParseService;
+import org.hibernate.query.internal.NativeQueryImpl;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the completed request history and filters it down to what the user is allowed to see, as an approver (sees
+ * everything) and as a developer (only sees their own requests, about 1 in 20 of them). The rows come back from a
+ * stubbed query so only the mapping and filtering gets measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccessRequestServiceBenchmark {
+
+    @Param({"1000", "10000"})
+    private int requestCount;
+
+    @Param({"true", "false"})
+    private boolean approver;
+
+    private AccessRequestService accessRequestService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        GatekeeperRoleService gatekeeperRoleService = new GatekeeperRoleService(
+                new InMemoryAuthorizationService(BenchmarkFixtures.user(), BenchmarkFixtures.memberships(50, approver)),
+                BenchmarkFixtures.authProperties(), BenchmarkFixtures.rdsAuthProperties(), BenchmarkFixtures.approvalProperties(),
+                new GatekeeperLdapParseService(BenchmarkFixtures.rdsAuthProperties()));
+
+        List<Map<String, Object>> rows = new ArrayList<>(requestCount);
+        for (int i = 0; i < requestCount; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("id", (long) i);
+            row.put("requestor_id", i % 20 == 0 ? BenchmarkFixtures.USER_ID.toLowerCase() : "user" + i);
+            row.put("account", "PROD");
+            row.put("days", 1);
+            rows.add(row);
+        }
+
+        // stub only, the invocations would otherwise be recorded for the whole run
+        NativeQueryImpl query = Mockito.mock(NativeQueryImpl.class, Mockito.withSettings().stubOnly());
+        Mockito.when(query.getResultList()).thenReturn(rows);
+        EntityManager entityManager = Mockito.mock(EntityManager.class, Mockito.withSettings().stubOnly());
+        Mockito.when(entityManager.createNativeQuery(Mockito.anyString())).thenReturn(query);
+
+        // the history only needs the query and who the user is, nothing else gets touched
+        accessRequestService = new AccessRequestService(null, null, gatekeeperRoleService, null, null,
+                BenchmarkFixtures.approvalProperties(), null, null, null, null, null, entityManager, null);
+    }
+
+    @Benchmark
+    public List<CompletedAccessRequestWrapper> getCompletedRequests() {
+        return accessRequestService.getCompletedRequests();
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ *
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.finra.gatekeeper.services.aws;
+
+import com.amazonaws.services.rds.model.DBInstance;
+import com.amazonaws.services.rds.model.Endpoint;
+import com.amazonaws.services.rds.model.VpcSecurityGroupMembership;
+import org.finra.gatekeeper.BenchmarkFixtures;
+import org.finra.gatekeeper.configuration.GatekeeperProperties;
+import org.finra.gatekeeper.services.aws.model.AWSEnvironment;
+import org.finra.gatekeeper.services.aws.model.GatekeeperRDSInstance;
+import org.finra.gatekeeper.services.db.DatabaseProbeExecutor;
+import org.finra.gatekeeper.services.group.service.GatekeeperLdapGroupLookupService;
+import org.finra.gatekeeper.services.group.service.GatekeeperLdapParseService;
+import org.finra.gatekeeper.services.group.service.StubLdapTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Searches for RDS instances over a synthetic inventory. None of the databases have the gatekeeper security group so
+ * loading the inventory never reaches out to a database, it does page through RDS, join in the application tags and
+ * match up the restricted AD groups like it would against a real account.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RdsLookupServiceBenchmark {
+
+    private static final int APPLICATIONS = 500;
+    private static final String APP_IDENTITY_TAG = "Application";
+
+    @Param({"1000", "10000"})
+    private int instanceCount;
+
+    private AWSEnvironment environment;
+    private InMemoryAwsSessionService awsSessionService;
+    private DatabaseProbeExecutor databaseProbeExecutor;
+    private RdsLookupService rdsLookupService;
+    private String instanceIdSearch;
+    private String applicationSearch;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        environment = new AWSEnvironment("Prod", "us-east-1", "prod");
+
+        List<DBInstance> instances = new ArrayList<>(instanceCount);
+        StubResourceGroupsTaggingAPI taggingClient = new StubResourceGroupsTaggingAPI();
+        for (int i = 0; i < instanceCount; i++) {
+            String application = BenchmarkFixtures.applicationName(i % APPLICATIONS);
+            String identifier = String.format("gk-%s-%05d", application.toLowerCase(), i);
+            DBInstance instance = new DBInstance()
+                    .withDbiResourceId("db-" + i)
+                    .withDBInstanceIdentifier(identifier)
+                    .withDBName("appdb")
+                    .withEngine(i % 2 == 0 ? "postgres" : "mysql")
+                    .withDBInstanceStatus(i % 10 == 0 ? "stopped" : "available")
+                    .withDBInstanceArn("arn:aws:rds:us-east-1:123456789012:db:" + identifier)
+                    .withEndpoint(new Endpoint().withAddress(identifier + ".abc123.us-east-1.rds.amazonaws.com").withPort(5432))
+                    .withVpcSecurityGroups(new VpcSecurityGroupMembership().withVpcSecurityGroupId("sg-" + application.toLowerCase()));
+            instances.add(instance);
+            taggingClient.withResource(instance.getDBInstanceArn(), APP_IDENTITY_TAG, application);
+        }
+
+        List<String> adGroups = new ArrayList<>();
+        for (int i = 0; i < APPLICATIONS * 15; i++) {
+            adGroups.add(BenchmarkFixtures.adGroupName(i));
+        }
+
+        GatekeeperProperties gatekeeperProperties = new GatekeeperProperties()
+                .setAppIdentityTag(APP_IDENTITY_TAG)
+                .setRequiredSecurityGroups("gatekeeper-rds-support")
+                .setAuth(new GatekeeperProperties.AuthenticationProperties()
+                        .setLdap(new GatekeeperProperties.AuthenticationProperties.GatekeeperLdapProperties()
+                                .setRestrictedGroupsBase("OU=GATEKEEPER,OU=GROUPS,DC=COMPANY,DC=COM")));
+
+        awsSessionService = new InMemoryAwsSessionService(new StubAmazonRDSClient(instances),
+                new StubAmazonEC2Client("sg-gatekeeper"), taggingClient);
+        databaseProbeExecutor = new DatabaseProbeExecutor(gatekeeperProperties);
+        GatekeeperLdapGroupLookupService groupLookupService = new GatekeeperLdapGroupLookupService(new StubLdapTemplate(adGroups),
+                gatekeeperProperties, BenchmarkFixtures.rdsAuthProperties(), new GatekeeperLdapParseService(BenchmarkFixtures.rdsAuthProperties()));
+
+        // the database connection service is never reached since none of the databases have the gatekeeper security group
+        rdsLookupService = new RdsLookupService(awsSessionService, null, new SGLookupService(awsSessionService, gatekeeperProperties),
+                gatekeeperProperties, groupLookupService, databaseProbeExecutor,
+                new RdsTagLookupService(awsSessionService, gatekeeperProperties),
+                new OptionGroupLookupService(awsSessionService, gatekeeperProperties));
+
+        int target = instanceCount / 2;
+        instanceIdSearch = String.format("-%05d", target);
+        applicationSearch = BenchmarkFixtures.applicationName(target % APPLICATIONS).toLowerCase();
+
+        // load the inventory up front so the search benchmarks measure the cached path
+        rdsLookupService.getInstances(environment, "RDS", "gk-");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        rdsLookupService.destroy();
+        databaseProbeExecutor.destroy();
+        awsSessionService.destroy();
+    }
+
+    @Benchmark
+    public List<GatekeeperRDSInstance> searchByInstanceId() {
+        return rdsLookupService.getInstances(environment, "RDS", instanceIdSearch);
+    }
+
+    @Benchmark
+    public List<GatekeeperRDSInstance> searchByApplication() {
+        return rdsLookupService.getInstances(environment, "RDS", applicationSearch);
+    }
+
+    @Benchmark
+    public List<GatekeeperRDSInstance> searchMatchingEverything() {
+        return rdsLookupService.getInstances(environment, "RDS", "GK-");
+    }
+
+    @Benchmark
+    public List<GatekeeperRDSInstance> searchMatchingNothing() {
+        return rdsLookupService.getInstances(environment, "RDS", "no-such-database");
+    }
+
+    /**
+     * What the first search after the inventory expires costs, pages through RDS to describe every database again
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<GatekeeperRDSInstance> reloadInventory() {
+        rdsLookupService.invalidateInventory(null);
+        return rdsLookupService.getInstances(environment, "RDS", "gk-");
+    }
+}
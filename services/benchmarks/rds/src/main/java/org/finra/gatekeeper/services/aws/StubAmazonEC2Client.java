@@ -0,0 +1,43 @@
+/*
+ *
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.finra.gatekeeper.services.aws;
+
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.ec2.AmazonEC2Client;
+import com.amazonaws.services.ec2.model.DescribeSecurityGroupsRequest;
+import com.amazonaws.services.ec2.model.DescribeSecurityGroupsResult;
+import com.amazonaws.services.ec2.model.SecurityGroup;
+
+/**
+ * In-memory stand in for the EC2 API, only knows about the gatekeeper security group
+ */
+public class StubAmazonEC2Client extends AmazonEC2Client {
+
+    private final String securityGroupId;
+
+    public StubAmazonEC2Client(String securityGroupId) {
+        super(new BasicAWSCredentials("benchmark", "benchmark"));
+        this.securityGroupId = securityGroupId;
+    }
+
+    @Override
+    public DescribeSecurityGroupsResult describeSecurityGroups(DescribeSecurityGroupsRequest request) {
+        return new DescribeSecurityGroupsResult()
+                .withSecurityGroups(new SecurityGroup().withGroupId(securityGroupId));
+    }
+}
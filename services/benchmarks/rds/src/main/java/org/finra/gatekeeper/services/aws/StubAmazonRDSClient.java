@@ -0,0 +1,68 @@
+/*
+ *
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.finra.gatekeeper.services.aws;
+
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.rds.AmazonRDSClient;
+import com.amazonaws.services.rds.model.DBInstance;
+import com.amazonaws.services.rds.model.DescribeDBClustersRequest;
+import com.amazonaws.services.rds.model.DescribeDBClustersResult;
+import com.amazonaws.services.rds.model.DescribeDBInstancesRequest;
+import com.amazonaws.services.rds.model.DescribeDBInstancesResult;
+import com.amazonaws.services.rds.model.DescribeGlobalClustersRequest;
+import com.amazonaws.services.rds.model.DescribeGlobalClustersResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory stand in for the RDS API, pages through the instances it was given the same way AWS does
+ * (100 per page, keyed off a marker), there are no clusters.
+ */
+public class StubAmazonRDSClient extends AmazonRDSClient {
+
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
+    private final List<DBInstance> instances;
+
+    public StubAmazonRDSClient(List<DBInstance> instances) {
+        super(new BasicAWSCredentials("benchmark", "benchmark"));
+        this.instances = instances;
+    }
+
+    @Override
+    public DescribeDBInstancesResult describeDBInstances(DescribeDBInstancesRequest request) {
+        int pageSize = request.getMaxRecords() != null ? request.getMaxRecords() : DEFAULT_PAGE_SIZE;
+        int start = request.getMarker() != null ? Integer.parseInt(request.getMarker()) : 0;
+        int end = Math.min(start + pageSize, instances.size());
+
+        return new DescribeDBInstancesResult()
+                .withDBInstances(new ArrayList<>(instances.subList(start, end)))
+                .withMarker(end < instances.size() ? String.valueOf(end) : null);
+    }
+
+    @Override
+    public DescribeDBClustersResult describeDBClusters(DescribeDBClustersRequest request) {
+        return new DescribeDBClustersResult();
+    }
+
+    @Override
+    public DescribeGlobalClustersResult describeGlobalClusters(DescribeGlobalClustersRequest request) {
+        return new DescribeGlobalClustersResult();
+    }
+}
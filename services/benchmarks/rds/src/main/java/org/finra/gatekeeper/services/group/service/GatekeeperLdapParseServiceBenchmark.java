@@ -0,0 +1,80 @@
+/*
+ *
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.finra.gatekeeper.services.group.service;
+
+import org.finra.gatekeeper.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses restricted AD group names, both ones that match the configured pattern and ones that don't
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GatekeeperLdapParseServiceBenchmark {
+
+    private static final int GROUPS = 1024;
+
+    private GatekeeperLdapParseService gatekeeperLdapParseService;
+    private String[] matchingGroups;
+    private String[] otherGroups;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        gatekeeperLdapParseService = new GatekeeperLdapParseService(BenchmarkFixtures.rdsAuthProperties());
+        matchingGroups = new String[GROUPS];
+        otherGroups = new String[GROUPS];
+        for (int i = 0; i < GROUPS; i++) {
+            matchingGroups[i] = BenchmarkFixtures.adGroupName(i);
+            otherGroups[i] = "COMPANY_" + BenchmarkFixtures.applicationName(i) + "_DEV_INSTALL_ENGINEER";
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GROUPS)
+    public void parseMatchingGroups(Blackhole blackhole) {
+        for (String group : matchingGroups) {
+            blackhole.consume(gatekeeperLdapParseService.parseADGroups(group));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GROUPS)
+    public void parseOtherGroups(Blackhole blackhole) {
+        for (String group : otherGroups) {
+            blackhole.consume(gatekeeperLdapParseService.parseADGroups(group));
+        }
+    }
+}
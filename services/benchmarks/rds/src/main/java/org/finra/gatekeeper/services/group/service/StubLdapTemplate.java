@@ -0,0 +1,53 @@
+/*
+ *
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.finra.gatekeeper.services.group.service;
+
+import org.springframework.ldap.core.AttributesMapper;
+import org.springframework.ldap.core.LdapTemplate;
+import org.springframework.ldap.query.LdapQuery;
+import org.springframework.ldap.support.LdapUtils;
+
+import javax.naming.NamingException;
+import javax.naming.directory.BasicAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory stand in for LDAP, every search returns the groups it was given (as entries with just a name attribute)
+ */
+public class StubLdapTemplate extends LdapTemplate {
+
+    private final List<String> groupNames;
+
+    public StubLdapTemplate(List<String> groupNames) {
+        this.groupNames = groupNames;
+    }
+
+    @Override
+    public <T> List<T> search(LdapQuery query, AttributesMapper<T> mapper) {
+        List<T> results = new ArrayList<>(groupNames.size());
+        try {
+            for (String groupName : groupNames) {
+                results.add(mapper.mapFromAttributes(new BasicAttributes("name", groupName)));
+            }
+        } catch (NamingException e) {
+            throw LdapUtils.convertLdapException(e);
+        }
+        return results;
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.finra.gatekeeper.common.properties;
 
+import freemarker.cache.MruCacheStorage;
 import freemarker.template.Configuration;
 import freemarker.template.TemplateExceptionHandler;
 import org.finra.gatekeeper.common.services.email.JavaEmailService;
@@ -28,6 +29,8 @@ import java.util.Locale;
 @Component
 @ConfigurationProperties(prefix="gatekeeper.email")
 public class GatekeeperEmailProperties {
+    private static final int TEMPLATE_CACHE_SIZE = 100;
+
     @Bean
     public Configuration freemarkerConfig() {
         Configuration configuration = new Configuration(Configuration.VERSION_2_3_29);
@@ -35,6 +38,9 @@ public class GatekeeperEmailProperties {
         configuration.setDefaultEncoding("UTF-8");
         configuration.setLocale(Locale.US);
         configuration.setTemplateExceptionHandler(TemplateExceptionHandler.RETHROW_HANDLER);
+        // the templates come off the classpath and never change, so once parsed they're kept rather than re-checked
+        configuration.setTemplateUpdateDelayMilliseconds(Long.MAX_VALUE);
+        configuration.setCacheStorage(new MruCacheStorage(TEMPLATE_CACHE_SIZE, 0));
 
         return configuration;
     }
@@ -135,6 +141,149 @@ public class GatekeeperEmailProperties {
         return this;
     }
 
+    /**
+     * Settings for the outbox that queued emails get sent from
+     */
+    private EmailOutboxProperties outbox = new EmailOutboxProperties();
+
+    public static class EmailOutboxProperties {
+        /**
+         * How often (in milliseconds) the outbox is checked for emails that are due to be sent
+         */
+        private Integer pollInterval = 5000;
+
+        /**
+         * The most emails picked up from the outbox in one go
+         */
+        private Integer batchSize = 50;
+
+        /**
+         * The amount of emails that can be sent at the same time
+         */
+        private Integer senderThreads = 4;
+
+        /**
+         * The most emails sent per second, should stay under the SES sending rate for the account
+         */
+        private Double maxSendRate = 10.0;
+
+        /**
+         * How many times sending an email is tried before giving up on it
+         */
+        private Integer maxAttempts = 8;
+
+        /**
+         * How long (in milliseconds) to wait before the first retry of an email, this doubles with every failed attempt
+         */
+        private Integer initialBackoff = 30000;
+
+        /**
+         * The longest (in milliseconds) to wait between retries of an email
+         */
+        private Integer maxBackoff = 3600000;
+
+        /**
+         * How long (in milliseconds) an email picked up for sending is held before another sender may pick it up again
+         */
+        private Integer claimTimeout = 300000;
+
+        /**
+         * The secret the outbox encryption key is derived from, the queued emails can't be sent if this changes while
+         * they're waiting
+         */
+        private String encryptionKey;
+
+        public Integer getPollInterval() {
+            return pollInterval;
+        }
+
+        public EmailOutboxProperties setPollInterval(Integer pollInterval) {
+            this.pollInterval = pollInterval;
+            return this;
+        }
+
+        public Integer getBatchSize() {
+            return batchSize;
+        }
+
+        public EmailOutboxProperties setBatchSize(Integer batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public Integer getSenderThreads() {
+            return senderThreads;
+        }
+
+        public EmailOutboxProperties setSenderThreads(Integer senderThreads) {
+            this.senderThreads = senderThreads;
+            return this;
+        }
+
+        public Double getMaxSendRate() {
+            return maxSendRate;
+        }
+
+        public EmailOutboxProperties setMaxSendRate(Double maxSendRate) {
+            this.maxSendRate = maxSendRate;
+            return this;
+        }
+
+        public Integer getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public EmailOutboxProperties setMaxAttempts(Integer maxAttempts) {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        public Integer getInitialBackoff() {
+            return initialBackoff;
+        }
+
+        public EmailOutboxProperties setInitialBackoff(Integer initialBackoff) {
+            this.initialBackoff = initialBackoff;
+            return this;
+        }
+
+        public Integer getMaxBackoff() {
+            return maxBackoff;
+        }
+
+        public EmailOutboxProperties setMaxBackoff(Integer maxBackoff) {
+            this.maxBackoff = maxBackoff;
+            return this;
+        }
+
+        public Integer getClaimTimeout() {
+            return claimTimeout;
+        }
+
+        public EmailOutboxProperties setClaimTimeout(Integer claimTimeout) {
+            this.claimTimeout = claimTimeout;
+            return this;
+        }
+
+        public String getEncryptionKey() {
+            return encryptionKey;
+        }
+
+        public EmailOutboxProperties setEncryptionKey(String encryptionKey) {
+            this.encryptionKey = encryptionKey;
+            return this;
+        }
+    }
+
+    public EmailOutboxProperties getOutbox() {
+        return outbox;
+    }
+
+    public GatekeeperEmailProperties setOutbox(EmailOutboxProperties outbox) {
+        this.outbox = outbox;
+        return this;
+    }
+
     public String getChangeDisclaimer() {
         return changeDisclaimer;
     }
@@ -20,8 +20,6 @@ package org.finra.gatekeeper.common.services.email;
 import com.amazonaws.services.simpleemail.AmazonSimpleEmailService;
 import com.amazonaws.services.simpleemail.model.RawMessage;
 import com.amazonaws.services.simpleemail.model.SendRawEmailRequest;
-import freemarker.template.Configuration;
-import freemarker.template.Template;
 import org.finra.gatekeeper.common.services.aws.AwsSesSessionService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,7 +34,6 @@ import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeMessage;
 import javax.mail.util.ByteArrayDataSource;
 import java.io.ByteArrayOutputStream;
-import java.io.StringWriter;
 import java.nio.ByteBuffer;
 import java.util.Map;
 
@@ -48,23 +45,14 @@ public class AWSEmailService {
     private final Logger logger = LoggerFactory.getLogger(org.finra.gatekeeper.common.services.email.AWSEmailService.class);
     private final String charset = "UTF-8";
 
-    private final Configuration freemarkerConfig;
+    private final EmailTemplateService emailTemplateService;
     private final AmazonSimpleEmailService ses;
     @Autowired
-    public AWSEmailService(Configuration freemarkerConfig, AwsSesSessionService awsSesSessionService) {
-        this.freemarkerConfig = freemarkerConfig;
+    public AWSEmailService(EmailTemplateService emailTemplateService, AwsSesSessionService awsSesSessionService) {
+        this.emailTemplateService = emailTemplateService;
         this.ses = awsSesSessionService.getSES();
     }
 
-    private String generateEmailMessage(String template, Map<String, Object> params) throws Exception {
-        Template templateObj = freemarkerConfig.getTemplate(template + ".ftl");
-
-        try (StringWriter stringWriter = new StringWriter()) {
-            templateObj.process(params, stringWriter);
-            return stringWriter.toString();
-        }
-    }
-
     private MimeMessage generateMimeMessage(String to, String from, String cc, String subject) throws MessagingException {
         MimeMessage mimeMessage = new JavaMailSenderImpl().createMimeMessage();
         MimeMessageHelper message = new MimeMessageHelper(mimeMessage, true, charset);
@@ -109,11 +97,29 @@ public class AWSEmailService {
      */
     public MimeMessage sendEmailWithAttachment(String to, String from, String cc, String emailSubject, String template, Map<String, Object> contentMap, String attachmentName, String attachmentTemplate, Map<String, Object> attachmentMap, String mimeType) throws Exception {
         logger.info("Sending email to " + to + " with subject " + emailSubject + " and message: " + template);
+        String attachment = attachmentName != null ? emailTemplateService.render("attachments/" + attachmentTemplate, attachmentMap) : null;
+        return sendRenderedEmail(to, from, cc, emailSubject, emailTemplateService.render(template, contentMap), attachmentName, attachment, mimeType);
+    }
+
+    /**
+     * Sends an email whose body (and attachment) have already been rendered
+     *
+     * @param to             - Comma separated list of users to send email
+     * @param cc             - Comma separated list of users to cc
+     * @param emailSubject   - String containing subject of email
+     * @param body           - The rendered html body of the email
+     * @param attachmentName - Name of attachment, null if there is no attachment
+     * @param attachment     - The rendered attachment
+     * @param mimeType       - The mime type of the attachment
+     * @return - the mimeMessage object
+     * @throws Exception
+     */
+    public MimeMessage sendRenderedEmail(String to, String from, String cc, String emailSubject, String body, String attachmentName, String attachment, String mimeType) throws Exception {
         MimeMessage mimeMessage = generateMimeMessage(to, from, cc, emailSubject);
         MimeMessageHelper message = new MimeMessageHelper(mimeMessage, true, charset);
-        message.setText(generateEmailMessage(template, contentMap), true);
+        message.setText(body, true);
         if (attachmentName != null) {
-            DataSource data = new ByteArrayDataSource(generateEmailMessage("attachments/"+attachmentTemplate, attachmentMap), mimeType);
+            DataSource data = new ByteArrayDataSource(attachment, mimeType);
             message.addAttachment(attachmentName, data);
         }
 
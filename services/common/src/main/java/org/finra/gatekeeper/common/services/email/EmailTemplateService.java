@@ -0,0 +1,99 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.common.services.email;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.StringWriter;
+import java.util.Map;
+
+/**
+ * Renders the email templates. Templates are parsed the first time they're used (or at startup, see warmUp) and
+ * FreeMarker's template cache holds on to them from then on (see GatekeeperEmailProperties.freemarkerConfig), so
+ * sending an email doesn't go back to the classpath for the template.
+ */
+@Component
+public class EmailTemplateService {
+
+    private final Logger logger = LoggerFactory.getLogger(EmailTemplateService.class);
+
+    private static final String TEMPLATE_DIRECTORY = "emails/";
+    private static final String TEMPLATE_EXTENSION = ".ftl";
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    private final Configuration freemarkerConfig;
+
+    @Autowired
+    public EmailTemplateService(Configuration freemarkerConfig) {
+        this.freemarkerConfig = freemarkerConfig;
+    }
+
+    /**
+     * Renders a template
+     *
+     * @param template - Template name (relative to the emails directory, without the .ftl)
+     * @param params   - Key-value pairing used by template
+     * @return the rendered template
+     * @throws Exception if the template can't be found or fails to render
+     */
+    public String render(String template, Map<String, ?> params) throws Exception {
+        StringWriter stringWriter = new StringWriter(INITIAL_BUFFER_SIZE);
+        getTemplate(template).process(params, stringWriter);
+        return stringWriter.toString();
+    }
+
+    private Template getTemplate(String template) throws Exception {
+        return freemarkerConfig.getTemplate(template + TEMPLATE_EXTENSION);
+    }
+
+    /**
+     * Parses every template on the classpath up front so that the first emails sent don't pay for it
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        long startTime = System.currentTimeMillis();
+        int loaded = 0;
+        try {
+            Resource[] resources = new PathMatchingResourcePatternResolver()
+                    .getResources("classpath*:" + TEMPLATE_DIRECTORY + "**/*" + TEMPLATE_EXTENSION);
+            for (Resource resource : resources) {
+                String path = resource.getURL().toString();
+                String template = path.substring(path.lastIndexOf(TEMPLATE_DIRECTORY) + TEMPLATE_DIRECTORY.length(),
+                        path.length() - TEMPLATE_EXTENSION.length());
+                try {
+                    getTemplate(template);
+                    loaded++;
+                } catch (Exception e) {
+                    logger.warn("Could not load email template " + template, e);
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Could not look up the email templates, they will be loaded as they're used", e);
+        }
+        logger.info("Loaded " + loaded + " email templates in " + (System.currentTimeMillis() - startTime) + "ms");
+    }
+}
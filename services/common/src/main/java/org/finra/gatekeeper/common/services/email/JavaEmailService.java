@@ -17,8 +17,6 @@
 
 package org.finra.gatekeeper.common.services.email;
 
-import freemarker.template.Configuration;
-import freemarker.template.Template;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -31,8 +29,6 @@ import javax.mail.MessagingException;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeMessage;
 import javax.mail.util.ByteArrayDataSource;
-import java.io.StringWriter;
-import java.io.Writer;
 import java.util.Map;
 
 /**
@@ -46,28 +42,13 @@ public class JavaEmailService {
 
 
     private final JavaMailSender javaMailSender;
-    private final Configuration freemarkerConfig;
+    private final EmailTemplateService emailTemplateService;
 
     @Autowired
     public JavaEmailService(JavaMailSender javaMailSender,
-                            Configuration freemarkerConfig) {
+                            EmailTemplateService emailTemplateService) {
         this.javaMailSender = javaMailSender;
-        this.freemarkerConfig = freemarkerConfig;
-    }
-
-    private String generateEmailMessage(String template, Map params) throws Exception {
-        Template templateObj = freemarkerConfig.getTemplate(template + ".ftl");
-
-        Writer stringWriter = new StringWriter();
-        String result;
-
-        try {
-            templateObj.process(params, stringWriter);
-            result = stringWriter.toString();
-        } finally {
-            stringWriter.close();
-        }
-        return result;
+        this.emailTemplateService = emailTemplateService;
     }
 
     private MimeMessage generateMimeMessage(String to, String from, String cc, String subject) throws MessagingException {
@@ -114,11 +95,29 @@ public class JavaEmailService {
      */
     public MimeMessage sendEmailWithAttachment(String to, String from, String cc, String emailSubject, String template, Map<String, Object> contentMap, String attachmentName, String attachmentTemplate, Map<String, Object> attachmentMap, String mimeType) throws Exception {
         logger.info("Sending email to " + to + " with subject " + emailSubject + " and message: " + template);
+        String attachment = attachmentName != null ? emailTemplateService.render("attachments/" + attachmentTemplate, attachmentMap) : null;
+        return sendRenderedEmail(to, from, cc, emailSubject, emailTemplateService.render(template, contentMap), attachmentName, attachment, mimeType);
+    }
+
+    /**
+     * Sends an email whose body (and attachment) have already been rendered
+     *
+     * @param to             - Comma separated list of users to send email
+     * @param cc             - Comma separated list of users to cc
+     * @param emailSubject   - String containing subject of email
+     * @param body           - The rendered html body of the email
+     * @param attachmentName - Name of attachment, null if there is no attachment
+     * @param attachment     - The rendered attachment
+     * @param mimeType       - The mime type of the attachment
+     * @return - the mimeMessage object
+     * @throws Exception
+     */
+    public MimeMessage sendRenderedEmail(String to, String from, String cc, String emailSubject, String body, String attachmentName, String attachment, String mimeType) throws Exception {
         MimeMessage mimeMessage = generateMimeMessage(to, from, cc, emailSubject);
         MimeMessageHelper message = new MimeMessageHelper(mimeMessage, true, charset);
-        message.setText(generateEmailMessage(template, contentMap), true);
+        message.setText(body, true);
         if (attachmentName != null) {
-            DataSource data = new ByteArrayDataSource(generateEmailMessage("attachments/"+attachmentTemplate, attachmentMap), mimeType);
+            DataSource data = new ByteArrayDataSource(attachment, mimeType);
             message.addAttachment(attachmentName, data);
         }
         javaMailSender.send(mimeMessage);
@@ -67,7 +67,7 @@ public class AWSEmailServiceTest {
         Template template = Template.getPlainTextTemplate("test", "<html>A test.</html>", new freemarker.template.Configuration());
         when(freemarkerConfig.getTemplate(anyString())).thenReturn(template);
         when(awsSesSessionService.getSES()).thenReturn(ses);
-        awsEmailService = new AWSEmailService(freemarkerConfig, awsSesSessionService);
+        awsEmailService = new AWSEmailService(new EmailTemplateService(freemarkerConfig), awsSesSessionService);
     }
 
     @Test
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.common.services.email;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import org.finra.gatekeeper.common.properties.GatekeeperEmailProperties;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.FileNotFoundException;
+import java.util.Collections;
+
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EmailTemplateServiceTest {
+
+    @Mock
+    private Configuration freemarkerConfig;
+
+    private EmailTemplateService emailTemplateService;
+
+    @Before
+    public void setUp() {
+        emailTemplateService = new EmailTemplateService(freemarkerConfig);
+    }
+
+    @Test
+    public void testRender() throws Exception {
+        Template template = new Template("test", "<html>Hello ${name}</html>", new Configuration(Configuration.VERSION_2_3_29));
+        when(freemarkerConfig.getTemplate("test.ftl")).thenReturn(template);
+
+        Assert.assertEquals("<html>Hello One</html>", emailTemplateService.render("test", Collections.singletonMap("name", "One")));
+        Assert.assertEquals("<html>Hello Two</html>", emailTemplateService.render("test", Collections.singletonMap("name", "Two")));
+    }
+
+    @Test
+    public void testTemplatesAreOnlyParsedOnce() throws Exception {
+        Configuration configuration = new GatekeeperEmailProperties().freemarkerConfig();
+        Template template = configuration.getTemplate("test.ftl");
+
+        // FreeMarker hands back the template it already parsed instead of going back to the classpath for it
+        Assert.assertSame(template, configuration.getTemplate("test.ftl"));
+        Assert.assertEquals(Long.MAX_VALUE, configuration.getTemplateUpdateDelayMilliseconds());
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void testRenderMissingTemplate() throws Exception {
+        when(freemarkerConfig.getTemplate("missing.ftl")).thenThrow(new FileNotFoundException("missing.ftl"));
+        emailTemplateService.render("missing", Collections.emptyMap());
+    }
+}
@@ -22,7 +22,6 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.context.annotation.Configuration;
@@ -49,7 +48,6 @@ import static org.mockito.Mockito.*;
 @RunWith(MockitoJUnitRunner.class)
 public class JavaEmailServiceTest {
 
-    @InjectMocks
     private JavaEmailService javaEmailService;
 
     @Mock
@@ -68,6 +66,7 @@ public class JavaEmailServiceTest {
         doNothing().when(javaMailSender).send((MimeMessage) any());
         Template template = Template.getPlainTextTemplate("test", "<html>A test.</html>", new freemarker.template.Configuration());
         when(freemarkerConfig.getTemplate(anyString())).thenReturn(template);
+        javaEmailService = new JavaEmailService(javaMailSender, new EmailTemplateService(freemarkerConfig));
     }
 
     @Test
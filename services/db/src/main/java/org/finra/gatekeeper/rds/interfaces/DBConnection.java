@@ -37,6 +37,15 @@ public interface DBConnection {
      */
     boolean grantAccess(RdsGrantAccessQuery rdsGrantAccessQuery) throws Exception;
 
+    /**
+     * Grants several users access to a database over a single connection
+     *
+     * @param rdsGrantAccessBatchQuery - the details of the database and the user / role pairs to provision
+     * @return a Map of database user (user with role suffix) to true if the user was provisioned, false if it failed
+     * @throws Exception - if connection fails on any level
+     */
+    Map<String, Boolean> grantAccessBatch(RdsGrantAccessBatchQuery rdsGrantAccessBatchQuery) throws Exception;
+
     /**
      * Removes user from a database
      *
@@ -46,6 +55,15 @@ public interface DBConnection {
      */
     boolean revokeAccess(RdsRevokeAccessQuery rdsRevokeAccessQuery) throws Exception;
 
+    /**
+     * Removes several users from a database over a single connection (and a single transaction where the engine allows it)
+     *
+     * @param rdsRevokeAccessBatchQuery - the details of the database and the database users to remove
+     * @return a Map of database user to true if the user is no longer on the database, false if the removal failed
+     * @throws Exception - if connection fails on any level
+     */
+    Map<String, Boolean> revokeAccessBatch(RdsRevokeAccessBatchQuery rdsRevokeAccessBatchQuery) throws Exception;
+
 
     /**
      * Gets all of the available tables for the user.
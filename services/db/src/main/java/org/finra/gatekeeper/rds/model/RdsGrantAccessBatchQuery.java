@@ -0,0 +1,86 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.rds.model;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+
+import java.util.List;
+
+public class RdsGrantAccessBatchQuery extends RdsQuery {
+    /**
+     * The user / role pairs to provision
+     */
+    private List<RdsUserGrant> grants;
+
+    /**
+     * The amount of time for the request
+     */
+    private Integer time;
+
+    public List<RdsUserGrant> getGrants() {
+        return grants;
+    }
+
+    public RdsGrantAccessBatchQuery withGrants(List<RdsUserGrant> grants) {
+        this.grants = grants;
+        return this;
+    }
+
+    public Integer getTime() {
+        return time;
+    }
+
+    public RdsGrantAccessBatchQuery withTime(Integer time) {
+        this.time = time;
+        return this;
+    }
+
+    public RdsGrantAccessBatchQuery(String account, String accountId, String region, String sdlc, String address, String dbInstanceName, String dbEngine) {
+        super(account, accountId, region, sdlc, address, dbInstanceName, dbEngine);
+    }
+
+    public RdsGrantAccessBatchQuery(String account, String accountId, String region, String sdlc, String address, String dbInstanceName, String dbEngine, List<RdsUserGrant> grants, Integer time) {
+        super(account, accountId, region, sdlc, address, dbInstanceName, dbEngine);
+        this.grants = grants;
+        this.time = time;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("grants", grants)
+                .add("time", time)
+                .toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RdsGrantAccessBatchQuery)) return false;
+        if (!super.equals(o)) return false;
+        RdsGrantAccessBatchQuery that = (RdsGrantAccessBatchQuery) o;
+        return Objects.equal(grants, that.grants) &&
+                Objects.equal(time, that.time);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(super.hashCode(), grants, time);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.rds.model;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+
+/**
+ * A single user / role pair to provision as part of a batch grant
+ */
+public class RdsUserGrant {
+    /**
+     * The user to create
+     */
+    private String user;
+
+    /**
+     * The password to give the user
+     */
+    private String password;
+
+    /**
+     * The role to give the user
+     */
+    private RoleType role;
+
+    public String getUser() {
+        return user;
+    }
+
+    public RdsUserGrant withUser(String user) {
+        this.user = user;
+        return this;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public RdsUserGrant withPassword(String password) {
+        this.password = password;
+        return this;
+    }
+
+    public RoleType getRole() {
+        return role;
+    }
+
+    public RdsUserGrant withRole(RoleType role) {
+        this.role = role;
+        return this;
+    }
+
+    /**
+     * @return the name of the user as it appears on the database, the user with the role's suffix
+     */
+    public String getDbUser() {
+        return user + "_" + role.getShortSuffix();
+    }
+
+    public RdsUserGrant(String user, String password, RoleType role) {
+        this.user = user;
+        this.password = password;
+        this.role = role;
+    }
+
+    public RdsUserGrant() {
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("user", user)
+                .add("role", role)
+                .toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RdsUserGrant)) return false;
+        RdsUserGrant that = (RdsUserGrant) o;
+        return Objects.equal(user, that.user) &&
+                Objects.equal(password, that.password) &&
+                role == that.role;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(user, password, role);
+    }
+}
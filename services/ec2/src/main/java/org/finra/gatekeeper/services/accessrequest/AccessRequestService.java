@@ -131,6 +131,12 @@ public class AccessRequestService {
             .append("  and access_request.id = users.id\n")
             .append("  and access_request.id = instances.id\n");
 
+    private static final String ACCESS_REQUEST = "accessRequest";
+    // the accessRequest variable of every process that's waiting on a user task (i.e. every active request)
+    protected static final String ACTIVE_REQUEST_VARIABLES_QUERY = "select * from act_hi_varinst " +
+            "where name_ = 'accessRequest' " +
+            "and proc_inst_id_ in (select proc_inst_id_ from act_ru_task)";
+
     protected static final String INSTANCE_QUERY = "SELECT id, application, instances_id, ip, name, platform, status\n" +
             "FROM gatekeeper.access_request_instances w, gatekeeper.request_instance c\n" +
             "WHERE w.access_request_id = :request_id \n" +
@@ -278,23 +284,77 @@ public class AccessRequestService {
 
     public List<ActiveAccessRequestWrapper> getActiveRequests() {
         List<Task> tasks = taskService.createTaskQuery().active().list();
+        Map<String, AccessRequest> accessRequests = getAccessRequestsForTasks(tasks);
+        Map<Long, AccessRequestCounts> accessRequestCounts = getCountsForRequests(accessRequests.values());
         List<ActiveAccessRequestWrapper> response = new ArrayList<>();
         tasks.forEach(task -> {
-            AccessRequest theRequest = updateInstanceStatus(
-                    accessRequestRepository.getAccessRequestById(Long.parseLong(
-                            runtimeService.getVariableInstance(task.getExecutionId(), "accessRequest").getTextValue2())
-                    ));
+            if(!accessRequests.containsKey(task.getProcessInstanceId())){
+                logger.warn("Could not find the access request for task " + task.getId() + ", it may have just been actioned");
+                return;
+            }
+            AccessRequest theRequest = updateInstanceStatus(accessRequests.get(task.getProcessInstanceId()));
             response.add(new ActiveAccessRequestWrapper(theRequest)
                     .setCreated(task.getCreateTime())
                     .setTaskId(task.getId())
-                    .setInstanceCount(theRequest.getInstances().size())
-                    .setUserCount(theRequest.getUsers().size()));
+                    .setInstanceCount(accessRequestCounts.get(theRequest.getId()).getInstanceCount())
+                    .setUserCount(accessRequestCounts.get(theRequest.getId()).getUserCount()));
         });
 
         return (List<ActiveAccessRequestWrapper>)filterResults(response);
     }
 
 
+    /**
+     * Looks up the access requests behind the given tasks all at once, rather than going back to the database for the
+     * accessRequest variable and then the access request itself for each task
+     *
+     * @param tasks - the activiti tasks
+     * @return the access requests, keyed by the process instance id of their task
+     */
+    private Map<String, AccessRequest> getAccessRequestsForTasks(List<Task> tasks) {
+        if(tasks.isEmpty()){
+            return Collections.emptyMap();
+        }
+
+        Map<String, Long> accessRequestIds = new HashMap<>();
+        historyService.createNativeHistoricVariableInstanceQuery()
+                .sql(ACTIVE_REQUEST_VARIABLES_QUERY)
+                .list()
+                .stream()
+                .filter(variable -> ACCESS_REQUEST.equals(variable.getVariableName()))
+                .forEach(variable -> accessRequestIds.put(variable.getProcessInstanceId(),
+                        Long.valueOf(((HistoricVariableInstanceEntity) variable).getTextValue2())));
+
+        Map<Long, AccessRequest> accessRequests = new HashMap<>();
+        accessRequestRepository.getAccessRequestsByIdIn(new HashSet<>(accessRequestIds.values()))
+                .forEach(accessRequest -> accessRequests.put(accessRequest.getId(), accessRequest));
+
+        Map<String, AccessRequest> accessRequestsByProcess = new HashMap<>();
+        accessRequestIds.forEach((processInstanceId, id) -> {
+            if(accessRequests.containsKey(id)) {
+                accessRequestsByProcess.put(processInstanceId, accessRequests.get(id));
+            }
+        });
+        return accessRequestsByProcess;
+    }
+
+    /**
+     * Counts the users / instances for the given access requests in one query
+     *
+     * @param accessRequests - the access requests to count
+     * @return the counts, keyed by access request id
+     */
+    private Map<Long, AccessRequestCounts> getCountsForRequests(Collection<AccessRequest> accessRequests) {
+        if(accessRequests.isEmpty()){
+            return Collections.emptyMap();
+        }
+
+        Map<Long, AccessRequestCounts> accessRequestCounts = new HashMap<>();
+        accessRequestRepository.getAccessRequestCountsByIdIn(accessRequests.stream().map(AccessRequest::getId).collect(Collectors.toSet()))
+                .forEach(counts -> accessRequestCounts.put(counts.getId(), counts));
+        return accessRequestCounts;
+    }
+
     public List<CompletedAccessRequestWrapper> getRequest(Long id) {
         final ObjectMapper mapper = new ObjectMapper();
         List<CompletedAccessRequestWrapper> results = new ArrayList<>();
@@ -19,6 +19,7 @@ package org.finra.gatekeeper.services.accessrequest.model;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Objects;
+import org.hibernate.annotations.BatchSize;
 
 import javax.persistence.*;
 import java.util.ArrayList;
@@ -31,6 +32,11 @@ import java.util.List;
 @Table(name = "access_request")
 public class AccessRequest {
 
+    /**
+     * How many requests worth of a collection hibernate initializes in one query once any of them is touched
+     */
+    static final int FETCH_BATCH_SIZE = 100;
+
     private Long id;
     private String requestorId;
     private String requestorName;
@@ -165,6 +171,7 @@ public class AccessRequest {
      */
 
     @OneToMany(cascade = CascadeType.ALL)
+    @BatchSize(size = FETCH_BATCH_SIZE)
     public List<User> getUsers(){
         return users;
     }
@@ -179,6 +186,7 @@ public class AccessRequest {
      */
 
     @OneToMany(cascade = CascadeType.ALL)
+    @BatchSize(size = FETCH_BATCH_SIZE)
     public List<AWSInstance> getInstances(){
         return instances;
     }
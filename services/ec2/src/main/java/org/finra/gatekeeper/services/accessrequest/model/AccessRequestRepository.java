@@ -18,6 +18,7 @@ package org.finra.gatekeeper.services.accessrequest.model;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Collection;
 import java.util.List;
@@ -29,6 +30,12 @@ public interface AccessRequestRepository extends JpaRepository<AccessRequest, Lo
     AccessRequest getAccessRequestById(Long id);
     List<AccessRequest> getAccessRequestsByIdIn(Collection<Long> ids);
 
+    /**
+     * The user / instance counts of each request, counted with a subquery rather than by loading the collections
+     */
+    @Query("select r.id as id, size(r.users) as userCount, size(r.instances) as instanceCount from AccessRequest r where r.id in :ids")
+    List<AccessRequestCounts> getAccessRequestCountsByIdIn(@Param("ids") Collection<Long> ids);
+
     @Query(value = "select 1 from AccessRequest")
     void healthCheck();
 }
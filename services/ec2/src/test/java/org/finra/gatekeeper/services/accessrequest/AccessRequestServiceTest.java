@@ -23,7 +23,6 @@ import org.activiti.engine.history.HistoricVariableInstance;
 import org.activiti.engine.history.HistoricVariableInstanceQuery;
 import org.activiti.engine.history.NativeHistoricVariableInstanceQuery;
 import org.activiti.engine.impl.persistence.entity.HistoricVariableInstanceEntity;
-import org.activiti.engine.impl.persistence.entity.VariableInstance;
 import org.activiti.engine.runtime.ProcessInstanceQuery;
 import org.activiti.engine.task.Task;
 import org.activiti.engine.task.TaskQuery;
@@ -133,10 +132,13 @@ public class AccessRequestServiceTest {
     private HistoricVariableInstanceEntity nonOwnerHistoricVariableInstanceAccessRequest;
 
     @Mock
-    private VariableInstance ownerOneTaskInstance;
+    private HistoricVariableInstanceEntity ownerOneTaskInstance;
 
     @Mock
-    private VariableInstance ownerTwoTaskInstance;
+    private HistoricVariableInstanceEntity ownerTwoTaskInstance;
+
+    @Mock
+    private NativeHistoricVariableInstanceQuery activeRequestVariablesQuery;
 
     @Mock
     private GatekeeperApprovalProperties approvalPolicy;
@@ -261,22 +263,23 @@ public class AccessRequestServiceTest {
 
 
         //Mocks for getActiveRequest()
-        when(ownerOneTask.getExecutionId()).thenReturn("ownerOneTask");
         when(ownerOneTask.getCreateTime()).thenReturn(new Date(4500000));
         when(ownerOneTask.getId()).thenReturn("taskOne");
 
-        when(ownerTwoTask.getExecutionId()).thenReturn("ownerTwoTask");
         when(ownerTwoTask.getCreateTime()).thenReturn(testDate);
         when(ownerTwoTask.getId()).thenReturn("taskTwo");
 
+        when(ownerOneTask.getProcessInstanceId()).thenReturn("ownerOneProcess");
+        when(ownerTwoTask.getProcessInstanceId()).thenReturn("ownerTwoProcess");
+
+        when(ownerOneTaskInstance.getVariableName()).thenReturn("accessRequest");
+        when(ownerOneTaskInstance.getProcessInstanceId()).thenReturn("ownerOneProcess");
         when(ownerOneTaskInstance.getTextValue2()).thenReturn("1");
+        when(ownerTwoTaskInstance.getVariableName()).thenReturn("accessRequest");
+        when(ownerTwoTaskInstance.getProcessInstanceId()).thenReturn("ownerTwoProcess");
         when(ownerTwoTaskInstance.getTextValue2()).thenReturn("2");
 
-        when(accessRequestRepository.getAccessRequestById(1L)).thenReturn(ownerRequest);
-        when(accessRequestRepository.getAccessRequestById(2L)).thenReturn(nonOwnerRequest);
 
-        when(runtimeService.getVariableInstance("ownerOneTask", "accessRequest")).thenReturn(ownerOneTaskInstance);
-        when(runtimeService.getVariableInstance("ownerTwoTask", "accessRequest")).thenReturn(ownerTwoTaskInstance);
 
 
 
@@ -286,6 +289,12 @@ public class AccessRequestServiceTest {
         when(taskService.createTaskQuery()).thenReturn(taskQuery);
         when(taskService.createTaskQuery().active()).thenReturn(taskQuery);
         when(taskService.createTaskQuery().active().list()).thenReturn(activeTasks);
+        when(historyService.createNativeHistoricVariableInstanceQuery()).thenReturn(nativeHistoricVariableInstanceQuery);
+        when(nativeHistoricVariableInstanceQuery.sql(ACTIVE_REQUEST_VARIABLES_QUERY)).thenReturn(activeRequestVariablesQuery);
+        when(activeRequestVariablesQuery.list()).thenReturn(Arrays.asList(ownerOneTaskInstance, ownerTwoTaskInstance));
+        when(accessRequestRepository.getAccessRequestsByIdIn(Mockito.anyCollection())).thenReturn(Arrays.asList(ownerRequest, nonOwnerRequest));
+        when(accessRequestRepository.getAccessRequestCountsByIdIn(Mockito.anyCollection()))
+                .thenReturn(Arrays.asList(accessRequestCounts(1L, 1, 1), accessRequestCounts(2L, 0, 1)));
 
         //Mocks for getCompletedRequest()
         List<HistoricVariableInstance> taskVars = new ArrayList<>();
@@ -332,6 +341,25 @@ public class AccessRequestServiceTest {
     }
 
 
+    private AccessRequestCounts accessRequestCounts(Long id, Integer userCount, Integer instanceCount) {
+        return new AccessRequestCounts() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Integer getUserCount() {
+                return userCount;
+            }
+
+            @Override
+            public Integer getInstanceCount() {
+                return instanceCount;
+            }
+        };
+    }
+
     /**
      * Test the command used within the workflow to determine whether or not
      * approval is needed.
@@ -0,0 +1,48 @@
+/*
+ *
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.finra.gatekeeper.services.aws;
+
+import com.amazonaws.services.ec2.AmazonEC2;
+import com.amazonaws.services.simplesystemsmanagement.AWSSimpleSystemsManagement;
+import org.finra.gatekeeper.common.properties.GatekeeperAwsProperties;
+import org.finra.gatekeeper.services.aws.model.AWSEnvironment;
+
+/**
+ * Hands out the in-memory AWS clients for every account/region instead of assuming a role through STS
+ */
+public class InMemoryAwsSessionService extends AwsSessionService {
+
+    private final AmazonEC2 ec2Client;
+    private final AWSSimpleSystemsManagement ssmClient;
+
+    public InMemoryAwsSessionService(AmazonEC2 ec2Client, AWSSimpleSystemsManagement ssmClient) {
+        super(null, null, null, new GatekeeperAwsProperties());
+        this.ec2Client = ec2Client;
+        this.ssmClient = ssmClient;
+    }
+
+    @Override
+    public AmazonEC2 getEC2Session(AWSEnvironment environment) {
+        return ec2Client;
+    }
+
+    @Override
+    public AWSSimpleSystemsManagement getSsmSession(AWSEnvironment environment) {
+        return ssmClient;
+    }
+}
@@ -326,6 +326,65 @@ public class GatekeeperProperties {
         private PostgresDbProperties postgres;
         private MySqlDbProperties mysql;
         private DocumentDbProperties documentdb;
+        private PoolProperties pool = new PoolProperties();
+
+        public static class PoolProperties {
+            /**
+             * The maximum amount of connections Gatekeeper will hold open against a single database endpoint
+             */
+            private Integer maxConnectionsPerHost = 4;
+
+            /**
+             * How long (in milliseconds) a database endpoint's pool can sit unused before it gets closed
+             */
+            private Integer idleTimeout = 300000;
+
+            /**
+             * The maximum amount of database endpoints to keep pools open for
+             */
+            private Integer maxPools = 500;
+
+            /**
+             * How long (in milliseconds) a replaced, invalidated or expired pool is kept open so calls still using it can finish
+             */
+            private Integer retireDelay = 60000;
+
+            public Integer getMaxConnectionsPerHost() {
+                return maxConnectionsPerHost;
+            }
+
+            public PoolProperties setMaxConnectionsPerHost(Integer maxConnectionsPerHost) {
+                this.maxConnectionsPerHost = maxConnectionsPerHost;
+                return this;
+            }
+
+            public Integer getIdleTimeout() {
+                return idleTimeout;
+            }
+
+            public PoolProperties setIdleTimeout(Integer idleTimeout) {
+                this.idleTimeout = idleTimeout;
+                return this;
+            }
+
+            public Integer getMaxPools() {
+                return maxPools;
+            }
+
+            public PoolProperties setMaxPools(Integer maxPools) {
+                this.maxPools = maxPools;
+                return this;
+            }
+
+            public Integer getRetireDelay() {
+                return retireDelay;
+            }
+
+            public PoolProperties setRetireDelay(Integer retireDelay) {
+                this.retireDelay = retireDelay;
+                return this;
+            }
+        }
 
         public static class PostgresDbProperties{
             private Boolean ssl;
@@ -508,6 +567,15 @@ public class GatekeeperProperties {
             return this;
         }
 
+        public PoolProperties getPool() {
+            return pool;
+        }
+
+        public GatekeeperDbProperties setPool(PoolProperties pool) {
+            this.pool = pool;
+            return this;
+        }
+
         public String getGkCredentialProvider() {
             return gkCredentialProvider;
         }
@@ -537,6 +605,26 @@ public class GatekeeperProperties {
     public static class GatekeeperLambdaProperties{
         private Map<String, String> functions;
 
+        /**
+         * How long (in milliseconds) database checks for a region are collected before they are sent to the lambda together
+         */
+        private Integer batchWindow = 50;
+
+        /**
+         * The most database checks sent to the lambda in a single invocation
+         */
+        private Integer maxBatchSize = 50;
+
+        /**
+         * The most invocations of a region's lambda Gatekeeper will have running at the same time
+         */
+        private Integer maxConcurrentInvocations = 10;
+
+        /**
+         * How long (in milliseconds) a database check waits on the answer from its batch before giving up on it
+         */
+        private Integer batchTimeout = 30000;
+
         public Map<String, String> getFunctions() {
             return functions;
         }
@@ -545,6 +633,41 @@ public class GatekeeperProperties {
             this.functions = functions;
         }
 
+        public Integer getBatchWindow() {
+            return batchWindow;
+        }
+
+        public GatekeeperLambdaProperties setBatchWindow(Integer batchWindow) {
+            this.batchWindow = batchWindow;
+            return this;
+        }
+
+        public Integer getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        public GatekeeperLambdaProperties setMaxBatchSize(Integer maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        public Integer getMaxConcurrentInvocations() {
+            return maxConcurrentInvocations;
+        }
+
+        public GatekeeperLambdaProperties setMaxConcurrentInvocations(Integer maxConcurrentInvocations) {
+            this.maxConcurrentInvocations = maxConcurrentInvocations;
+            return this;
+        }
+
+        public Integer getBatchTimeout() {
+            return batchTimeout;
+        }
+
+        public GatekeeperLambdaProperties setBatchTimeout(Integer batchTimeout) {
+            this.batchTimeout = batchTimeout;
+            return this;
+        }
 
     }
 
@@ -556,6 +679,120 @@ public class GatekeeperProperties {
         this.lambda = lambda;
     }
 
+    /**
+     * Settings for the database lookups done when searching for instances
+     */
+    private GatekeeperLookupProperties lookup = new GatekeeperLookupProperties();
+
+    public static class GatekeeperLookupProperties {
+        /**
+         * The amount of databases that can be checked at the same time during a search
+         */
+        private Integer probeThreads = 16;
+
+        /**
+         * How long (in milliseconds) a search waits on its database checks, any check not done by then is reported as unreachable
+         */
+        private Integer probeTimeout = 15000;
+
+        /**
+         * How often (in milliseconds) the databases described for an account/region get described again in the background
+         */
+        private Integer inventoryRefresh = 300000;
+
+        /**
+         * How long (in milliseconds) the option groups for an account/region are cached for
+         */
+        private Integer optionGroupTtl = 3600000;
+
+        /**
+         * How long (in milliseconds) the outcome of checking a healthy database and its roles is remembered
+         */
+        private Integer probeResultTtl = 600000;
+
+        /**
+         * How long (in milliseconds) the outcome of checking a database that had issues or was unreachable is remembered
+         */
+        private Integer probeFailureTtl = 60000;
+
+        /**
+         * How long (in milliseconds) the schemas / tables available to each role on a database are remembered
+         */
+        private Integer schemaCatalogTtl = 600000;
+
+        public Integer getProbeThreads() {
+            return probeThreads;
+        }
+
+        public GatekeeperLookupProperties setProbeThreads(Integer probeThreads) {
+            this.probeThreads = probeThreads;
+            return this;
+        }
+
+        public Integer getProbeTimeout() {
+            return probeTimeout;
+        }
+
+        public GatekeeperLookupProperties setProbeTimeout(Integer probeTimeout) {
+            this.probeTimeout = probeTimeout;
+            return this;
+        }
+
+        public Integer getInventoryRefresh() {
+            return inventoryRefresh;
+        }
+
+        public GatekeeperLookupProperties setInventoryRefresh(Integer inventoryRefresh) {
+            this.inventoryRefresh = inventoryRefresh;
+            return this;
+        }
+
+        public Integer getOptionGroupTtl() {
+            return optionGroupTtl;
+        }
+
+        public GatekeeperLookupProperties setOptionGroupTtl(Integer optionGroupTtl) {
+            this.optionGroupTtl = optionGroupTtl;
+            return this;
+        }
+
+        public Integer getProbeResultTtl() {
+            return probeResultTtl;
+        }
+
+        public GatekeeperLookupProperties setProbeResultTtl(Integer probeResultTtl) {
+            this.probeResultTtl = probeResultTtl;
+            return this;
+        }
+
+        public Integer getProbeFailureTtl() {
+            return probeFailureTtl;
+        }
+
+        public GatekeeperLookupProperties setProbeFailureTtl(Integer probeFailureTtl) {
+            this.probeFailureTtl = probeFailureTtl;
+            return this;
+        }
+
+        public Integer getSchemaCatalogTtl() {
+            return schemaCatalogTtl;
+        }
+
+        public GatekeeperLookupProperties setSchemaCatalogTtl(Integer schemaCatalogTtl) {
+            this.schemaCatalogTtl = schemaCatalogTtl;
+            return this;
+        }
+    }
+
+    public GatekeeperLookupProperties getLookup() {
+        return lookup;
+    }
+
+    public GatekeeperProperties setLookup(GatekeeperLookupProperties lookup) {
+        this.lookup = lookup;
+        return this;
+    }
+
     /**
      * API where AWS account info is provided
      */
@@ -20,9 +20,12 @@ package org.finra.gatekeeper.controllers;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.finra.gatekeeper.controllers.wrappers.AccessRequestWrapper;
 import org.finra.gatekeeper.controllers.wrappers.ActiveAccessRequestWrapper;
+import org.finra.gatekeeper.controllers.wrappers.CompletedAccessRequestPage;
 import org.finra.gatekeeper.controllers.wrappers.CompletedAccessRequestWrapper;
 import org.finra.gatekeeper.exception.GatekeeperException;
 import org.finra.gatekeeper.services.accessrequest.AccessRequestService;
+import org.finra.gatekeeper.services.accessrequest.model.CompletedAccessRequestFilter;
+import org.finra.gatekeeper.services.accessrequest.model.RequestStatus;
 import org.finra.gatekeeper.services.accessrequest.model.response.AccessRequestCreationResponse;
 import org.finra.gatekeeper.common.services.account.AccountInformationService;
 import org.finra.gatekeeper.common.services.properties.GatekeeperPropertiesService;
@@ -30,9 +33,11 @@ import org.finra.gatekeeper.common.services.account.model.Account;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -80,6 +85,26 @@ public class AccessRequestController {
         return accessRequestService.getCompletedRequests();
     }
 
+    @RequestMapping(value = "/completedRequests", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletedAccessRequestPage getCompletedRequests(@RequestParam(value = "requestor", required = false) String requestorId,
+                                                           @RequestParam(value = "account", required = false) String account,
+                                                           @RequestParam(value = "status", required = false) RequestStatus status,
+                                                           @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+                                                           @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to,
+                                                           @RequestParam(value = "database", required = false) String databaseName,
+                                                           @RequestParam(value = "cursor", required = false) String cursor,
+                                                           @RequestParam(value = "limit", required = false) Integer limit) throws GatekeeperException {
+        return accessRequestService.getCompletedRequests(new CompletedAccessRequestFilter()
+                .setRequestorId(requestorId)
+                .setAccount(account)
+                .setStatus(status)
+                .setUpdatedFrom(from)
+                .setUpdatedTo(to)
+                .setDatabaseName(databaseName)
+                .setCursor(cursor)
+                .setLimit(limit));
+    }
+
     @RequestMapping(value = "/getLiveRequests", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
     public List<CompletedAccessRequestWrapper> getLiveRequests() {
         List<CompletedAccessRequestWrapper> liveReqeusts = accessRequestService.getLiveRequests();
@@ -29,6 +29,7 @@ import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
@@ -66,4 +67,14 @@ public class DatabaseController {
 
         return rdsLookupService.getUsersForInstance(awsEnvironment, removeUsersWrapper.getInstanceId(), removeUsersWrapper.getInstanceName(), removeUsersWrapper.getInstanceType());
     }
+
+    /**
+     * Clears out the remembered checks for a database (e.g. after a DBA has fixed up the gatekeeper user) so the next
+     * search goes back to the database, leaving out the endpoint clears out every database.
+     */
+    @RequestMapping(value="/probeResults", method= RequestMethod.DELETE)
+    public void invalidateProbeResults(@RequestParam(value="endpoint", required=false) String endpoint) {
+        databaseConnectionService.invalidateProbeResults(endpoint);
+        rdsLookupService.invalidateInventory(endpoint);
+    }
 }
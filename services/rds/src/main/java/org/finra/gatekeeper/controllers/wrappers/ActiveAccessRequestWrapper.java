@@ -29,6 +29,7 @@ public class ActiveAccessRequestWrapper extends AccessRequestWrapper {
 
     @JsonAlias("user_count")
     private Integer userCount;
+    @JsonAlias("instance_count")
     private Integer instanceCount;
     private String taskId;
     private Date created;
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.controllers.wrappers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A page of completed access requests, nextCursor is passed back in to get the next page and is null on the last page.
+ */
+public class CompletedAccessRequestPage {
+
+    private List<CompletedAccessRequestWrapper> requests = new ArrayList<>();
+    private String nextCursor;
+
+    public List<CompletedAccessRequestWrapper> getRequests() {
+        return requests;
+    }
+
+    public CompletedAccessRequestPage setRequests(List<CompletedAccessRequestWrapper> requests) {
+        this.requests = requests;
+        return this;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public CompletedAccessRequestPage setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+        return this;
+    }
+}
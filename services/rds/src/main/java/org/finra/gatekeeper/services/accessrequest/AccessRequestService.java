@@ -21,6 +21,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.activiti.engine.HistoryService;
 import org.activiti.engine.RuntimeService;
 import org.activiti.engine.TaskService;
+import org.activiti.engine.impl.persistence.entity.HistoricVariableInstanceEntity;
 import org.activiti.engine.task.Task;
 import org.finra.gatekeeper.common.services.user.model.GatekeeperUserEntry;
 import org.finra.gatekeeper.common.services.eventlogging.*;
@@ -29,6 +30,7 @@ import org.finra.gatekeeper.configuration.GatekeeperOverrideProperties;
 import org.finra.gatekeeper.controllers.AccessRequestController;
 import org.finra.gatekeeper.controllers.wrappers.AccessRequestWrapper;
 import org.finra.gatekeeper.controllers.wrappers.ActiveAccessRequestWrapper;
+import org.finra.gatekeeper.controllers.wrappers.CompletedAccessRequestPage;
 import org.finra.gatekeeper.controllers.wrappers.CompletedAccessRequestWrapper;
 import org.finra.gatekeeper.exception.GatekeeperException;
 import org.finra.gatekeeper.rds.model.RoleType;
@@ -84,6 +86,10 @@ public class AccessRequestService {
     private final String APPROVED = "APPROVED";
     private final String CANCELED = "CANCELED";
 
+    /*
+     * The status, created/updated times and counts come from the access_request_summary reporting view, which is kept
+     * up to date as requests move through the workflow (see AccessRequestSummaryService)
+     */
     protected static final String REQUESTS_QUERY = new StringBuilder()
             .append("SELECT access_request.account_sdlc,\n")
             .append("       access_request.request_reason,\n")
@@ -98,38 +104,22 @@ public class AccessRequestService {
             .append("       access_request.requestor_email,\n")
             .append("       access_request.requestor_id,\n")
             .append("       access_request.days,\n")
-            .append("       created, \n")
-            .append("       updated, \n")
-            .append("       user_count, \n")
-            .append("       status from\n")
-            .append("                        gatekeeper_rds.access_request access_request,\n")
-            .append("                        -- This gets the access request id and their created time, their updated time and their request status from activiti tables\n")
-            .append("                        (select cast(text2_ as numeric) access_request_id, create_time_ as created, last_updated_time_ as updated, status\n")
-            .append("                         from (select a.proc_inst_id_, a.text2_\n")
-            .append("                               from gatekeeper_rds.act_hi_varinst a\n")
-            .append("                               where name_ = 'accessRequest') accessRequestId,\n")
-            .append("                              -- This gets the request status\n")
-            .append("                              (select a.proc_inst_id_,\n")
-            .append("                                      a.create_time_,\n")
-            .append("                                      a.last_updated_time_,\n")
-            .append("                                      substring(encode(b.bytes_, 'escape'), '\\w+$') as status\n")
-            .append("                               from gatekeeper_rds.act_hi_varinst a\n")
-            .append("                                      join gatekeeper_rds.act_ge_bytearray b on a.bytearray_id_ = b.id_) accessRequestStatus\n")
-            .append("                         where accessRequestId.proc_inst_id_ = accessRequestStatus.proc_inst_id_\n")
-            .append("                        ) gk_activiti,\n")
-            .append("                        -- This counts the users oer request\n")
-            .append("                        (select a.id, count(*) as user_count from gatekeeper_rds.access_request a, gatekeeper_rds.access_request_users b\n")
-            .append("                         where a.id = b.access_request_id\n")
-            .append("                         group by a.id) users,\n")
-            .append("                        -- This counts the dbs per request\n")
-            .append("                        (select a.id, count(*) as databases from gatekeeper_rds.access_request a, gatekeeper_rds.access_request_aws_rds_instances b\n")
-            .append("                         where a.id = b.access_request_id\n")
-            .append("                         group by a.id) databases\n")
-            .append("where access_request.id = gk_activiti.access_request_id\n")
-            .append("  and access_request.id = users.id\n")
-            .append("  and access_request.id = databases.id\n")
+            .append("       summary.created, \n")
+            .append("       summary.updated, \n")
+            .append("       summary.user_count, \n")
+            .append("       summary.instance_count, \n")
+            .append("       summary.status from\n")
+            .append("                        gatekeeper_rds.access_request_summary summary,\n")
+            .append("                        gatekeeper_rds.access_request access_request\n")
+            .append("where access_request.id = summary.access_request_id\n")
             .toString();
 
+    private static final String ACCESS_REQUEST = "accessRequest";
+    // the accessRequest variable of every process that's waiting on a user task (i.e. every active request)
+    protected static final String ACTIVE_REQUEST_VARIABLES_QUERY = "select * from act_hi_varinst " +
+            "where name_ = 'accessRequest' " +
+            "and proc_inst_id_ in (select proc_inst_id_ from act_ru_task)";
+
     protected static final String ROLE_QUERY = "SELECT id, role\n" +
             "FROM gatekeeper_rds.access_request_roles a, gatekeeper_rds.request_role r\n" +
             "WHERE a.access_request_id = :request_id\n" +
@@ -328,22 +318,77 @@ public class AccessRequestService {
 
     public List<ActiveAccessRequestWrapper> getActiveRequests() {
         List<Task> tasks = taskService.createTaskQuery().active().list();
+        Map<String, AccessRequest> accessRequests = getAccessRequestsForTasks(tasks);
+        Map<Long, AccessRequestCounts> accessRequestCounts = getCountsForRequests(accessRequests.values());
         List<ActiveAccessRequestWrapper> response = new ArrayList<>();
         tasks.forEach(task -> {
-            AccessRequest theRequest = accessRequestRepository.getAccessRequestById(Long.valueOf(
-                    runtimeService.getVariableInstance(task.getExecutionId(), "accessRequest").getTextValue2())
-            );
+            AccessRequest theRequest = accessRequests.get(task.getProcessInstanceId());
+            if(theRequest == null){
+                logger.warn("Could not find the access request for task " + task.getId() + ", it may have just been actioned");
+                return;
+            }
 
             response.add(new ActiveAccessRequestWrapper(theRequest)
                     .setCreated(task.getCreateTime())
                     .setTaskId(task.getId())
-                    .setInstanceCount(theRequest.getAwsRdsInstances().size())
-                    .setUserCount(theRequest.getUsers().size()));
+                    .setInstanceCount(accessRequestCounts.get(theRequest.getId()).getInstanceCount())
+                    .setUserCount(accessRequestCounts.get(theRequest.getId()).getUserCount()));
         });
 
         return (List<ActiveAccessRequestWrapper>)filterResults(response);
     }
 
+    /**
+     * Looks up the access requests behind the given tasks all at once, rather than going back to the database for the
+     * accessRequest variable and then the access request itself for each task
+     *
+     * @param tasks - the activiti tasks
+     * @return the access requests, keyed by the process instance id of their task
+     */
+    private Map<String, AccessRequest> getAccessRequestsForTasks(List<Task> tasks) {
+        if(tasks.isEmpty()){
+            return Collections.emptyMap();
+        }
+
+        Map<String, Long> accessRequestIds = new HashMap<>();
+        historyService.createNativeHistoricVariableInstanceQuery()
+                .sql(ACTIVE_REQUEST_VARIABLES_QUERY)
+                .list()
+                .stream()
+                .filter(variable -> ACCESS_REQUEST.equals(variable.getVariableName()))
+                .forEach(variable -> accessRequestIds.put(variable.getProcessInstanceId(),
+                        Long.valueOf(((HistoricVariableInstanceEntity) variable).getTextValue2())));
+
+        Map<Long, AccessRequest> accessRequests = new HashMap<>();
+        accessRequestRepository.getAccessRequestsByIdIn(new HashSet<>(accessRequestIds.values()))
+                .forEach(accessRequest -> accessRequests.put(accessRequest.getId(), accessRequest));
+
+        Map<String, AccessRequest> accessRequestsByProcess = new HashMap<>();
+        accessRequestIds.forEach((processInstanceId, id) -> {
+            if(accessRequests.containsKey(id)) {
+                accessRequestsByProcess.put(processInstanceId, accessRequests.get(id));
+            }
+        });
+        return accessRequestsByProcess;
+    }
+
+    /**
+     * Counts the users / instances for the given access requests in one query
+     *
+     * @param accessRequests - the access requests to count
+     * @return the counts, keyed by access request id
+     */
+    private Map<Long, AccessRequestCounts> getCountsForRequests(Collection<AccessRequest> accessRequests) {
+        if(accessRequests.isEmpty()){
+            return Collections.emptyMap();
+        }
+
+        Map<Long, AccessRequestCounts> accessRequestCounts = new HashMap<>();
+        accessRequestRepository.getAccessRequestCountsByIdIn(accessRequests.stream().map(AccessRequest::getId).collect(Collectors.toSet()))
+                .forEach(counts -> accessRequestCounts.put(counts.getId(), counts));
+        return accessRequestCounts;
+    }
+
     public List<CompletedAccessRequestWrapper> getRequest(Long id) {
         final ObjectMapper mapper = new ObjectMapper();
         List<CompletedAccessRequestWrapper> results = new ArrayList<>();
@@ -424,6 +469,88 @@ public class AccessRequestService {
         return (List<CompletedAccessRequestWrapper>)filterResults(results);
     }
 
+    /**
+     * Gets a page of completed requests matching the given filters, newest first. Unlike getCompletedRequests() the
+     * filtering (including only letting non approvers/auditors see their own requests) happens in the database, and the
+     * results are paged by (updated, id) so each page is an index range scan no matter how far back it goes.
+     *
+     * @param filter - the filters to apply and where the previous page left off
+     * @return the page of requests along with the cursor for the next page
+     * @throws GatekeeperException - if the cursor isn't one that was handed out with a previous page
+     */
+    public CompletedAccessRequestPage getCompletedRequests(CompletedAccessRequestFilter filter) throws GatekeeperException {
+        final ObjectMapper mapper = new ObjectMapper();
+        StringBuilder query = new StringBuilder(REQUESTS_QUERY);
+        Map<String, Object> parameters = new HashMap<>();
+
+        if(!canSeeAllRequests()){
+            // requestor ids are kept lower case in the summary so the (requestor_id, updated) index can be used
+            query.append("and summary.requestor_id = :current_user_id \n");
+            parameters.put("current_user_id", gatekeeperRoleService.getUserProfile().getUserId().toLowerCase());
+        }
+        if(filter.getRequestorId() != null){
+            query.append("and summary.requestor_id = :requestor_id \n");
+            parameters.put("requestor_id", filter.getRequestorId().toLowerCase());
+        }
+        if(filter.getAccount() != null){
+            query.append("and summary.account = :account \n");
+            parameters.put("account", filter.getAccount().toUpperCase());
+        }
+        if(filter.getStatus() != null){
+            query.append("and summary.status = :status \n");
+            parameters.put("status", filter.getStatus().name());
+        }
+        if(filter.getUpdatedFrom() != null){
+            query.append("and summary.updated >= :updated_from \n");
+            parameters.put("updated_from", filter.getUpdatedFrom());
+        }
+        if(filter.getUpdatedTo() != null){
+            query.append("and summary.updated < :updated_to \n");
+            parameters.put("updated_to", filter.getUpdatedTo());
+        }
+        if(filter.getDatabaseName() != null){
+            query.append("and exists (select 1 from gatekeeper_rds.access_request_aws_rds_instances w, gatekeeper_rds.request_database c \n")
+                    .append("            where w.access_request_id = access_request.id \n")
+                    .append("              and w.aws_rds_instances_id = c.id \n")
+                    .append("              and c.name = :database_name) \n");
+            parameters.put("database_name", filter.getDatabaseName());
+        }
+        if(filter.getCursor() != null){
+            String[] cursor = filter.getCursor().split("_");
+            try {
+                if (cursor.length != 2) {
+                    throw new NumberFormatException(filter.getCursor());
+                }
+                parameters.put("cursor_updated", new Date(Long.parseLong(cursor[0])));
+                parameters.put("cursor_id", Long.parseLong(cursor[1]));
+            } catch (NumberFormatException e) {
+                throw new GatekeeperException("Invalid cursor: " + filter.getCursor(), e);
+            }
+            query.append("and (summary.updated, summary.access_request_id) < (:cursor_updated, :cursor_id) \n");
+        }
+        // no trailing ; since hibernate appends the limit for setMaxResults to the end of the query
+        query.append("order by summary.updated desc, summary.access_request_id desc");
+
+        NativeQueryImpl q = (NativeQueryImpl) entityManager.createNativeQuery(query.toString());
+        parameters.forEach(q::setParameter);
+        // grab one more than asked for to find out if there's another page
+        q.setMaxResults(filter.getLimit() + 1);
+        q.setResultTransformer(AliasToEntityMapResultTransformer.INSTANCE);
+
+        List<Map<String, AccessRequestWrapper>> result = q.getResultList();
+        List<CompletedAccessRequestWrapper> requests = new ArrayList<>();
+        for (Map<String, AccessRequestWrapper> map: result.subList(0, Math.min(result.size(), filter.getLimit()))) {
+            requests.add(mapper.convertValue(map, CompletedAccessRequestWrapper.class));
+        }
+
+        CompletedAccessRequestPage page = new CompletedAccessRequestPage().setRequests(requests);
+        if(result.size() > filter.getLimit()){
+            CompletedAccessRequestWrapper last = requests.get(requests.size() - 1);
+            page.setNextCursor(last.getUpdated().getTime() + "_" + last.getId());
+        }
+        return page;
+    }
+
     /**
      * Gets all live requests currently active within the gatekeeper system
      * @return - all live AccessRequest objects in the Gatekeeper System
@@ -441,17 +568,6 @@ public class AccessRequestService {
         ).collect(Collectors.toList());
     }
 
-    /**
-     * This checks to see if there is any live requests still active for the user for the given account and database
-     * @param userId - the user id for the user
-     * @param accountName - the name of the account
-     * @param database - the name of the database
-     * @return a list of access requests that the user still has active on that database.
-     */
-    public List<AccessRequest> getLiveRequestsForUserOnDatabase(String userId, String accountName, String database, UserRole role) {
-        return accessRequestRepository.getLiveAccessRequestsForUserAccountDbNameAndRole(userId, accountName, database, role.getRole());
-    }
-
     /**
      * Helper function to update the request comments / actionedBy fields for the access request
      *
@@ -509,10 +625,20 @@ public class AccessRequestService {
         return getActiveRequests();
     }
 
+    /**
+     * Only approvers and auditors get to see everybody's requests, everyone else just sees their own
+     */
     private List<? extends AccessRequestWrapper> filterResults(List<? extends AccessRequestWrapper> results) {
-        return results.stream().filter(AccessRequestWrapper -> gatekeeperRoleService.getRole().equals(GatekeeperRdsRole.APPROVER)
-                || gatekeeperRoleService.getRole().equals(GatekeeperRdsRole.AUDITOR)
-                || gatekeeperRoleService.getUserProfile().getUserId().equalsIgnoreCase(AccessRequestWrapper.getRequestorId()))
+        if(canSeeAllRequests()){
+            return results;
+        }
+        String userId = gatekeeperRoleService.getUserProfile().getUserId();
+        return results.stream().filter(AccessRequestWrapper -> userId.equalsIgnoreCase(AccessRequestWrapper.getRequestorId()))
                 .collect(Collectors.toList());
     }
+
+    private boolean canSeeAllRequests() {
+        GatekeeperRdsRole role = gatekeeperRoleService.getRole();
+        return GatekeeperRdsRole.APPROVER.equals(role) || GatekeeperRdsRole.AUDITOR.equals(role);
+    }
 }
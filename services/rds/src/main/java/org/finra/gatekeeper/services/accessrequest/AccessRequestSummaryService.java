@@ -0,0 +1,91 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.services.accessrequest;
+
+import org.finra.gatekeeper.services.accessrequest.model.AccessRequest;
+import org.finra.gatekeeper.services.accessrequest.model.AccessRequestSummary;
+import org.finra.gatekeeper.services.accessrequest.model.AccessRequestSummaryRepository;
+import org.finra.gatekeeper.services.accessrequest.model.RequestStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+
+/**
+ * Keeps the access_request_summary reporting view up to date, summaries are written in the same transaction as the
+ * workflow step that changed the status of the request.
+ */
+@Component
+public class AccessRequestSummaryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccessRequestSummaryService.class);
+
+    private final AccessRequestSummaryRepository accessRequestSummaryRepository;
+
+    @Autowired
+    public AccessRequestSummaryService(AccessRequestSummaryRepository accessRequestSummaryRepository) {
+        this.accessRequestSummaryRepository = accessRequestSummaryRepository;
+    }
+
+    /**
+     * Records the new status of the access request, creating the summary for the request if this is the first time its
+     * status has been set.
+     *
+     * @param accessRequest - the access request
+     * @param status - the status the request was moved to
+     * @return the summary for the request
+     */
+    public AccessRequestSummary recordStatus(AccessRequest accessRequest, RequestStatus status) {
+        Date now = new Date();
+        AccessRequestSummary summary = accessRequestSummaryRepository.findById(accessRequest.getId())
+                .orElseGet(() -> new AccessRequestSummary()
+                        .setAccessRequestId(accessRequest.getId())
+                        .setRequestorId(accessRequest.getRequestorId() != null ? accessRequest.getRequestorId().toLowerCase() : null)
+                        .setAccount(accessRequest.getAccount())
+                        .setAccountSdlc(accessRequest.getAccountSdlc())
+                        .setUserCount(accessRequest.getUsers().size())
+                        .setInstanceCount(accessRequest.getAwsRdsInstances().size())
+                        .setCreated(now));
+
+        logger.info("Access Request " + accessRequest.getId() + " moved from " + summary.getStatus() + " to " + status);
+        return accessRequestSummaryRepository.save(summary
+                .setStatus(status)
+                .setUpdated(now));
+    }
+
+    /**
+     * One time fill in of the summaries for the requests that were actioned before summaries were kept, once every
+     * request has a summary this is just a single lookup on start up.
+     */
+    @Transactional
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillSummaries() {
+        if(!accessRequestSummaryRepository.hasRequestsMissingSummaries()){
+            return;
+        }
+        logger.info("Found access requests without a summary, filling them in from the workflow history");
+        long startTime = System.currentTimeMillis();
+        int filled = accessRequestSummaryRepository.backfillSummaries();
+        logger.info("Filled in " + filled + " access request summaries in " + ((double)(System.currentTimeMillis() - startTime) / 1000) + " Seconds");
+    }
+}
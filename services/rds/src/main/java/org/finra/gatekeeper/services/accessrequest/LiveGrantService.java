@@ -0,0 +1,165 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.services.accessrequest;
+
+import org.finra.gatekeeper.services.accessrequest.model.AWSRdsDatabase;
+import org.finra.gatekeeper.services.accessrequest.model.AccessRequest;
+import org.finra.gatekeeper.services.accessrequest.model.AccessRequestRepository;
+import org.finra.gatekeeper.services.accessrequest.model.LiveGrant;
+import org.finra.gatekeeper.services.accessrequest.model.LiveGrantRepository;
+import org.finra.gatekeeper.services.accessrequest.model.User;
+import org.finra.gatekeeper.services.accessrequest.model.UserRole;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of which roles gatekeeper has live on which databases, grants are recorded as they are handed out and
+ * released as the requests that hold them expire so the revocation overlap check is a single lookup on live_grant.
+ */
+@Component
+public class LiveGrantService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LiveGrantService.class);
+
+    private final LiveGrantRepository liveGrantRepository;
+    private final AccessRequestRepository accessRequestRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public LiveGrantService(LiveGrantRepository liveGrantRepository,
+                            AccessRequestRepository accessRequestRepository,
+                            TransactionTemplate transactionTemplate) {
+        this.liveGrantRepository = liveGrantRepository;
+        this.accessRequestRepository = accessRequestRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Records that the access request granted the role to the user on the database, recording the same request twice
+     * (e.g. when the grant is retried) does not add to the reference count.
+     *
+     * @param accessRequest - the access request that was granted
+     * @param user - the user the role was granted to
+     * @param role - the role that was granted
+     * @param database - the database the role was granted on
+     * @return the live grant
+     */
+    @Transactional
+    public LiveGrant recordGrant(AccessRequest accessRequest, User user, UserRole role, AWSRdsDatabase database) {
+        Date expiresAt = new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(accessRequest.getDays()));
+        return liveGrantRepository.save(lockGrant(accessRequest, user, role, database).hold(accessRequest.getId(), expiresAt));
+    }
+
+    private LiveGrant lockGrant(AccessRequest accessRequest, User user, UserRole role, AWSRdsDatabase database) {
+        liveGrantRepository.upsert(user.getUserId(), accessRequest.getAccount(), database.getName(), role.getRole());
+        return liveGrantRepository.findByUserIdAndAccountAndDbNameAndRole(user.getUserId(), accessRequest.getAccount(), database.getName(), role.getRole())
+                .orElseGet(() -> new LiveGrant()
+                        .setUserId(user.getUserId())
+                        .setAccount(accessRequest.getAccount())
+                        .setDbName(database.getName())
+                        .setRole(role.getRole()));
+    }
+
+    /**
+     * Lets go of the access request's hold on the role for the user on the database.
+     *
+     * @param accessRequest - the access request that is expiring
+     * @param user - the user the role was granted to
+     * @param role - the role that was granted
+     * @param database - the database the role was granted on
+     * @return true if no other live request holds the grant and the role should be revoked from the database, false if
+     * another live request still needs it. Grants that were never tracked fall back to looking for overlapping live requests.
+     */
+    @Transactional
+    public boolean releaseGrant(AccessRequest accessRequest, User user, UserRole role, AWSRdsDatabase database) {
+        LiveGrant liveGrant = liveGrantRepository.findByUserIdAndAccountAndDbNameAndRole(user.getUserId(), accessRequest.getAccount(), database.getName(), role.getRole())
+                .orElse(null);
+
+        if(liveGrant == null){
+            return accessRequestRepository.getLiveAccessRequestsForUserAccountDbNameAndRole(user.getUserId(), accessRequest.getAccount(), database.getName(), role.getRole())
+                    .stream()
+                    .allMatch(liveRequest -> liveRequest.getId().equals(accessRequest.getId()));
+        }
+
+        liveGrant.release(accessRequest.getId());
+        if(liveGrant.getRefCount() == 0){
+            liveGrantRepository.delete(liveGrant);
+            return true;
+        }
+
+        liveGrantRepository.save(liveGrant);
+        return false;
+    }
+
+    /**
+     * One time fill in of the grants for requests that went live before grants were tracked. Only the live requests
+     * that don't hold any grant yet are filled in, each one in its own transaction so a start up never holds the locks
+     * for every live grant at once.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillLiveGrants() {
+        long startTime = System.currentTimeMillis();
+
+        Set<Long> holdingRequestIds = liveGrantRepository.getHoldingAccessRequestIds();
+        int filled = 0;
+        for(Map<String, Object> liveRequest : accessRequestRepository.getLiveAccessRequestExpirations()){
+            Long accessRequestId = ((Number) liveRequest.get("id")).longValue();
+            if(holdingRequestIds.contains(accessRequestId)){
+                continue;
+            }
+            // a grant's expiry is the latest of its holders', there's nothing sensible to hold it with without one
+            Date expiresAt = (Date) liveRequest.get("expire_time");
+            if(expiresAt == null){
+                logger.warn("Access Request " + accessRequestId + " is live but has no expiration, not filling in its live grants");
+                continue;
+            }
+            filled += transactionTemplate.execute(status -> accessRequestRepository.findById(accessRequestId)
+                    .map(accessRequest -> backfillLiveGrants(accessRequest, expiresAt))
+                    .orElse(0));
+        }
+        if(filled > 0){
+            logger.info("Filled in " + filled + " live grants in " + ((double)(System.currentTimeMillis() - startTime) / 1000) + " Seconds");
+        }
+    }
+
+    private int backfillLiveGrants(AccessRequest accessRequest, Date expiresAt) {
+        AWSRdsDatabase database = accessRequest.getAwsRdsInstances().get(0);
+        int filled = 0;
+        for(User user : accessRequest.getUsers()){
+            for(UserRole role : accessRequest.getRoles()){
+                LiveGrant liveGrant = lockGrant(accessRequest, user, role, database);
+                if(!liveGrant.getAccessRequests().containsKey(accessRequest.getId())){
+                    liveGrantRepository.save(liveGrant.hold(accessRequest.getId(), expiresAt));
+                    filled++;
+                }
+            }
+        }
+        return filled;
+    }
+}
@@ -22,7 +22,9 @@ import org.activiti.engine.delegate.JavaDelegate;
 import org.finra.gatekeeper.common.services.eventlogging.EventType;
 import org.finra.gatekeeper.common.services.eventlogging.RequestEventLogger;
 import org.finra.gatekeeper.exception.GatekeeperException;
+import org.finra.gatekeeper.rds.model.RdsUserGrant;
 import org.finra.gatekeeper.rds.model.RoleType;
+import org.finra.gatekeeper.services.accessrequest.LiveGrantService;
 import org.finra.gatekeeper.services.accessrequest.model.*;
 import org.finra.gatekeeper.services.db.DatabaseConnectionService;
 import org.finra.gatekeeper.services.email.EmailServiceWrapper;
@@ -33,6 +35,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -47,14 +50,17 @@ public class GrantAccessServiceTask implements JavaDelegate {
     private final DatabaseConnectionService databaseConnectionService;
     private final PasswordGenerationService passwordGenerationService;
     private final EmailServiceWrapper emailServiceWrapper;
+    private final LiveGrantService liveGrantService;
 
     @Autowired
     public GrantAccessServiceTask(DatabaseConnectionService databaseConnectionService,
                                   PasswordGenerationService passwordGenerationService,
-                                  EmailServiceWrapper emailServiceWrapper) {
+                                  EmailServiceWrapper emailServiceWrapper,
+                                  LiveGrantService liveGrantService) {
         this.databaseConnectionService = databaseConnectionService;
         this.passwordGenerationService = passwordGenerationService;
         this.emailServiceWrapper = emailServiceWrapper;
+        this.liveGrantService = liveGrantService;
     }
 
     /**
@@ -83,30 +89,44 @@ public class GrantAccessServiceTask implements JavaDelegate {
 
             AWSRdsDatabase database = accessRequest.getAwsRdsInstances().get(0);
             schemasForRequest.put(database.getName(), databaseConnectionService.getAvailableSchemasForDb(database, env));
+            // rendered before anyone is granted, so a bad template fails the request instead of sending out credentials without it
+            Map<RoleType, String> schemaListings = emailServiceWrapper.renderSchemaListings(accessRequest, schemasForRequest);
 
 
-            // Do all of this for each user in the request
+            // Generate a password for each user / role pair in the request and provision them all in one go
+            List<RdsUserGrant> grants = new ArrayList<>();
             for (User u : accessRequest.getUsers()) {
-                //have to apply the roles to each user in the request
                 for(UserRole role : accessRequest.getRoles()){
-                    // Generate keypair
                     String password = passwordGenerationService.generatePassword();
                     if (password == null) {
                         throw new GatekeeperException("Could not generate Password");
                     }
+                    grants.add(new RdsUserGrant(u.getUserId(), password, RoleType.valueOf(role.getRole().toUpperCase())));
+                }
+            }
 
-                    RoleType roleType = RoleType.valueOf(role.getRole().toUpperCase());
+            Map<String, Boolean> outcomes = databaseConnectionService.grantAccessBatch(database, env, grants, accessRequest.getDays());
 
-                    Boolean createStatus = databaseConnectionService.grantAccess(database, env, u.getUserId(), roleType, password, accessRequest.getDays());
-                    if (!createStatus) {
-                        throw new GatekeeperException("Could not create user account on any DB instances");
+            List<String> failedUsers = new ArrayList<>();
+            int grantIndex = 0;
+            for (User u : accessRequest.getUsers()) {
+                for(UserRole role : accessRequest.getRoles()){
+                    RdsUserGrant grant = grants.get(grantIndex++);
+                    if (!Boolean.TRUE.equals(outcomes.get(grant.getDbUser()))) {
+                        failedUsers.add(grant.getDbUser());
+                        continue;
                     }
+                    liveGrantService.recordGrant(accessRequest, u, role, database);
 
                     // Send email with private key
-                    emailServiceWrapper.notifyOfCredentials(accessRequest,u, roleType, password, schemasForRequest);
+                    emailServiceWrapper.notifyOfCredentials(accessRequest, u, grant.getRole(), grant.getPassword(), schemaListings);
                 }
             }
 
+            if (!failedUsers.isEmpty()) {
+                throw new GatekeeperException("Could not create user account on any DB instances for " + failedUsers);
+            }
+
         } catch (Exception e) {
             emailServiceWrapper.notifyAdminsOfFailure(accessRequest, e);
             execution.setVariable("requestStatus", RequestStatus.APPROVAL_ERROR);
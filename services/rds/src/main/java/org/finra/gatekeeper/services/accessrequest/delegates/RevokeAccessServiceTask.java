@@ -24,8 +24,9 @@ import org.activiti.engine.delegate.JavaDelegate;
 import org.activiti.engine.runtime.Job;
 import org.finra.gatekeeper.common.services.eventlogging.EventType;
 import org.finra.gatekeeper.common.services.eventlogging.RequestEventLogger;
+import org.finra.gatekeeper.exception.GatekeeperException;
 import org.finra.gatekeeper.rds.model.RoleType;
-import org.finra.gatekeeper.services.accessrequest.AccessRequestService;
+import org.finra.gatekeeper.services.accessrequest.LiveGrantService;
 import org.finra.gatekeeper.services.accessrequest.model.AWSRdsDatabase;
 import org.finra.gatekeeper.services.accessrequest.model.AccessRequest;
 import org.finra.gatekeeper.services.accessrequest.model.User;
@@ -40,6 +41,13 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
 /**
  * The Service task to grant access using the details from an AccessRequest
  */
@@ -52,19 +60,19 @@ public class RevokeAccessServiceTask implements JavaDelegate {
     private final DatabaseConnectionService databaseConnectionService;
     private final RdsLookupService rdsLookupService;
     private final ManagementService managementService;
-    private final AccessRequestService accessRequestService;
+    private final LiveGrantService liveGrantService;
 
     @Autowired
     public RevokeAccessServiceTask(EmailServiceWrapper emailServiceWrapper,
                                    DatabaseConnectionService databaseConnectionService,
                                    ManagementService managementService,
                                    RdsLookupService rdsLookupService,
-                                   AccessRequestService accessRequestService) {
+                                   LiveGrantService liveGrantService) {
         this.emailServiceWrapper = emailServiceWrapper;
         this.databaseConnectionService = databaseConnectionService;
         this.managementService = managementService;
         this.rdsLookupService = rdsLookupService;
-        this.accessRequestService = accessRequestService;
+        this.liveGrantService = liveGrantService;
     }
 
     /***
@@ -77,23 +85,46 @@ public class RevokeAccessServiceTask implements JavaDelegate {
         try {
             AWSEnvironment awsEnvironment = new AWSEnvironment(accessRequest.getAccount(), accessRequest.getRegion(), accessRequest.getAccountSdlc());
             logger.info("Revoking access for Users, Attempts remaining: " + job.getRetries());
+            AWSRdsDatabase database = accessRequest.getAwsRdsInstances().get(0);
+            // database user -> the user and role it was created for, in case they have to be revoked one at a time
+            Map<String, Map.Entry<User, RoleType>> usersToRevoke = new LinkedHashMap<>();
             for(User user : accessRequest.getUsers()) {
-                AWSRdsDatabase database = accessRequest.getAwsRdsInstances().get(0);
                 for (UserRole role : accessRequest.getRoles()) {
-                    if (accessRequestService.getLiveRequestsForUserOnDatabase(user.getUserId(), accessRequest.getAccount(), database.getName(), role).isEmpty()) {
-                        // if the db was actually an aurora global cluster then we should re-fetch the primary cluster
-                        // as that could have changed
-                        if (database.getDatabaseType() != null && database.getDatabaseType() == DatabaseType.AURORA_GLOBAL) {
-                            logger.info("Re-fetching the Primary Cluster for this global cluster since it could have changed over time.");
-                            DBCluster primaryCluster = rdsLookupService.getPrimaryClusterForGlobalCluster(awsEnvironment, database.getName()).get();
-                            database.setEndpoint(String.format("%s:%s", primaryCluster.getEndpoint(), primaryCluster.getPort()));
-                        }
-                        databaseConnectionService.revokeAccess(database, awsEnvironment, RoleType.valueOf(role.getRole().toUpperCase()), user.getUserId());
+                    if (liveGrantService.releaseGrant(accessRequest, user, role, database)) {
+                        RoleType roleType = RoleType.valueOf(role.getRole().toUpperCase());
+                        usersToRevoke.put(user.getUserId() + "_" + roleType.getShortSuffix(), new AbstractMap.SimpleImmutableEntry<>(user, roleType));
                     } else {
                         logger.info("Skipping revocation of user " + user.getUserId() + " with role " + role.toString() + " as they have another active access request for this instance.");
                     }
                 }
             }
+
+            if (!usersToRevoke.isEmpty()) {
+                // if the db was actually an aurora global cluster then we should re-fetch the primary cluster
+                // as that could have changed
+                if (database.getDatabaseType() != null && database.getDatabaseType() == DatabaseType.AURORA_GLOBAL) {
+                    logger.info("Re-fetching the Primary Cluster for this global cluster since it could have changed over time.");
+                    DBCluster primaryCluster = rdsLookupService.getPrimaryClusterForGlobalCluster(awsEnvironment, database.getName()).get();
+                    database.setEndpoint(String.format("%s:%s", primaryCluster.getEndpoint(), primaryCluster.getPort()));
+                }
+                Map<String, Boolean> outcomes = new LinkedHashMap<>(databaseConnectionService.revokeAccessBatch(database, awsEnvironment, new ArrayList<>(usersToRevoke.keySet())));
+                if (!outcomes.isEmpty() && !outcomes.containsValue(true)) {
+                    // nothing came out of the batch (e.g. the engine doesn't support it), go through the users one by one instead
+                    logger.info("Batch revocation removed none of " + usersToRevoke.keySet() + " from " + database.getName() + ", revoking them one at a time");
+                    for (Map.Entry<String, Map.Entry<User, RoleType>> userToRevoke : usersToRevoke.entrySet()) {
+                        outcomes.put(userToRevoke.getKey(), databaseConnectionService.revokeAccess(database, awsEnvironment,
+                                userToRevoke.getValue().getValue(), userToRevoke.getValue().getKey().getUserId()));
+                    }
+                }
+                List<String> failedUsers = outcomes.entrySet()
+                        .stream()
+                        .filter(outcome -> !Boolean.TRUE.equals(outcome.getValue()))
+                        .map(Map.Entry::getKey)
+                        .collect(Collectors.toList());
+                if (!failedUsers.isEmpty()) {
+                    throw new GatekeeperException("Failed to revoke " + failedUsers + " from " + database.getName());
+                }
+            }
             RequestEventLogger.logEventToJson(EventType.AccessExpired, accessRequest);
 
         }catch(Exception e){
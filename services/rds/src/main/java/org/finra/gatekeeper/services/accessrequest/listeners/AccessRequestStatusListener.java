@@ -0,0 +1,77 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.services.accessrequest.listeners;
+
+import org.activiti.engine.RuntimeService;
+import org.activiti.engine.delegate.event.ActivitiEvent;
+import org.activiti.engine.delegate.event.ActivitiEventListener;
+import org.activiti.engine.delegate.event.ActivitiEventType;
+import org.activiti.engine.delegate.event.ActivitiVariableEvent;
+import org.finra.gatekeeper.services.accessrequest.AccessRequestSummaryService;
+import org.finra.gatekeeper.services.accessrequest.model.AccessRequest;
+import org.finra.gatekeeper.services.accessrequest.model.RequestStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Listens for the requestStatus variable being set on a request (by an approver actioning the request, or by the grant
+ * delegate) and records the new status on the summary for the request. This runs as part of the workflow command, so the
+ * summary is written in the same transaction as the status itself.
+ */
+@Component
+public class AccessRequestStatusListener implements ActivitiEventListener {
+
+    private static final String REQUEST_STATUS = "requestStatus";
+    private static final String ACCESS_REQUEST = "accessRequest";
+
+    private final RuntimeService runtimeService;
+    private final AccessRequestSummaryService accessRequestSummaryService;
+
+    @Autowired
+    public AccessRequestStatusListener(RuntimeService runtimeService,
+                                       AccessRequestSummaryService accessRequestSummaryService) {
+        this.runtimeService = runtimeService;
+        this.accessRequestSummaryService = accessRequestSummaryService;
+    }
+
+    @PostConstruct
+    public void register() {
+        runtimeService.addEventListener(this, ActivitiEventType.VARIABLE_CREATED, ActivitiEventType.VARIABLE_UPDATED);
+    }
+
+    @Override
+    public void onEvent(ActivitiEvent event) {
+        ActivitiVariableEvent variableEvent = (ActivitiVariableEvent) event;
+        if(!REQUEST_STATUS.equals(variableEvent.getVariableName()) || !(variableEvent.getVariableValue() instanceof RequestStatus)){
+            return;
+        }
+
+        AccessRequest accessRequest = (AccessRequest) runtimeService.getVariable(variableEvent.getExecutionId(), ACCESS_REQUEST);
+        accessRequestSummaryService.recordStatus(accessRequest, (RequestStatus) variableEvent.getVariableValue());
+    }
+
+    /**
+     * The summary has to stay in step with the workflow, so if it can't be written the workflow step fails too
+     */
+    @Override
+    public boolean isFailOnException() {
+        return true;
+    }
+}
@@ -20,6 +20,7 @@ package org.finra.gatekeeper.services.accessrequest.model;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Objects;
+import org.hibernate.annotations.BatchSize;
 
 import javax.persistence.*;
 import java.util.ArrayList;
@@ -30,8 +31,19 @@ import java.util.List;
  */
 @Entity
 @Table(name = "access_request")
+@NamedEntityGraph(name = AccessRequest.WITH_USERS, attributeNodes = @NamedAttributeNode("users"))
 public class AccessRequest {
 
+    /**
+     * Entity graph that joins the users onto a single request load, roles and databases are batch fetched
+     */
+    public static final String WITH_USERS = "AccessRequest.withUsers";
+
+    /**
+     * How many requests worth of a collection hibernate initializes in one query once any of them is touched
+     */
+    static final int FETCH_BATCH_SIZE = 100;
+
     private Long id;
     private String requestorId;
     private String requestorName;
@@ -165,6 +177,7 @@ public class AccessRequest {
     }
 
     @OneToMany(cascade = CascadeType.ALL)
+    @BatchSize(size = FETCH_BATCH_SIZE)
     public List<UserRole> getRoles() {
         return roles;
     }
@@ -179,6 +192,7 @@ public class AccessRequest {
      */
 
     @OneToMany(cascade = CascadeType.ALL)
+    @BatchSize(size = FETCH_BATCH_SIZE)
     public List<User> getUsers(){
         return users;
     }
@@ -193,6 +207,7 @@ public class AccessRequest {
      */
 
     @OneToMany(cascade = CascadeType.ALL)
+    @BatchSize(size = FETCH_BATCH_SIZE)
     public List<AWSRdsDatabase> getAwsRdsInstances(){
         return awsRdsDatabases;
     }
@@ -17,6 +17,7 @@
 
 package org.finra.gatekeeper.services.accessrequest.model;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -29,9 +30,21 @@ import java.util.Map;
  * Repo object for AccessRequest domain
  */
 public interface AccessRequestRepository extends JpaRepository<AccessRequest, Long> {
+    @EntityGraph(AccessRequest.WITH_USERS)
     AccessRequest getAccessRequestById(Long id);
+
+    /**
+     * Collections are left lazy here, joining them onto an IN query would multiply the rows per request.
+     * Touching one collection batch loads it for every request in the result instead.
+     */
     List<AccessRequest> getAccessRequestsByIdIn(Collection<Long> ids);
 
+    /**
+     * The user / instance counts of each request, counted with a subquery rather than by loading the collections
+     */
+    @Query("select r.id as id, size(r.users) as userCount, size(r.awsRdsInstances) as instanceCount from AccessRequest r where r.id in :ids")
+    List<AccessRequestCounts> getAccessRequestCountsByIdIn(@Param("ids") Collection<Long> ids);
+
     /**
      * Gets all live access requests by joining all of the entries into the act_ru_job tables (activiti jobs that monitor expiration)
      * into the access request table
@@ -56,6 +69,10 @@ public interface AccessRequestRepository extends JpaRepository<AccessRequest, Lo
             "where requests.id = live_requests.id", nativeQuery = true)
     List<AccessRequest> getLiveAccessRequests();
 
+    /**
+     * The live requests for the user that still hold the role on the database, used as the overlap check for grants
+     * that were handed out before they were tracked in live_grant.
+     */
     @Query(value = "select requests.*, live_requests.granted_on, live_requests.expire_time from (  " +
             "                  select c.id, b.updated as granted_on, a.duedate_ as expire_time  " +
             "                  from (select process_instance_id_, duedate_  " +
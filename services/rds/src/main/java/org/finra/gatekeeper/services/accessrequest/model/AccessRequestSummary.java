@@ -0,0 +1,207 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.services.accessrequest.model;
+
+import com.google.common.base.MoreObjects;
+
+import javax.persistence.*;
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * Reporting view of an Access Request, holds the status of the request along with when it was created / last updated
+ * and how many users and databases were on it. This is kept up to date as the request moves through the workflow so that
+ * the completed requests don't have to be pieced back together from the activiti history tables.
+ */
+@Entity
+@Table(name = "access_request_summary", indexes = {
+        @Index(name = "access_request_summary_updated_idx", columnList = "updated,access_request_id"),
+        @Index(name = "access_request_summary_requestor_idx", columnList = "requestor_id,updated"),
+        @Index(name = "access_request_summary_status_idx", columnList = "status")
+})
+public class AccessRequestSummary {
+
+    private Long accessRequestId;
+    private String requestorId;
+    private String account;
+    private String accountSdlc;
+    private RequestStatus status;
+    private Date created;
+    private Date updated;
+    private Integer userCount;
+    private Integer instanceCount;
+
+    /**
+     * Getters / Setters for the Access Request ID
+     */
+    @Id
+    @Column(name = "access_request_id")
+    public Long getAccessRequestId() {
+        return accessRequestId;
+    }
+
+    public AccessRequestSummary setAccessRequestId(Long accessRequestId) {
+        this.accessRequestId = accessRequestId;
+        return this;
+    }
+
+    /**
+     * Getters / Setters for requestorId, this is kept lower case so lookups by requestor can use the index as is
+     */
+    @Column(name = "requestor_id")
+    public String getRequestorId() {
+        return requestorId;
+    }
+
+    public AccessRequestSummary setRequestorId(String requestorId) {
+        this.requestorId = requestorId;
+        return this;
+    }
+
+    /**
+     * Getters / Setters for Account
+     */
+    public String getAccount() {
+        return account;
+    }
+
+    public AccessRequestSummary setAccount(String account) {
+        this.account = account;
+        return this;
+    }
+
+    /**
+     * Getters / Setters for Account SDLC
+     */
+    @Column(name = "account_sdlc")
+    public String getAccountSdlc() {
+        return accountSdlc;
+    }
+
+    public AccessRequestSummary setAccountSdlc(String accountSdlc) {
+        this.accountSdlc = accountSdlc;
+        return this;
+    }
+
+    /**
+     * Getters / Setters for Status
+     */
+    @Enumerated(EnumType.STRING)
+    public RequestStatus getStatus() {
+        return status;
+    }
+
+    public AccessRequestSummary setStatus(RequestStatus status) {
+        this.status = status;
+        return this;
+    }
+
+    /**
+     * Getters / Setters for Created
+     */
+    @Temporal(TemporalType.TIMESTAMP)
+    public Date getCreated() {
+        return created;
+    }
+
+    public AccessRequestSummary setCreated(Date created) {
+        this.created = created;
+        return this;
+    }
+
+    /**
+     * Getters / Setters for Updated
+     */
+    @Temporal(TemporalType.TIMESTAMP)
+    public Date getUpdated() {
+        return updated;
+    }
+
+    public AccessRequestSummary setUpdated(Date updated) {
+        this.updated = updated;
+        return this;
+    }
+
+    /**
+     * Getters / Setters for User Count
+     */
+    @Column(name = "user_count")
+    public Integer getUserCount() {
+        return userCount;
+    }
+
+    public AccessRequestSummary setUserCount(Integer userCount) {
+        this.userCount = userCount;
+        return this;
+    }
+
+    /**
+     * Getters / Setters for Instance Count
+     */
+    @Column(name = "instance_count")
+    public Integer getInstanceCount() {
+        return instanceCount;
+    }
+
+    public AccessRequestSummary setInstanceCount(Integer instanceCount) {
+        this.instanceCount = instanceCount;
+        return this;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (o == null || !getClass().equals(o.getClass())) {
+            return false;
+        }
+
+        AccessRequestSummary that = (AccessRequestSummary) o;
+        return Objects.equals(accessRequestId, that.accessRequestId)
+                && Objects.equals(requestorId, that.requestorId)
+                && Objects.equals(account, that.account)
+                && Objects.equals(accountSdlc, that.accountSdlc)
+                && status == that.status
+                && Objects.equals(created, that.created)
+                && Objects.equals(updated, that.updated)
+                && Objects.equals(userCount, that.userCount)
+                && Objects.equals(instanceCount, that.instanceCount);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(accessRequestId, requestorId, account, accountSdlc, status, created, updated, userCount, instanceCount);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("Access Request ID", accessRequestId)
+                .add("Requestor ID", requestorId)
+                .add("Account", account)
+                .add("Account SDLC", accountSdlc)
+                .add("Status", status)
+                .add("Created", created)
+                .add("Updated", updated)
+                .add("User Count", userCount)
+                .add("Instance Count", instanceCount)
+                .toString();
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.services.accessrequest.model;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+/**
+ * Repo object for the AccessRequestSummary reporting view
+ */
+public interface AccessRequestSummaryRepository extends JpaRepository<AccessRequestSummary, Long> {
+
+    /**
+     * Fills in the summaries for requests that were actioned before the summaries were being kept, this pieces the status
+     * and created / updated times back together from the activiti history tables (the status is stored as a serialized enum
+     * in act_ge_bytearray). Requests that already have a summary are left alone.
+     *
+     * @return the number of summaries that were filled in
+     */
+    @Modifying
+    @Query(value = "insert into gatekeeper_rds.access_request_summary " +
+            "       (access_request_id, requestor_id, account, account_sdlc, status, created, updated, user_count, instance_count) " +
+            "select access_request.id, lower(access_request.requestor_id), access_request.account, access_request.account_sdlc, " +
+            "       gk_activiti.status, gk_activiti.created, gk_activiti.updated, users.user_count, databases.instance_count " +
+            "from gatekeeper_rds.access_request access_request, " +
+            "     (select cast(accessRequestId.text2_ as numeric) access_request_id, create_time_ as created, last_updated_time_ as updated, status " +
+            "      from (select a.proc_inst_id_, a.text2_ " +
+            "            from gatekeeper_rds.act_hi_varinst a " +
+            "            where name_ = 'accessRequest') accessRequestId, " +
+            "           (select a.proc_inst_id_, " +
+            "                   a.create_time_, " +
+            "                   a.last_updated_time_, " +
+            "                   substring(encode(b.bytes_, 'escape'), '\\w+$') as status " +
+            "            from gatekeeper_rds.act_hi_varinst a " +
+            "                   join gatekeeper_rds.act_ge_bytearray b on a.bytearray_id_ = b.id_ " +
+            "            where a.name_ = 'requestStatus') accessRequestStatus " +
+            "      where accessRequestId.proc_inst_id_ = accessRequestStatus.proc_inst_id_ " +
+            "     ) gk_activiti, " +
+            "     (select access_request_id, count(*) as user_count from gatekeeper_rds.access_request_users " +
+            "      group by access_request_id) users, " +
+            "     (select access_request_id, count(*) as instance_count from gatekeeper_rds.access_request_aws_rds_instances " +
+            "      group by access_request_id) databases " +
+            "where access_request.id = gk_activiti.access_request_id " +
+            "  and access_request.id = users.access_request_id " +
+            "  and access_request.id = databases.access_request_id " +
+            "on conflict (access_request_id) do nothing", nativeQuery = true)
+    int backfillSummaries();
+
+    /**
+     * Checks whether there are any access requests without a summary, so the backfill only runs when it has something to do
+     *
+     * @return true if at least one access request has no summary
+     */
+    @Query(value = "select exists (select 1 from gatekeeper_rds.access_request access_request " +
+            "              where not exists (select 1 from gatekeeper_rds.access_request_summary summary " +
+            "                                where summary.access_request_id = access_request.id))", nativeQuery = true)
+    boolean hasRequestsMissingSummaries();
+}
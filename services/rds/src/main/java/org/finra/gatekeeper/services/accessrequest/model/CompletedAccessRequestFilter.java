@@ -0,0 +1,139 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.services.accessrequest.model;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.Date;
+
+/**
+ * The filters that can be applied when searching through completed access requests, anything left null isn't filtered on.
+ * Results are ordered newest first by (updated, id), the cursor is where the previous page left off.
+ */
+public class CompletedAccessRequestFilter {
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 500;
+
+    private String requestorId;
+    private String account;
+    private RequestStatus status;
+    private Date updatedFrom;
+    private Date updatedTo;
+    private String databaseName;
+    private String cursor;
+    private Integer limit = DEFAULT_LIMIT;
+
+    public String getRequestorId() {
+        return requestorId;
+    }
+
+    public CompletedAccessRequestFilter setRequestorId(String requestorId) {
+        this.requestorId = requestorId;
+        return this;
+    }
+
+    public String getAccount() {
+        return account;
+    }
+
+    public CompletedAccessRequestFilter setAccount(String account) {
+        this.account = account;
+        return this;
+    }
+
+    public RequestStatus getStatus() {
+        return status;
+    }
+
+    public CompletedAccessRequestFilter setStatus(RequestStatus status) {
+        this.status = status;
+        return this;
+    }
+
+    /**
+     * Only requests last updated at or after this time
+     */
+    public Date getUpdatedFrom() {
+        return updatedFrom;
+    }
+
+    public CompletedAccessRequestFilter setUpdatedFrom(Date updatedFrom) {
+        this.updatedFrom = updatedFrom;
+        return this;
+    }
+
+    /**
+     * Only requests last updated before this time
+     */
+    public Date getUpdatedTo() {
+        return updatedTo;
+    }
+
+    public CompletedAccessRequestFilter setUpdatedTo(Date updatedTo) {
+        this.updatedTo = updatedTo;
+        return this;
+    }
+
+    public String getDatabaseName() {
+        return databaseName;
+    }
+
+    public CompletedAccessRequestFilter setDatabaseName(String databaseName) {
+        this.databaseName = databaseName;
+        return this;
+    }
+
+    /**
+     * The nextCursor handed back with the previous page, null for the first page
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    public CompletedAccessRequestFilter setCursor(String cursor) {
+        this.cursor = cursor;
+        return this;
+    }
+
+    /**
+     * The number of requests to return, between 1 and MAX_LIMIT
+     */
+    public Integer getLimit() {
+        return limit;
+    }
+
+    public CompletedAccessRequestFilter setLimit(Integer limit) {
+        this.limit = limit == null ? DEFAULT_LIMIT : Math.max(1, Math.min(limit, MAX_LIMIT));
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("Requestor ID", requestorId)
+                .add("Account", account)
+                .add("Status", status)
+                .add("Updated From", updatedFrom)
+                .add("Updated To", updatedTo)
+                .add("Database Name", databaseName)
+                .add("Cursor", cursor)
+                .add("Limit", limit)
+                .toString();
+    }
+}
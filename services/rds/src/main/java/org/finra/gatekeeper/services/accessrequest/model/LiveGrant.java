@@ -0,0 +1,226 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.services.accessrequest.model;
+
+import com.google.common.base.MoreObjects;
+
+import javax.persistence.*;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A role that gatekeeper has granted a user on a database and has not yet revoked. Each (user, account, database, role)
+ * has at most one row, holding every live access request that granted it along with when that request expires, the
+ * grant should only be revoked from the database once the last of those requests lets go of it.
+ */
+@Entity
+@Table(name = "live_grant", uniqueConstraints = {
+        @UniqueConstraint(name = "live_grant_key", columnNames = {"user_id", "account", "db_name", "role"})
+})
+public class LiveGrant {
+
+    private Long id;
+    private String userId;
+    private String account;
+    private String dbName;
+    private String role;
+    private Date expiresAt;
+    private Integer refCount = 0;
+    private Map<Long, Date> accessRequests = new HashMap<>();
+
+    /**
+     * Getters / Setters for ID
+     */
+    @Id
+    @GeneratedValue
+    public Long getId() {
+        return id;
+    }
+
+    public LiveGrant setId(Long id) {
+        this.id = id;
+        return this;
+    }
+
+    /**
+     * Getters / Setters for User ID
+     */
+    @Column(name = "user_id", nullable = false)
+    public String getUserId() {
+        return userId;
+    }
+
+    public LiveGrant setUserId(String userId) {
+        this.userId = userId;
+        return this;
+    }
+
+    /**
+     * Getters / Setters for Account
+     */
+    @Column(nullable = false)
+    public String getAccount() {
+        return account;
+    }
+
+    public LiveGrant setAccount(String account) {
+        this.account = account;
+        return this;
+    }
+
+    /**
+     * Getters / Setters for the database name
+     */
+    @Column(name = "db_name", nullable = false)
+    public String getDbName() {
+        return dbName;
+    }
+
+    public LiveGrant setDbName(String dbName) {
+        this.dbName = dbName;
+        return this;
+    }
+
+    /**
+     * Getters / Setters for Role
+     */
+    @Column(nullable = false)
+    public String getRole() {
+        return role;
+    }
+
+    public LiveGrant setRole(String role) {
+        this.role = role;
+        return this;
+    }
+
+    /**
+     * Getters / Setters for the expiry, this is the latest expiry of the requests holding the grant
+     */
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "expires_at")
+    public Date getExpiresAt() {
+        return expiresAt;
+    }
+
+    public LiveGrant setExpiresAt(Date expiresAt) {
+        this.expiresAt = expiresAt;
+        return this;
+    }
+
+    /**
+     * Getters / Setters for the reference count, the number of distinct live requests holding the grant
+     */
+    @Column(name = "ref_count", nullable = false)
+    public Integer getRefCount() {
+        return refCount;
+    }
+
+    public LiveGrant setRefCount(Integer refCount) {
+        this.refCount = refCount;
+        return this;
+    }
+
+    /**
+     * Getters / Setters for the access requests holding the grant, keyed by request ID with the time the request expires
+     */
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "live_grant_request", joinColumns = @JoinColumn(name = "live_grant_id"))
+    @MapKeyColumn(name = "access_request_id")
+    @Column(name = "expires_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    public Map<Long, Date> getAccessRequests() {
+        return accessRequests;
+    }
+
+    public LiveGrant setAccessRequests(Map<Long, Date> accessRequests) {
+        this.accessRequests = accessRequests;
+        return this;
+    }
+
+    /**
+     * Adds the request as a holder of this grant, a request that already holds the grant is only counted once
+     *
+     * @param accessRequestId - the access request that granted the role
+     * @param expiresAt - when that access request expires
+     * @return this grant
+     */
+    public LiveGrant hold(Long accessRequestId, Date expiresAt) {
+        accessRequests.put(accessRequestId, expiresAt);
+        return refresh();
+    }
+
+    /**
+     * Removes the request as a holder of this grant
+     *
+     * @param accessRequestId - the access request letting go of the grant
+     * @return this grant
+     */
+    public LiveGrant release(Long accessRequestId) {
+        accessRequests.remove(accessRequestId);
+        return refresh();
+    }
+
+    private LiveGrant refresh() {
+        refCount = accessRequests.size();
+        expiresAt = accessRequests.isEmpty() ? null : Collections.max(accessRequests.values());
+        return this;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (o == null || !getClass().equals(o.getClass())) {
+            return false;
+        }
+
+        LiveGrant that = (LiveGrant) o;
+        return Objects.equals(id, that.id)
+                && Objects.equals(userId, that.userId)
+                && Objects.equals(account, that.account)
+                && Objects.equals(dbName, that.dbName)
+                && Objects.equals(role, that.role)
+                && Objects.equals(expiresAt, that.expiresAt)
+                && Objects.equals(refCount, that.refCount);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, userId, account, dbName, role, expiresAt, refCount);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("ID", id)
+                .add("User ID", userId)
+                .add("Account", account)
+                .add("Database Name", dbName)
+                .add("Role", role)
+                .add("Expires At", expiresAt)
+                .add("Reference Count", refCount)
+                .add("Access Requests", accessRequests.keySet())
+                .toString();
+    }
+}
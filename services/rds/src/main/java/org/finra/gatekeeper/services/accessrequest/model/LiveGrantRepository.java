@@ -0,0 +1,62 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.services.accessrequest.model;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.LockModeType;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Repo object for the LiveGrant domain
+ */
+public interface LiveGrantRepository extends JpaRepository<LiveGrant, Long> {
+
+    /**
+     * Point lookup on the live_grant_key unique index, the row is locked so that two requests expiring at the same time
+     * can't both decide the other one is still holding the grant.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<LiveGrant> findByUserIdAndAccountAndDbNameAndRole(String userId, String account, String dbName, String role);
+
+    /**
+     * The IDs of the access requests that hold at least one live grant
+     */
+    @Query("select distinct key(accessRequest) from LiveGrant liveGrant join liveGrant.accessRequests accessRequest")
+    Set<Long> getHoldingAccessRequestIds();
+
+    /**
+     * Makes sure there is a row for the key before it is locked, when two first grants for the same key race the second
+     * insert waits on the first one and turns into a no-op update instead of failing on live_grant_key.
+     *
+     * @return the number of rows inserted or updated
+     */
+    @Modifying
+    @Query(value = "insert into gatekeeper_rds.live_grant (id, user_id, account, db_name, role, ref_count) " +
+            "values (nextval('gatekeeper_rds.hibernate_sequence'), :userId, :account, :dbName, :role, 0) " +
+            "on conflict on constraint live_grant_key do update set ref_count = live_grant.ref_count", nativeQuery = true)
+    int upsert(@Param("userId") String userId,
+               @Param("account") String account,
+               @Param("dbName") String dbName,
+               @Param("role") String role);
+}
@@ -55,6 +55,7 @@ public class GatekeeperRoleService {
     private final GatekeeperAuthProperties gatekeeperAuthProperties;
     private final GatekeeperApprovalProperties gatekeeperApprovalProperties;
     private final GatekeeperRdsAuthProperties gatekeeperRdsAuthProperties;
+    private final GatekeeperLdapParseService gatekeeperLdapParseService;
 
     private static final String DEFAULT_DN = "distinguishedName";
     private static final String DEFAULT_CN = "cn";
@@ -112,11 +113,13 @@ public class GatekeeperRoleService {
     public GatekeeperRoleService(GatekeeperAuthorizationService gatekeeperAuthorizationService,
                                  GatekeeperAuthProperties gatekeeperAuthProperties,
                                  GatekeeperRdsAuthProperties gatekeeperRdsAuthProperties,
-                                 GatekeeperApprovalProperties gatekeeperApprovalProperties){
+                                 GatekeeperApprovalProperties gatekeeperApprovalProperties,
+                                 GatekeeperLdapParseService gatekeeperLdapParseService){
         this.gatekeeperAuthProperties = gatekeeperAuthProperties;
         this.gatekeeperAuthorizationService = gatekeeperAuthorizationService;
         this.gatekeeperApprovalProperties = gatekeeperApprovalProperties;
         this.gatekeeperRdsAuthProperties = gatekeeperRdsAuthProperties;
+        this.gatekeeperLdapParseService = gatekeeperLdapParseService;
         this.dbaPattern = Pattern.compile(gatekeeperRdsAuthProperties.getDbaGroupsPattern());
         this.opsPattern = Pattern.compile(gatekeeperRdsAuthProperties.getOpsGroupsPattern());
         this.devPattern = Pattern.compile(gatekeeperRdsAuthProperties.getDevGroupsPattern());
@@ -178,8 +181,7 @@ public class GatekeeperRoleService {
         });
 
         for(String group : groupSet){
-            String[] parsed = new GatekeeperLdapParseService(gatekeeperRdsAuthProperties).parseADGroups(group);
-            GatekeeperADGroupEntry g = new GatekeeperADGroupEntry(parsed[0], parsed[1], parsed[2], group);
+            GatekeeperADGroupEntry g = gatekeeperLdapParseService.getADGroupEntry(group);
             char sdlc = g.getSdlc().toCharArray()[0];
 
             //If the SDLC tag is marked as unrestricted we don't need to store it
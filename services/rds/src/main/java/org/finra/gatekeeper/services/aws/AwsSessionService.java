@@ -21,17 +21,25 @@ import com.amazonaws.auth.BasicSessionCredentials;
 import com.amazonaws.regions.Region;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.ec2.AmazonEC2Client;
-import com.amazonaws.services.lambda.AWSLambda;
+import com.amazonaws.services.lambda.AWSLambdaAsync;
 import com.amazonaws.services.rds.AmazonRDSClient;
+import com.amazonaws.services.resourcegroupstaggingapi.AWSResourceGroupsTaggingAPI;
 import com.amazonaws.services.securitytoken.AWSSecurityTokenServiceClient;
 import com.amazonaws.services.securitytoken.model.AssumeRoleRequest;
 import com.amazonaws.services.securitytoken.model.AssumeRoleResult;
 import com.amazonaws.services.simpleemail.AmazonSimpleEmailService;
 import com.amazonaws.services.simpleemail.AmazonSimpleEmailServiceClient;
 import com.amazonaws.services.sns.AmazonSNS;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalListener;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.finra.gatekeeper.common.properties.GatekeeperAwsProperties;
 import org.finra.gatekeeper.exception.GatekeeperException;
 import org.finra.gatekeeper.common.services.account.AccountInformationService;
@@ -40,21 +48,27 @@ import org.finra.gatekeeper.services.aws.factory.AwsSessionFactory;
 import org.finra.gatekeeper.services.aws.model.AWSEnvironment;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.util.concurrent.TimeUnit;
+import java.util.Set;
+import java.util.concurrent.*;
 
 /**
  * Service that provides out AWS Sessions to other gatekeeper Services
  */
 @Component
-public class AwsSessionService {
+public class AwsSessionService implements DisposableBean {
 
 
     private static final Logger logger = LoggerFactory.getLogger(AwsSessionService.class);
 
+    private static final long CLIENT_SHUTDOWN_DELAY = 60000L;
+    private static final long CREDENTIAL_RETRY_DELAY = 30000L;
+    private static final int CREDENTIAL_REFRESH_THREADS = 4;
+
     private final AccountInformationService accountInformationService;
     private final AWSSecurityTokenServiceClient awsSecurityTokenServiceClient;
     private final AwsSessionFactory awsSessionFactory;
@@ -62,12 +76,15 @@ public class AwsSessionService {
     private final Integer sessionTimeout;
     private final Integer sessionTimeoutPad;
     private final String roleToAssume;
+    private final Timer assumeRoleTimer;
+    private final Counter assumeRoleFailures;
 
     @Autowired
     public AwsSessionService(AccountInformationService accountInformationService,
                              AWSSecurityTokenServiceClient awsSecurityTokenServiceClient,
                              AwsSessionFactory awsSessionFactory,
-                             GatekeeperAwsProperties awsProperties) {
+                             GatekeeperAwsProperties awsProperties,
+                             MeterRegistry meterRegistry) {
 
         this.accountInformationService = accountInformationService;
         this.awsSecurityTokenServiceClient = awsSecurityTokenServiceClient;
@@ -75,20 +92,111 @@ public class AwsSessionService {
         this.sessionTimeout = awsProperties.getSessionTimeout();
         this.sessionTimeoutPad = awsProperties.getSessionTimeoutPad();
         this.roleToAssume = awsProperties.getRoleToAssume();
+        this.assumeRoleTimer = Timer.builder("gatekeeper.aws.sts.assumerole")
+                .description("Time taken to assume the gatekeeper role through STS")
+                .register(meterRegistry);
+        this.assumeRoleFailures = Counter.builder("gatekeeper.aws.sts.assumerole.failures")
+                .description("Number of times assuming the gatekeeper role through STS failed")
+                .register(meterRegistry);
 
+        this.credentialCache = CacheBuilder.newBuilder()
+                .maximumSize(100)
+                .concurrencyLevel(10)
+                // credentials are issued for the session timeout + pad, stop handing them out halfway through the pad
+                .expireAfterWrite(sessionTimeout + (sessionTimeoutPad / 2), TimeUnit.MILLISECONDS)
+                // in case a scheduled renewal didn't happen the next caller after the session timeout kicks one off
+                .refreshAfterWrite(sessionTimeout, TimeUnit.MILLISECONDS)
+                .build(CacheLoader.asyncReloading(new CacheLoader<AWSEnvironment, BasicSessionCredentials>() {
+                    @Override
+                    public BasicSessionCredentials load(AWSEnvironment environment) throws Exception {
+                        return loadCredentials(environment);
+                    }
+                }, credentialRefresher));
     }
 
     /* Session Caches */
-    private LoadingCache<AWSEnvironment, BasicSessionCredentials> credentialCache = CacheBuilder.newBuilder()
+    private final Cache<AWSEnvironment, SessionClients> sessionClientCache = CacheBuilder.newBuilder()
             .maximumSize(100)
             .concurrencyLevel(10)
-            .refreshAfterWrite(360 * 1000,TimeUnit.MILLISECONDS)
-            .build(new CacheLoader<AWSEnvironment,  BasicSessionCredentials>() {
-                @Override
-                public BasicSessionCredentials load(AWSEnvironment environment) throws Exception {
-                    return getFreshCredentials(environment);
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .removalListener((RemovalListener<AWSEnvironment, SessionClients>) notification -> retireSessionClients(notification.getValue()))
+            .build();
+
+    private final ConcurrentMap<String, AWSLambdaAsync> lambdaClients = new ConcurrentHashMap<>();
+
+    private final Set<SessionClients> retiringClients = ConcurrentHashMap.newKeySet();
+
+    private volatile AmazonSNS snsClient;
+
+    private final ScheduledExecutorService clientReaper = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("gk-aws-client-reaper-%d")
+            .setDaemon(true)
+            .build());
+
+    /*
+     * Credentials get renewed in the background ahead of them timing out, the current credentials keep getting handed
+     * out while that happens. They're only dropped once they get close enough to expiring that they can't be used.
+     */
+    private final ScheduledExecutorService credentialRefresher = Executors.newScheduledThreadPool(CREDENTIAL_REFRESH_THREADS,
+            new ThreadFactoryBuilder()
+                    .setNameFormat("gk-sts-refresh-%d")
+                    .setDaemon(true)
+                    .build());
+
+    private final LoadingCache<AWSEnvironment, BasicSessionCredentials> credentialCache;
+
+    // environments with a renewal already scheduled, so a failed or caller triggered reload doesn't start another one
+    private final Set<AWSEnvironment> pendingRenewals = ConcurrentHashMap.newKeySet();
+
+    // environments that asked for clients since their credentials were last renewed, the rest are left to expire
+    private final Set<AWSEnvironment> usedEnvironments = ConcurrentHashMap.newKeySet();
+
+    private BasicSessionCredentials loadCredentials(AWSEnvironment environment) throws GatekeeperException {
+        try {
+            BasicSessionCredentials credentials = assumeRoleTimer.recordCallable(() -> getFreshCredentials(environment));
+            scheduleRenewal(environment, renewalDelay());
+            return credentials;
+        } catch (Exception e) {
+            assumeRoleFailures.increment();
+            logger.error("Failed to assume role for environment " + environment.getAccount() + " on region " + environment.getRegion(), e);
+            // if there are still good credentials around they keep getting used, try again in a little bit
+            if(credentialCache.getIfPresent(environment) != null) {
+                scheduleRenewal(environment, CREDENTIAL_RETRY_DELAY);
+            }
+            Throwables.throwIfInstanceOf(e, GatekeeperException.class);
+            Throwables.throwIfUnchecked(e);
+            throw new GatekeeperException("Failed to assume role for environment " + environment.getAccount(), e);
+        }
+    }
+
+    private void scheduleRenewal(AWSEnvironment environment, long delay) {
+        if(!pendingRenewals.add(environment)) {
+            return;
+        }
+        try {
+            credentialRefresher.schedule(() -> {
+                pendingRenewals.remove(environment);
+                // no need to renew credentials for an environment that's no longer being used
+                if(usedEnvironments.remove(environment) && credentialCache.getIfPresent(environment) != null) {
+                    credentialCache.refresh(environment);
+                } else {
+                    logger.info("Not renewing credentials for " + environment + ", it hasn't been used since they were issued");
                 }
-            });
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            pendingRenewals.remove(environment);
+            logger.info("Not renewing credentials for " + environment + ", shutting down");
+        }
+    }
+
+    /*
+     * Renew sometime in the last tenth of the session so that environments that were loaded together don't all go to
+     * STS at the same time.
+     */
+    private long renewalDelay() {
+        long jitter = ThreadLocalRandom.current().nextLong(Math.max(1L, sessionTimeout / 10));
+        return sessionTimeout - jitter;
+    }
 
     private BasicSessionCredentials getFreshCredentials(AWSEnvironment environment) throws GatekeeperException{
 
@@ -127,24 +235,140 @@ public class AwsSessionService {
         return sb.toString();
     }
 
-    public AmazonRDSClient getRDSSession(AWSEnvironment environment){
+    /*
+     * The clients for an environment are re-used until the credentials they were built with get refreshed, at which
+     * point the next caller builds new ones and the old ones get shut down.
+     */
+    private SessionClients getSessionClients(AWSEnvironment environment){
         BasicSessionCredentials creds = credentialCache.getUnchecked(environment);
-        AmazonRDSClient rds = awsSessionFactory.createRdsSession(creds);
-        rds.setRegion(Region.getRegion(Regions.fromName(environment.getRegion())));
-        return rds;
+        usedEnvironments.add(environment);
+        SessionClients clients = sessionClientCache.getIfPresent(environment);
+        if(clients == null || clients.getCredentials() != creds){
+            synchronized (sessionClientCache) {
+                clients = sessionClientCache.getIfPresent(environment);
+                if(clients == null || clients.getCredentials() != creds){
+                    clients = new SessionClients(environment, creds);
+                    sessionClientCache.put(environment, clients);
+                }
+            }
+        }
+        return clients;
+    }
+
+    /*
+     * Something else may still be in the middle of a call with the clients being replaced, so give those calls a
+     * chance to finish before the connections get closed.
+     */
+    private void retireSessionClients(SessionClients clients){
+        retiringClients.add(clients);
+        try {
+            clientReaper.schedule(() -> {
+                clients.shutdown();
+                retiringClients.remove(clients);
+            }, CLIENT_SHUTDOWN_DELAY, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // shutting down, no need to wait around
+            clients.shutdown();
+            retiringClients.remove(clients);
+        }
+    }
+
+    public AmazonRDSClient getRDSSession(AWSEnvironment environment){
+        return getSessionClients(environment).getRds();
     }
 
     public AmazonEC2Client getEC2Session(AWSEnvironment environment){
-        BasicSessionCredentials creds = credentialCache.getUnchecked(environment);
-        AmazonEC2Client ec2 = awsSessionFactory.createEC2Session(creds);
-        ec2.setRegion(Region.getRegion(Regions.fromName(environment.getRegion())));
-        return ec2;
+        return getSessionClients(environment).getEc2();
+    }
+
+    public AWSResourceGroupsTaggingAPI getTaggingSession(AWSEnvironment environment){
+        return getSessionClients(environment).getTagging();
     }
 
     public AmazonSNS getSNSSession(){
-        return awsSessionFactory.createSNSSession();
+        if(snsClient == null){
+            synchronized (this) {
+                if(snsClient == null){
+                    snsClient = awsSessionFactory.createSNSSession();
+                }
+            }
+        }
+        return snsClient;
+    }
+    public AWSLambdaAsync getAwsLambda(String region){
+        return lambdaClients.computeIfAbsent(region, awsSessionFactory::createLambdaSession);
+    }
+
+    @Override
+    public void destroy() {
+        logger.info("Shutting down AWS clients");
+        credentialRefresher.shutdownNow();
+        clientReaper.shutdownNow();
+        // with the reaper stopped the removal listener shuts the clients down right away
+        sessionClientCache.invalidateAll();
+        sessionClientCache.cleanUp();
+        retiringClients.forEach(SessionClients::shutdown);
+        retiringClients.clear();
+        lambdaClients.values().forEach(AWSLambdaAsync::shutdown);
+        lambdaClients.clear();
+        if(snsClient != null){
+            snsClient.shutdown();
+        }
     }
-    public AWSLambda getAwsLambda(String region){
-        return awsSessionFactory.createLambdaSession(region);
+
+    /**
+     * The clients for one account/region, each client is only built the first time it's asked for
+     */
+    private class SessionClients {
+        private final AWSEnvironment environment;
+        private final BasicSessionCredentials credentials;
+        private AmazonRDSClient rds;
+        private AmazonEC2Client ec2;
+        private AWSResourceGroupsTaggingAPI tagging;
+
+        SessionClients(AWSEnvironment environment, BasicSessionCredentials credentials){
+            this.environment = environment;
+            this.credentials = credentials;
+        }
+
+        BasicSessionCredentials getCredentials() {
+            return credentials;
+        }
+
+        synchronized AmazonRDSClient getRds() {
+            if(rds == null){
+                rds = awsSessionFactory.createRdsSession(credentials);
+                rds.setRegion(Region.getRegion(Regions.fromName(environment.getRegion())));
+            }
+            return rds;
+        }
+
+        synchronized AmazonEC2Client getEc2() {
+            if(ec2 == null){
+                ec2 = awsSessionFactory.createEC2Session(credentials);
+                ec2.setRegion(Region.getRegion(Regions.fromName(environment.getRegion())));
+            }
+            return ec2;
+        }
+
+        synchronized AWSResourceGroupsTaggingAPI getTagging() {
+            if(tagging == null){
+                tagging = awsSessionFactory.createTaggingSession(credentials, environment.getRegion());
+            }
+            return tagging;
+        }
+
+        synchronized void shutdown() {
+            logger.info("Shutting down AWS clients for " + environment);
+            if(rds != null){
+                rds.shutdown();
+            }
+            if(ec2 != null){
+                ec2.shutdown();
+            }
+            if(tagging != null){
+                tagging.shutdown();
+            }
+        }
     }
 }
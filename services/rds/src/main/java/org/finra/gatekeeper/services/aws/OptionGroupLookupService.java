@@ -0,0 +1,136 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.services.aws;
+
+import com.amazonaws.services.rds.AmazonRDSClient;
+import com.amazonaws.services.rds.model.DescribeOptionGroupsRequest;
+import com.amazonaws.services.rds.model.DescribeOptionGroupsResult;
+import com.amazonaws.services.rds.model.OptionGroup;
+import com.amazonaws.services.rds.model.OptionGroupNotFoundException;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.finra.gatekeeper.configuration.GatekeeperProperties;
+import org.finra.gatekeeper.services.aws.model.AWSEnvironment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Option groups are shared between many databases and rarely change, so rather than describing the option groups of
+ * every database on every search, this loads all of the option groups for an account/region at once and caches them.
+ */
+@Component
+public class OptionGroupLookupService {
+
+    private final Logger logger = LoggerFactory.getLogger(OptionGroupLookupService.class);
+
+    private static final int OPTION_GROUPS_PER_PAGE = 100;
+
+    private final AwsSessionService awsSessionService;
+
+    /*
+     * Account/Region -> (Option Group Name -> Option Group)
+     */
+    private final LoadingCache<AWSEnvironment, ConcurrentMap<String, OptionGroup>> optionGroupCache;
+
+    @Autowired
+    public OptionGroupLookupService(AwsSessionService awsSessionService,
+                                    GatekeeperProperties gatekeeperProperties){
+        this.awsSessionService = awsSessionService;
+        this.optionGroupCache = CacheBuilder.newBuilder()
+                .maximumSize(100)
+                .concurrencyLevel(10)
+                .expireAfterWrite(gatekeeperProperties.getLookup().getOptionGroupTtl(), TimeUnit.MILLISECONDS)
+                .build(new CacheLoader<AWSEnvironment, ConcurrentMap<String, OptionGroup>>() {
+                    @Override
+                    public ConcurrentMap<String, OptionGroup> load(AWSEnvironment environment) {
+                        return loadOptionGroups(environment);
+                    }
+                });
+    }
+
+    /**
+     * Gets the option group with the given name
+     *
+     * @param environment - the account/region the option group lives in
+     * @param optionGroupName - the name of the option group
+     * @return the option group, empty if there's no option group with that name
+     */
+    public Optional<OptionGroup> getOptionGroup(AWSEnvironment environment, String optionGroupName) {
+        ConcurrentMap<String, OptionGroup> optionGroups;
+        try {
+            optionGroups = optionGroupCache.getUnchecked(environment);
+        } catch (UncheckedExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw e;
+        }
+
+        OptionGroup optionGroup = optionGroups.get(optionGroupName);
+        if(optionGroup == null){
+            // the option group may have been created since the option groups were loaded, go get just that one
+            optionGroup = loadOptionGroup(environment, optionGroupName);
+            if(optionGroup != null){
+                optionGroups.put(optionGroupName, optionGroup);
+            }
+        }
+        return Optional.ofNullable(optionGroup);
+    }
+
+    private ConcurrentMap<String, OptionGroup> loadOptionGroups(AWSEnvironment environment) {
+        logger.info("Loading option groups for " + environment.getAccount() + " (" + environment.getRegion() + ")");
+        long startTime = System.currentTimeMillis();
+        AmazonRDSClient amazonRDSClient = awsSessionService.getRDSSession(environment);
+        DescribeOptionGroupsRequest request = new DescribeOptionGroupsRequest().withMaxRecords(OPTION_GROUPS_PER_PAGE);
+
+        ConcurrentMap<String, OptionGroup> optionGroups = new ConcurrentHashMap<>();
+        DescribeOptionGroupsResult result = amazonRDSClient.describeOptionGroups(request);
+        result.getOptionGroupsList().forEach(optionGroup -> optionGroups.put(optionGroup.getOptionGroupName(), optionGroup));
+
+        //At a certain point amazon starts paging the results, so we need to get each page, which is keyed off by a marker.
+        while(result.getMarker() != null) {
+            result = amazonRDSClient.describeOptionGroups(request.withMarker(result.getMarker()));
+            result.getOptionGroupsList().forEach(optionGroup -> optionGroups.put(optionGroup.getOptionGroupName(), optionGroup));
+        }
+
+        logger.info("Loaded " + optionGroups.size() + " option groups in " + ((double)(System.currentTimeMillis() - startTime) / 1000) + " Seconds");
+        return optionGroups;
+    }
+
+    private OptionGroup loadOptionGroup(AWSEnvironment environment, String optionGroupName) {
+        try {
+            return awsSessionService.getRDSSession(environment)
+                    .describeOptionGroups(new DescribeOptionGroupsRequest().withOptionGroupName(optionGroupName))
+                    .getOptionGroupsList()
+                    .stream()
+                    .findFirst()
+                    .orElse(null);
+        } catch (OptionGroupNotFoundException e) {
+            logger.error("Could not find option group " + optionGroupName + " on " + environment.getAccount() + " (" + environment.getRegion() + ")");
+            return null;
+        }
+    }
+}
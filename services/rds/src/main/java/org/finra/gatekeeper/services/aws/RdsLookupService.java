@@ -19,23 +19,39 @@ package org.finra.gatekeeper.services.aws;
 
 import com.amazonaws.services.rds.AmazonRDSClient;
 import com.amazonaws.services.rds.model.*;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
 import org.finra.gatekeeper.configuration.GatekeeperProperties;
 import org.finra.gatekeeper.rds.model.DbUser;
 import org.finra.gatekeeper.rds.model.RoleType;
 import org.finra.gatekeeper.services.aws.model.AWSEnvironment;
+import org.finra.gatekeeper.services.aws.model.DatabaseInventoryKey;
 import org.finra.gatekeeper.services.aws.model.GatekeeperRDSInstance;
 import org.finra.gatekeeper.services.aws.model.DatabaseType;
 import org.finra.gatekeeper.services.db.DatabaseConnectionService;
+import org.finra.gatekeeper.services.db.DatabaseProbeExecutor;
 import org.finra.gatekeeper.rds.exception.GKUnsupportedDBException;
 import org.finra.gatekeeper.services.group.model.GatekeeperADGroupEntry;
 import org.finra.gatekeeper.services.group.service.GatekeeperLdapGroupLookupService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -44,7 +60,7 @@ import java.util.stream.Collectors;
  * Service that handles interfacing with the AWS for everything RDS related
  */
 @Component
-public class RdsLookupService {
+public class RdsLookupService implements MeterBinder, DisposableBean {
 
     private final Logger logger = LoggerFactory.getLogger(RdsLookupService.class);
 
@@ -54,12 +70,23 @@ public class RdsLookupService {
     protected static final String STATUS_UNSUPPORTED_DB_ENGINE = "DB Engine not supported";
     protected static final String STATUS_COULD_NOT_FETCH_ROLES = "Could not fetch roles available to DB";
     protected static final String STATUS_UNABLE_TO_LOGIN = "Gatekeeper user does not exist or password is incorrect.";
+    protected static final String STATUS_TIMED_OUT = "Timed out while checking the database";
+    protected static final String STATUS_CHECK_FAILED = "Failed while checking the database";
 
     private final AwsSessionService awsSessionService;
     private final DatabaseConnectionService databaseConnectionService;
     private final SGLookupService sgLookupService;
     private final GatekeeperProperties gatekeeperProperties;
     private final GatekeeperLdapGroupLookupService rdsGroupLookupService;
+    private final DatabaseProbeExecutor databaseProbeExecutor;
+    private final RdsTagLookupService rdsTagLookupService;
+    private final OptionGroupLookupService optionGroupLookupService;
+    private final ExecutorService inventoryRefreshExecutor;
+    private final LoadingCache<DatabaseInventoryKey, List<DBInstance>> instanceInventory;
+    private final LoadingCache<DatabaseInventoryKey, List<DBCluster>> clusterInventory;
+    // search results are listed by database name, so they come back the same way no matter which probes finished first
+    private static final Comparator<GatekeeperRDSInstance> SEARCH_ORDER = Comparator.comparing(GatekeeperRDSInstance::getName, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(GatekeeperRDSInstance::getInstanceId, Comparator.nullsFirst(Comparator.naturalOrder()));
     private final String STATUS_AVAILABLE = "available";
     private final String STATUS_BACKING_UP = "backing-up";
 
@@ -68,30 +95,90 @@ public class RdsLookupService {
                             DatabaseConnectionService databaseConnectionService,
                             SGLookupService sgLookupService,
                             GatekeeperProperties gatekeeperProperties,
-                            GatekeeperLdapGroupLookupService rdsGroupLookupService) {
+                            GatekeeperLdapGroupLookupService rdsGroupLookupService,
+                            DatabaseProbeExecutor databaseProbeExecutor,
+                            RdsTagLookupService rdsTagLookupService,
+                            OptionGroupLookupService optionGroupLookupService) {
         this.awsSessionService = awsSessionService;
         this.databaseConnectionService = databaseConnectionService;
         this.sgLookupService = sgLookupService;
         this.gatekeeperProperties = gatekeeperProperties;
         this.rdsGroupLookupService = rdsGroupLookupService;
+        this.databaseProbeExecutor = databaseProbeExecutor;
+        this.rdsTagLookupService = rdsTagLookupService;
+        this.optionGroupLookupService = optionGroupLookupService;
+
+        // reloads happen on their own threads so searches keep getting the last inventory while the new one is described
+        this.inventoryRefreshExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                .setNameFormat("gk-rds-inventory-%d")
+                .setDaemon(true)
+                .build());
+        // only what AWS describes is kept, the databases that match a search are checked fresh (through the probe cache)
+        this.instanceInventory = CacheBuilder.newBuilder()
+                .maximumSize(1000L)
+                .concurrencyLevel(10)
+                .refreshAfterWrite(gatekeeperProperties.getLookup().getInventoryRefresh(), TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build(CacheLoader.asyncReloading(CacheLoader.from(key -> describeInstances(key.getEnvironment())), inventoryRefreshExecutor));
+        this.clusterInventory = CacheBuilder.newBuilder()
+                .maximumSize(1000L)
+                .concurrencyLevel(10)
+                .refreshAfterWrite(gatekeeperProperties.getLookup().getInventoryRefresh(), TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build(CacheLoader.asyncReloading(CacheLoader.from(key -> describeClusters(key.getEnvironment(), key.getDatabaseType())), inventoryRefreshExecutor));
     }
 
 
     public List<GatekeeperRDSInstance> getInstances(AWSEnvironment environment, String lookupType, String searchString) {
+        String search = searchString.toLowerCase();
+
+        // Get all instances that match the given search string
         switch(DatabaseType.valueOf(lookupType.toUpperCase())){
             case RDS:
-                return doFilterRds(environment, searchString);
+                return loadInstances(environment, instance -> instance.getDBInstanceIdentifier().toLowerCase().contains(search)
+                        || instance.getDbiResourceId().toLowerCase().contains(search));
             case AURORA_REGIONAL:
-                return doFilterCluster(environment, searchString, DatabaseType.AURORA_REGIONAL, "aurora");
+                return loadInstancesCluster(environment, cluster -> clusterMatches(cluster, search), DatabaseType.AURORA_REGIONAL, "aurora");
             case DOCUMENTDB_REGIONAL:
-                return doFilterCluster(environment, searchString, DatabaseType.DOCUMENTDB_REGIONAL, "docdb");
+                return loadInstancesCluster(environment, cluster -> clusterMatches(cluster, search), DatabaseType.DOCUMENTDB_REGIONAL, "docdb");
             case AURORA_GLOBAL:
-                return doFilterClusterGlobal(environment, searchString, DatabaseType.AURORA_GLOBAL, "aurora");
+                // global clusters carry the global cluster id as their identifier
+                return loadInstancesCluster(environment, cluster -> cluster.getDBClusterIdentifier().toLowerCase().contains(search), DatabaseType.AURORA_GLOBAL, "aurora");
             default:
                 return Collections.emptyList();
         }
     }
 
+    /**
+     * Drops the cached database inventory, the next search for each affected account/region will describe the databases again
+     *
+     * @param endpoint - only drop the inventories holding the database at this endpoint (host:port), or null for every inventory
+     */
+    @PreAuthorize("@gatekeeperRoleService.isApprover()")
+    public void invalidateInventory(String endpoint) {
+        if(endpoint == null){
+            instanceInventory.invalidateAll();
+            clusterInventory.invalidateAll();
+            return;
+        }
+        instanceInventory.asMap().values().removeIf(instances -> instances.stream()
+                .anyMatch(instance -> instance.getEndpoint() != null
+                        && endpoint.equals(instance.getEndpoint().getAddress() + ":" + instance.getEndpoint().getPort())));
+        clusterInventory.asMap().values().removeIf(clusters -> clusters.stream()
+                .anyMatch(cluster -> endpoint.equals(cluster.getEndpoint() + ":" + cluster.getPort())));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        GuavaCacheMetrics.monitor(registry, instanceInventory, "gatekeeper.rds.inventory", "inventory", "instances");
+        GuavaCacheMetrics.monitor(registry, clusterInventory, "gatekeeper.rds.inventory", "inventory", "clusters");
+    }
+
+    @Override
+    public void destroy() {
+        inventoryRefreshExecutor.shutdownNow();
+    }
+
     public Optional<DBCluster> getPrimaryClusterForGlobalCluster(AWSEnvironment environment, String globalClusterId){
         AmazonRDSClient amazonRDSClient = awsSessionService.getRDSSession(environment);
         GlobalCluster theCluster = amazonRDSClient.describeGlobalClusters(
@@ -120,24 +207,24 @@ public class RdsLookupService {
                 DescribeDBClustersRequest request = new DescribeDBClustersRequest().withDBClusterIdentifier(primary.getDBClusterIdentifier());
                 DescribeDBClustersResult result = amazonRDSClient.describeDBClusters(request);
                 result.getDBClusters().get(0).setDBClusterIdentifier(instanceName);
-                gatekeeperRDSInstances = loadToGatekeeperRDSInstanceCluster(environment, amazonRDSClient, result.getDBClusters(), securityGroupIds, DatabaseType.AURORA_GLOBAL, "aurora");
+                gatekeeperRDSInstances = loadToGatekeeperRDSInstanceCluster(environment, result.getDBClusters(), securityGroupIds, DatabaseType.AURORA_GLOBAL, "aurora");
             }
                 break;
             case "AURORA_REGIONAL": {
                 DescribeDBClustersRequest request = new DescribeDBClustersRequest().withDBClusterIdentifier(instanceName);
                 DescribeDBClustersResult result = amazonRDSClient.describeDBClusters(request);
-                gatekeeperRDSInstances = loadToGatekeeperRDSInstanceCluster(environment, amazonRDSClient, result.getDBClusters(), securityGroupIds, DatabaseType.AURORA_REGIONAL, "aurora");
+                gatekeeperRDSInstances = loadToGatekeeperRDSInstanceCluster(environment, result.getDBClusters(), securityGroupIds, DatabaseType.AURORA_REGIONAL, "aurora");
                 }
                 break;
             case "DOCUMENTDB_REGIONAL": {
                 DescribeDBClustersRequest request = new DescribeDBClustersRequest().withDBClusterIdentifier(instanceName);
                 DescribeDBClustersResult result = amazonRDSClient.describeDBClusters(request);
-                gatekeeperRDSInstances = loadToGatekeeperRDSInstanceCluster(environment, amazonRDSClient, result.getDBClusters(), securityGroupIds, DatabaseType.DOCUMENTDB_REGIONAL, "docdb");
+                gatekeeperRDSInstances = loadToGatekeeperRDSInstanceCluster(environment, result.getDBClusters(), securityGroupIds, DatabaseType.DOCUMENTDB_REGIONAL, "docdb");
                 }
                 break;
             case "RDS": {
                 DescribeDBInstancesResult result = amazonRDSClient.describeDBInstances(new DescribeDBInstancesRequest().withDBInstanceIdentifier(instanceName));
-                gatekeeperRDSInstances = loadToGatekeeperRDSInstance(environment, amazonRDSClient, result.getDBInstances(), securityGroupIds);
+                gatekeeperRDSInstances = loadToGatekeeperRDSInstance(environment, result.getDBInstances(), securityGroupIds);
                 }
                 break;
             default:
@@ -173,214 +260,211 @@ public class RdsLookupService {
         }
     }
 
-    private List<GatekeeperRDSInstance> doFilterRds(AWSEnvironment environment, String searchString) {
-        // Get all instances that match the given search string
-        return loadInstances(environment, instance -> (instance.getDBInstanceIdentifier().toLowerCase().contains(searchString.toLowerCase())
-                || instance.getDbiResourceId().toLowerCase().contains(searchString.toLowerCase())));
-    }
-
-    private List<GatekeeperRDSInstance> doFilterCluster(AWSEnvironment environment, String searchString, DatabaseType type, String engine) {
-        // Get all instances that match the given search string
-        return loadInstancesCluster(environment, instance ->
-                instance.getDBClusterIdentifier().toLowerCase().contains(searchString.toLowerCase())
-                        || instance.getDbClusterResourceId().toLowerCase().contains(searchString.toLowerCase()), type, engine);
+    private <T> List<T> getInventory(LoadingCache<DatabaseInventoryKey, List<T>> inventory, AWSEnvironment environment, DatabaseType type) {
+        try {
+            return inventory.getUnchecked(new DatabaseInventoryKey(environment, type));
+        } catch (UncheckedExecutionException e) {
+            // surface whatever went wrong talking to AWS the same way as when the lookup wasn't cached
+            Throwables.throwIfUnchecked(e.getCause());
+            throw e;
+        }
     }
 
-    private List<GatekeeperRDSInstance> doFilterClusterGlobal(AWSEnvironment environment, String searchString, DatabaseType type, String engine) {
-        // Get all instances that match the given search string
-        return loadInstancesClusterGlobal(environment, globalCluster ->
-                globalCluster.getGlobalClusterIdentifier().toLowerCase().contains(searchString.toLowerCase())
-                        || globalCluster.getGlobalClusterIdentifier().toLowerCase().contains(searchString.toLowerCase()), type, engine);
+    private boolean clusterMatches(DBCluster cluster, String search) {
+        return cluster.getDBClusterIdentifier().toLowerCase().contains(search)
+                || cluster.getDbClusterResourceId().toLowerCase().contains(search);
     }
 
-    private String getApplicationTagforInstanceArn(AmazonRDSClient client, String arn){
-        ListTagsForResourceRequest request = new ListTagsForResourceRequest();
-        Optional<Tag> applicationTag = Optional.ofNullable(client.listTagsForResource(request.withResourceName(arn)).getTagList()
-            .stream().filter(tag -> tag.getKey().equalsIgnoreCase(gatekeeperProperties.getAppIdentityTag()))
-            .findFirst())
-                .orElse(Optional.empty());
-
-        return applicationTag.isPresent() ? applicationTag.get().getValue() : "NONE";
-    }
     /**
      * Loads the DB instances from a aws fetch call for RDS databases into a list of Gatekeeper RDS Objects
      * @param instances
      * @return
      */
-    private List<GatekeeperRDSInstance> loadToGatekeeperRDSInstance(AWSEnvironment environment, AmazonRDSClient client, List<DBInstance> instances, List<String> securityGroupIds){
-        ArrayList<GatekeeperRDSInstance> gatekeeperRDSInstances = new ArrayList<>();
-
-        instances.forEach(item -> {
-            String application = getApplicationTagforInstanceArn(client, item.getDBInstanceArn());
-            boolean enabled = false;
-            String status = item.getDBInstanceStatus();
-            Integer port = item.getEndpoint().getPort();
-            List<String> availableRoles = null;
-            String dbName = item.getDBName();
-            String address = getAddress(item.getEndpoint().getAddress(),String.valueOf(port),dbName);
-            if(item.getDBInstanceStatus().equalsIgnoreCase(STATUS_AVAILABLE)
-                    || item.getDBInstanceStatus().equalsIgnoreCase(STATUS_BACKING_UP)) {
-                enabled = item.getVpcSecurityGroups().stream()
-                        .anyMatch(sg -> {
-                            return securityGroupIds.contains(sg.getVpcSecurityGroupId());
-                        });
-                if(!enabled){
-                    status = STATUS_MISSING_SGS;
-                }
-                // If the database engine is an oracle based engine then we need to go dig the SSL port out thru the options.
-                if(enabled && item.getEngine().contains("oracle")) {
-                    // need to get the oracle SSL port from the associated option group
-                    logger.info("determining SSL port for Oracle DB " + item.getDBInstanceIdentifier() + " (" + item.getEngine() + ")");
-                    List<String> optionGroups = item.getOptionGroupMemberships().stream()
-                            .map(OptionGroupMembership::getOptionGroupName)
-                            .collect(Collectors.toList());
-
-                    // look through all option groups attached to the DB
-                    for(String ogName: optionGroups) {
-                        DescribeOptionGroupsRequest describeOptionGroupsRequest = new DescribeOptionGroupsRequest();
-                        OptionGroup optionGroup = client.describeOptionGroups(describeOptionGroupsRequest.withOptionGroupName(ogName))
-                                .getOptionGroupsList().get(0);
-
-                        // look for the SSL Option
-                        final Optional<Option> sslOption = optionGroup.getOptions().stream()
-                                .filter(option -> option.getOptionName().equalsIgnoreCase("SSL"))
-                                .findFirst();
-
-                        // if the SSL Option is present then set the port and stop searching
-                        if(sslOption.isPresent()){
-                            port = sslOption.get().getPort();
-                            item.getEndpoint().setPort(port); //for oracle need to set the ssl port to be different.
-                            break;
-                        }
+    private List<GatekeeperRDSInstance> loadToGatekeeperRDSInstance(AWSEnvironment environment, List<DBInstance> instances, List<String> securityGroupIds){
+        // each instance gets checked in parallel, any instance that takes too long or fails to be checked gets reported as such
+        return new ArrayList<>(databaseProbeExecutor.probeAll(instances,
+                item -> toGatekeeperRDSInstance(environment, item, securityGroupIds),
+                (item, failure) -> new GatekeeperRDSInstance(item.getDbiResourceId(), item.getDBInstanceIdentifier(),
+                        item.getDBName() != null ? item.getDBName() : "", item.getEngine(), failureStatus(failure),
+                        item.getDBInstanceArn(), item.getEndpoint().getAddress() + ":" + item.getEndpoint().getPort(), RdsTagLookupService.NO_APPLICATION, null, false, DatabaseType.RDS, new HashSet<>()),
+                SEARCH_ORDER));
+    }
+
+    private GatekeeperRDSInstance toGatekeeperRDSInstance(AWSEnvironment environment, DBInstance item, List<String> securityGroupIds){
+        String application = rdsTagLookupService.getApplicationTag(environment, item.getDBInstanceArn());
+        boolean enabled = false;
+        String status = item.getDBInstanceStatus();
+        Integer port = item.getEndpoint().getPort();
+        List<String> availableRoles = null;
+        String dbName = item.getDBName();
+        String address = getAddress(item.getEndpoint().getAddress(),String.valueOf(port),dbName);
+        if(item.getDBInstanceStatus().equalsIgnoreCase(STATUS_AVAILABLE)
+                || item.getDBInstanceStatus().equalsIgnoreCase(STATUS_BACKING_UP)) {
+            enabled = item.getVpcSecurityGroups().stream()
+                    .anyMatch(sg -> {
+                        return securityGroupIds.contains(sg.getVpcSecurityGroupId());
+                    });
+            if(!enabled){
+                status = STATUS_MISSING_SGS;
+            }
+            // If the database engine is an oracle based engine then we need to go dig the SSL port out thru the options.
+            if(enabled && item.getEngine().contains("oracle")) {
+                // need to get the oracle SSL port from the associated option group
+                logger.info("determining SSL port for Oracle DB " + item.getDBInstanceIdentifier() + " (" + item.getEngine() + ")");
+                List<String> optionGroups = item.getOptionGroupMemberships().stream()
+                        .map(OptionGroupMembership::getOptionGroupName)
+                        .collect(Collectors.toList());
+
+                // look through all option groups attached to the DB
+                for(String ogName: optionGroups) {
+                    // look for the SSL Option
+                    final Optional<Option> sslOption = optionGroupLookupService.getOptionGroup(environment, ogName)
+                            .flatMap(optionGroup -> optionGroup.getOptions().stream()
+                                    .filter(option -> option.getOptionName().equalsIgnoreCase("SSL"))
+                                    .findFirst());
+
+                    // if the SSL Option is present then set the port and stop searching
+                    if(sslOption.isPresent()){
+                        port = sslOption.get().getPort();
+                        item.getEndpoint().setPort(port); //for oracle need to set the ssl port to be different.
+                        break;
                     }
-                    logger.info("The SSL Port for " + item.getDBName() + " is: " + port);
                 }
+                logger.info("The SSL Port for " + item.getDBName() + " is: " + port);
+            }
 
-                if(enabled && item.getReadReplicaSourceDBInstanceIdentifier() != null){
-                    status = "Unsupported (Read-Only replica of " +item.getReadReplicaSourceDBInstanceIdentifier() + ")";
+            if(enabled && item.getReadReplicaSourceDBInstanceIdentifier() != null){
+                status = "Unsupported (Read-Only replica of " +item.getReadReplicaSourceDBInstanceIdentifier() + ")";
+                enabled = false;
+            }
+            if(enabled){
+                //if enabled lets check if the DB is working
+                try {
+                    String dbStatus = databaseConnectionService.checkDb(item, environment);
+                    status = !dbStatus.isEmpty() ? dbStatus : status;
+                    enabled = dbStatus.isEmpty(); // if there's no message back from the DB enabled is still true
+                }catch(GKUnsupportedDBException e){
+                    logger.error(STATUS_UNSUPPORTED_DB_ENGINE, e);
+                    status = STATUS_UNSUPPORTED_DB_ENGINE;
                     enabled = false;
                 }
-                if(enabled){
-                    //if enabled lets check if the DB is working
+                // if status hasn't changed then get the roles
+                if(enabled && status.equals(item.getDBInstanceStatus())) {
+                    // get available roles for DB
                     try {
-                        String dbStatus = databaseConnectionService.checkDb(item, environment);
-                        status = !dbStatus.isEmpty() ? dbStatus : status;
-                        enabled = dbStatus.isEmpty(); // if there's no message back from the DB enabled is still true
-                    }catch(GKUnsupportedDBException e){
-                        logger.error(STATUS_UNSUPPORTED_DB_ENGINE, e);
-                        status = STATUS_UNSUPPORTED_DB_ENGINE;
-                        enabled = false;
-                    }
-                    // if status hasn't changed then get the roles
-                    if(enabled && status.equals(item.getDBInstanceStatus())) {
-                        // get available roles for DB
-                        try {
-                            availableRoles = databaseConnectionService.getAvailableRolesForDb(item, environment);
-                            Collections.sort(availableRoles);
-                            logger.info("Found the following roles on " + item.getDBInstanceIdentifier() + " (" + availableRoles +").");
-                        } catch (Exception e) {
-                            logger.error(STATUS_COULD_NOT_FETCH_ROLES, e);
-                            if(e.getMessage().contains("password")){
-                                status = STATUS_UNABLE_TO_LOGIN;
-                            }else {
-                                status = STATUS_COULD_NOT_FETCH_ROLES;
-                            }
-                            enabled = false;
+                        availableRoles = databaseConnectionService.getAvailableRolesForDb(item, environment);
+                        Collections.sort(availableRoles);
+                        logger.info("Found the following roles on " + item.getDBInstanceIdentifier() + " (" + availableRoles +").");
+                    } catch (Exception e) {
+                        logger.error(STATUS_COULD_NOT_FETCH_ROLES, e);
+                        if(e.getMessage().contains("password")){
+                            status = STATUS_UNABLE_TO_LOGIN;
+                        }else {
+                            status = STATUS_COULD_NOT_FETCH_ROLES;
                         }
+                        enabled = false;
                     }
                 }
             }
-            //Only get AD Groups from the current SDLC
-            Set<GatekeeperADGroupEntry> adGroups = filterBySdlc(environment, application);
-            gatekeeperRDSInstances.add(new GatekeeperRDSInstance(item.getDbiResourceId(), item.getDBInstanceIdentifier(),
-                    dbName != null ? dbName : "", item.getEngine(), status,
-                    item.getDBInstanceArn(), item.getEndpoint().getAddress() + ":" + port, application, availableRoles, enabled, DatabaseType.RDS, adGroups));
-        });
-
-        return gatekeeperRDSInstances;
+        }
+        //Only get AD Groups from the current SDLC
+        Set<GatekeeperADGroupEntry> adGroups = filterBySdlc(environment, application);
+        return new GatekeeperRDSInstance(item.getDbiResourceId(), item.getDBInstanceIdentifier(),
+                dbName != null ? dbName : "", item.getEngine(), status,
+                item.getDBInstanceArn(), item.getEndpoint().getAddress() + ":" + port, application, availableRoles, enabled, DatabaseType.RDS, adGroups);
     }
 
     /**
      * This looks at database clusters for Aurora, similar to the function loadToGatekeeperRDSInstance() but the difference
      * being we have to look at the cluster as a whole vs the single instance
      */
-    private List<GatekeeperRDSInstance> loadToGatekeeperRDSInstanceCluster(AWSEnvironment environment, AmazonRDSClient client, List<DBCluster> instances, List<String> securityGroupIds, DatabaseType globalCluster, String engine){
-        ArrayList<GatekeeperRDSInstance> gatekeeperRDSInstances = new ArrayList<>();
-        instances.forEach(item -> {
-            // Only concerned with Aurora clusters apparently AWS lumps in docdb and neptune, etc clusters with the call on the RDS API
-            // if the engine is not aurora then skip it.
-            if(!item.getEngine().contains(engine)){
-                return;
+    private List<GatekeeperRDSInstance> loadToGatekeeperRDSInstanceCluster(AWSEnvironment environment, List<DBCluster> instances, List<String> securityGroupIds, DatabaseType globalCluster, String engine){
+        // Only concerned with Aurora clusters apparently AWS lumps in docdb and neptune, etc clusters with the call on the RDS API
+        // if the engine is not aurora then skip it.
+        List<DBCluster> clusters = instances.stream()
+                .filter(item -> item.getEngine().contains(engine))
+                .collect(Collectors.toList());
+
+        // each cluster gets checked in parallel, any cluster that takes too long or fails to be checked gets reported as such
+        return new ArrayList<>(databaseProbeExecutor.probeAll(clusters,
+                item -> toGatekeeperRDSInstance(environment, item, securityGroupIds, globalCluster),
+                (item, failure) -> new GatekeeperRDSInstance(item.getDbClusterResourceId(), item.getDBClusterIdentifier(),
+                        item.getDatabaseName(), item.getEngine(), failureStatus(failure), item.getDBClusterArn(),
+                        item.getEndpoint() + ":" + item.getPort(), RdsTagLookupService.NO_APPLICATION, null, false, globalCluster, new HashSet<>()),
+                SEARCH_ORDER));
+    }
+
+    private String failureStatus(Throwable failure) {
+        return failure instanceof TimeoutException ? STATUS_TIMED_OUT : STATUS_CHECK_FAILED;
+    }
+
+    private GatekeeperRDSInstance toGatekeeperRDSInstance(AWSEnvironment environment, DBCluster item, List<String> securityGroupIds, DatabaseType globalCluster){
+        String application = rdsTagLookupService.getApplicationTag(environment, item.getDBClusterArn());
+        boolean enabled = false;
+        String status = item.getStatus();
+        Integer port = item.getPort();
+        List<String> availableRoles = null;
+        String dbName = item.getDatabaseName();
+
+        if(item.getStatus().equalsIgnoreCase(STATUS_AVAILABLE)
+                || item.getStatus().equalsIgnoreCase(STATUS_BACKING_UP)) {
+            enabled = item.getVpcSecurityGroups().stream()
+                    .anyMatch(sg -> {
+                        return securityGroupIds.contains(sg.getVpcSecurityGroupId());
+                    });
+
+            if(!enabled){
+                status = STATUS_MISSING_SGS;
             }
-            String application = getApplicationTagforInstanceArn(client, item.getDBClusterArn());
-            boolean enabled = false;
-            String status = item.getStatus();
-            Integer port = item.getPort();
-            List<String> availableRoles = null;
-            String dbName = item.getDatabaseName();
-
-            if(item.getStatus().equalsIgnoreCase(STATUS_AVAILABLE)
-                    || item.getStatus().equalsIgnoreCase(STATUS_BACKING_UP)) {
-                enabled = item.getVpcSecurityGroups().stream()
-                        .anyMatch(sg -> {
-                            return securityGroupIds.contains(sg.getVpcSecurityGroupId());
-                        });
-
-                if(!enabled){
-                    status = STATUS_MISSING_SGS;
-                }
 
-                if(enabled && item.getReplicationSourceIdentifier() != null){
-                    status = "Unsupported (Read-Only replica of " + item.getReplicationSourceIdentifier() + ")";
-                    enabled = false;
-                }
+            if(enabled && item.getReplicationSourceIdentifier() != null){
+                status = "Unsupported (Read-Only replica of " + item.getReplicationSourceIdentifier() + ")";
+                enabled = false;
+            }
 
-                //if the cluster does not have any instances associated then it won't be able to work with Gatekeeper
-                if(enabled && item.getDBClusterMembers().size() < 1){
-                    status = STATUS_NO_INSTANCES;
-                    enabled = false;
-                } else if(enabled && item.getDBClusterMembers().stream().noneMatch(DBClusterMember::isClusterWriter)){
-                    //if the cluster has no writer instances associated with it. Gatekeeper cannot create the user
-                    status = STATUS_NO_WRITERS;
+            //if the cluster does not have any instances associated then it won't be able to work with Gatekeeper
+            if(enabled && item.getDBClusterMembers().size() < 1){
+                status = STATUS_NO_INSTANCES;
+                enabled = false;
+            } else if(enabled && item.getDBClusterMembers().stream().noneMatch(DBClusterMember::isClusterWriter)){
+                //if the cluster has no writer instances associated with it. Gatekeeper cannot create the user
+                status = STATUS_NO_WRITERS;
+                enabled = false;
+            }
+
+            if(enabled) {
+                try {
+                    String dbStatus = databaseConnectionService.checkDb(item, environment);
+                    status = !dbStatus.isEmpty() ? dbStatus : status;
+                    enabled = dbStatus.isEmpty(); // if there's no message back from the DB enabled is still true
+                }catch(GKUnsupportedDBException e){
+                    logger.error(STATUS_UNSUPPORTED_DB_ENGINE, e);
+                    status = STATUS_UNSUPPORTED_DB_ENGINE;
                     enabled = false;
                 }
 
-                if(enabled) {
+                if(enabled){
+                    // get available roles for DB
                     try {
-                        String dbStatus = databaseConnectionService.checkDb(item, environment);
-                        status = !dbStatus.isEmpty() ? dbStatus : status;
-                        enabled = dbStatus.isEmpty(); // if there's no message back from the DB enabled is still true
-                    }catch(GKUnsupportedDBException e){
-                        logger.error(STATUS_UNSUPPORTED_DB_ENGINE, e);
-                        status = STATUS_UNSUPPORTED_DB_ENGINE;
-                        enabled = false;
-                    }
-
-                    if(enabled){
-                        // get available roles for DB
-                        try {
-                            availableRoles = databaseConnectionService.getAvailableRolesForDb(item, environment);
-                            Collections.sort(availableRoles);
-                            logger.info("Found the following roles on " + item.getDBClusterIdentifier() + " (" + availableRoles +").");
-                        } catch (Exception e) {
-                            logger.error(STATUS_COULD_NOT_FETCH_ROLES, e);
-                            if (e.getMessage().contains("password")) {
-                                status = STATUS_UNABLE_TO_LOGIN;
-                            } else {
-                                status = STATUS_COULD_NOT_FETCH_ROLES;
-                            }
-                            enabled = false;
+                        availableRoles = databaseConnectionService.getAvailableRolesForDb(item, environment);
+                        Collections.sort(availableRoles);
+                        logger.info("Found the following roles on " + item.getDBClusterIdentifier() + " (" + availableRoles +").");
+                    } catch (Exception e) {
+                        logger.error(STATUS_COULD_NOT_FETCH_ROLES, e);
+                        if (e.getMessage().contains("password")) {
+                            status = STATUS_UNABLE_TO_LOGIN;
+                        } else {
+                            status = STATUS_COULD_NOT_FETCH_ROLES;
                         }
+                        enabled = false;
                     }
                 }
             }
-            //Only get AD Groups from the current SDLC
-            Set<GatekeeperADGroupEntry> adGroups = filterBySdlc(environment, application);
-            gatekeeperRDSInstances.add(new GatekeeperRDSInstance(item.getDbClusterResourceId(), item.getDBClusterIdentifier(),
-                    dbName, item.getEngine(), status, item.getDBClusterArn(), item.getEndpoint() + ":" + port, application, availableRoles, enabled, globalCluster, adGroups));
-        });
-
-        return gatekeeperRDSInstances;
+        }
+        //Only get AD Groups from the current SDLC
+        Set<GatekeeperADGroupEntry> adGroups = filterBySdlc(environment, application);
+        return new GatekeeperRDSInstance(item.getDbClusterResourceId(), item.getDBClusterIdentifier(),
+                dbName, item.getEngine(), status, item.getDBClusterArn(), item.getEndpoint() + ":" + port, application, availableRoles, enabled, globalCluster, adGroups);
     }
     
     private Set<GatekeeperADGroupEntry> filterBySdlc(AWSEnvironment environment, String application) {
@@ -402,95 +486,85 @@ public class RdsLookupService {
     }
 
     private List<GatekeeperRDSInstance> loadInstances(AWSEnvironment environment, Predicate<? super DBInstance> filter) {
+        // the inventory is shared between searches and checking a database can adjust it (e.g. the oracle SSL port),
+        // so only copies of the matching instances get checked
+        List<DBInstance> instances = getInventory(instanceInventory, environment, DatabaseType.RDS).stream()
+                .filter(filter)
+                .map(instance -> instance.clone().withEndpoint(instance.getEndpoint() != null ? instance.getEndpoint().clone() : null))
+                .collect(Collectors.toList());
+        return loadToGatekeeperRDSInstance(environment, instances, sgLookupService.fetchSgsForAccountRegion(environment));
+    }
+
+    protected List<GatekeeperRDSInstance> loadInstancesCluster(AWSEnvironment environment, Predicate<? super DBCluster> filter, DatabaseType type, String engine) {
+        List<DBCluster> clusters = getInventory(clusterInventory, environment, type).stream()
+                .filter(filter)
+                .map(DBCluster::clone)
+                .collect(Collectors.toList());
+        return loadToGatekeeperRDSInstanceCluster(environment, clusters, sgLookupService.fetchSgsForAccountRegion(environment), type, engine);
+    }
+
+    /**
+     * Describes every RDS instance in the account/region, this is what backs the instance inventory
+     */
+    private List<DBInstance> describeInstances(AWSEnvironment environment) {
         logger.info("Refreshing RDS Instance Data");
         long startTime = System.currentTimeMillis();
         DescribeDBInstancesRequest describeDBInstancesRequest = new DescribeDBInstancesRequest()
                 .withFilters(new Filter().withName("engine").withValues("postgres", "mysql", "oracle-se2", "oracle-ee"));
-        List<String> securityGroupIds = sgLookupService.fetchSgsForAccountRegion(environment);
         AmazonRDSClient amazonRDSClient = awsSessionService.getRDSSession(environment);
         DescribeDBInstancesResult result = amazonRDSClient.describeDBInstances(describeDBInstancesRequest);
-
-        List<GatekeeperRDSInstance> gatekeeperRDSInstances = loadToGatekeeperRDSInstance(environment, amazonRDSClient,
-                result.getDBInstances()
-                        .stream()
-                        .filter(filter)
-                        .collect(Collectors.toList()), securityGroupIds);
+        List<DBInstance> instances = new ArrayList<>(result.getDBInstances());
 
         //At a certain point (Usually ~100 instances) amazon starts paging the rds results, so we need to get each page, which is keyed off by a marker.
         while(result.getMarker() != null) {
             result = amazonRDSClient.describeDBInstances(describeDBInstancesRequest.withMarker(result.getMarker()));
-            gatekeeperRDSInstances.addAll(loadToGatekeeperRDSInstance(environment, amazonRDSClient,
-                    result.getDBInstances()
-                            .stream()
-                            .filter(filter)
-                            .collect(Collectors.toList()), securityGroupIds));
+            instances.addAll(result.getDBInstances());
         }
         logger.info("Refreshed instance data in " + ((double)(System.currentTimeMillis() - startTime) / 1000) + " Seconds");
 
-        return gatekeeperRDSInstances;
+        return instances;
     }
 
-    protected List<GatekeeperRDSInstance> loadInstancesCluster(AWSEnvironment environment, Predicate<? super DBCluster> filter, DatabaseType type, String engine) {
-        logger.info("Looking up "+ engine +" Clusters");
+    /**
+     * Describes every cluster of the given type in the account/region, this is what backs the cluster inventory
+     */
+    private List<DBCluster> describeClusters(AWSEnvironment environment, DatabaseType type) {
+        return type == DatabaseType.AURORA_GLOBAL ? describeGlobalClusters(environment) : describeRegionalClusters(environment);
+    }
+
+    private List<DBCluster> describeRegionalClusters(AWSEnvironment environment) {
+        logger.info("Looking up Clusters");
         Long startTime = System.currentTimeMillis();
         DescribeDBClustersRequest describeDBClustersRequest = new DescribeDBClustersRequest();
-        List<String> securityGroupIds = sgLookupService.fetchSgsForAccountRegion(environment);
         AmazonRDSClient amazonRDSClient = awsSessionService.getRDSSession(environment);
         DescribeDBClustersResult result = amazonRDSClient.describeDBClusters(describeDBClustersRequest);
-
-        // Aurora Global
-        DescribeGlobalClustersResult describeGlobalClustersResult = amazonRDSClient.describeGlobalClusters(new DescribeGlobalClustersRequest());
-
-        List<GlobalCluster> globalClusters = new ArrayList<>(describeGlobalClustersResult.getGlobalClusters());
-        while(describeGlobalClustersResult.getMarker() != null){
-            globalClusters.addAll(describeGlobalClustersResult.getGlobalClusters());
-            amazonRDSClient.describeGlobalClusters(new DescribeGlobalClustersRequest()
-                    .withMarker(describeGlobalClustersResult.getMarker()));
-        }
-
-        Map<String, String> auroraClusterGlobalClusterMapping = new HashMap<>();
-
-        globalClusters.forEach(globalCluster -> {
-            globalCluster.getGlobalClusterMembers().forEach(member -> {
-                auroraClusterGlobalClusterMapping.put(member.getDBClusterArn(), globalCluster.getGlobalClusterIdentifier());
-            });
-        });
-
-        List<GatekeeperRDSInstance> gatekeeperRDSInstances = loadToGatekeeperRDSInstanceCluster(environment,amazonRDSClient,
-                result.getDBClusters()
-                        .stream()
-                        .filter(cluster -> !auroraClusterGlobalClusterMapping.containsKey(cluster.getDBClusterArn()))
-                        .filter(filter)
-                        .collect(Collectors.toList()), securityGroupIds, type, engine);
+        List<DBCluster> clusters = new ArrayList<>(result.getDBClusters());
 
         //At a certain point (Usually ~100 instances) amazon starts paging the rds results, so we need to get each page, which is keyed off by a marker.
         while(result.getMarker() != null) {
             result = amazonRDSClient.describeDBClusters(describeDBClustersRequest.withMarker(result.getMarker()));
-            gatekeeperRDSInstances.addAll(loadToGatekeeperRDSInstanceCluster(environment, amazonRDSClient,
-                    result.getDBClusters()
-                            .stream()
-                            .filter(filter)
-                            .collect(Collectors.toList()), securityGroupIds, type, engine));
+            clusters.addAll(result.getDBClusters());
         }
-        logger.info("Refreshed instance data in " + ((double)(System.currentTimeMillis() - startTime) / 1000) + " Seconds");
 
-        return gatekeeperRDSInstances;
+        // clusters that are part of a global cluster are looked up through the global cluster instead
+        Set<String> globalClusterMembers = new HashSet<>();
+        getGlobalClusters(amazonRDSClient).forEach(globalCluster ->
+                globalCluster.getGlobalClusterMembers().forEach(member -> globalClusterMembers.add(member.getDBClusterArn())));
+        clusters.removeIf(cluster -> globalClusterMembers.contains(cluster.getDBClusterArn()));
+
+        logger.info("Refreshed instance data in " + ((double)(System.currentTimeMillis() - startTime) / 1000) + " Seconds");
+        return clusters;
     }
 
-    protected List<GatekeeperRDSInstance> loadInstancesClusterGlobal(AWSEnvironment environment, Predicate<? super GlobalCluster> filter, DatabaseType type, String engine) {
-        logger.info("Looking up " + engine + " Global Clusters");
+    private List<DBCluster> describeGlobalClusters(AWSEnvironment environment) {
+        logger.info("Looking up Global Clusters");
         Long startTime = System.currentTimeMillis();
         DescribeDBClustersRequest describeDBClustersRequest = new DescribeDBClustersRequest();
-        List<String> securityGroupIds = sgLookupService.fetchSgsForAccountRegion(environment);
         AmazonRDSClient amazonRDSClient = awsSessionService.getRDSSession(environment);
 
-        List<GlobalCluster> auroraGlobalClusters = getGlobalClusters(amazonRDSClient).stream()
-                .filter(filter)
-                .collect(Collectors.toList());
-
         List<String> primaryDBClusterARNs = new ArrayList<>();
         Map<String, String> primaryToGlobalMapping = new HashMap<>();
-        auroraGlobalClusters.forEach(globalCluster -> {
+        getGlobalClusters(amazonRDSClient).forEach(globalCluster -> {
             globalCluster.getGlobalClusterMembers().forEach(
                     memberCluster -> {
                         if(memberCluster.getIsWriter() && memberCluster.getDBClusterArn().contains(environment.getRegion())) {
@@ -500,34 +574,32 @@ public class RdsLookupService {
                     });
         });
 
-        List<GatekeeperRDSInstance> gatekeeperRDSInstances = Collections.emptyList();
-
-        // if there's no global clusters matched then don't make the call to look for primary clusters as the AWS API will fail. (AWS Internal Error)
-        if(!primaryDBClusterARNs.isEmpty()) {
-            DescribeDBClustersResult describeDBClustersResult = amazonRDSClient.describeDBClusters(
-                    describeDBClustersRequest.withFilters(new Filter()
-                            .withName("db-cluster-id")
-                            .withValues(primaryDBClusterARNs)));
-            List<DBCluster> primaryClusters = new ArrayList<>(describeDBClustersResult.getDBClusters());
-
-            while (describeDBClustersResult.getMarker() != null) {
-                describeDBClustersResult = amazonRDSClient.describeDBClusters(new DescribeDBClustersRequest()
-                        .withMarker(describeDBClustersResult.getMarker()));
-                primaryClusters.addAll(describeDBClustersResult.getDBClusters());
-            }
+        // if there's no global clusters then don't make the call to look for primary clusters as the AWS API will fail. (AWS Internal Error)
+        if(primaryDBClusterARNs.isEmpty()) {
+            return Collections.emptyList();
+        }
 
-            // rename the cluster to the name of the global cluster
-            primaryClusters.forEach(
-                    dbCluster -> dbCluster.setDBClusterIdentifier(primaryToGlobalMapping.get(dbCluster.getDBClusterArn()))
-            );
-            // process the primary aurora regional clusters, this re-uses the aurora processing with the global cluster as the cluster id instead of the primary cluster
-            gatekeeperRDSInstances = loadToGatekeeperRDSInstanceCluster(environment, amazonRDSClient,
-                    primaryClusters, securityGroupIds, type, engine);
+        DescribeDBClustersResult describeDBClustersResult = amazonRDSClient.describeDBClusters(
+                describeDBClustersRequest.withFilters(new Filter()
+                        .withName("db-cluster-id")
+                        .withValues(primaryDBClusterARNs)));
+        List<DBCluster> primaryClusters = new ArrayList<>(describeDBClustersResult.getDBClusters());
 
-            logger.info("Refreshed instance data in " + ((double) (System.currentTimeMillis() - startTime) / 1000) + " Seconds");
+        while (describeDBClustersResult.getMarker() != null) {
+            describeDBClustersResult = amazonRDSClient.describeDBClusters(new DescribeDBClustersRequest()
+                    .withMarker(describeDBClustersResult.getMarker()));
+            primaryClusters.addAll(describeDBClustersResult.getDBClusters());
         }
 
-        return gatekeeperRDSInstances;
+        // rename the cluster to the name of the global cluster, this re-uses the aurora processing with the global
+        // cluster as the cluster id instead of the primary cluster
+        List<DBCluster> clusters = primaryClusters.stream()
+                .filter(dbCluster -> primaryToGlobalMapping.containsKey(dbCluster.getDBClusterArn()))
+                .map(dbCluster -> dbCluster.clone().withDBClusterIdentifier(primaryToGlobalMapping.get(dbCluster.getDBClusterArn())))
+                .collect(Collectors.toList());
+
+        logger.info("Refreshed instance data in " + ((double) (System.currentTimeMillis() - startTime) / 1000) + " Seconds");
+        return clusters;
     }
 
     private Map<RoleType, List<String>> unavailableMap(){
@@ -543,9 +615,9 @@ public class RdsLookupService {
         DescribeGlobalClustersResult describeGlobalClustersResult = amazonRDSClient.describeGlobalClusters(new DescribeGlobalClustersRequest());
         List<GlobalCluster> globalClusters = new ArrayList<>(describeGlobalClustersResult.getGlobalClusters());
         while(describeGlobalClustersResult.getMarker() != null){
-            globalClusters.addAll(describeGlobalClustersResult.getGlobalClusters());
-            amazonRDSClient.describeGlobalClusters(new DescribeGlobalClustersRequest()
+            describeGlobalClustersResult = amazonRDSClient.describeGlobalClusters(new DescribeGlobalClustersRequest()
                     .withMarker(describeGlobalClustersResult.getMarker()));
+            globalClusters.addAll(describeGlobalClustersResult.getGlobalClusters());
         }
 
         return globalClusters;
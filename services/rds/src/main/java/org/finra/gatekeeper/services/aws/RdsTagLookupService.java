@@ -0,0 +1,173 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.services.aws;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.rds.model.ListTagsForResourceRequest;
+import com.amazonaws.services.resourcegroupstaggingapi.AWSResourceGroupsTaggingAPI;
+import com.amazonaws.services.resourcegroupstaggingapi.model.GetResourcesRequest;
+import com.amazonaws.services.resourcegroupstaggingapi.model.GetResourcesResult;
+import com.amazonaws.services.resourcegroupstaggingapi.model.ResourceTagMapping;
+import com.amazonaws.services.resourcegroupstaggingapi.model.Tag;
+import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.finra.gatekeeper.configuration.GatekeeperProperties;
+import org.finra.gatekeeper.services.aws.model.AWSEnvironment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up the application identity tag for every RDS database and cluster in an account/region with a handful of
+ * paged calls to the resource groups tagging API, rather than asking RDS for the tags of each database one at a time.
+ */
+@Component
+public class RdsTagLookupService {
+
+    private final Logger logger = LoggerFactory.getLogger(RdsTagLookupService.class);
+
+    protected static final String NO_APPLICATION = "NONE";
+
+    private static final String[] RDS_RESOURCE_TYPES = { "rds:db", "rds:cluster" };
+    private static final int RESOURCES_PER_PAGE = 100;
+    private static final int ACCESS_DENIED_STATUS = 403;
+
+    private final AwsSessionService awsSessionService;
+    private final String appIdentityTag;
+
+    /*
+     * Account/Region -> (Database ARN -> Application), these get loaded alongside the database inventory so they only
+     * need to live as long as it does. Empty when the account's role isn't allowed to use the tagging API.
+     */
+    private final LoadingCache<AWSEnvironment, Optional<Map<String, String>>> applicationTagCache;
+
+    @Autowired
+    public RdsTagLookupService(AwsSessionService awsSessionService,
+                               GatekeeperProperties gatekeeperProperties){
+        this.awsSessionService = awsSessionService;
+        this.appIdentityTag = gatekeeperProperties.getAppIdentityTag();
+        this.applicationTagCache = CacheBuilder.newBuilder()
+                .maximumSize(100)
+                .concurrencyLevel(10)
+                .expireAfterWrite(gatekeeperProperties.getLookup().getInventoryRefresh(), TimeUnit.MILLISECONDS)
+                .build(new CacheLoader<AWSEnvironment, Optional<Map<String, String>>>() {
+                    @Override
+                    public Optional<Map<String, String>> load(AWSEnvironment environment) {
+                        return loadApplicationTags(environment);
+                    }
+                });
+    }
+
+    /**
+     * Gets the value of the application identity tag for the given database
+     *
+     * @param environment - the account/region the database lives in
+     * @param arn - the ARN of the database instance or cluster
+     * @return the application the database belongs to, NONE if the database has no application tag
+     */
+    public String getApplicationTag(AWSEnvironment environment, String arn) {
+        Optional<Map<String, String>> applicationTags = getCachedApplicationTags(environment);
+        Optional<String> application = applicationTags.isPresent()
+                ? Optional.ofNullable(applicationTags.get().get(arn))
+                : getApplicationTagFromRds(environment, arn);
+        return application.orElse(NO_APPLICATION);
+    }
+
+    /**
+     * Gets the application identity tag for all of the tagged databases in the account/region
+     *
+     * @param environment - the account/region to get the tags for
+     * @return Database ARN -> Application, empty if the account doesn't allow the tagging API to be used
+     */
+    public Map<String, String> getApplicationTags(AWSEnvironment environment) {
+        return getCachedApplicationTags(environment).orElse(Collections.emptyMap());
+    }
+
+    private Optional<Map<String, String>> getCachedApplicationTags(AWSEnvironment environment) {
+        try {
+            return applicationTagCache.getUnchecked(environment);
+        } catch (UncheckedExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw e;
+        }
+    }
+
+    // the old way of doing it, one call per database, for accounts whose role hasn't been granted tag:GetResources
+    private Optional<String> getApplicationTagFromRds(AWSEnvironment environment, String arn) {
+        return awsSessionService.getRDSSession(environment)
+                .listTagsForResource(new ListTagsForResourceRequest().withResourceName(arn))
+                .getTagList().stream()
+                .filter(tag -> tag.getKey().equalsIgnoreCase(appIdentityTag))
+                .findFirst()
+                .map(com.amazonaws.services.rds.model.Tag::getValue);
+    }
+
+    private Optional<Map<String, String>> loadApplicationTags(AWSEnvironment environment) {
+        logger.info("Loading " + appIdentityTag + " tags for RDS resources on " + environment.getAccount() + " (" + environment.getRegion() + ")");
+        long startTime = System.currentTimeMillis();
+        AWSResourceGroupsTaggingAPI taggingClient = awsSessionService.getTaggingSession(environment);
+        GetResourcesRequest request = new GetResourcesRequest()
+                .withResourceTypeFilters(RDS_RESOURCE_TYPES)
+                .withResourcesPerPage(RESOURCES_PER_PAGE);
+
+        Map<String, String> applicationTags = new HashMap<>();
+        String paginationToken = null;
+        // the tagging API hands back an empty token once the last page has been returned
+        do {
+            GetResourcesResult result;
+            try {
+                result = taggingClient.getResources(request.withPaginationToken(paginationToken));
+            } catch (AmazonServiceException e) {
+                if (!isAccessDenied(e)) {
+                    throw e;
+                }
+                logger.warn("Not allowed to call tag:GetResources on " + environment.getAccount() + " (" + environment.getRegion()
+                        + "), " + appIdentityTag + " tags will be looked up one database at a time", e);
+                return Optional.empty();
+            }
+            for (ResourceTagMapping mapping : result.getResourceTagMappingList()) {
+                mapping.getTags().stream()
+                        .filter(tag -> tag.getKey().equalsIgnoreCase(appIdentityTag))
+                        .findFirst()
+                        .map(Tag::getValue)
+                        .ifPresent(application -> applicationTags.put(mapping.getResourceARN(), application));
+            }
+            paginationToken = result.getPaginationToken();
+        } while (!Strings.isNullOrEmpty(paginationToken));
+
+        logger.info("Loaded " + applicationTags.size() + " " + appIdentityTag + " tags in " + ((double)(System.currentTimeMillis() - startTime) / 1000) + " Seconds");
+        return Optional.of(applicationTags);
+    }
+
+    private boolean isAccessDenied(AmazonServiceException e) {
+        return e.getStatusCode() == ACCESS_DENIED_STATUS
+                || "AccessDenied".equals(e.getErrorCode())
+                || "AccessDeniedException".equals(e.getErrorCode());
+    }
+}
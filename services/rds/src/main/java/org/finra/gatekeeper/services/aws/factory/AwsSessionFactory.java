@@ -1,11 +1,14 @@
 package org.finra.gatekeeper.services.aws.factory;
 
 import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.auth.BasicSessionCredentials;
 import com.amazonaws.services.ec2.AmazonEC2Client;
-import com.amazonaws.services.lambda.AWSLambda;
-import com.amazonaws.services.lambda.AWSLambdaClientBuilder;
+import com.amazonaws.services.lambda.AWSLambdaAsync;
+import com.amazonaws.services.lambda.AWSLambdaAsyncClientBuilder;
 import com.amazonaws.services.rds.AmazonRDSClient;
+import com.amazonaws.services.resourcegroupstaggingapi.AWSResourceGroupsTaggingAPI;
+import com.amazonaws.services.resourcegroupstaggingapi.AWSResourceGroupsTaggingAPIClientBuilder;
 import com.amazonaws.services.simpleemail.AmazonSimpleEmailService;
 import com.amazonaws.services.simpleemail.AmazonSimpleEmailServiceClientBuilder;
 import com.amazonaws.services.sns.AmazonSNS;
@@ -35,13 +38,22 @@ public class AwsSessionFactory {
         return new AmazonEC2Client(basicSessionCredentials, clientConfiguration);
     }
 
+    public AWSResourceGroupsTaggingAPI createTaggingSession(BasicSessionCredentials basicSessionCredentials, String region){
+        return AWSResourceGroupsTaggingAPIClientBuilder
+                .standard()
+                .withCredentials(new AWSStaticCredentialsProvider(basicSessionCredentials))
+                .withClientConfiguration(clientConfiguration)
+                .withRegion(region)
+                .build();
+    }
+
     public AmazonSNS createSNSSession(){
         return AmazonSNSClientBuilder
                 .standard()
                 .build();
     }
-    public AWSLambda createLambdaSession(String region){
-        return AWSLambdaClientBuilder
+    public AWSLambdaAsync createLambdaSession(String region){
+        return AWSLambdaAsyncClientBuilder
                 .standard().withRegion(region)
                 .build();
     }
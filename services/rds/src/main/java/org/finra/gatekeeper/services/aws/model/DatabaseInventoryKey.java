@@ -0,0 +1,64 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.services.aws.model;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+
+/**
+ * Simple POJO used to key the cached database inventory for an account/region and type of database.
+ */
+public class DatabaseInventoryKey {
+    private AWSEnvironment environment;
+    private DatabaseType databaseType;
+
+    public DatabaseInventoryKey(AWSEnvironment environment, DatabaseType databaseType){
+        this.environment = environment;
+        this.databaseType = databaseType;
+    }
+
+    public AWSEnvironment getEnvironment() {
+        return environment;
+    }
+
+    public DatabaseType getDatabaseType() {
+        return databaseType;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        DatabaseInventoryKey that = (DatabaseInventoryKey) o;
+        return Objects.equal(environment, that.environment) &&
+                databaseType == that.databaseType;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(environment, databaseType);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("environment", environment)
+                .add("databaseType", databaseType)
+                .toString();
+    }
+}
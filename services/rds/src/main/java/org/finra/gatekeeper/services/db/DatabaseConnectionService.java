@@ -23,6 +23,7 @@ import com.amazonaws.services.rds.model.Endpoint;
 import org.finra.gatekeeper.common.services.account.AccountInformationService;
 import org.finra.gatekeeper.common.services.account.model.Account;
 import org.finra.gatekeeper.exception.GatekeeperException;
+import org.finra.gatekeeper.rds.interfaces.DBConnection;
 import org.finra.gatekeeper.rds.model.*;
 import org.finra.gatekeeper.services.accessrequest.model.AWSRdsDatabase;
 import org.finra.gatekeeper.services.accessrequest.model.User;
@@ -50,11 +51,14 @@ public class DatabaseConnectionService {
 
     private AccountInformationService accountInformationService;
     private DatabaseConnectionFactory databaseConnectionFactory;
+    private DatabaseProbeCache databaseProbeCache;
 
     @Autowired
-    public DatabaseConnectionService(DatabaseConnectionFactory databaseConnectionFactory, AccountInformationService accountInformationService){
+    public DatabaseConnectionService(DatabaseConnectionFactory databaseConnectionFactory, AccountInformationService accountInformationService,
+                                     DatabaseProbeCache databaseProbeCache){
         this.databaseConnectionFactory = databaseConnectionFactory;
         this.accountInformationService = accountInformationService;
+        this.databaseProbeCache = databaseProbeCache;
     }
 
     public Boolean grantAccess(AWSRdsDatabase db, AWSEnvironment awsEnvironment, String user, RoleType roleType, String password, Integer timeDays) throws GKUnsupportedDBException{
@@ -81,6 +85,34 @@ public class DatabaseConnectionService {
         return status;
     }
 
+    /**
+     * Grants several users access to a database in one go, the connection implementation provisions them over a single connection
+     * @param db - the database to grant access to
+     * @param grants - the user / role pairs to provision along with their passwords
+     * @param timeDays - how long the access is for
+     * @return a Map of database user (user with role suffix) to whether or not that user was provisioned
+     */
+    public Map<String, Boolean> grantAccessBatch(AWSRdsDatabase db, AWSEnvironment awsEnvironment, List<RdsUserGrant> grants, Integer timeDays) throws GKUnsupportedDBException{
+        Account account = accountInformationService.getAccountByAlias(awsEnvironment.getAccount());
+        Map<String, Boolean> outcomes = new LinkedHashMap<>();
+        grants.forEach(grant -> outcomes.put(grant.getDbUser(), false));
+        logger.info("Granting access to " + db + " for users " + grants);
+        try{
+            outcomes.putAll(databaseConnectionFactory.getConnection(db.getEngine()).grantAccessBatch(
+                    new RdsGrantAccessBatchQuery(account.getAlias(), account.getAccountId(), awsEnvironment.getRegion(), account.getSdlc(),
+                            getAddress(db.getEndpoint(), db.getDbName()), db.getName(), db.getEngine())
+                    .withGrants(grants)
+                    .withTime(timeDays)));
+            logger.info("Users created on " + db.getName() + "(" + db.getInstanceId() + "): " + outcomes);
+        }catch(GKUnsupportedDBException e){
+            logger.info("Skipping access for " + db.getName() + " as Engine " + db.getEngine() + " is not supported");
+        }catch(Exception e){
+            logger.error("Failed to create users on " + db.getName() + "(" + db.getInstanceId() + ")", e);
+        }
+
+        return outcomes;
+    }
+
     public Boolean revokeAccess(AWSRdsDatabase db, AWSEnvironment awsEnvironment, RoleType roleType, String user) throws GKUnsupportedDBException{
         Account account = accountInformationService.getAccountByAlias(awsEnvironment.getAccount());
         //initialize a map that will show the status of dbs in the request
@@ -103,6 +135,32 @@ public class DatabaseConnectionService {
         return status;
     }
 
+    /**
+     * Revokes several users from a database in one go, the connection implementation removes them over a single connection
+     * @param db - the database to revoke access from
+     * @param users - the database users to remove (the user id with the role suffix)
+     * @return a Map of database user to whether or not that user was removed
+     */
+    public Map<String, Boolean> revokeAccessBatch(AWSRdsDatabase db, AWSEnvironment awsEnvironment, List<String> users) throws GKUnsupportedDBException{
+        Account account = accountInformationService.getAccountByAlias(awsEnvironment.getAccount());
+        Map<String, Boolean> outcomes = new LinkedHashMap<>();
+        users.forEach(user -> outcomes.put(user, false));
+        logger.info("Revoking access for " + users + " on " + db.getName() + "(" + db.getEndpoint() + ")");
+        try{
+            outcomes.putAll(databaseConnectionFactory.getConnection(db.getEngine())
+                    .revokeAccessBatch(new RdsRevokeAccessBatchQuery(account.getAlias(), account.getAccountId(), awsEnvironment.getRegion(), awsEnvironment.getSdlc(),
+                            getAddress(db.getEndpoint(), db.getDbName()), db.getName(), db.getEngine())
+                            .withUsers(users)));
+            logger.info("Users removed from " + db.getName() + "(" + db.getInstanceId() + "): " + outcomes);
+        }catch(GKUnsupportedDBException e){
+            logger.info("Skipping access for " + db.getName() + " as Engine " + db.getEngine() + " is not supported");
+        }catch(Exception e){
+            logger.error("Failed to remove users from " + db.getName() + "(" + db.getInstanceId() + ")", e);
+        }
+
+        return outcomes;
+    }
+
     /**
      * Revokes a list of users from a given database
      * @param db - the database to revoke access from
@@ -138,7 +196,7 @@ public class DatabaseConnectionService {
     //UI will usually call this one
     public Map<RoleType, List<String>> getAvailableSchemasForDb(GatekeeperRDSInstance database, AWSEnvironment awsEnvironment) throws Exception {
         Account account = accountInformationService.getAccountByAlias(awsEnvironment.getAccount());
-        return databaseConnectionFactory.getConnection(database.getEngine()).getAvailableTables(
+        return getAvailableSchemas(database.getEngine(),
                 new RdsQuery()
                     .withAccount(account.getAlias())
                     .withAccountId(account.getAccountId())
@@ -152,7 +210,7 @@ public class DatabaseConnectionService {
     //This is usually called through the Activiti workflow
     public Map<RoleType, List<String>> getAvailableSchemasForDb(AWSRdsDatabase database, AWSEnvironment awsEnvironment) throws Exception {
         Account account = accountInformationService.getAccountByAlias(awsEnvironment.getAccount());
-        return databaseConnectionFactory.getConnection(database.getEngine()).getAvailableTables(
+        return getAvailableSchemas(database.getEngine(),
                 new RdsQuery()
                         .withAccount(account.getAlias())
                         .withAccountId(account.getAccountId())
@@ -163,33 +221,52 @@ public class DatabaseConnectionService {
                         .withDbEngine(database.getEngine()));
     }
 
+    /*
+     * The UI and the grant both ask for the same database's schemas, so they come out of the cached schema catalog. When
+     * the schemas can't be looked up every role gets a placeholder rather than failing the caller, that isn't cached so
+     * the next caller tries again.
+     */
+    private Map<RoleType, List<String>> getAvailableSchemas(String engine, RdsQuery rdsQuery) throws Exception {
+        DBConnection connection = databaseConnectionFactory.getConnection(engine);
+        try {
+            return databaseProbeCache.getSchemas(engine, rdsQuery.getAddress(), () -> connection.getAvailableTables(rdsQuery));
+        } catch (Exception e) {
+            logger.error("Could not retrieve available schemas for database " + rdsQuery.getAddress(), e);
+            Map<RoleType, List<String>> unavailable = new EnumMap<>(RoleType.class);
+            for(RoleType roleType : RoleType.values()){
+                unavailable.put(roleType, Collections.singletonList("Unable to get available schemas for role " + roleType.getDbRole()));
+            }
+            return unavailable;
+        }
+    }
+
     public String checkDb(DBInstance db, AWSEnvironment awsEnvironment) throws GKUnsupportedDBException{
         Account account = accountInformationService.getAccountByAlias(awsEnvironment.getAccount());
-        List<String> issues = databaseConnectionFactory.getConnection(db.getEngine()).checkDb(
-                new RdsQuery()
-                        .withAccount(account.getAlias())
-                        .withAccountId(account.getAccountId())
-                        .withRegion(awsEnvironment.getRegion())
-                        .withSdlc(awsEnvironment.getSdlc())
-                        .withAddress(getAddress(db.getEndpoint(), db.getDBName()))
-                        .withDbInstanceName(db.getDBInstanceIdentifier())
-                        .withDbEngine(db.getEngine())
-        );
+        DBConnection connection = databaseConnectionFactory.getConnection(db.getEngine());
+        RdsQuery rdsQuery = new RdsQuery()
+                .withAccount(account.getAlias())
+                .withAccountId(account.getAccountId())
+                .withRegion(awsEnvironment.getRegion())
+                .withSdlc(awsEnvironment.getSdlc())
+                .withAddress(getAddress(db.getEndpoint(), db.getDBName()))
+                .withDbInstanceName(db.getDBInstanceIdentifier())
+                .withDbEngine(db.getEngine());
+        List<String> issues = databaseProbeCache.getIssues(db.getEngine(), rdsQuery.getAddress(), () -> connection.checkDb(rdsQuery));
         return issues.stream().collect(Collectors.joining(","));
     }
 
     public String checkDb(DBCluster db, AWSEnvironment awsEnvironment) throws GKUnsupportedDBException{
         Account account = accountInformationService.getAccountByAlias(awsEnvironment.getAccount());
-        List<String> issues = databaseConnectionFactory.getConnection(db.getEngine()).checkDb(
-                new RdsQuery()
-                        .withAccount(account.getAlias())
-                        .withAccountId(account.getAccountId())
-                        .withRegion(awsEnvironment.getRegion())
-                        .withSdlc(awsEnvironment.getSdlc())
-                        .withAddress(getAddress(String.format("%s:%s", db.getEndpoint(), db.getPort()), db.getDatabaseName()))
-                        .withDbInstanceName(db.getDBClusterIdentifier())
-                        .withDbEngine(db.getEngine())
-        );
+        DBConnection connection = databaseConnectionFactory.getConnection(db.getEngine());
+        RdsQuery rdsQuery = new RdsQuery()
+                .withAccount(account.getAlias())
+                .withAccountId(account.getAccountId())
+                .withRegion(awsEnvironment.getRegion())
+                .withSdlc(awsEnvironment.getSdlc())
+                .withAddress(getAddress(String.format("%s:%s", db.getEndpoint(), db.getPort()), db.getDatabaseName()))
+                .withDbInstanceName(db.getDBClusterIdentifier())
+                .withDbEngine(db.getEngine());
+        List<String> issues = databaseProbeCache.getIssues(db.getEngine(), rdsQuery.getAddress(), () -> connection.checkDb(rdsQuery));
         return issues.stream().collect(Collectors.joining(","));
     }
 
@@ -210,26 +287,39 @@ public class DatabaseConnectionService {
 
     public List<String> getAvailableRolesForDb(DBInstance db, AWSEnvironment awsEnvironment) throws Exception {
         Account account = accountInformationService.getAccountByAlias(awsEnvironment.getAccount());
-        return databaseConnectionFactory.getConnection(db.getEngine()).getAvailableRoles( new RdsQuery()
+        DBConnection connection = databaseConnectionFactory.getConnection(db.getEngine());
+        RdsQuery rdsQuery = new RdsQuery()
                 .withAccount(account.getAlias())
                 .withAccountId(account.getAccountId())
                 .withRegion(awsEnvironment.getRegion())
                 .withSdlc(awsEnvironment.getSdlc())
                 .withAddress(getAddress(db.getEndpoint(), db.getDBName()))
                 .withDbInstanceName(db.getDBInstanceIdentifier())
-                .withDbEngine(db.getEngine()));
+                .withDbEngine(db.getEngine());
+        return databaseProbeCache.getRoles(db.getEngine(), rdsQuery.getAddress(), () -> connection.getAvailableRoles(rdsQuery));
     }
 
     public List<String> getAvailableRolesForDb(DBCluster db, AWSEnvironment awsEnvironment) throws Exception {
         Account account = accountInformationService.getAccountByAlias(awsEnvironment.getAccount());
-        return databaseConnectionFactory.getConnection(db.getEngine()).getAvailableRoles( new RdsQuery()
+        DBConnection connection = databaseConnectionFactory.getConnection(db.getEngine());
+        RdsQuery rdsQuery = new RdsQuery()
                 .withAccount(account.getAlias())
                 .withAccountId(account.getAccountId())
                 .withRegion(awsEnvironment.getRegion())
                 .withSdlc(awsEnvironment.getSdlc())
                 .withAddress(getAddress(String.format("%s:%s", db.getEndpoint(), db.getPort()), db.getDatabaseName()))
                 .withDbInstanceName(db.getDBClusterIdentifier())
-                .withDbEngine(db.getEngine()));
+                .withDbEngine(db.getEngine());
+        return databaseProbeCache.getRoles(db.getEngine(), rdsQuery.getAddress(), () -> connection.getAvailableRoles(rdsQuery));
+    }
+
+    /**
+     * Forgets the remembered checkDb and role lookups for a database, so the next lookup goes to the database again
+     * @param endpoint - the endpoint (host:port) of the database, or null for every database
+     */
+    @PreAuthorize("@gatekeeperRoleService.isApprover()")
+    public void invalidateProbeResults(String endpoint) {
+        databaseProbeCache.invalidate(endpoint);
     }
 
     /**
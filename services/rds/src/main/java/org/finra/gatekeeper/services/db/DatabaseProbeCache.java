@@ -0,0 +1,238 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.services.db;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.finra.gatekeeper.configuration.GatekeeperProperties;
+import org.finra.gatekeeper.exception.GatekeeperException;
+import org.finra.gatekeeper.rds.exception.GKUnsupportedDBException;
+import org.finra.gatekeeper.rds.model.RoleType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the outcome of checking a database (checkDb) and looking up its gatekeeper roles for a short while, these
+ * only change when a DBA reconfigures the gatekeeper user so there's no need to connect to the database on every search.
+ *
+ * Databases that had issues or could not be reached are remembered for a shorter time than healthy ones so that
+ * fixes show up quickly, approvers can also clear out what's remembered for a database once it's been fixed.
+ *
+ * The schemas / tables each role has on a database (the schema catalog) are remembered here as well, that lookup is
+ * made by both the UI and every grant so only one caller loads it at a time and everyone else waiting on it shares
+ * the result.
+ */
+@Component
+public class DatabaseProbeCache {
+
+    private final Logger logger = LoggerFactory.getLogger(DatabaseProbeCache.class);
+
+    private final Cache<ProbeKey, List<String>> checkResults;
+    private final Cache<ProbeKey, List<String>> failedCheckResults;
+    private final Cache<ProbeKey, List<String>> roleResults;
+    private final Cache<ProbeKey, Exception> failedRoleResults;
+    private final Cache<ProbeKey, Map<RoleType, List<String>>> schemaCatalogs;
+    private final List<Cache<ProbeKey, ?>> allResults;
+
+    @Autowired
+    public DatabaseProbeCache(GatekeeperProperties gatekeeperProperties){
+        GatekeeperProperties.GatekeeperLookupProperties lookup = gatekeeperProperties.getLookup();
+        this.checkResults = buildCache(lookup.getProbeResultTtl());
+        this.failedCheckResults = buildCache(lookup.getProbeFailureTtl());
+        this.roleResults = buildCache(lookup.getProbeResultTtl());
+        this.failedRoleResults = buildCache(lookup.getProbeFailureTtl());
+        this.schemaCatalogs = buildCache(lookup.getSchemaCatalogTtl());
+        this.allResults = Arrays.asList(checkResults, failedCheckResults, roleResults, failedRoleResults, schemaCatalogs);
+    }
+
+    /**
+     * Gets the issues found the last time the database was checked, checks the database if there's nothing remembered
+     *
+     * @param engine - the engine of the database
+     * @param address - the address of the database
+     * @param check - checks the database, returning any issues that were found
+     * @return the issues with the database, empty if there were none
+     * @throws GKUnsupportedDBException - if the database engine isn't supported
+     */
+    public List<String> getIssues(String engine, String address, DatabaseCheck check) throws GKUnsupportedDBException {
+        ProbeKey key = new ProbeKey(engine, address);
+        List<String> issues = checkResults.getIfPresent(key);
+        if(issues == null){
+            issues = failedCheckResults.getIfPresent(key);
+        }
+        if(issues != null){
+            return issues;
+        }
+
+        issues = check.run();
+        if(issues.isEmpty()){
+            checkResults.put(key, issues);
+        }else{
+            failedCheckResults.put(key, issues);
+        }
+        return issues;
+    }
+
+    /**
+     * Gets the gatekeeper roles found the last time the database was looked at, looks them up if there's nothing remembered
+     *
+     * @param engine - the engine of the database
+     * @param address - the address of the database
+     * @param lookup - looks up the roles on the database
+     * @return the roles on the database
+     * @throws Exception - the failure from looking up the roles, a remembered failure comes back as the cause of a GatekeeperException
+     */
+    public List<String> getRoles(String engine, String address, Callable<List<String>> lookup) throws Exception {
+        ProbeKey key = new ProbeKey(engine, address);
+        List<String> roles = roleResults.getIfPresent(key);
+        if(roles != null){
+            // callers sort the roles they get back, so hand out a copy
+            return new ArrayList<>(roles);
+        }
+        Exception failure = failedRoleResults.getIfPresent(key);
+        if(failure != null){
+            // the remembered failure is shared, every caller gets their own exception (and stack trace) around it
+            throw new GatekeeperException(failure.getMessage(), failure);
+        }
+
+        try {
+            roles = lookup.call();
+        } catch (Exception e) {
+            failedRoleResults.put(key, e);
+            throw e;
+        }
+        roleResults.put(key, new ArrayList<>(roles));
+        return roles;
+    }
+
+    /**
+     * Gets the schemas / tables available to each role on the database, looks them up if there's nothing remembered.
+     * Concurrent callers for the same database wait on a single lookup, a lookup that fails isn't remembered.
+     *
+     * @param engine - the engine of the database
+     * @param address - the address of the database
+     * @param lookup - looks up the schemas / tables for every role on the database
+     * @return the schemas / tables for each role
+     * @throws Exception - the failure from looking up the schemas
+     */
+    public Map<RoleType, List<String>> getSchemas(String engine, String address, Callable<Map<RoleType, List<String>>> lookup) throws Exception {
+        try {
+            return schemaCatalogs.get(new ProbeKey(engine, address), () -> {
+                // everyone shares the same catalog, so don't let anyone change it
+                Map<RoleType, List<String>> catalog = new EnumMap<>(RoleType.class);
+                lookup.call().forEach((role, schemas) -> catalog.put(role, Collections.unmodifiableList(new ArrayList<>(schemas))));
+                return Collections.unmodifiableMap(catalog);
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwables.throwIfInstanceOf(e.getCause(), Exception.class);
+            throw e;
+        }
+    }
+
+    /**
+     * Forgets what's been remembered about the databases at the given endpoint
+     *
+     * @param endpoint - the endpoint (host:port) of the database, or null to forget about every database
+     */
+    public void invalidate(String endpoint) {
+        logger.info("Clearing remembered database checks for " + (endpoint != null ? endpoint : "all databases"));
+        for(Cache<ProbeKey, ?> cache : allResults) {
+            if(endpoint == null){
+                cache.invalidateAll();
+            }else{
+                cache.asMap().keySet().removeIf(key -> endpoint.equals(key.getEndpoint()));
+            }
+        }
+    }
+
+    private <V> Cache<ProbeKey, V> buildCache(Integer ttl) {
+        return CacheBuilder.newBuilder()
+                .maximumSize(5000)
+                .concurrencyLevel(10)
+                .expireAfterWrite(ttl, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    @FunctionalInterface
+    public interface DatabaseCheck {
+        List<String> run() throws GKUnsupportedDBException;
+    }
+
+    public static class ProbeKey {
+        private final String engine;
+        private final String address;
+
+        public ProbeKey(String engine, String address) {
+            this.engine = engine;
+            this.address = address;
+        }
+
+        public String getEngine() {
+            return engine;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        /**
+         * @return the host:port of the database, without the database name the address may end with
+         */
+        public String getEndpoint() {
+            return address != null ? address.split("/")[0] : null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            ProbeKey probeKey = (ProbeKey) o;
+            return Objects.equal(engine, probeKey.engine) &&
+                    Objects.equal(address, probeKey.address);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(engine, address);
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("engine", engine)
+                    .add("address", address)
+                    .toString();
+        }
+    }
+}
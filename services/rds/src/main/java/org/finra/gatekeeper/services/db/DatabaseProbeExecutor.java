@@ -0,0 +1,101 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.services.db;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.finra.gatekeeper.configuration.GatekeeperProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Runs the per-database checks done during a search on a bounded pool of threads, so the time a search takes
+ * no longer grows with every database in the account and a single unreachable database can't hold up the rest.
+ */
+@Component
+public class DatabaseProbeExecutor implements DisposableBean {
+
+    private final Logger logger = LoggerFactory.getLogger(DatabaseProbeExecutor.class);
+
+    private final ExecutorService executor;
+    private final Integer probeTimeout;
+
+    @Autowired
+    public DatabaseProbeExecutor(GatekeeperProperties gatekeeperProperties){
+        GatekeeperProperties.GatekeeperLookupProperties lookup = gatekeeperProperties.getLookup();
+        this.probeTimeout = lookup.getProbeTimeout();
+        this.executor = Executors.newFixedThreadPool(lookup.getProbeThreads(), new ThreadFactoryBuilder()
+                .setNameFormat("gk-db-probe-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    /**
+     * Probes each of the items in parallel, every probe has to finish within the probe timeout of the call being made
+     *
+     * @param items - the items to probe
+     * @param probe - the work to do for each item
+     * @param onFailure - what to return for an item whose probe failed or did not finish in time (given a TimeoutException)
+     * @param order - how the results should be sorted
+     * @return the result of each probe, sorted by the given order
+     */
+    public <T, R> List<R> probeAll(List<T> items, Function<T, R> probe, BiFunction<T, Throwable, R> onFailure, Comparator<? super R> order){
+        // one deadline for the whole search, probes still queued up behind others when it passes are given up on as well
+        long deadline = System.currentTimeMillis() + probeTimeout;
+        List<Future<R>> futures = new ArrayList<>(items.size());
+        for(T item : items){
+            futures.add(executor.submit(() -> probe.apply(item)));
+        }
+
+        List<R> results = new ArrayList<>(items.size());
+        for(int i = 0; i < items.size(); i++){
+            Future<R> future = futures.get(i);
+            try {
+                results.add(future.get(Math.max(0L, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS));
+            } catch (TimeoutException e) {
+                logger.error("Gave up waiting on " + items.get(i) + " after " + probeTimeout + " ms");
+                future.cancel(true);
+                results.add(onFailure.apply(items.get(i), e));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(remaining -> remaining.cancel(true));
+                throw new IllegalStateException("Interrupted while waiting on database checks", e);
+            } catch (ExecutionException e) {
+                // one database failing to be checked shouldn't fail the whole search
+                logger.error("Failed to check " + items.get(i), e.getCause());
+                results.add(onFailure.apply(items.get(i), e.getCause()));
+            }
+        }
+        results.sort(order);
+        return results;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -20,7 +20,6 @@ package org.finra.gatekeeper.services.db.connections;
 import com.mongodb.BasicDBObject;
 import com.mongodb.MongoException;
 import com.mongodb.client.MongoClient;
-import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoDatabase;
 import org.bson.Document;
 import org.finra.gatekeeper.configuration.GatekeeperProperties;
@@ -28,6 +27,7 @@ import org.finra.gatekeeper.rds.exception.GKUnsupportedDBException;
 import org.finra.gatekeeper.rds.interfaces.DBConnection;
 import org.finra.gatekeeper.rds.interfaces.GKUserCredentialsProvider;
 import org.finra.gatekeeper.rds.model.*;
+import org.finra.gatekeeper.services.db.pool.DocumentDBClientRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -46,24 +46,16 @@ public class DocumentDBConnection implements DBConnection {
 
     private final Logger logger = LoggerFactory.getLogger(DocumentDBConnection.class);
     private final GKUserCredentialsProvider gkUserCredentialsProvider;
-
+    private final DocumentDBClientRegistry documentDBClientRegistry;
     private final String gkUserName;
-    private final Boolean ssl;
-    private final String replicaSet;
-    private final String readPreference;
-    private final Boolean retryWrites;
 
     @Autowired
     public DocumentDBConnection(GatekeeperProperties gatekeeperProperties,
-                                @Qualifier("credentialsProvider") GKUserCredentialsProvider gkUserCredentialsProvider){
+                                @Qualifier("credentialsProvider") GKUserCredentialsProvider gkUserCredentialsProvider,
+                                DocumentDBClientRegistry documentDBClientRegistry){
         this.gkUserCredentialsProvider = gkUserCredentialsProvider;
-        GatekeeperProperties.GatekeeperDbProperties db = gatekeeperProperties.getDb();
-        GatekeeperProperties.GatekeeperDbProperties.DocumentDbProperties documentdb = db.getDocumentdb();
-        this.gkUserName = db.getGkUser();
-        this.ssl = documentdb.getSsl();
-        this.replicaSet = documentdb.getReplicaSet();
-        this.readPreference = documentdb.getReadPreference();
-        this.retryWrites = documentdb.getRetryWrites();
+        this.documentDBClientRegistry = documentDBClientRegistry;
+        this.gkUserName = gatekeeperProperties.getDb().getGkUser();
     }
 
     public boolean grantAccess(RdsGrantAccessQuery rdsGrantAccessQuery) throws MongoException {
@@ -71,10 +63,9 @@ public class DocumentDBConnection implements DBConnection {
         String user = rdsGrantAccessQuery.getUser();
         RoleType role = rdsGrantAccessQuery.getRole();
         String password = rdsGrantAccessQuery.getPassword();
-        MongoClient client = null;
 
         try{
-            client = connect(address, gkUserCredentialsProvider.getGatekeeperSecret(rdsGrantAccessQuery));
+            MongoClient client = connect(address, gkUserCredentialsProvider.getGatekeeperSecret(rdsGrantAccessQuery));
             String userWithSuffix = user + "_" + role.getShortSuffix();
             //Try to revoke the user
             boolean revoked = true;
@@ -99,11 +90,47 @@ public class DocumentDBConnection implements DBConnection {
         }catch(Exception ex){
             logger.error("An exception was thrown while trying to grant access to user " + user + "_" + role.getShortSuffix() + " on address " + address , ex);
             return false;
-        }finally{
-            if(client != null) {
-                client.close();
+        }
+    }
+
+    public Map<String, Boolean> grantAccessBatch(RdsGrantAccessBatchQuery rdsGrantAccessBatchQuery) throws MongoException {
+        String address = rdsGrantAccessBatchQuery.getAddress();
+        List<RdsUserGrant> grants = rdsGrantAccessBatchQuery.getGrants();
+        Map<String, Boolean> outcomes = new LinkedHashMap<>();
+
+        try{
+            MongoClient client = connect(address, gkUserCredentialsProvider.getGatekeeperSecret(rdsGrantAccessBatchQuery));
+            // one usersInfo lookup for the whole batch instead of one per user
+            Set<String> existingUsers = getUserNames(client);
+            for(RdsUserGrant grant : grants){
+                String userWithSuffix = grant.getDbUser();
+                try {
+                    boolean revoked = true;
+                    if(existingUsers.contains(userWithSuffix)) {
+                        logger.info("User " + userWithSuffix + " already exists, try to remove the user.");
+                        try {
+                            revoked = revokeUser(client, userWithSuffix);
+                        } catch (Exception ex) {
+                            logger.error("Could not remove the existing user from the database. Falling back by trying to rotate the existing user's password", ex);
+                            revoked = false;
+                        }
+                    }
+                    if(revoked) {
+                        createUser(client, address, userWithSuffix, grant.getPassword(), grant.getRole());
+                    }else{
+                        updateUser(client, address, userWithSuffix, grant.getPassword(), grant.getRole());
+                    }
+                    outcomes.put(userWithSuffix, true);
+                }catch(Exception ex){
+                    logger.error("An exception was thrown while trying to grant access to user " + userWithSuffix + " on address " + address , ex);
+                    outcomes.put(userWithSuffix, false);
+                }
             }
+        }catch(Exception ex){
+            logger.error("An exception was thrown while trying to grant access to users " + grants + " on address " + address , ex);
+            grants.forEach(grant -> outcomes.putIfAbsent(grant.getDbUser(), false));
         }
+        return outcomes;
     }
 
     public boolean revokeAccess(RdsRevokeAccessQuery rdsRevokeAccessQuery) throws MongoException{
@@ -111,9 +138,8 @@ public class DocumentDBConnection implements DBConnection {
         String user = rdsRevokeAccessQuery.getUser();
         RoleType role = rdsRevokeAccessQuery.getRole();
 
-        MongoClient client = null;
         try {
-            client = connect(address, gkUserCredentialsProvider.getGatekeeperSecret(rdsRevokeAccessQuery));
+            MongoClient client = connect(address, gkUserCredentialsProvider.getGatekeeperSecret(rdsRevokeAccessQuery));
             logger.info("Removing " + user + " from " + address + " if they exist.");
             if(role != null) {
                 //if roles is provided revoke the user with the suffix (from activiti)
@@ -128,41 +154,55 @@ public class DocumentDBConnection implements DBConnection {
             String username = role == null ? user : user + "_" + role.getShortSuffix();
             logger.error("An exception was thrown while trying to revoke user " + username + " from address " + address, ex);
             return false;
-        } finally {
-            if(client != null) {
-                client.close();
+        }
+    }
+
+    public Map<String, Boolean> revokeAccessBatch(RdsRevokeAccessBatchQuery rdsRevokeAccessBatchQuery) throws MongoException{
+        String address = rdsRevokeAccessBatchQuery.getAddress();
+        List<String> users = rdsRevokeAccessBatchQuery.getUsers();
+        Map<String, Boolean> outcomes = new LinkedHashMap<>();
+
+        try {
+            MongoClient client = connect(address, gkUserCredentialsProvider.getGatekeeperSecret(rdsRevokeAccessBatchQuery));
+            logger.info("Removing " + users + " from " + address + " if they exist.");
+            // user management commands aren't transactional on DocumentDB, every user is dropped over the one client
+            // and then checked with a single usersInfo call
+            MongoDatabase adminDB = client.getDatabase("admin");
+            for(String user : users){
+                try {
+                    adminDB.runCommand(new BasicDBObject("dropUser", user));
+                }catch(MongoException ex){
+                    logger.info("Could not drop user " + user + " from address " + address + " (" + ex.getMessage() + ")");
+                }
             }
+            Set<String> remainingUsers = getUserNames(client);
+            users.forEach(user -> outcomes.put(user, !remainingUsers.contains(user)));
+        }catch(Exception ex){
+            logger.error("An exception was thrown while trying to revoke users " + users + " from address " + address, ex);
+            users.forEach(user -> outcomes.put(user, false));
         }
+        return outcomes;
     }
 
     public Map<RoleType, List<String>> getAvailableTables(RdsQuery rdsQuery) throws MongoException {
         String address = rdsQuery.getAddress();
         Map<RoleType, List<String>> results = new HashMap<>();
-        MongoClient client = null;
 
         logger.info("Getting available schema information for " + address);
-        try {
-            client = connect(address, gkUserCredentialsProvider.getGatekeeperSecret(rdsQuery));
-            ArrayList<Document> jsonRoles = (ArrayList<Document>) client.getDatabase("admin").runCommand(new Document("rolesInfo", 1)).get("roles");
-            Map<String, List<Document>> roles = new HashMap<>();
-            for (Document role : jsonRoles){
-                roles.put(role.get("role").toString(),(List) role.get("roles"));
-            }
-            for (RoleType roleType : RoleType.values()) {
-                List<String> schemas = new ArrayList<>();
-                for(Document role : roles.get(roleType.getDbRole())){
-                    schemas.add(role.get("db").toString());
-                }
-                results.put(roleType, !schemas.isEmpty() ? schemas : Collections.singletonList("No Schemas are available for role " + roleType.getDbRole() + " at this time."));
-            }
-            logger.info("Retrieved available schema information for database " + address);
-        }catch (Exception ex) {
-            logger.error("Could not retrieve available role information for database " + address, ex);
-        }finally{
-            if(client != null) {
-                client.close();
+        MongoClient client = connect(address, gkUserCredentialsProvider.getGatekeeperSecret(rdsQuery));
+        ArrayList<Document> jsonRoles = (ArrayList<Document>) client.getDatabase("admin").runCommand(new Document("rolesInfo", 1)).get("roles");
+        Map<String, List<Document>> roles = new HashMap<>();
+        for (Document role : jsonRoles){
+            roles.put(role.get("role").toString(),(List) role.get("roles"));
+        }
+        for (RoleType roleType : RoleType.values()) {
+            List<String> schemas = new ArrayList<>();
+            for(Document role : roles.getOrDefault(roleType.getDbRole(), Collections.emptyList())){
+                schemas.add(role.get("db").toString());
             }
+            results.put(roleType, !schemas.isEmpty() ? schemas : Collections.singletonList("No Schemas are available for role " + roleType.getDbRole() + " at this time."));
         }
+        logger.info("Retrieved available schema information for database " + address);
         return results;
     }
 
@@ -171,10 +211,9 @@ public class DocumentDBConnection implements DBConnection {
         List<String> issues = new ArrayList<>();
         List<String> gkRoles = new ArrayList<>();
         gkRoles.addAll(Arrays.asList("gk_datafix", "gk_readonly", "gk_dba"));
-        MongoClient client = null;
         try{
             logger.info("Checking the gatekeeper setup for " + address);
-            client = connect(address, gkUserCredentialsProvider.getGatekeeperSecret(rdsQuery));
+            MongoClient client = connect(address, gkUserCredentialsProvider.getGatekeeperSecret(rdsQuery));
             MongoDatabase adminDB = client.getDatabase("admin");
             Document getRolesCommand = adminDB.runCommand(new Document("rolesInfo", 1));
             ArrayList<Document> roles = (ArrayList<Document>) getRolesCommand.get("roles");
@@ -202,12 +241,13 @@ public class DocumentDBConnection implements DBConnection {
             if(!createRolePermCheckResult){
                 issues.add("gatekeeper user missing root role in admin db");
             }
-            client.close();
 
         } catch(MongoException ex){
             logger.error("Failed to connect to DB", ex);
             logger.error(ex.getMessage());
             logger.error(String.valueOf(ex.getMessage().contains("authenticating")));
+            // don't hang on to a client that can't reach the database, the next check will try again from scratch
+            documentDBClientRegistry.invalidate(address);
             if(ex.getMessage().contains("authenticating")) {
                 issues.add("Password authentication failed for gatekeeper user");
             }else{
@@ -233,11 +273,10 @@ public class DocumentDBConnection implements DBConnection {
 
     public List<DbUser> getUsers(RdsQuery rdsQuery) throws MongoException{
         String address = rdsQuery.getAddress();
-        MongoClient client = null;
         List<DbUser> results = new ArrayList<>();
         logger.info("Getting available schema information for " + address);
         try {
-            client = connect(address, gkUserCredentialsProvider.getGatekeeperSecret(rdsQuery));
+            MongoClient client = connect(address, gkUserCredentialsProvider.getGatekeeperSecret(rdsQuery));
             Document getUsersCommand = client.getDatabase("admin").runCommand(new Document("usersInfo", 1));
             ArrayList<Document> users = (ArrayList<Document>) getUsersCommand.get("users");
             for(Document user: users){
@@ -252,21 +291,16 @@ public class DocumentDBConnection implements DBConnection {
         } catch (Exception ex) {
             logger.error("Could not retrieve list of users for database " + address, ex);
             results = Collections.emptyList();
-        }finally{
-            if(client != null) {
-                client.close();
-            }
         }
         return results;
     }
 
     public List<String> getAvailableRoles(RdsQuery rdsQuery) throws MongoException{
         String address = rdsQuery.getAddress();
-        MongoClient client = null;
         List<String> results = new ArrayList<>();
         logger.info("Getting available roles for " + address);
         try {
-            client = connect(address, gkUserCredentialsProvider.getGatekeeperSecret(rdsQuery));
+            MongoClient client = connect(address, gkUserCredentialsProvider.getGatekeeperSecret(rdsQuery));
             Document getRolesCommand = client.getDatabase("admin").runCommand(new Document("rolesInfo", 1));
             ArrayList<Document> roles = (ArrayList<Document>) getRolesCommand.get("roles");
             for (Document role : roles){
@@ -276,19 +310,13 @@ public class DocumentDBConnection implements DBConnection {
         } catch (Exception ex) {
             logger.error("Could not retrieve list of roles for database " + address, ex);
             throw ex;
-        }finally{
-            if(client != null) {
-                client.close();
-            }
         }
         return results;
     }
 
     private MongoClient connect(String url, String gkUserPassword){
-        String connectionTemplate = "mongodb://%s:%s@%s?ssl=%s&replicaSet=%s&readPreference=%s&retryWrites=%s";
-        String connectionString = String.format(connectionTemplate, gkUserName, gkUserPassword, url, ssl, replicaSet, readPreference, retryWrites.toString());
-        MongoClient mongoClient = MongoClients.create(connectionString);
-        return mongoClient;
+        logger.info("Getting client for " + url);
+        return documentDBClientRegistry.borrow(url, gkUserPassword);
     }
 
     private void updateUser(MongoClient client, String address, String user, String password, RoleType role) throws MongoException{
@@ -324,6 +352,16 @@ public class DocumentDBConnection implements DBConnection {
         }
         return false;
     }
+    private Set<String> getUserNames(MongoClient client){
+        Document getUsersCommand = client.getDatabase("admin").runCommand(new Document("usersInfo", 1));
+        ArrayList<Document> users = (ArrayList<Document>) getUsersCommand.get("users");
+        Set<String> userNames = new HashSet<>();
+        for(Document userJSON: users){
+            userNames.add(userJSON.get("_id").toString());
+        }
+        return userNames;
+    }
+
     private boolean revokeUser(MongoClient client, String user){
         final BasicDBObject dropUserCommand = new BasicDBObject("dropUser", user);
         client.getDatabase("admin").runCommand(dropUserCommand);
@@ -20,6 +20,7 @@ package org.finra.gatekeeper.services.db.connections;
 import com.amazonaws.auth.profile.ProfileCredentialsProvider;
 import com.amazonaws.regions.Region;
 import com.amazonaws.regions.Regions;
+import com.amazonaws.handlers.AsyncHandler;
 import com.amazonaws.services.lambda.AWSLambda;
 import com.amazonaws.services.lambda.AWSLambdaAsyncClientBuilder;
 import com.amazonaws.services.lambda.AWSLambdaClientBuilder;
@@ -30,7 +31,12 @@ import com.amazonaws.services.lambda.model.ServiceException;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.dbcp.BasicDataSource;
 import org.finra.gatekeeper.configuration.GatekeeperProperties;
 import org.finra.gatekeeper.exception.GatekeeperException;
@@ -40,10 +46,12 @@ import org.finra.gatekeeper.rds.interfaces.GKUserCredentialsProvider;
 import org.finra.gatekeeper.rds.model.*;
 import org.finra.gatekeeper.services.aws.AwsSessionService;
 import org.finra.gatekeeper.services.db.connections.model.LambdaDTO;
+import org.finra.gatekeeper.services.db.connections.model.LambdaOperation;
 import org.finra.gatekeeper.services.db.connections.model.LambdaPayload;
 import org.finra.gatekeeper.services.db.connections.model.LambdaQuery;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.dao.DataAccessException;
@@ -53,17 +61,22 @@ import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.StatementCallback;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Interface for dealing with AWS Lambda.
  */
 @Component
-public class LambdaConnection  implements DBConnection{
+public class LambdaConnection  implements DBConnection, DisposableBean {
     private final Logger logger = LoggerFactory.getLogger(LambdaConnection.class);
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
@@ -71,21 +84,52 @@ public class LambdaConnection  implements DBConnection{
     private final GKUserCredentialsProvider gkUserCredentialsProvider;
     private final String gkUserName;
     private final Map<String, String> lambdaFunctions;
+    private final Integer batchWindow;
+    private final Integer maxBatchSize;
+    private final Integer maxConcurrentInvocations;
+    private final Integer batchTimeout;
+    private final ConcurrentMap<String, Semaphore> invocationPermits = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Queue<Runnable>> waitingInvocations = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService batchExecutor;
+    private final Map<String, PendingBatch> pendingBatches = new HashMap<>();
+    private final AtomicLong operationIds = new AtomicLong();
+
+    // regions whose lambda answered a batch with something other than the batch's results, their checks are invoked on their own until it's time to try batching again
+    private final Cache<String, Boolean> unbatchedRegions = CacheBuilder.newBuilder()
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .build();
 
     @Autowired
     public LambdaConnection(AwsSessionService awsSessionService,
                             GatekeeperProperties gatekeeperProperties,
                             @Qualifier("credentialsProvider") GKUserCredentialsProvider gkUserCredentialsProvider){
+        GatekeeperProperties.GatekeeperLambdaProperties lambda = gatekeeperProperties.getLambda();
         this.gkUserCredentialsProvider = gkUserCredentialsProvider;
         this.gkUserName = gatekeeperProperties.getDb().getGkUser();
-        this.lambdaFunctions = gatekeeperProperties.getLambda().getFunctions();
+        this.lambdaFunctions = lambda.getFunctions();
+        this.batchWindow = lambda.getBatchWindow();
+        this.maxBatchSize = lambda.getMaxBatchSize();
+        this.maxConcurrentInvocations = lambda.getMaxConcurrentInvocations();
+        this.batchTimeout = lambda.getBatchTimeout();
         this.awsSessionService = awsSessionService;
-
+        // one pool of batch threads shared by every region, sized off of how many regions have a lambda. The threads only
+        // gather up and hand off batches, they never wait on the lambda or on an invocation permit
+        this.batchExecutor = Executors.newScheduledThreadPool(lambdaFunctions != null ? Math.max(1, lambdaFunctions.size()) : 1,
+                new ThreadFactoryBuilder()
+                        .setNameFormat("gk-lambda-batch-%d")
+                        .setDaemon(true)
+                        .build());
     }
 
-    private Map invokeLambda(String uri, String method, String body, String region) {
+    /*
+     * Invokes the region's lambda without tying up the calling thread while it runs. Only so many invocations of a
+     * region's lambda are allowed to run at once so a wide search can't use up the account's lambda concurrency, past
+     * that the invocation is queued up and started once a running one finishes, nothing blocks waiting for a permit.
+     * The future holds the body of the lambda's response, or null if the lambda could not be invoked.
+     */
+    private CompletableFuture<JsonNode> invokeLambda(String uri, String method, String body, String region) {
         if(lambdaFunctions.get(region) == null){
-            return Collections.singletonMap("body", Arrays.asList("\"Error: No lambda for " + region + "\""));
+            return CompletableFuture.completedFuture(noLambda(region));
         }
 
         Map<String, String> headers = new HashMap<>();
@@ -95,43 +139,141 @@ public class LambdaConnection  implements DBConnection{
                 .setHttpMethod(method.toUpperCase())
                 .setBase64Encoded(false)
                 .setPath("/" + uri);
+        CompletableFuture<JsonNode> result = new CompletableFuture<>();
         try {
             InvokeRequest invokeRequest = new InvokeRequest().withFunctionName(lambdaFunctions.get(region)).withPayload(OBJECT_MAPPER.writeValueAsString(lambdaPayload));
-            AWSLambda awsLambda = awsSessionService.getAwsLambda(region);
-
-            InvokeResult invokeResult = awsLambda.invoke(invokeRequest);
-            String invokeResultString = new String( invokeResult.getPayload().array());
-            Map lambdaResult = OBJECT_MAPPER.readValue(invokeResultString, Map.class);
-            logger.info(lambdaResult.toString());
-            String statusCode = lambdaResult.get("statusCode").toString();
-            if(!statusCode.equals("200")){
-                throw new GatekeeperException("Unable to reach lambda, Status Code: " + statusCode);
-            }
-            return lambdaResult;
+            Semaphore permits = invocationPermits.computeIfAbsent(region, key -> new Semaphore(maxConcurrentInvocations));
+            Queue<Runnable> waiting = waitingInvocations.computeIfAbsent(region, key -> new ConcurrentLinkedQueue<>());
+            Runnable finished = () -> {
+                permits.release();
+                startWaitingInvocations(permits, waiting);
+            };
+            waiting.add(() -> {
+                try {
+                    awsSessionService.getAwsLambda(region).invokeAsync(invokeRequest, new AsyncHandler<InvokeRequest, InvokeResult>() {
+                        @Override
+                        public void onError(Exception exception) {
+                            finished.run();
+                            result.completeExceptionally(exception);
+                        }
+
+                        @Override
+                        public void onSuccess(InvokeRequest request, InvokeResult invokeResult) {
+                            finished.run();
+                            try {
+                                result.complete(readBody(invokeResult.getPayload()));
+                            } catch (Exception e) {
+                                result.completeExceptionally(e);
+                            }
+                        }
+                    });
+                } catch (Exception e) {
+                    finished.run();
+                    result.completeExceptionally(e);
+                }
+            });
+            startWaitingInvocations(permits, waiting);
         } catch (Exception e) {
+            result.completeExceptionally(e);
+        }
+
+        return result.exceptionally(e -> {
             if(e.toString().contains("Function not found")){
                 //Should Only be hit during the check db function
                 logger.info(lambdaFunctions.get(region) + " not found in " + region);
-                return Collections.singletonMap("body", Arrays.asList("\"Error: No lambda for " + region + "\""));
+                return noLambda(region);
             }
             logger.error(e.toString());
-            return Collections.singletonMap("body", "\"Error: " + e + "\"");
+            return null;
+        });
+    }
+
+    /*
+     * Starts queued invocations for as long as there are permits for them. This is called after queueing an invocation and
+     * after one finishes, so an invocation can't be left queued while a permit is free.
+     */
+    private void startWaitingInvocations(Semaphore permits, Queue<Runnable> waiting) {
+        while(!waiting.isEmpty() && permits.tryAcquire()){
+            Runnable invocation = waiting.poll();
+            if(invocation == null){
+                // someone else started it first
+                permits.release();
+            }else{
+                invocation.run();
+            }
         }
     }
 
+    /*
+     * The lambda answers like an API gateway proxy would, the response is read straight out of the payload buffer and the
+     * body, which is normally JSON written out as a string, is only parsed the once.
+     */
+    private JsonNode readBody(ByteBuffer payload) throws IOException, GatekeeperException {
+        JsonNode lambdaResult = OBJECT_MAPPER.readTree(new ByteBufferBackedInputStream(payload));
+        logger.info(lambdaResult.toString());
+        String statusCode = lambdaResult.path("statusCode").asText();
+        if(!statusCode.equals("200")){
+            throw new GatekeeperException("Unable to reach lambda, Status Code: " + statusCode);
+        }
+        JsonNode body = lambdaResult.path("body");
+        return body.isTextual() ? OBJECT_MAPPER.readTree(body.textValue()) : body;
+    }
+
+    private JsonNode noLambda(String region) {
+        return OBJECT_MAPPER.valueToTree(Collections.singletonList("Error: No lambda for " + region));
+    }
+
     public boolean grantAccess(RdsGrantAccessQuery rdsGrantAccessQuery) throws Exception{
         return invokeHelper(new LambdaQuery(rdsGrantAccessQuery), "grantAccess", "POST", new TypeReference<Boolean>(){});
     }
 
+    public Map<String, Boolean> grantAccessBatch(RdsGrantAccessBatchQuery rdsGrantAccessBatchQuery) throws Exception{
+        Map<String, Boolean> outcomes = invokeHelper(new LambdaQuery(rdsGrantAccessBatchQuery), "grantAccessBatch", "POST", new TypeReference<Map<String, Boolean>>(){});
+        if(outcomes != null){
+            return outcomes;
+        }
+
+        // a lambda that predates the batch call won't understand it, fall back to granting the users one at a time
+        logger.info("Batch grant was not handled by the lambda in " + rdsGrantAccessBatchQuery.getRegion() + ", granting users individually");
+        outcomes = new LinkedHashMap<>();
+        for(RdsUserGrant grant : rdsGrantAccessBatchQuery.getGrants()){
+            RdsGrantAccessQuery rdsGrantAccessQuery = new RdsGrantAccessQuery(rdsGrantAccessBatchQuery.getAccount(), rdsGrantAccessBatchQuery.getAccountId(),
+                    rdsGrantAccessBatchQuery.getRegion(), rdsGrantAccessBatchQuery.getSdlc(), rdsGrantAccessBatchQuery.getAddress(),
+                    rdsGrantAccessBatchQuery.getDbInstanceName(), rdsGrantAccessBatchQuery.getDbEngine(),
+                    grant.getUser(), grant.getPassword(), grant.getRole(), rdsGrantAccessBatchQuery.getTime());
+            outcomes.put(grant.getDbUser(), Boolean.TRUE.equals(invokeHelper(new LambdaQuery(rdsGrantAccessQuery), "grantAccess", "POST", new TypeReference<Boolean>(){})));
+        }
+        return outcomes;
+    }
+
     public boolean revokeAccess(RdsRevokeAccessQuery rdsRevokeAccessQuery) throws Exception{
         return invokeHelper(new LambdaQuery(rdsRevokeAccessQuery), "revokeAccess", "POST", new TypeReference<Boolean>(){});
     }
 
+    public Map<String, Boolean> revokeAccessBatch(RdsRevokeAccessBatchQuery rdsRevokeAccessBatchQuery) throws Exception{
+        Map<String, Boolean> outcomes = invokeHelper(new LambdaQuery(rdsRevokeAccessBatchQuery), "revokeAccessBatch", "POST", new TypeReference<Map<String, Boolean>>(){});
+        if(outcomes != null){
+            return outcomes;
+        }
+
+        // a lambda that predates the batch call won't understand it, fall back to revoking the users one at a time
+        logger.info("Batch revoke was not handled by the lambda in " + rdsRevokeAccessBatchQuery.getRegion() + ", revoking users individually");
+        outcomes = new LinkedHashMap<>();
+        for(String user : rdsRevokeAccessBatchQuery.getUsers()){
+            RdsRevokeAccessQuery rdsRevokeAccessQuery = new RdsRevokeAccessQuery(rdsRevokeAccessBatchQuery.getAccount(), rdsRevokeAccessBatchQuery.getAccountId(),
+                    rdsRevokeAccessBatchQuery.getRegion(), rdsRevokeAccessBatchQuery.getSdlc(), rdsRevokeAccessBatchQuery.getAddress(),
+                    rdsRevokeAccessBatchQuery.getDbInstanceName(), rdsRevokeAccessBatchQuery.getDbEngine())
+                    .withUser(user);
+            outcomes.put(user, Boolean.TRUE.equals(invokeHelper(new LambdaQuery(rdsRevokeAccessQuery), "revokeAccess", "POST", new TypeReference<Boolean>(){})));
+        }
+        return outcomes;
+    }
+
     public List<String> checkDb(RdsQuery rdsQuery) throws GKUnsupportedDBException{
         if(lambdaFunctions.get(rdsQuery.getRegion()) == null){
             return Arrays.asList("Error: No lambda for " + rdsQuery.getRegion());
         }
-        return invokeHelper(new LambdaQuery(rdsQuery), "checkDb", "POST", new TypeReference<List<String>>(){});
+        return invokeBatched(new LambdaQuery(rdsQuery), "checkDb", new TypeReference<List<String>>(){});
     }
 
     public List<DbUser> getUsers(RdsQuery rdsQuery) throws SQLException {
@@ -143,7 +285,7 @@ public class LambdaConnection  implements DBConnection{
     }
 
     public List<String> getAvailableRoles(RdsQuery rdsQuery) throws SQLException{
-        return invokeHelper(new LambdaQuery(rdsQuery), "getAvailableRoles", "POST", new TypeReference<List<String>>(){});
+        return invokeBatched(new LambdaQuery(rdsQuery), "getAvailableRoles", new TypeReference<List<String>>(){});
     }
 
     private String getGkUserName(String user, RoleType role){
@@ -151,22 +293,169 @@ public class LambdaConnection  implements DBConnection{
     }
 
     public Map<RoleType, List<String>> getAvailableTables(RdsQuery rdsQuery) throws SQLException{
-        return invokeHelper(new LambdaQuery(rdsQuery), "getAvailableSchemas", "POST", new TypeReference<Map<RoleType, List<String>>>(){});
+        return invokeBatched(new LambdaQuery(rdsQuery), "getAvailableSchemas", new TypeReference<Map<RoleType, List<String>>>(){});
     }
 
     private <T> T invokeHelper(LambdaQuery lambdaQuery, String uri, String method, TypeReference<T> clazz){
+        try {
+            return invokeAsync(lambdaQuery, uri, method, clazz).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.error("Failed to invoke " + uri + " for " + lambdaQuery.getAddress(), e.getCause());
+        }
+        return null;
+    }
+
+    /**
+     * Invokes the lambda for the given query without waiting on it
+     *
+     * @param lambdaQuery - the query to send to the lambda
+     * @param uri - the operation to run
+     * @param method - the http method for the operation
+     * @param clazz - the type the result is read into
+     * @return a future with the result, which will be null if the lambda could not be invoked or gave back something else
+     */
+    public <T> CompletableFuture<T> invokeAsync(LambdaQuery lambdaQuery, String uri, String method, TypeReference<T> clazz){
         LambdaDTO lambdaDTO = new LambdaDTO()
                 .withDbEngine(lambdaQuery.getDbEngine())
                 .withLambdaQuery(lambdaQuery);
         try {
             String body = OBJECT_MAPPER.writeValueAsString(lambdaDTO);
-            String lambdaJson = invokeLambda(uri, method, body, lambdaQuery.getRegion()).get("body").toString();
-            return OBJECT_MAPPER.readValue(lambdaJson, clazz);
-        } catch (JsonMappingException jsonMappingException) {
-            jsonMappingException.printStackTrace();
+            return invokeLambda(uri, method, body, lambdaQuery.getRegion())
+                    .thenApply(result -> readResult(result, clazz));
         } catch (JsonProcessingException jsonProcessingException) {
-            jsonProcessingException.printStackTrace();
+            logger.error("Could not write the lambda request for " + uri, jsonProcessingException);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private <T> T readResult(JsonNode result, TypeReference<T> clazz){
+        if(result == null){
+            return null;
+        }
+        try {
+            return OBJECT_MAPPER.convertValue(result, clazz);
+        } catch (IllegalArgumentException e) {
+            logger.error("Unexpected response from the lambda: " + result, e);
+            return null;
+        }
+    }
+
+    /*
+     * The database checks made during a search come in from many probe threads at once, rather than invoking the lambda
+     * for each of them they are collected per region for a short window and sent together as one batch. A lambda that
+     * doesn't understand the batch leaves the operations unanswered, those get invoked on their own like before and so
+     * does every check for that region for the next hour. A batch that couldn't be invoked at all just fails its checks.
+     */
+    private <T> T invokeBatched(LambdaQuery lambdaQuery, String uri, TypeReference<T> clazz){
+        if(unbatchedRegions.getIfPresent(lambdaQuery.getRegion()) != null){
+            return invokeHelper(lambdaQuery, uri, "POST", clazz);
+        }
+
+        LambdaOperation operation = new LambdaOperation()
+                .withId(String.valueOf(operationIds.incrementAndGet()))
+                .withOperation(uri)
+                .withDbEngine(lambdaQuery.getDbEngine())
+                .withLambdaQuery(lambdaQuery);
+        JsonNode result = null;
+        try {
+            result = submit(lambdaQuery.getRegion(), operation).get(batchTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (TimeoutException e) {
+            // the lambda is already slow to answer, don't pile another invocation on top of it
+            logger.error("Gave up waiting on batched " + uri + " for " + lambdaQuery.getAddress() + " after " + batchTimeout + " ms");
+            return null;
+        } catch (ExecutionException e) {
+            // the batch couldn't be invoked, invoking each of its checks on their own would only fail the same way
+            logger.error("Batched " + uri + " failed for " + lambdaQuery.getAddress(), e.getCause());
+            return null;
+        }
+        if(result == null){
+            logger.info("Batched " + uri + " was not handled by the lambda in " + lambdaQuery.getRegion() + ", invoking it on its own");
+            return invokeHelper(lambdaQuery, uri, "POST", clazz);
+        }
+        return readResult(result, clazz);
+    }
+
+    private CompletableFuture<JsonNode> submit(String region, LambdaOperation operation){
+        CompletableFuture<JsonNode> result = new CompletableFuture<>();
+        synchronized (pendingBatches){
+            PendingBatch batch = pendingBatches.get(region);
+            if(batch == null){
+                PendingBatch newBatch = new PendingBatch();
+                pendingBatches.put(region, newBatch);
+                batchExecutor.schedule(() -> send(region, newBatch), batchWindow, TimeUnit.MILLISECONDS);
+                batch = newBatch;
+            }
+            batch.add(operation, result);
+            if(batch.size() >= maxBatchSize){
+                // no need to wait out the window for a full batch
+                PendingBatch fullBatch = batch;
+                pendingBatches.remove(region);
+                batchExecutor.execute(() -> send(region, fullBatch));
+            }
+        }
+        return result;
+    }
+
+    /*
+     * The lambda answers a batch with an object of each operation's id to that operation's result
+     */
+    private void send(String region, PendingBatch batch){
+        synchronized (pendingBatches){
+            pendingBatches.remove(region, batch);
+        }
+        if(!batch.sent.compareAndSet(false, true)){
+            return;
+        }
+
+        logger.info("Sending " + batch.size() + " operations to the lambda in " + region + " as one batch");
+        CompletableFuture<JsonNode> responses;
+        try {
+            responses = invokeLambda("batch", "POST", OBJECT_MAPPER.writeValueAsString(new LambdaDTO().withOperations(batch.operations)), region);
+        } catch (JsonProcessingException e) {
+            logger.error("Could not write the batch of " + batch.size() + " operations for the lambda in " + region, e);
+            responses = CompletableFuture.completedFuture(null);
+        }
+        // the batch thread doesn't wait on the lambda, each caller is handed its result once the response comes back
+        responses.thenAccept(response -> {
+            if(response == null){
+                // the invocation failed, that says nothing about whether the lambda understands batches so only this
+                // batch's callers are failed
+                IllegalStateException failure = new IllegalStateException("Could not invoke the lambda in " + region + " for a batch of " + batch.size() + " operations");
+                batch.results.values().forEach(result -> result.completeExceptionally(failure));
+                return;
+            }
+            if(!response.isObject()){
+                logger.info("The lambda in " + region + " did not answer the batch, invoking its checks on their own for now");
+                unbatchedRegions.put(region, true);
+            }
+            for(LambdaOperation operation : batch.operations){
+                batch.results.get(operation.getId()).complete(response.isObject() ? response.get(operation.getId()) : null);
+            }
+        });
+    }
+
+    @Override
+    public void destroy() {
+        batchExecutor.shutdownNow();
+    }
+
+    private static class PendingBatch {
+        private final List<LambdaOperation> operations = new ArrayList<>();
+        private final Map<String, CompletableFuture<JsonNode>> results = new HashMap<>();
+        private final AtomicBoolean sent = new AtomicBoolean();
+
+        private void add(LambdaOperation operation, CompletableFuture<JsonNode> result){
+            operations.add(operation);
+            results.put(operation.getId(), result);
+        }
+
+        private int size(){
+            return operations.size();
         }
-        return null;
     }
 }
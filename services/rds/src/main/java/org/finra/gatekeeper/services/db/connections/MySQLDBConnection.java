@@ -17,22 +17,20 @@
 
 package org.finra.gatekeeper.services.db.connections;
 
-import org.apache.commons.dbcp.BasicDataSource;
-import org.finra.gatekeeper.configuration.GatekeeperProperties;
 import org.finra.gatekeeper.exception.GatekeeperException;
 import org.finra.gatekeeper.rds.exception.GKUnsupportedDBException;
 import org.finra.gatekeeper.rds.interfaces.DBConnection;
 import org.finra.gatekeeper.rds.interfaces.GKUserCredentialsProvider;
 import org.finra.gatekeeper.rds.model.*;
+import org.finra.gatekeeper.services.db.pool.MySQLDataSourceRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
-import org.springframework.jdbc.core.StatementCallback;
 import org.springframework.stereotype.Component;
 
 import java.sql.*;
@@ -46,16 +44,14 @@ public class MySQLDBConnection implements DBConnection {
     private final Logger logger = LoggerFactory.getLogger(MySQLDBConnection.class);
 
     private final GKUserCredentialsProvider gkUserCredentialsProvider;
-    private final String gkUserName;
-    private final String ssl;
+    private final MySQLDataSourceRegistry mySQLDataSourceRegistry;
+    private final String getSchemas = "select distinct table_schema from information_schema.tables where table_schema not in ('information_schema', 'mysql', 'sys', 'performance_schema')";
 
     @Autowired
-    public MySQLDBConnection(GatekeeperProperties gatekeeperProperties,
-                             @Qualifier("credentialsProvider") GKUserCredentialsProvider gkUserCredentialsProvider){
+    public MySQLDBConnection(@Qualifier("credentialsProvider") GKUserCredentialsProvider gkUserCredentialsProvider,
+                             MySQLDataSourceRegistry mySQLDataSourceRegistry){
         this.gkUserCredentialsProvider = gkUserCredentialsProvider;
-        this.gkUserName = gatekeeperProperties.getDb().getGkUser();
-        this.ssl = gatekeeperProperties.getDb().getMysql().getSsl();
-
+        this.mySQLDataSourceRegistry = mySQLDataSourceRegistry;
     }
 
     public boolean grantAccess(RdsGrantAccessQuery rdsGrantAccessQuery) throws Exception{
@@ -69,6 +65,36 @@ public class MySQLDBConnection implements DBConnection {
         }
     }
 
+    public Map<String, Boolean> grantAccessBatch(RdsGrantAccessBatchQuery rdsGrantAccessBatchQuery) throws Exception{
+        String address = rdsGrantAccessBatchQuery.getAddress();
+        List<RdsUserGrant> grants = rdsGrantAccessBatchQuery.getGrants();
+        Map<String, Boolean> outcomes = new LinkedHashMap<>();
+
+        try{
+            JdbcTemplate conn = connect(address, gkUserCredentialsProvider.getGatekeeperSecret(rdsGrantAccessBatchQuery));
+            // account statements commit implicitly in MySQL so each user stands on its own, they do all share the one connection
+            conn.execute((ConnectionCallback<Void>) connection -> {
+                try(Statement statement = connection.createStatement()){
+                    List<String> schemasToGrant = getSchemasForDb(statement);
+                    for(RdsUserGrant grant : grants){
+                        try{
+                            provisionUser(statement, address, grant, getPrivileges(grant.getRole()), schemasToGrant);
+                            outcomes.put(grant.getDbUser(), true);
+                        }catch(Exception ex){
+                            logger.error("An exception was thrown trying to create user " + grant.getDbUser() + " at address " + address, ex);
+                            outcomes.put(grant.getDbUser(), false);
+                        }
+                    }
+                }
+                return null;
+            });
+        }catch(Exception ex){
+            logger.error("An exception was thrown trying to create users " + grants + " at address " + address, ex);
+            grants.forEach(grant -> outcomes.putIfAbsent(grant.getDbUser(), false));
+        }
+        return outcomes;
+    }
+
     public boolean revokeAccess(RdsRevokeAccessQuery rdsRevokeAccessQuery) throws Exception{
         String user = rdsRevokeAccessQuery.getUser();
         String address = rdsRevokeAccessQuery.getAddress();
@@ -88,6 +114,43 @@ public class MySQLDBConnection implements DBConnection {
         }
     }
 
+    public Map<String, Boolean> revokeAccessBatch(RdsRevokeAccessBatchQuery rdsRevokeAccessBatchQuery) throws Exception{
+        String address = rdsRevokeAccessBatchQuery.getAddress();
+        List<String> users = rdsRevokeAccessBatchQuery.getUsers();
+        Map<String, Boolean> outcomes = new LinkedHashMap<>();
+        if(users.isEmpty()){
+            return outcomes;
+        }
+
+        try{
+            JdbcTemplate conn = connect(address, gkUserCredentialsProvider.getGatekeeperSecret(rdsRevokeAccessBatchQuery));
+            // MySQL commits account statements as soon as they run so there's no transaction to share, the users are
+            // still all dropped over the one connection
+            conn.execute((ConnectionCallback<Void>) connection -> {
+                try(Statement statement = connection.createStatement()){
+                    for(String userRole : users){
+                        try{
+                            logger.info("Deleting User " + userRole + " if they already exist on DB " + address);
+                            statement.execute("DROP USER IF EXISTS '" + userRole + "'");
+                        }catch(SQLException ex){
+                            logger.error("An exception was thrown Trying to revoke access to " + userRole + " from " + address, ex);
+                        }
+                    }
+                }
+                return null;
+            });
+
+            // a user only counts as revoked once it's no longer in mysql.user
+            Set<String> remaining = new HashSet<>(conn.queryForList("select user from mysql.user where user in ("
+                    + String.join(",", Collections.nCopies(users.size(), "?")) + ")", String.class, users.toArray()));
+            users.forEach(user -> outcomes.put(user, !remaining.contains(user)));
+        }catch (Exception ex){
+            logger.error("An exception was thrown Trying to revoke access to " + users + " from " + address, ex);
+            users.forEach(user -> outcomes.putIfAbsent(user, false));
+        }
+        return outcomes;
+    }
+
     public List<String> checkDb(RdsQuery rdsQuery) throws GKUnsupportedDBException{
         String checkGrants = "SHOW GRANTS FOR CURRENT_USER";
         String address = rdsQuery.getAddress();
@@ -105,6 +168,8 @@ public class MySQLDBConnection implements DBConnection {
         }
         catch(CannotGetJdbcConnectionException ex){
             logger.error("Could not connect", ex);
+            // don't hang on to a pool that can't reach the database, the next check will try again from scratch
+            mySQLDataSourceRegistry.invalidate(address);
             if(ex.getMessage().contains("password")) {
                 issues.add("Password authentication failed for gatekeeper user");
             } else{
@@ -148,10 +213,15 @@ public class MySQLDBConnection implements DBConnection {
         return role != null ? user + "_" + role.getShortSuffix() : user;
     }
 
-    //pulls all the non system schemas for granting
-    private List<String> getSchemasForDb(JdbcTemplate conn){
-        String getSchemas = "select distinct table_schema from information_schema.tables where table_schema not in ('information_schema', 'mysql', 'sys', 'performance_schema')";
-        return conn.queryForList(getSchemas, String.class);
+    //pulls all the non system schemas for granting, always live so a schema created since the catalog was cached is granted too
+    private List<String> getSchemasForDb(Statement statement) throws SQLException {
+        List<String> schemas = new ArrayList<>();
+        try(ResultSet resultSet = statement.executeQuery(getSchemas)){
+            while(resultSet.next()){
+                schemas.add(resultSet.getString(1));
+            }
+        }
+        return schemas;
     }
 
     public Map<RoleType, List<String>> getAvailableTables(RdsQuery rdsQuery) throws SQLException{
@@ -159,98 +229,86 @@ public class MySQLDBConnection implements DBConnection {
         Map<RoleType, List<String>> results = new HashMap<>();
         JdbcTemplate template = connect(address, gkUserCredentialsProvider.getGatekeeperSecret(rdsQuery));
         String schemaQuery = "select concat(table_schema,'.',table_name) from information_schema.tables where table_schema not in ('information_schema', 'mysql', 'sys', 'performance_schema')";
+        // every role gets granted on every schema, so the one listing goes to all of them
+        List<String> tables = Collections.unmodifiableList(template.queryForList(schemaQuery, String.class));
         for(RoleType roleType : RoleType.values()) {
-            try {
-                results.put(roleType, template.queryForList(schemaQuery, String.class));
-            } catch (Exception ex) {
-                logger.error("An exception was thrown while trying to fetch tables over MySQL at address " + address, ex);
-                results.put(roleType, Collections.singletonList("Unable to get available schemas"));
-            }
+            results.put(roleType, tables);
         }
         return results;
     }
 
     private String generateQuery(String roles, String user, String schema){
-        return "GRANT "+roles+" ON " + schema + ".* TO " + user + " REQUIRE SSL";
+        // quoted so schema names with dots (or anything else special) in them are granted as a whole
+        return "GRANT "+roles+" ON `" + schema.replace("`", "``") + "`.* TO " + user + " REQUIRE SSL";
     }
 
     private JdbcTemplate connect(String url, String gkUserPassword) throws SQLException {
-        String dbUrl = "jdbc:mysql://" + url;
-
-        BasicDataSource dataSource = new BasicDataSource();
-
-        dataSource.setDriverClassName("org.mariadb.jdbc.Driver");
-        dataSource.setUrl(dbUrl+"?"+ssl);
-        dataSource.setUsername(gkUserName);
-        dataSource.setPassword(gkUserPassword);
-        dataSource.setMinIdle(0);
-        dataSource.setMaxIdle(0);
-
-        return new JdbcTemplate(dataSource);
+        logger.info("Getting connection for " + url);
+        return new JdbcTemplate(mySQLDataSourceRegistry.borrow(url, gkUserPassword));
     }
 
     private void createUser(RdsGrantAccessQuery rdsGrantAccessQuery) throws Exception{
         String address = rdsGrantAccessQuery.getAddress();
-        String user = rdsGrantAccessQuery.getUser();
-        String password = rdsGrantAccessQuery.getPassword();
-        RoleType role = rdsGrantAccessQuery.getRole();
-
-        String gkuserPassword = gkUserCredentialsProvider.getGatekeeperSecret(rdsGrantAccessQuery);
-        JdbcTemplate conn = connect(address, gkuserPassword);
-
-        String userRole = getGkUserName(user, role); //16 is the maximum length for a user in MySQL, if there's a user hitting this limit, a shorter suffix shall be used
-        //revoke the user if they exist
-        revokeAccess(new RdsRevokeAccessQuery(rdsGrantAccessQuery.getAccount(), rdsGrantAccessQuery.getAccountId(), rdsGrantAccessQuery.getRegion(), rdsGrantAccessQuery.getSdlc(),
-                rdsGrantAccessQuery.getAddress(), rdsGrantAccessQuery.getDbInstanceName(), rdsGrantAccessQuery.getDbEngine())
-                    .withUser(user)
-                    .withRole(role));
-
-        logger.info("Creating User " + userRole + " if they dont already exist");
-        boolean wasUserCreated = conn.execute(new MySqlStatement("CREATE USER " + userRole + " IDENTIFIED BY '" + password + "'"));
-        logger.info(wasUserCreated ?
-                "User " + userRole + " successfully created on database" + address :
-                "Failed to create " + userRole + " on database " + address
-        );
-
-        List<String> schemasToGrant = getSchemasForDb(conn);
-
-
-        logger.info("User " + userRole + " has role "+ role + " granting him those privs");
+        RdsUserGrant grant = new RdsUserGrant(rdsGrantAccessQuery.getUser(), rdsGrantAccessQuery.getPassword(), rdsGrantAccessQuery.getRole());
+        String privs = getPrivileges(grant.getRole());
+        JdbcTemplate conn = connect(address, gkUserCredentialsProvider.getGatekeeperSecret(rdsGrantAccessQuery));
+        // the revoke, create and grants all go out over the one pooled connection
+        conn.execute((ConnectionCallback<Void>) connection -> {
+            try(Statement statement = connection.createStatement()){
+                provisionUser(statement, address, grant, privs, getSchemasForDb(statement));
+            }
+            return null;
+        });
+        logger.info("Successfully Created " + grant.getDbUser() + " with " + grant.getRole() + " on database " + address);
+    }
 
-        String privs;
+    private String getPrivileges(RoleType role) throws GatekeeperException {
         switch(role){
             case READONLY:
-                privs = "SELECT";
-                break;
+                return "SELECT";
             case DATAFIX:
-                privs = "SELECT, INSERT, DELETE, UPDATE";
-                break;
+                return "SELECT, INSERT, DELETE, UPDATE";
             case DBA:
-                privs = "SELECT, CREATE, ALTER, DROP ";
-                break;
+                return "SELECT, CREATE, ALTER, DROP ";
             default:
                 throw new GatekeeperException("Unknown Role provided: " + role);
         }
-
-        logger.info("Granting roles to all of the non mysql schemas (" +schemasToGrant + ")");
-        schemasToGrant.forEach(schema -> {
-            logger.info("Granting " + privs + " for " + userRole + " on " + schema);
-            conn.execute(generateQuery(privs, userRole, schema)) ;
-            logger.info("Done!");
-        });
-
-        logger.info("Successfully Created " + userRole + " with "+ role + " for the following schemas " + schemasToGrant);
     }
 
-    private class MySqlStatement implements StatementCallback<Boolean>{
-        private String sql;
-
-        public MySqlStatement(String sql){
-            this.sql = sql;
+    /**
+     * Re-creates the user and grants it the role's privileges on every schema. The grants go out together as one batch,
+     * MySQL commits account statements as soon as they run so there's no rolling back a partial grant, instead the
+     * schemas that couldn't be granted are reported by name.
+     */
+    private void provisionUser(Statement statement, String address, RdsUserGrant grant, String privs, List<String> schemasToGrant) throws SQLException {
+        String userRole = grant.getDbUser();
+        try {
+            logger.info("Deleting User " + userRole + " if they already exist on DB " + address);
+            statement.execute("GRANT USAGE ON *.* to " + userRole);
+            statement.execute("DROP USER '" + userRole + "'");
+        } catch (SQLException ex) {
+            logger.error("An exception was thrown Trying to revoke access to " + userRole + " from " + address, ex);
         }
 
-        public Boolean doInStatement(Statement statement) throws SQLException, DataAccessException {
-            return statement.execute(sql);
+        logger.info("Creating User " + userRole + " with role " + grant.getRole() + " on the following schemas " + schemasToGrant);
+        statement.execute("CREATE USER " + userRole + " IDENTIFIED BY '" + grant.getPassword() + "'");
+        for(String schema : schemasToGrant){
+            statement.addBatch(generateQuery(privs, userRole, schema));
+        }
+        try {
+            statement.executeBatch();
+        } catch (BatchUpdateException ex) {
+            // the driver either keeps going past a failed grant or stops at it, anything without a successful count failed
+            int[] updateCounts = ex.getUpdateCounts();
+            List<String> failedSchemas = new ArrayList<>();
+            for(int i = 0; i < schemasToGrant.size(); i++){
+                if(updateCounts == null || i >= updateCounts.length || updateCounts[i] == Statement.EXECUTE_FAILED){
+                    failedSchemas.add(schemasToGrant.get(i));
+                }
+            }
+            throw new SQLException("Failed to grant " + privs + " to " + userRole + " on the following schemas " + failedSchemas, ex);
+        } finally {
+            statement.clearBatch();
         }
     }
 
@@ -17,11 +17,11 @@
 
 package org.finra.gatekeeper.services.db.connections;
 
-import org.finra.gatekeeper.configuration.GatekeeperProperties;
 import org.finra.gatekeeper.rds.exception.GKUnsupportedDBException;
 import org.finra.gatekeeper.rds.interfaces.DBConnection;
 import org.finra.gatekeeper.rds.interfaces.GKUserCredentialsProvider;
 import org.finra.gatekeeper.rds.model.*;
+import org.finra.gatekeeper.services.db.pool.PostgresDataSourceRegistry;
 import org.postgresql.ds.PGPoolingDataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,28 +45,17 @@ public class PostgresDBConnection implements DBConnection {
 
     private final Logger logger = LoggerFactory.getLogger(PostgresDBConnection.class);
     private final GKUserCredentialsProvider gkUserCredentialsProvider;
+    private final PostgresDataSourceRegistry postgresDataSourceRegistry;
     private final String EXPIRATION_TIMESTAMP = "yyyy-MM-dd HH:mm:ss";
-    private final String getSchemas = "SELECT distinct table_schema||'.'||table_name FROM information_schema.role_table_grants "
-    + "where grantee = ? order by table_schema||'.'||table_name";
+    private final String getSchemas = "SELECT distinct grantee, table_schema||'.'||table_name FROM information_schema.role_table_grants "
+    + "where grantee in (" + String.join(",", Collections.nCopies(RoleType.values().length, "?")) + ") order by 2";
     private final String getUsers = "select rolname from pg_roles where rolcanlogin = true";
 
-    private final String gkUserName;
-    private final Boolean ssl;
-    private final String sslMode;
-    private final String sslCert;
-    private final Integer connectTimeout;
-
     @Autowired
-    public PostgresDBConnection(GatekeeperProperties gatekeeperProperties,
-                                @Qualifier("credentialsProvider") GKUserCredentialsProvider gkUserCredentialsProvider){
+    public PostgresDBConnection(@Qualifier("credentialsProvider") GKUserCredentialsProvider gkUserCredentialsProvider,
+                                PostgresDataSourceRegistry postgresDataSourceRegistry){
         this.gkUserCredentialsProvider = gkUserCredentialsProvider;
-        GatekeeperProperties.GatekeeperDbProperties db = gatekeeperProperties.getDb();
-        GatekeeperProperties.GatekeeperDbProperties.PostgresDbProperties postgres = db.getPostgres();
-        this.gkUserName = db.getGkUser();
-        this.ssl = postgres.getSsl();
-        this.sslMode = postgres.getSslMode();
-        this.sslCert = postgres.getSslCert();
-        this.connectTimeout = postgres.getConnectTimeout();
+        this.postgresDataSourceRegistry = postgresDataSourceRegistry;
     }
 
     public boolean grantAccess(RdsGrantAccessQuery rdsGrantAccessQuery) throws SQLException {
@@ -76,10 +65,8 @@ public class PostgresDBConnection implements DBConnection {
         String password = rdsGrantAccessQuery.getPassword();
         int length = rdsGrantAccessQuery.getTime();
 
-        PGPoolingDataSource dataSource = null;
-
         try {
-            dataSource = connect(address, gkUserCredentialsProvider.getGatekeeperSecret(rdsGrantAccessQuery));
+            PGPoolingDataSource dataSource = connect(address, gkUserCredentialsProvider.getGatekeeperSecret(rdsGrantAccessQuery));
             JdbcTemplate conn = new JdbcTemplate(dataSource);
 
             String expirationTime = LocalDateTime.now().plusDays(length).format(DateTimeFormatter.ofPattern(EXPIRATION_TIMESTAMP));
@@ -109,10 +96,23 @@ public class PostgresDBConnection implements DBConnection {
         }catch(Exception ex){
             logger.error("An exception was thrown while trying to grant access to user " + user + "_" + role.getShortSuffix() + " on address " + address , ex);
             return false;
-        }finally{
-            if(dataSource != null) {
-                dataSource.close();
-            }
+        }
+    }
+
+    public Map<String, Boolean> grantAccessBatch(RdsGrantAccessBatchQuery rdsGrantAccessBatchQuery) throws SQLException {
+        String address = rdsGrantAccessBatchQuery.getAddress();
+        List<RdsUserGrant> grants = rdsGrantAccessBatchQuery.getGrants();
+        String expirationTime = LocalDateTime.now().plusDays(rdsGrantAccessBatchQuery.getTime()).format(DateTimeFormatter.ofPattern(EXPIRATION_TIMESTAMP));
+
+        try {
+            PGPoolingDataSource dataSource = connect(address, gkUserCredentialsProvider.getGatekeeperSecret(rdsGrantAccessBatchQuery));
+            JdbcTemplate conn = new JdbcTemplate(dataSource);
+            return conn.execute((ConnectionCallback<Map<String, Boolean>>) connection -> provisionUsers(connection, address, grants, expirationTime));
+        }catch(Exception ex){
+            logger.error("An exception was thrown while trying to grant access to users " + grants + " on address " + address, ex);
+            Map<String, Boolean> outcomes = new LinkedHashMap<>();
+            grants.forEach(grant -> outcomes.put(grant.getDbUser(), false));
+            return outcomes;
         }
     }
 
@@ -121,9 +121,8 @@ public class PostgresDBConnection implements DBConnection {
         String user = rdsRevokeAccessQuery.getUser();
         RoleType role = rdsRevokeAccessQuery.getRole();
 
-        PGPoolingDataSource dataSource = null;
         try {
-            dataSource = connect(address, gkUserCredentialsProvider.getGatekeeperSecret(rdsRevokeAccessQuery));
+            PGPoolingDataSource dataSource = connect(address, gkUserCredentialsProvider.getGatekeeperSecret(rdsRevokeAccessQuery));
             JdbcTemplate conn = new JdbcTemplate(dataSource);
             logger.info("Removing " + user + " from " + address + " if they exist.");
             if(role != null) {
@@ -139,31 +138,43 @@ public class PostgresDBConnection implements DBConnection {
             String username = role == null ? user : user + "_" + role.getShortSuffix();
             logger.error("An exception was thrown while trying to revoke user " + username + " from address " + address, ex);
             return false;
-        } finally {
-            if(dataSource != null) {
-                dataSource.close();
-            }
+        }
+    }
+
+    public Map<String, Boolean> revokeAccessBatch(RdsRevokeAccessBatchQuery rdsRevokeAccessBatchQuery) throws SQLException{
+        String address = rdsRevokeAccessBatchQuery.getAddress();
+        List<String> users = rdsRevokeAccessBatchQuery.getUsers();
+
+        try {
+            PGPoolingDataSource dataSource = connect(address, gkUserCredentialsProvider.getGatekeeperSecret(rdsRevokeAccessBatchQuery));
+            JdbcTemplate conn = new JdbcTemplate(dataSource);
+            logger.info("Removing " + users + " from " + address + " if they exist.");
+            return conn.execute((ConnectionCallback<Map<String, Boolean>>) connection -> revokeUsers(connection, users));
+        }catch(Exception ex){
+            logger.error("An exception was thrown while trying to revoke users " + users + " from address " + address, ex);
+            Map<String, Boolean> outcomes = new LinkedHashMap<>();
+            users.forEach(user -> outcomes.put(user, false));
+            return outcomes;
         }
     }
 
     public Map<RoleType, List<String>> getAvailableTables(RdsQuery rdsQuery) throws SQLException{
         String address = rdsQuery.getAddress();
-        Map<RoleType, List<String>> results = new HashMap<>();
         PGPoolingDataSource dataSource = connect(address, gkUserCredentialsProvider.getGatekeeperSecret(rdsQuery));
         JdbcTemplate conn = new JdbcTemplate(dataSource);
 
         logger.info("Getting available schema information for " + address);
+        // the tables for every role come back in one go, then get split up by the role they were granted to
+        Map<String, List<String>> tablesByGrantee = new HashMap<>();
+        conn.query(getSchemas, Arrays.stream(RoleType.values()).map(RoleType::getDbRole).toArray(), (RowCallbackHandler) resultSet ->
+                tablesByGrantee.computeIfAbsent(resultSet.getString(1), grantee -> new ArrayList<>()).add(resultSet.getString(2)));
+
+        Map<RoleType, List<String>> results = new HashMap<>();
         for(RoleType roleType : RoleType.values()) {
-            try {
-                List<String> schemas = conn.queryForList(getSchemas, new Object[]{roleType.getDbRole()}, String.class);
-                results.put(roleType, !schemas.isEmpty() ? schemas : Collections.singletonList("No Schemas are available for role " + roleType.getDbRole() + " at this time."));
-                logger.info("Retrieved available schema information for database " + address + " for role " + roleType.getDbRole());
-            } catch (Exception ex) {
-                logger.error("Could not retrieve available role information for database " + address + " for role " +  roleType.getDbRole(), ex);
-                results.put(roleType, Collections.singletonList("Unable to get available schemas for role " + roleType.getDbRole()));
-            }
+            List<String> schemas = tablesByGrantee.getOrDefault(roleType.getDbRole(), Collections.emptyList());
+            results.put(roleType, !schemas.isEmpty() ? schemas : Collections.singletonList("No Schemas are available for role " + roleType.getDbRole() + " at this time."));
         }
-        dataSource.close();
+        logger.info("Retrieved available schema information for database " + address);
         return results;
     }
 
@@ -176,11 +187,10 @@ public class PostgresDBConnection implements DBConnection {
         List<String> issues = new ArrayList<>();
         List<String> gkRoles = new ArrayList<>();
         gkRoles.addAll(Arrays.asList("gk_datafix", "gk_readonly", "gk_dba"));
-        PGPoolingDataSource dataSource = null;
 
         try{
             logger.info("Checking the gatekeeper setup for " + address);
-            dataSource = connect(address, gkUserCredentialsProvider.getGatekeeperSecret(rdsQuery));
+            PGPoolingDataSource dataSource = connect(address, gkUserCredentialsProvider.getGatekeeperSecret(rdsQuery));
             JdbcTemplate conn = new JdbcTemplate(dataSource);
             Boolean createRolePermCheckResult = conn.queryForObject(gkUserCreateRoleCheck, Boolean.class);
             List<String> roleCheckResult = conn.queryForList(gkRoleCheck, String.class);
@@ -196,15 +206,13 @@ public class PostgresDBConnection implements DBConnection {
             logger.error("Error running check query", e);
         } catch(CannotGetJdbcConnectionException ex){
             logger.error("Failed to connect to DB", ex);
+            // don't hang on to a pool that can't reach the database, the next check will try again from scratch
+            postgresDataSourceRegistry.invalidate(address);
             if(ex.getMessage().contains("password")) {
                 issues.add("Password authentication failed for gatekeeper user");
             }else{
                 issues.add("Unable to connect to DB (" + ex.getCause().getMessage() + ")");
             }
-        }finally{
-            if(dataSource != null) {
-                dataSource.close();
-            }
         }
 
         return issues;
@@ -222,9 +230,8 @@ public class PostgresDBConnection implements DBConnection {
     public List<String> checkIfUsersHasTables(RdsCheckUsersTableQuery rdsCheckUsersTableQuery) throws SQLException{
         String address = rdsCheckUsersTableQuery.getAddress();
         List<String> users = rdsCheckUsersTableQuery.getUsers();
-        PGPoolingDataSource dataSource = null;
         try {
-            dataSource = connect(address, gkUserCredentialsProvider.getGatekeeperSecret(rdsCheckUsersTableQuery));
+            PGPoolingDataSource dataSource = connect(address, gkUserCredentialsProvider.getGatekeeperSecret(rdsCheckUsersTableQuery));
             JdbcTemplate conn = new JdbcTemplate(dataSource);
             StringBuilder sb = new StringBuilder();
             users.forEach(user -> {
@@ -240,10 +247,6 @@ public class PostgresDBConnection implements DBConnection {
         }catch(SQLException ex){
             logger.error("An Error occured while checking to see if the user owns any tables on the database", ex);
             return users;
-        }finally {
-            if(dataSource != null) {
-                dataSource.close();
-            }
         }
     }
 
@@ -260,7 +263,6 @@ public class PostgresDBConnection implements DBConnection {
             logger.error("Could not retrieve list of users for database " + address, ex);
             results = Collections.emptyList();
         }
-        dataSource.close();
         return results;
     }
 
@@ -276,67 +278,48 @@ public class PostgresDBConnection implements DBConnection {
         } catch (Exception ex) {
             logger.error("Could not retrieve list of roles for database " + address, ex);
             throw ex;
-        }finally {
-            dataSource.close();
         }
         return results;
     }
 
     private PGPoolingDataSource connect(String url, String gkUserPassword) throws SQLException {
-        String dbUrl = url.split("/")[0];
-        logger.info("Getting connection for " + dbUrl);
-        logger.info("Creating Datasource connection for " + dbUrl);
-        String pgUrl = dbUrl + "/postgres"; // url with postgres instead of whatever was on the AWS console
-        try {
-            return connectHelper(pgUrl, gkUserPassword); // Try postgres first since it is a default db.
-        } catch (Exception e){
-            logger.info("postgres database not present for " + dbUrl.split("/")[0] + " Attempting connection to " + url + " as fallback.");
-            return connectHelper(url, gkUserPassword); // Fall-back if postgres isn't there
-        }
-    }
-
-    private PGPoolingDataSource connectHelper(String address, String gkUserPassword) {
-        PGPoolingDataSource dataSource = new PGPoolingDataSource();
-        String dbUrl = "jdbc:postgresql://" + address;
-
-        dataSource.setDataSourceName(address);
-        dataSource.setUrl(dbUrl);
-        dataSource.setUser(gkUserName);
-        dataSource.setPassword(gkUserPassword);
-        dataSource.setConnectTimeout(connectTimeout);
-        dataSource.setSsl(ssl);
-        dataSource.setSslMode(sslMode);
-        dataSource.setSslRootCert(sslCert);
-        //Do not want to keep the connection after execution
-
-        try {
-            new JdbcTemplate(dataSource).queryForList("select 1"); // Tests the connection
-        } catch (Exception e) {
-            logger.error("Failed to connect to " + address);
-            dataSource.close(); // close the datasource
-            throw e;
-        }
-        logger.info("Using the following properties with the connection: " + ssl);
-        return dataSource;
-
+        logger.info("Getting connection for " + url.split("/")[0]);
+        return postgresDataSourceRegistry.borrow(url, gkUserPassword);
     }
 
     private void updateUser(JdbcTemplate conn, String address, String user, String password, RoleType role, String expirationTime ) throws SQLException{
         logger.info("Rotating the password for " + user + " on " + address + " with role " + role.getDbRole());
-        conn.execute("ALTER USER " + user + " PASSWORD '" + password + "' VALID UNTIL " + " '" + expirationTime + "'", new PostgresCallableStatementExecutor());
+        setPassword(conn, user, password, expirationTime);
         logger.info("Done Updating user " + user + " on " + address + " with role " + role.getDbRole());
     }
 
     private void createUser(JdbcTemplate conn, String address, String user, String password, RoleType role, String expirationTime ) throws SQLException{
         logger.info("Creating user " + user + " on " + address + " with role " + role.getDbRole());
         conn.execute("CREATE USER " + user, new PostgresCallableStatementExecutor());
-        conn.execute("SET log_statement='none'", new PostgresCallableStatementExecutor());
-        conn.execute("ALTER USER " + user + " PASSWORD '" + password + "' VALID UNTIL " + " '" + expirationTime + "'", new PostgresCallableStatementExecutor());
-        conn.execute("SET log_statement='ddl'", new PostgresCallableStatementExecutor());
+        setPassword(conn, user, password, expirationTime);
         conn.execute("GRANT " + role.getDbRole() + " TO " + user, new PostgresCallableStatementExecutor());
         logger.info("Done Creating user " + user + " on " + address + " with role " + role.getDbRole());
     }
 
+    /**
+     * log_statement only applies to the session that sets it, so turning it off, setting the password and turning it
+     * back on all have to happen on the same pooled connection. The setting is put back even if the ALTER fails so the
+     * connection doesn't go back to the pool with logging off.
+     */
+    private void setPassword(JdbcTemplate conn, String user, String password, String expirationTime){
+        conn.execute((ConnectionCallback<Void>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET log_statement='none'");
+                try {
+                    statement.execute("ALTER USER " + user + " PASSWORD '" + password + "' VALID UNTIL " + " '" + expirationTime + "'");
+                } finally {
+                    statement.execute("SET log_statement='ddl'");
+                }
+            }
+            return null;
+        });
+    }
+
     private boolean userExists(JdbcTemplate conn, String user){
         logger.info("Checking to see if user " + user + " exists");
         return conn.queryForList("SELECT 1 FROM pg_roles WHERE rolname='" + user+"'").size() > 0;
@@ -346,6 +329,114 @@ public class PostgresDBConnection implements DBConnection {
         return !userExists(conn, user);
     }
 
+    /**
+     * Provisions every user in one transaction, the statements for each user are sent as a single batch and each user
+     * gets its own savepoint so one user that fails doesn't undo the others. Same as grantAccess an existing user is
+     * dropped and re-created, falling back to rotating its password if it can't be dropped.
+     */
+    private Map<String, Boolean> provisionUsers(Connection connection, String address, List<RdsUserGrant> grants, String expirationTime) throws SQLException {
+        Map<String, Boolean> outcomes = new LinkedHashMap<>();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            Set<String> existingUsers = findExistingUsers(connection, grants.stream().map(RdsUserGrant::getDbUser).toArray());
+            for (RdsUserGrant grant : grants) {
+                String user = grant.getDbUser();
+                RoleType role = grant.getRole();
+                Savepoint savepoint = connection.setSavepoint();
+                try {
+                    boolean revoked = !existingUsers.contains(user) || dropExistingUser(connection, statement, user);
+                    logger.info((revoked ? "Creating user " : "Rotating the password for ") + user + " on " + address + " with role " + role.getDbRole());
+                    if (revoked) {
+                        statement.addBatch("CREATE USER " + user);
+                    }
+                    statement.addBatch("SET log_statement='none'");
+                    statement.addBatch("ALTER USER " + user + " PASSWORD '" + grant.getPassword() + "' VALID UNTIL " + " '" + expirationTime + "'");
+                    statement.addBatch("SET log_statement='ddl'");
+                    if (revoked) {
+                        statement.addBatch("GRANT " + role.getDbRole() + " TO " + user);
+                    }
+                    statement.executeBatch();
+                    connection.releaseSavepoint(savepoint);
+                    outcomes.put(user, true);
+                } catch (SQLException ex) {
+                    logger.error("An exception was thrown while trying to grant access to user " + user + " on address " + address, ex);
+                    statement.clearBatch();
+                    connection.rollback(savepoint);
+                    outcomes.put(user, false);
+                }
+            }
+            connection.commit();
+        } catch (SQLException ex) {
+            connection.rollback();
+            throw ex;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        return outcomes;
+    }
+
+    private Set<String> findExistingUsers(Connection connection, Object[] users) throws SQLException {
+        Set<String> existingUsers = new HashSet<>();
+        try (PreparedStatement existing = connection.prepareStatement("SELECT rolname FROM pg_roles WHERE rolname::text = ANY(?)")) {
+            existing.setArray(1, connection.createArrayOf("text", users));
+            try (ResultSet resultSet = existing.executeQuery()) {
+                while (resultSet.next()) {
+                    existingUsers.add(resultSet.getString(1));
+                }
+            }
+        }
+        return existingUsers;
+    }
+
+    private boolean dropExistingUser(Connection connection, Statement statement, String user) throws SQLException {
+        logger.info("User " + user + " already exists, try to remove the user.");
+        Savepoint savepoint = connection.setSavepoint();
+        try {
+            statement.execute("DROP USER IF EXISTS " + user);
+            connection.releaseSavepoint(savepoint);
+            return true;
+        } catch (SQLException ex) {
+            logger.error("Could not remove the existing user from the database. Falling back by trying to rotate the existing user's password", ex);
+            connection.rollback(savepoint);
+            return false;
+        }
+    }
+
+    /**
+     * Drops every user in one transaction, each drop gets its own savepoint so one user that can't be dropped (say
+     * because it still owns objects) doesn't take the rest of the batch down with it.
+     */
+    private Map<String, Boolean> revokeUsers(Connection connection, List<String> users) throws SQLException {
+        Map<String, Boolean> outcomes = new LinkedHashMap<>();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            for (String user : users) {
+                Savepoint savepoint = connection.setSavepoint();
+                try {
+                    statement.execute("DROP USER IF EXISTS " + user);
+                    connection.releaseSavepoint(savepoint);
+                    outcomes.put(user, true);
+                } catch (SQLException ex) {
+                    logger.error("Could not remove user " + user, ex);
+                    connection.rollback(savepoint);
+                    outcomes.put(user, false);
+                }
+            }
+
+            // one lookup for whoever is still around rather than a pg_roles check per user
+            findExistingUsers(connection, users.toArray()).forEach(user -> outcomes.put(user, false));
+            connection.commit();
+        } catch (SQLException ex) {
+            connection.rollback();
+            throw ex;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        return outcomes;
+    }
+
     private class PostgresCallableStatementExecutor implements CallableStatementCallback<Boolean> {
         public Boolean doInCallableStatement(CallableStatement callableStatement) throws SQLException, DataAccessException {
             return callableStatement.execute();
@@ -1,8 +1,12 @@
 package org.finra.gatekeeper.services.db.connections.model;
 
+import java.util.List;
+
 public class LambdaDTO {
     String dbEngine;
     LambdaQuery lambdaQuery;
+    //Batch of operations, possibly against many databases, sent in one invocation
+    List<LambdaOperation> operations;
 
     public String getDbEngine() {
         return dbEngine;
@@ -21,4 +25,13 @@ public class LambdaDTO {
         this.lambdaQuery = lambdaQuery;
         return this;
     }
+
+    public List<LambdaOperation> getOperations() {
+        return operations;
+    }
+
+    public LambdaDTO withOperations(List<LambdaOperation> operations) {
+        this.operations = operations;
+        return this;
+    }
 }
@@ -0,0 +1,47 @@
+package org.finra.gatekeeper.services.db.connections.model;
+
+/**
+ * A single operation inside of a batched lambda invocation, the id is used to match up the operation with its result
+ */
+public class LambdaOperation {
+    private String id;
+    private String operation;
+    private String dbEngine;
+    private LambdaQuery lambdaQuery;
+
+    public String getId() {
+        return id;
+    }
+
+    public LambdaOperation withId(String id) {
+        this.id = id;
+        return this;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public LambdaOperation withOperation(String operation) {
+        this.operation = operation;
+        return this;
+    }
+
+    public String getDbEngine() {
+        return dbEngine;
+    }
+
+    public LambdaOperation withDbEngine(String dbEngine) {
+        this.dbEngine = dbEngine;
+        return this;
+    }
+
+    public LambdaQuery getLambdaQuery() {
+        return lambdaQuery;
+    }
+
+    public LambdaOperation withLambdaQuery(LambdaQuery lambdaQuery) {
+        this.lambdaQuery = lambdaQuery;
+        return this;
+    }
+}
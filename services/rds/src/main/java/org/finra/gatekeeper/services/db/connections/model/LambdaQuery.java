@@ -23,6 +23,8 @@ public class LambdaQuery {
     //Rds Grant Access
     private String password = "";
     private Integer time = 0;
+    //Rds Grant Access Batch
+    private List<RdsUserGrant> grants = Collections.emptyList();
 
     public LambdaQuery(RdsQuery rdsQuery){
         this.account = rdsQuery.getAccount();
@@ -57,6 +59,29 @@ public class LambdaQuery {
         this.dbEngine = rdsQuery.getDbEngine();
     }
 
+    public LambdaQuery(RdsRevokeAccessBatchQuery rdsQuery){
+        this.users = rdsQuery.getUsers();
+        this.account = rdsQuery.getAccount();
+        this.accountId = rdsQuery.getAccountId();
+        this.region = rdsQuery.getRegion();
+        this.sdlc = rdsQuery.getSdlc();
+        this.address = rdsQuery.getAddress();
+        this.dbInstanceName = rdsQuery.getDbInstanceName();
+        this.dbEngine = rdsQuery.getDbEngine();
+    }
+
+    public LambdaQuery(RdsGrantAccessBatchQuery rdsQuery){
+        this.grants = rdsQuery.getGrants();
+        this.time = rdsQuery.getTime();
+        this.account = rdsQuery.getAccount();
+        this.accountId = rdsQuery.getAccountId();
+        this.region = rdsQuery.getRegion();
+        this.sdlc = rdsQuery.getSdlc();
+        this.address = rdsQuery.getAddress();
+        this.dbInstanceName = rdsQuery.getDbInstanceName();
+        this.dbEngine = rdsQuery.getDbEngine();
+    }
+
     public LambdaQuery(RdsGrantAccessQuery rdsQuery){
         this.user = rdsQuery.getUser();
         this.role = rdsQuery.getRole();
@@ -178,4 +203,13 @@ public class LambdaQuery {
         this.time = time;
         return this;
     }
+
+    public List<RdsUserGrant> getGrants() {
+        return grants;
+    }
+
+    public LambdaQuery withGrants(List<RdsUserGrant> grants) {
+        this.grants = grants;
+        return this;
+    }
 }
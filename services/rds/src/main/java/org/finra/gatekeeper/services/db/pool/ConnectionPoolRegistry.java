@@ -0,0 +1,292 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.services.db.pool;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.finra.gatekeeper.configuration.GatekeeperProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps long-lived connection pools to the databases Gatekeeper manages, keyed off of the database endpoint and the
+ * version of the gatekeeper user's secret that was used to open them.
+ *
+ * Pools that sit idle are closed, and whenever the credentials provider hands back a different secret for an endpoint
+ * a new pool is created on the next borrow. Pools that are replaced or invalidated are only closed after the retire
+ * delay, since other threads may still be in the middle of using them.
+ *
+ * Once bound to a meter registry the registry reports on its cache of pools, and implementations can publish gauges
+ * for each endpoint's pool (tagged with an id unique to that pool) which are removed again when that pool is retired.
+ *
+ * @param <T> - the type of pool (datasource, client, etc.) held for each endpoint
+ */
+public abstract class ConnectionPoolRegistry<T> implements MeterBinder, DisposableBean {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final Cache<PoolKey, T> pools;
+    private final ConcurrentMap<String, PoolKey> currentKeys = new ConcurrentHashMap<>();
+    private final ConcurrentMap<PoolKey, List<Meter>> poolMeters = new ConcurrentHashMap<>();
+    private final AtomicLong poolIds = new AtomicLong();
+    private final Set<T> retiringPools = ConcurrentHashMap.newKeySet();
+    private final String poolType;
+    private final Integer retireDelay;
+    private final ScheduledExecutorService poolReaper;
+    private volatile MeterRegistry meterRegistry;
+
+    protected final Integer maxConnectionsPerHost;
+    protected final Integer idleTimeout;
+
+    protected ConnectionPoolRegistry(String poolType, GatekeeperProperties.GatekeeperDbProperties.PoolProperties poolProperties){
+        this.poolType = poolType;
+        this.maxConnectionsPerHost = poolProperties.getMaxConnectionsPerHost();
+        this.idleTimeout = poolProperties.getIdleTimeout();
+        this.retireDelay = poolProperties.getRetireDelay();
+        this.poolReaper = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("gk-" + poolType + "-pool-reaper-%d")
+                .setDaemon(true)
+                .build());
+        this.pools = CacheBuilder.newBuilder()
+                .maximumSize(poolProperties.getMaxPools())
+                .expireAfterAccess(poolProperties.getIdleTimeout(), TimeUnit.MILLISECONDS)
+                .recordStats()
+                .removalListener((RemovalListener<PoolKey, T>) notification -> {
+                    PoolKey key = notification.getKey();
+                    currentKeys.remove(key.getAddress(), key);
+                    unbindPoolMetrics(key);
+                    retirePool(key, notification.getValue(), notification.getCause());
+                })
+                .build();
+    }
+
+    /**
+     * Creates a new pool for the given endpoint, implementations should verify the pool is usable before returning it
+     *
+     * @param key - the endpoint and credential version the pool is being opened for
+     * @param secret - the gatekeeper user's secret
+     * @return the pool
+     * @throws Exception - if the pool could not be opened
+     */
+    protected abstract T createPool(PoolKey key, String secret) throws Exception;
+
+    /**
+     * Closes a pool that was evicted, invalidated or replaced
+     *
+     * @param pool - the pool to close
+     */
+    protected abstract void closePool(T pool);
+
+    /**
+     * Registers gauges for a newly opened pool, by default there are none
+     *
+     * @param registry - the meter registry to register the gauges with
+     * @param pool - the pool that was just opened
+     * @param tags - the tags identifying the pool type, endpoint and pool, to be put on every gauge
+     * @return the meters that were registered, these get removed when the pool is closed
+     */
+    protected List<Meter> bindPoolMetrics(MeterRegistry registry, T pool, Tags tags) {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Gets the pool for the given endpoint, opening one if there's none or if the secret has changed since it was opened
+     *
+     * @param address - the address of the database
+     * @param secret - the current secret for the gatekeeper user on that database
+     * @return the pool for the endpoint
+     */
+    public T borrow(String address, String secret) {
+        PoolKey key = new PoolKey(address, credentialVersion(secret));
+        PoolKey previous = currentKeys.put(address, key);
+        if(previous != null && !previous.equals(key)){
+            logger.info("Gatekeeper credentials for " + address + " have rotated, closing the existing connection pool");
+            pools.invalidate(previous);
+        }
+
+        try {
+            return pools.get(key, () -> {
+                logger.info("Opening connection pool for " + address);
+                T pool = createPool(key, secret);
+                bindPoolMetrics(key, pool);
+                return pool;
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            // the pool could not be opened, surface the original failure so callers can handle it like before
+            currentKeys.remove(address, key);
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException){
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Failed to open connection pool for " + address, cause);
+        }
+    }
+
+    /**
+     * Closes the pool for the given endpoint (if there is one), the next borrow will open a fresh pool
+     *
+     * @param address - the address of the database
+     */
+    public void invalidate(String address) {
+        PoolKey key = currentKeys.get(address);
+        if(key != null){
+            pools.invalidate(key);
+        }
+    }
+
+    public long size() {
+        return pools.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.meterRegistry = registry;
+        GuavaCacheMetrics.monitor(registry, pools, "gatekeeper.db.pools", "type", poolType);
+    }
+
+    @Override
+    public void destroy() {
+        logger.info("Closing all " + pools.size() + " connection pools");
+        // with the reaper stopped the removal listener closes the pools right away
+        poolReaper.shutdownNow();
+        pools.invalidateAll();
+        pools.cleanUp();
+        retiringPools.forEach(pool -> closeQuietly(pool, "retiring pool"));
+        retiringPools.clear();
+    }
+
+    /*
+     * Whatever the cause, a pool that's removed may still have a borrow in flight (expiry only counts borrows, not how
+     * long a grant or probe holds on to the pool), so those calls get the retire delay to finish before the connections
+     * get closed.
+     */
+    private void retirePool(PoolKey key, T pool, RemovalCause cause) {
+        if(retireDelay <= 0){
+            logger.info("Closing connection pool for " + key.getAddress() + " (" + cause + ")");
+            closeQuietly(pool, key.getAddress());
+            return;
+        }
+
+        logger.info("Retiring connection pool for " + key.getAddress() + " (" + cause + "), closing it in " + retireDelay + " ms");
+        retiringPools.add(pool);
+        try {
+            poolReaper.schedule(() -> {
+                if(retiringPools.remove(pool)){
+                    closeQuietly(pool, key.getAddress());
+                }
+            }, retireDelay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // shutting down, no need to wait around
+            retiringPools.remove(pool);
+            closeQuietly(pool, key.getAddress());
+        }
+    }
+
+    private void closeQuietly(T pool, String description) {
+        try {
+            closePool(pool);
+        } catch (Exception ex) {
+            logger.error("Failed to close connection pool for " + description, ex);
+        }
+    }
+
+    private void bindPoolMetrics(PoolKey key, T pool) {
+        MeterRegistry registry = meterRegistry;
+        if(registry != null){
+            // each pool gets its own id so a replacement pool's gauges never get mixed up with the ones of the pool it replaced
+            poolMeters.put(key, bindPoolMetrics(registry, pool, Tags.of("type", poolType, "endpoint", key.getAddress(),
+                    "pool", String.valueOf(poolIds.incrementAndGet()))));
+        }
+    }
+
+    private void unbindPoolMetrics(PoolKey key) {
+        List<Meter> meters = poolMeters.remove(key);
+        MeterRegistry registry = meterRegistry;
+        if(meters != null && registry != null){
+            meters.forEach(registry::remove);
+        }
+    }
+
+    private String credentialVersion(String secret) {
+        // only a fingerprint of the secret is needed to tell when it changes
+        return Hashing.sha256()
+                .hashString(secret != null ? secret : "", StandardCharsets.UTF_8)
+                .toString()
+                .substring(0, 16);
+    }
+
+    public static class PoolKey {
+        private final String address;
+        private final String credentialVersion;
+
+        public PoolKey(String address, String credentialVersion) {
+            this.address = address;
+            this.credentialVersion = credentialVersion;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        public String getCredentialVersion() {
+            return credentialVersion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            PoolKey poolKey = (PoolKey) o;
+            return Objects.equal(address, poolKey.address) &&
+                    Objects.equal(credentialVersion, poolKey.credentialVersion);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(address, credentialVersion);
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("address", address)
+                    .add("credentialVersion", credentialVersion)
+                    .toString();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.services.db.pool;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.mongodb.MongoMetricsCommandListener;
+import io.micrometer.core.instrument.binder.mongodb.MongoMetricsConnectionPoolListener;
+import org.bson.Document;
+import org.finra.gatekeeper.configuration.GatekeeperProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds a long-lived MongoClient for each DocumentDB cluster Gatekeeper talks to. Every MongoClient runs its own
+ * monitoring threads, replica set discovery and TLS sessions, so opening one per call made every check take seconds.
+ */
+@Component
+public class DocumentDBClientRegistry extends ConnectionPoolRegistry<MongoClient> {
+
+    private final Logger logger = LoggerFactory.getLogger(DocumentDBClientRegistry.class);
+
+    private final String gkUserName;
+    private final Boolean ssl;
+    private final String replicaSet;
+    private final String readPreference;
+    private final Boolean retryWrites;
+    private final MongoMetricsConnectionPoolListener connectionPoolListener;
+    private final MongoMetricsCommandListener commandListener;
+    private final Timer serverSelectionTimer;
+
+    @Autowired
+    public DocumentDBClientRegistry(GatekeeperProperties gatekeeperProperties, MeterRegistry meterRegistry){
+        super("documentdb", gatekeeperProperties.getDb().getPool());
+        GatekeeperProperties.GatekeeperDbProperties db = gatekeeperProperties.getDb();
+        GatekeeperProperties.GatekeeperDbProperties.DocumentDbProperties documentdb = db.getDocumentdb();
+        this.gkUserName = db.getGkUser();
+        this.ssl = documentdb.getSsl();
+        this.replicaSet = documentdb.getReplicaSet();
+        this.readPreference = documentdb.getReadPreference();
+        this.retryWrites = documentdb.getRetryWrites();
+        // the driver reports the size / checked out connections of each server's pool and times every command
+        this.connectionPoolListener = new MongoMetricsConnectionPoolListener(meterRegistry);
+        this.commandListener = new MongoMetricsCommandListener(meterRegistry);
+        this.serverSelectionTimer = Timer.builder("gatekeeper.db.pool.server.selection")
+                .description("Time taken to discover a DocumentDB cluster and select a server when its client is opened")
+                .tag("type", "documentdb")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected MongoClient createPool(PoolKey key, String gkUserPassword) {
+        String address = key.getAddress();
+        logger.info("Creating MongoClient for " + address);
+        String connectionTemplate = "mongodb://%s:%s@%s?ssl=%s&replicaSet=%s&readPreference=%s&retryWrites=%s";
+        String connectionString = String.format(connectionTemplate, gkUserName, gkUserPassword, address, ssl, replicaSet, readPreference, retryWrites.toString());
+
+        MongoClientSettings settings = MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(connectionString))
+                .applyToConnectionPoolSettings(pool -> pool
+                        .minSize(0)
+                        .maxSize(maxConnectionsPerHost)
+                        .maxConnectionIdleTime(idleTimeout, TimeUnit.MILLISECONDS)
+                        .addConnectionPoolListener(connectionPoolListener))
+                .addCommandListener(commandListener)
+                .build();
+        MongoClient client = MongoClients.create(settings);
+
+        try {
+            // Tests the connection, the first command waits on discovering the cluster and selecting a server
+            serverSelectionTimer.record(() -> client.getDatabase("admin").runCommand(new Document("ping", 1)));
+        } catch (Exception e) {
+            logger.error("Failed to connect to " + address);
+            client.close();
+            throw e;
+        }
+        return client;
+    }
+
+    /*
+     * Closing a MongoClient fails every operation still running on it, so replaced or invalidated clients only get here
+     * once the registry has kept them around for the retire delay.
+     */
+    @Override
+    protected void closePool(MongoClient client) {
+        client.close();
+    }
+}
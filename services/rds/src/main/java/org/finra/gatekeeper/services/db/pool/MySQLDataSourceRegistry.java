@@ -0,0 +1,105 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.services.db.pool;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.apache.commons.dbcp.BasicDataSource;
+import org.finra.gatekeeper.configuration.GatekeeperProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Holds a pooled datasource for each MySQL / Aurora MySQL endpoint Gatekeeper talks to, so that lookups and grants
+ * re-use connections instead of opening a new datasource (and never closing it) for every call.
+ */
+@Component
+public class MySQLDataSourceRegistry extends ConnectionPoolRegistry<BasicDataSource> {
+
+    private final Logger logger = LoggerFactory.getLogger(MySQLDataSourceRegistry.class);
+
+    private final String gkUserName;
+    private final String ssl;
+
+    @Autowired
+    public MySQLDataSourceRegistry(GatekeeperProperties gatekeeperProperties){
+        super("mysql", gatekeeperProperties.getDb().getPool());
+        this.gkUserName = gatekeeperProperties.getDb().getGkUser();
+        this.ssl = gatekeeperProperties.getDb().getMysql().getSsl();
+    }
+
+    @Override
+    protected BasicDataSource createPool(PoolKey key, String gkUserPassword) {
+        String address = key.getAddress();
+        logger.info("Creating Datasource connection for " + address);
+        BasicDataSource dataSource = new BasicDataSource();
+
+        dataSource.setDriverClassName("org.mariadb.jdbc.Driver");
+        dataSource.setUrl("jdbc:mysql://" + address + "?" + ssl);
+        dataSource.setUsername(gkUserName);
+        dataSource.setPassword(gkUserPassword);
+        dataSource.setInitialSize(0);
+        dataSource.setMinIdle(0);
+        dataSource.setMaxIdle(maxConnectionsPerHost);
+        dataSource.setMaxActive(maxConnectionsPerHost);
+        // MySQL drops connections that sit past its wait_timeout, so check them before handing them out and
+        // close the ones that have been idle as long as the pool itself is allowed to be
+        dataSource.setValidationQuery("select 1");
+        dataSource.setTestOnBorrow(true);
+        dataSource.setMinEvictableIdleTimeMillis(idleTimeout);
+        dataSource.setTimeBetweenEvictionRunsMillis(idleTimeout);
+
+        try {
+            new JdbcTemplate(dataSource).queryForList("select 1"); // Tests the connection
+        } catch (Exception e) {
+            logger.error("Failed to connect to " + address);
+            closePool(dataSource);
+            throw e;
+        }
+        return dataSource;
+    }
+
+    @Override
+    protected void closePool(BasicDataSource dataSource) {
+        try {
+            dataSource.close();
+        } catch (SQLException e) {
+            logger.error("Failed to close datasource for " + dataSource.getUrl(), e);
+        }
+    }
+
+    @Override
+    protected List<Meter> bindPoolMetrics(MeterRegistry registry, BasicDataSource dataSource, Tags tags) {
+        return Arrays.asList(
+                Gauge.builder("gatekeeper.db.pool.connections.active", dataSource, BasicDataSource::getNumActive)
+                        .tags(tags)
+                        .register(registry),
+                Gauge.builder("gatekeeper.db.pool.connections.idle", dataSource, BasicDataSource::getNumIdle)
+                        .tags(tags)
+                        .register(registry));
+    }
+}
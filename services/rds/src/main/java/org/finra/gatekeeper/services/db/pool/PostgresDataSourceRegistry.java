@@ -0,0 +1,104 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.services.db.pool;
+
+import org.finra.gatekeeper.configuration.GatekeeperProperties;
+import org.postgresql.ds.PGPoolingDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds a pooled datasource for each Postgres endpoint Gatekeeper talks to, so that lookups and grants
+ * re-use connections instead of doing a new TLS handshake for every call.
+ */
+@Component
+public class PostgresDataSourceRegistry extends ConnectionPoolRegistry<PGPoolingDataSource> {
+
+    private final Logger logger = LoggerFactory.getLogger(PostgresDataSourceRegistry.class);
+
+    private final String gkUserName;
+    private final Boolean ssl;
+    private final String sslMode;
+    private final String sslCert;
+    private final Integer connectTimeout;
+    private final AtomicLong poolIds = new AtomicLong();
+
+    @Autowired
+    public PostgresDataSourceRegistry(GatekeeperProperties gatekeeperProperties){
+        super("postgres", gatekeeperProperties.getDb().getPool());
+        GatekeeperProperties.GatekeeperDbProperties db = gatekeeperProperties.getDb();
+        GatekeeperProperties.GatekeeperDbProperties.PostgresDbProperties postgres = db.getPostgres();
+        this.gkUserName = db.getGkUser();
+        this.ssl = postgres.getSsl();
+        this.sslMode = postgres.getSslMode();
+        this.sslCert = postgres.getSslCert();
+        this.connectTimeout = postgres.getConnectTimeout();
+    }
+
+    @Override
+    protected PGPoolingDataSource createPool(PoolKey key, String gkUserPassword) {
+        String url = key.getAddress();
+        String dbUrl = url.split("/")[0];
+        logger.info("Creating Datasource connection for " + dbUrl);
+        String pgUrl = dbUrl + "/postgres"; // url with postgres instead of whatever was on the AWS console
+        try {
+            return connectHelper(pgUrl, key.getCredentialVersion(), gkUserPassword); // Try postgres first since it is a default db.
+        } catch (Exception e){
+            logger.info("postgres database not present for " + dbUrl + " Attempting connection to " + url + " as fallback.");
+            return connectHelper(url, key.getCredentialVersion(), gkUserPassword); // Fall-back if postgres isn't there
+        }
+    }
+
+    @Override
+    protected void closePool(PGPoolingDataSource dataSource) {
+        dataSource.close();
+    }
+
+    private PGPoolingDataSource connectHelper(String address, String credentialVersion, String gkUserPassword) {
+        PGPoolingDataSource dataSource = new PGPoolingDataSource();
+        String dbUrl = "jdbc:postgresql://" + address;
+
+        // datasource names are global to the driver and a retiring pool keeps its name until it's closed, so every
+        // pool gets a name of its own
+        dataSource.setDataSourceName(address + "#" + credentialVersion + "#" + poolIds.incrementAndGet());
+        dataSource.setUrl(dbUrl);
+        dataSource.setUser(gkUserName);
+        dataSource.setPassword(gkUserPassword);
+        dataSource.setConnectTimeout(connectTimeout);
+        dataSource.setSsl(ssl);
+        dataSource.setSslMode(sslMode);
+        dataSource.setSslRootCert(sslCert);
+        dataSource.setInitialConnections(0);
+        dataSource.setMaxConnections(maxConnectionsPerHost);
+
+        try {
+            new JdbcTemplate(dataSource).queryForList("select 1"); // Tests the connection
+        } catch (Exception e) {
+            logger.error("Failed to connect to " + address);
+            dataSource.close(); // close the datasource
+            throw e;
+        }
+        logger.info("Using the following properties with the connection: " + ssl);
+        return dataSource;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.services.email;
+
+import org.finra.gatekeeper.common.properties.GatekeeperEmailProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Encrypts the rendered emails while they sit in the outbox, the credentials emails carry the temporary passwords so
+ * those shouldn't be readable straight out of email_outbox. Values are AES-GCM encrypted with a key derived from
+ * gatekeeper.email.outbox.encryptionKey, anything without the prefix was queued before encryption and is passed through.
+ */
+@Component
+public class EmailOutboxCipher {
+
+    private static final String PREFIX = "{aes-gcm}";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH = 128;
+
+    private final SecretKeySpec key;
+    private final SecureRandom random = new SecureRandom();
+
+    @Autowired
+    public EmailOutboxCipher(GatekeeperEmailProperties gatekeeperEmailProperties) {
+        String encryptionKey = gatekeeperEmailProperties.getOutbox().getEncryptionKey();
+        if (encryptionKey == null || encryptionKey.isEmpty()) {
+            throw new IllegalStateException("gatekeeper.email.outbox.encryptionKey needs to be set to queue emails in the outbox");
+        }
+        try {
+            this.key = new SecretKeySpec(MessageDigest.getInstance("SHA-256").digest(encryptionKey.getBytes(StandardCharsets.UTF_8)), "AES");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not set up the outbox encryption key", e);
+        }
+    }
+
+    /**
+     * @param value - the value to encrypt, may be null
+     * @return the encrypted value
+     */
+    public String encrypt(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            byte[] iv = new byte[IV_LENGTH];
+            random.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH, iv));
+            byte[] encrypted = cipher.doFinal(value.getBytes(StandardCharsets.UTF_8));
+            return PREFIX + Base64.getEncoder().encodeToString(ByteBuffer.allocate(iv.length + encrypted.length).put(iv).put(encrypted).array());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not encrypt the email", e);
+        }
+    }
+
+    /**
+     * @param value - the value to decrypt, may be null
+     * @return the decrypted value
+     */
+    public String decrypt(String value) {
+        if (value == null || !value.startsWith(PREFIX)) {
+            return value;
+        }
+        try {
+            byte[] decoded = Base64.getDecoder().decode(value.substring(PREFIX.length()));
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH, decoded, 0, IV_LENGTH));
+            return new String(cipher.doFinal(decoded, IV_LENGTH, decoded.length - IV_LENGTH), StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not decrypt the email, was gatekeeper.email.outbox.encryptionKey changed?", e);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.services.email;
+
+import com.amazonaws.AmazonServiceException;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.finra.gatekeeper.common.properties.GatekeeperEmailProperties;
+import org.finra.gatekeeper.common.services.email.AWSEmailService;
+import org.finra.gatekeeper.common.services.email.JavaEmailService;
+import org.finra.gatekeeper.services.email.model.EmailOutboxMessage;
+import org.finra.gatekeeper.services.email.model.EmailOutboxRepository;
+import org.finra.gatekeeper.services.email.model.EmailOutboxStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the emails queued up in the outbox. The outbox is checked every so often for emails that are due, each one is
+ * claimed (so that multiple gatekeeper instances don't send the same email) and handed off to a small pool of sender
+ * threads. Sends are held to a steady rate so SES doesn't throttle us, and emails that fail get retried with an
+ * exponential backoff until they run out of attempts.
+ */
+@Component
+public class EmailOutboxSender implements DisposableBean {
+
+    private final Logger logger = LoggerFactory.getLogger(EmailOutboxSender.class);
+
+    private static final String SES_THROTTLING_ERROR = "Throttling";
+    private static final int MAX_ERROR_LENGTH = 2048;
+
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final JavaEmailService javaEmailService;
+    private final AWSEmailService awsEmailService;
+    private final EmailOutboxCipher emailOutboxCipher;
+    private final GatekeeperEmailProperties.EmailOutboxProperties outboxProperties;
+    private final boolean useSES;
+
+    private final RateLimiter sendRateLimiter;
+
+    private final ScheduledExecutorService outboxPoller = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("gk-email-outbox-%d")
+            .setDaemon(true)
+            .build());
+
+    private final ExecutorService emailSenders;
+
+    @Autowired
+    public EmailOutboxSender(EmailOutboxRepository emailOutboxRepository,
+                             JavaEmailService javaEmailService,
+                             AWSEmailService awsEmailService,
+                             EmailOutboxCipher emailOutboxCipher,
+                             GatekeeperEmailProperties gatekeeperEmailProperties) {
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.javaEmailService = javaEmailService;
+        this.awsEmailService = awsEmailService;
+        this.emailOutboxCipher = emailOutboxCipher;
+        this.outboxProperties = gatekeeperEmailProperties.getOutbox();
+        this.useSES = gatekeeperEmailProperties.isUseSES();
+        this.sendRateLimiter = RateLimiter.create(outboxProperties.getMaxSendRate());
+        this.emailSenders = Executors.newFixedThreadPool(outboxProperties.getSenderThreads(), new ThreadFactoryBuilder()
+                .setNameFormat("gk-email-sender-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    /**
+     * Starts checking the outbox once gatekeeper is up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        logger.info("Sending queued emails every " + outboxProperties.getPollInterval() + "ms");
+        outboxPoller.scheduleWithFixedDelay(this::pollOutbox, 0, outboxProperties.getPollInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    private void pollOutbox() {
+        try {
+            // keep going while there's a backlog, otherwise wait for the next poll
+            while (sendDueMessages() >= outboxProperties.getBatchSize()) {
+                logger.info("More emails waiting in the outbox, sending the next batch");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // an exception here would stop the poller for good, so just wait for the next go around
+            logger.error("Failed to send the emails in the outbox", e);
+        }
+    }
+
+    /**
+     * Sends the emails that are currently due, returning once each of them was either sent or put off for another attempt
+     *
+     * @return the number of emails that were picked up
+     * @throws InterruptedException if interrupted while waiting on the sends
+     */
+    public int sendDueMessages() throws InterruptedException {
+        Date now = new Date();
+        Date claimedUntil = new Date(now.getTime() + outboxProperties.getClaimTimeout());
+        List<Long> dueMessageIds = emailOutboxRepository.findDueMessageIds(EmailOutboxStatus.PENDING, now,
+                PageRequest.of(0, outboxProperties.getBatchSize()));
+
+        List<Future<?>> sends = new ArrayList<>();
+        for (Long id : dueMessageIds) {
+            if (emailOutboxRepository.claim(id, now, claimedUntil) > 0) {
+                sends.add(emailSenders.submit(() -> send(id)));
+            }
+        }
+
+        for (Future<?> send : sends) {
+            try {
+                send.get();
+            } catch (ExecutionException e) {
+                logger.error("Unexpected error sending email", e.getCause());
+            }
+        }
+        return dueMessageIds.size();
+    }
+
+    private void send(Long id) {
+        EmailOutboxMessage message = emailOutboxRepository.findById(id).orElse(null);
+        if (message == null) {
+            return;
+        }
+
+        sendRateLimiter.acquire();
+        try {
+            String body = emailOutboxCipher.decrypt(message.getBody());
+            String attachment = emailOutboxCipher.decrypt(message.getAttachment());
+            if (useSES) {
+                awsEmailService.sendRenderedEmail(message.getRecipients(), message.getSender(), message.getCc(), message.getSubject(),
+                        body, message.getAttachmentName(), attachment, message.getAttachmentMimeType());
+            } else {
+                javaEmailService.sendRenderedEmail(message.getRecipients(), message.getSender(), message.getCc(), message.getSubject(),
+                        body, message.getAttachmentName(), attachment, message.getAttachmentMimeType());
+            }
+        } catch (Exception e) {
+            handleFailure(message, e);
+            return;
+        }
+        emailOutboxRepository.markSent(id, new Date());
+    }
+
+    private void handleFailure(EmailOutboxMessage message, Exception e) {
+        // getting throttled means we're sending too fast rather than that there's anything wrong with the email
+        boolean throttled = isThrottled(e);
+        int attempts = throttled ? message.getAttempts() : message.getAttempts() + 1;
+        String error = e.toString().length() > MAX_ERROR_LENGTH ? e.toString().substring(0, MAX_ERROR_LENGTH) : e.toString();
+
+        if (attempts >= outboxProperties.getMaxAttempts()) {
+            logger.error("Giving up on email " + message + " after " + attempts + " attempts", e);
+            emailOutboxRepository.markFailed(message.getId(), attempts, error);
+            return;
+        }
+
+        long backoff = getBackoff(Math.max(attempts, 1));
+        logger.warn("Failed to send email " + message + (throttled ? " (throttled)" : "") + ", trying again in " + backoff + "ms", e);
+        emailOutboxRepository.markRetry(message.getId(), attempts, new Date(System.currentTimeMillis() + backoff), error);
+    }
+
+    /*
+     * Doubles for every attempt up to the max backoff, only the upper half is jittered so that emails that failed
+     * together (e.g. while the mail server was down) don't all come back at the same time.
+     */
+    long getBackoff(int attempts) {
+        long backoff = Math.min((long) outboxProperties.getInitialBackoff() << Math.min(attempts - 1, 30), outboxProperties.getMaxBackoff());
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+
+    private boolean isThrottled(Throwable e) {
+        return Throwables.getCausalChain(e).stream()
+                .anyMatch(cause -> cause instanceof AmazonServiceException
+                        && SES_THROTTLING_ERROR.equals(((AmazonServiceException) cause).getErrorCode()));
+    }
+
+    @Override
+    public void destroy() {
+        outboxPoller.shutdownNow();
+        emailSenders.shutdownNow();
+    }
+}
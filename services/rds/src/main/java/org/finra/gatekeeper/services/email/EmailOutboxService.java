@@ -0,0 +1,127 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.services.email;
+
+import org.finra.gatekeeper.common.services.email.EmailTemplateService;
+import org.finra.gatekeeper.services.email.model.EmailOutboxMessage;
+import org.finra.gatekeeper.services.email.model.EmailOutboxRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Queues up emails in the outbox. The email is rendered right away (so nothing that may change or be lazily loaded
+ * needs to be held on to), encrypted and saved in the caller's transaction, the EmailOutboxSender sends it once that
+ * commits.
+ */
+@Component
+public class EmailOutboxService {
+
+    private final Logger logger = LoggerFactory.getLogger(EmailOutboxService.class);
+
+    private final EmailTemplateService emailTemplateService;
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final EmailOutboxCipher emailOutboxCipher;
+
+    @Autowired
+    public EmailOutboxService(EmailTemplateService emailTemplateService, EmailOutboxRepository emailOutboxRepository,
+                              EmailOutboxCipher emailOutboxCipher) {
+        this.emailTemplateService = emailTemplateService;
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.emailOutboxCipher = emailOutboxCipher;
+    }
+
+    /**
+     * Renders and queues an email
+     *
+     * @param to           - Comma separated list of users to send email
+     * @param from         - The address the email is sent from
+     * @param cc           - Comma separated list of users to cc
+     * @param emailSubject - String containing subject of email
+     * @param template     - Template name for email
+     * @param contentMap   - Key-value pairing used by template
+     * @return - the queued email
+     * @throws Exception if the template could not be rendered
+     */
+    public EmailOutboxMessage enqueue(String to, String from, String cc, String emailSubject, String template, Map<String, Object> contentMap) throws Exception {
+        return enqueueWithAttachment(to, from, cc, emailSubject, template, contentMap, null, null, null, null);
+    }
+
+    /**
+     * Queues an email that has already been rendered, for when the same body goes out to several recipients
+     *
+     * @param to           - Comma separated list of users to send email
+     * @param from         - The address the email is sent from
+     * @param cc           - Comma separated list of users to cc
+     * @param emailSubject - String containing subject of email
+     * @param template     - Template name the body was rendered from
+     * @param body         - The rendered body
+     * @return - the queued email
+     */
+    public EmailOutboxMessage enqueueRendered(String to, String from, String cc, String emailSubject, String template, String body) {
+        logger.info("Queueing email to " + to + " with subject " + emailSubject + " and message: " + template);
+        return emailOutboxRepository.save(newMessage(to, from, cc, emailSubject, template, body));
+    }
+
+    /**
+     * Renders and queues an email with an attachment
+     *
+     * @param to                 - Comma separated list of users to send email
+     * @param from               - The address the email is sent from
+     * @param cc                 - Comma separated list of users to cc
+     * @param emailSubject       - String containing subject of email
+     * @param template           - Template name for email
+     * @param contentMap         - Key-value pairing used by template
+     * @param attachmentName     - Name of attachment
+     * @param attachmentTemplate - Template name for email attachment
+     * @param attachmentMap      - Key-value pairing used by attachment template
+     * @param mimeType           - The mime type of the attachment
+     * @return - the queued email
+     * @throws Exception if the template could not be rendered
+     */
+    public EmailOutboxMessage enqueueWithAttachment(String to, String from, String cc, String emailSubject, String template, Map<String, Object> contentMap,
+                                                    String attachmentName, String attachmentTemplate, Map<String, Object> attachmentMap, String mimeType) throws Exception {
+        logger.info("Queueing email to " + to + " with subject " + emailSubject + " and message: " + template);
+        EmailOutboxMessage message = newMessage(to, from, cc, emailSubject, template, emailTemplateService.render(template, contentMap));
+
+        if(attachmentName != null){
+            message.setAttachmentName(attachmentName)
+                    .setAttachment(emailOutboxCipher.encrypt(emailTemplateService.render("attachments/" + attachmentTemplate, attachmentMap)))
+                    .setAttachmentMimeType(mimeType);
+        }
+
+        return emailOutboxRepository.save(message);
+    }
+
+    private EmailOutboxMessage newMessage(String to, String from, String cc, String emailSubject, String template, String body) {
+        Date now = new Date();
+        return new EmailOutboxMessage()
+                .setRecipients(to)
+                .setSender(from)
+                .setCc(cc)
+                .setSubject(emailSubject)
+                .setTemplate(template)
+                .setBody(emailOutboxCipher.encrypt(body))
+                .setCreated(now)
+                .setNextAttemptAt(now);
+    }
+}
@@ -18,52 +18,53 @@
 package org.finra.gatekeeper.services.email;
 
 import org.finra.gatekeeper.common.properties.GatekeeperEmailProperties;
+import org.finra.gatekeeper.common.services.email.EmailTemplateService;
 import org.finra.gatekeeper.configuration.GatekeeperProperties;
 import org.finra.gatekeeper.rds.model.RoleType;
 import org.finra.gatekeeper.services.accessrequest.model.AWSRdsDatabase;
 import org.finra.gatekeeper.services.accessrequest.model.AccessRequest;
 import org.finra.gatekeeper.services.accessrequest.model.User;
-import org.finra.gatekeeper.common.services.email.AWSEmailService;
-import org.finra.gatekeeper.common.services.email.JavaEmailService;
+import org.finra.gatekeeper.services.accessrequest.model.UserRole;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
- * Service for email message related activity
+ * Service for email message related activity, emails are only queued up here and get sent by the EmailOutboxSender
  */
 @Component
 public class EmailServiceWrapper {
 
     private final Logger logger  = LoggerFactory.getLogger(EmailServiceWrapper.class);
 
-    private JavaEmailService javaEmailService;
-    private AWSEmailService awsEmailService;
+    private EmailOutboxService emailOutboxService;
+    private EmailTemplateService emailTemplateService;
 
     private String approverEmails;
     private String opsEmails;
     private String teamEmail;
     private String mailFrom;
     private boolean sendAccessRequestedEmail;
-    private boolean useSES;
 
     @Autowired
-    public EmailServiceWrapper(JavaEmailService javaEmailService, AWSEmailService awsEmailService, GatekeeperEmailProperties gatekeeperProperties){
-        this.javaEmailService = javaEmailService;
-        this.awsEmailService = awsEmailService;
+    public EmailServiceWrapper(EmailOutboxService emailOutboxService, EmailTemplateService emailTemplateService, GatekeeperEmailProperties gatekeeperProperties){
+        this.emailOutboxService = emailOutboxService;
+        this.emailTemplateService = emailTemplateService;
         this.approverEmails = gatekeeperProperties.getApproverEmails();
         this.opsEmails = gatekeeperProperties.getOpsEmails();
         this.teamEmail = gatekeeperProperties.getTeam();
         this.mailFrom = gatekeeperProperties.getFrom();
         this.sendAccessRequestedEmail = gatekeeperProperties.isSendAccessRequestedEmail();
-        this.useSES = gatekeeperProperties.isUseSES();
     }
 
     /*
@@ -120,15 +121,26 @@ public class EmailServiceWrapper {
 
     public void notifyExpired(AccessRequest request){
         logger.info("notify users that their time is up " + request.getUsers());
-        request.getUsers().forEach(user -> {
-            emailHelper(user.getEmail(), null, "Gatekeeper: Your Access has expired", "accessExpired", request);
-        });
+        String subject = "Gatekeeper: Your Access has expired";
+        try {
+            // every user on the request gets the same email, so it only needs rendering the once
+            Map<String, Object> params = new HashMap<>();
+            params.put("request", request);
+            params.put("approverDL", approverEmails);
+            String body = emailTemplateService.render("accessExpired", params);
+            request.getUsers().forEach(user -> emailOutboxService.enqueueRendered(user.getEmail(), mailFrom, null, subject, "accessExpired", body));
+        }catch(Exception ex){
+            logger.info("Unable to push emails out to recipients " + request.getUsers() + " using subject: " + subject
+                    + " with template: accessExpired\n Access Request: " + request.toString());
+            notifyAdminsOfFailure(request,ex);
+        }
     }
 
     /**
      * Default notification for Ops team, this will just pass all instances with the request, this will be called in cases of absolute failure
      * @param request
      */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void notifyOps(AccessRequest request){
         notifyOps(request, request.getAwsRdsInstances());
     }
@@ -140,6 +152,7 @@ public class EmailServiceWrapper {
      * @param request
      * @param offlineInstances
      */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void notifyOps(AccessRequest request, List<AWSRdsDatabase> offlineInstances){
         logger.info("Some instances were not properly revoked, notifying the ops team ("+offlineInstances+")");
         Map<String, List<AWSRdsDatabase>> custom = new HashMap<>();
@@ -162,7 +175,42 @@ public class EmailServiceWrapper {
         emailHelper(request.getRequestorEmail(), null, "Gatekeeper: Access Request " + request.getId() + " was granted", "accessGranted", request);
     }
 
-    public void notifyOfCredentials(AccessRequest request, User user, RoleType roleType, String password, Map<String, Map<RoleType, List<String>>> schemaTables){
+    /**
+     * Renders the databases / schemas section of the grant email for each role on the request. This is the same for
+     * every user on the request, so it gets rendered once here and handed to notifyOfCredentials for each of them.
+     *
+     * @param request - The request the emails are for
+     * @param schemaTables - the schemas / tables for each role, by database name
+     * @return the rendered section for each role
+     * @throws Exception if the section can't be rendered for one of the roles
+     */
+    public Map<RoleType, String> renderSchemaListings(AccessRequest request, Map<String, Map<RoleType, List<String>>> schemaTables) throws Exception {
+        Map<RoleType, String> schemaListings = new EnumMap<>(RoleType.class);
+
+        //Freemarker hates the enum map, so convert the enums to strings
+        Map<String, Map<String, List<String>>> convertedSchemaTables = new HashMap<>();
+
+        schemaTables.entrySet().forEach(entry -> {
+            Map<String, List<String>> converted = new HashMap<>();
+            entry.getValue().entrySet().forEach(schema -> {
+                converted.put(schema.getKey().toString(), schema.getValue());
+            });
+            convertedSchemaTables.put(entry.getKey(), converted);
+        });
+
+        for(UserRole userRole : request.getRoles()){
+            RoleType roleType = RoleType.valueOf(userRole.getRole().toUpperCase());
+            Map<String, Object> params = new HashMap<>();
+            params.put("request", request);
+            params.put("role", roleType);
+            params.put("schemaTables", convertedSchemaTables);
+            schemaListings.put(roleType, emailTemplateService.render("fragments/schemaListing", params));
+        }
+
+        return schemaListings;
+    }
+
+    public void notifyOfCredentials(AccessRequest request, User user, RoleType roleType, String password, Map<RoleType, String> schemaListings){
         logger.info("Send user their fresh credentials: " +  request);
         try {
 
@@ -172,19 +220,7 @@ public class EmailServiceWrapper {
             contentMap.put("userName", user.getUserId() + "_" + roleType.getShortSuffix());
             contentMap.put("password", password);
             contentMap.put("role", roleType);
-
-            //Freemarker hates the enum map, so convert the enums to strings
-            Map<String, Map<String, List<String>>> convertedSchemaTables = new HashMap<>();
-
-            schemaTables.entrySet().forEach(entry -> {
-                Map<String, List<String>> converted = new HashMap<>();
-                entry.getValue().entrySet().forEach(schema -> {
-                    converted.put(schema.getKey().toString(), schema.getValue());
-                });
-                convertedSchemaTables.put(entry.getKey(), converted);
-            });
-
-            contentMap.put("schemaTables", convertedSchemaTables);
+            contentMap.put("schemaListing", schemaListings.get(roleType));
 
             sendEmail(user.getEmail(), mailFrom, null, "Gatekeeper: ["+request.getId()+"] You have been granted " + roleType.getDbRole() + " access", "userGrant", contentMap);
             sendEmail(user.getEmail(), mailFrom, null, "Gatekeeper: ["+request.getId()+"] Your temporary credentials for role " + roleType.getDbRole(), "credentials", contentMap);
@@ -195,6 +231,14 @@ public class EmailServiceWrapper {
 
     }
 
+    /**
+     * Lets the gatekeeper team know a process failed. This is queued in its own transaction since the step that failed
+     * usually rolls its transaction back, which would take the email along with it.
+     *
+     * @param request - The request that failed
+     * @param exception - what went wrong
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void notifyAdminsOfFailure(AccessRequest request, Throwable exception){
         logger.info("Notify Gatekeeper Admins that an exception was tossed trying to grant Access for " +  request);
         try {
@@ -203,25 +247,17 @@ public class EmailServiceWrapper {
             param.put("stacktrace", stacktrace);
             Map<String, Object> contentMap = new HashMap<String,Object>();
             contentMap.put("request", request);
-            if(useSES) {
-                awsEmailService.sendEmailWithAttachment(teamEmail, mailFrom,null, "Gatekeeper: Failure executing process", "failure",contentMap, "Exception.txt","exception",  param, "text/plain");
-            }else{
-                javaEmailService.sendEmailWithAttachment(teamEmail, mailFrom,null, "Gatekeeper: Failure executing process", "failure",contentMap, "Exception.txt","exception",  param, "text/plain");
-            }
+            emailOutboxService.enqueueWithAttachment(teamEmail, mailFrom,null, "Gatekeeper: Failure executing process", "failure",contentMap, "Exception.txt","exception",  param, "text/plain");
         }catch(Exception e){
             logger.error("Error sending the team an email",e);
         }
 
     }
     /**
-     * Helper Method for sending emails to the right email service
+     * Helper Method for queueing emails in the outbox
      */
     private void sendEmail(String to, String from, String cc, String emailSubject, String template, Map<String, Object> contentMap) throws Exception{
-        if(useSES) {
-            awsEmailService.sendEmail(to, from, cc, emailSubject, template, contentMap);
-        }else{
-            javaEmailService.sendEmail(to, from, cc, emailSubject, template, contentMap);
-        }
+        emailOutboxService.enqueue(to, from, cc, emailSubject, template, contentMap);
     }
 
     /**
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.services.email.model;
+
+import com.google.common.base.MoreObjects;
+import org.hibernate.annotations.Type;
+
+import javax.persistence.*;
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * An email waiting to go out. The workflow only renders the email and drops it in here (in the same transaction as the
+ * step that sent it, failure notifications get their own), the EmailOutboxSender picks it up afterwards and takes care
+ * of sending and retrying it.
+ */
+@Entity
+@Table(name = "email_outbox", indexes = {
+        @Index(name = "email_outbox_due_idx", columnList = "status,next_attempt_at")
+})
+public class EmailOutboxMessage {
+
+    private Long id;
+    private String recipients;
+    private String cc;
+    private String sender;
+    private String subject;
+    private String template;
+    private String body;
+    private String attachmentName;
+    private String attachment;
+    private String attachmentMimeType;
+    private EmailOutboxStatus status = EmailOutboxStatus.PENDING;
+    private Integer attempts = 0;
+    private Date created;
+    private Date nextAttemptAt;
+    private Date sentAt;
+    private String lastError;
+
+    /**
+     * Getters / Setters for ID
+     */
+    @Id
+    @GeneratedValue
+    public Long getId() {
+        return id;
+    }
+
+    public EmailOutboxMessage setId(Long id) {
+        this.id = id;
+        return this;
+    }
+
+    /**
+     * Getters / Setters for the comma separated list of addresses the email goes to
+     */
+    @Column(nullable = false, length = 1024)
+    public String getRecipients() {
+        return recipients;
+    }
+
+    public EmailOutboxMessage setRecipients(String recipients) {
+        this.recipients = recipients;
+        return this;
+    }
+
+    /**
+     * Getters / Setters for the comma separated list of addresses to cc
+     */
+    @Column(length = 1024)
+    public String getCc() {
+        return cc;
+    }
+
+    public EmailOutboxMessage setCc(String cc) {
+        this.cc = cc;
+        return this;
+    }
+
+    /**
+     * Getters / Setters for the address the email is sent from
+     */
+    @Column(nullable = false)
+    public String getSender() {
+        return sender;
+    }
+
+    public EmailOutboxMessage setSender(String sender) {
+        this.sender = sender;
+        return this;
+    }
+
+    /**
+     * Getters / Setters for Subject
+     */
+    @Column(nullable = false, length = 1024)
+    public String getSubject() {
+        return subject;
+    }
+
+    public EmailOutboxMessage setSubject(String subject) {
+        this.subject = subject;
+        return this;
+    }
+
+    /**
+     * Getters / Setters for the template the email was rendered from, kept for logging
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    public EmailOutboxMessage setTemplate(String template) {
+        this.template = template;
+        return this;
+    }
+
+    /**
+     * Getters / Setters for the rendered body, this is encrypted (see EmailOutboxCipher) and cleared out once the email is
+     * done with since it can hold credentials
+     */
+    @Type(type = "org.hibernate.type.TextType")
+    public String getBody() {
+        return body;
+    }
+
+    public EmailOutboxMessage setBody(String body) {
+        this.body = body;
+        return this;
+    }
+
+    /**
+     * Getters / Setters for the name of the attachment, null if there isn't one
+     */
+    @Column(name = "attachment_name")
+    public String getAttachmentName() {
+        return attachmentName;
+    }
+
+    public EmailOutboxMessage setAttachmentName(String attachmentName) {
+        this.attachmentName = attachmentName;
+        return this;
+    }
+
+    /**
+     * Getters / Setters for the rendered attachment, encrypted the same as the body
+     */
+    @Type(type = "org.hibernate.type.TextType")
+    public String getAttachment() {
+        return attachment;
+    }
+
+    public EmailOutboxMessage setAttachment(String attachment) {
+        this.attachment = attachment;
+        return this;
+    }
+
+    /**
+     * Getters / Setters for the mime type of the attachment
+     */
+    @Column(name = "attachment_mime_type")
+    public String getAttachmentMimeType() {
+        return attachmentMimeType;
+    }
+
+    public EmailOutboxMessage setAttachmentMimeType(String attachmentMimeType) {
+        this.attachmentMimeType = attachmentMimeType;
+        return this;
+    }
+
+    /**
+     * Getters / Setters for Status
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    public EmailOutboxStatus getStatus() {
+        return status;
+    }
+
+    public EmailOutboxMessage setStatus(EmailOutboxStatus status) {
+        this.status = status;
+        return this;
+    }
+
+    /**
+     * Getters / Setters for the number of failed attempts at sending the email
+     */
+    @Column(nullable = false)
+    public Integer getAttempts() {
+        return attempts;
+    }
+
+    public EmailOutboxMessage setAttempts(Integer attempts) {
+        this.attempts = attempts;
+        return this;
+    }
+
+    /**
+     * Getters / Setters for when the email was queued
+     */
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(nullable = false)
+    public Date getCreated() {
+        return created;
+    }
+
+    public EmailOutboxMessage setCreated(Date created) {
+        this.created = created;
+        return this;
+    }
+
+    /**
+     * Getters / Setters for the earliest time the email should be (re-)sent
+     */
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "next_attempt_at", nullable = false)
+    public Date getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public EmailOutboxMessage setNextAttemptAt(Date nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+        return this;
+    }
+
+    /**
+     * Getters / Setters for when the email was sent
+     */
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "sent_at")
+    public Date getSentAt() {
+        return sentAt;
+    }
+
+    public EmailOutboxMessage setSentAt(Date sentAt) {
+        this.sentAt = sentAt;
+        return this;
+    }
+
+    /**
+     * Getters / Setters for the error from the last failed attempt
+     */
+    @Column(name = "last_error", length = 2048)
+    public String getLastError() {
+        return lastError;
+    }
+
+    public EmailOutboxMessage setLastError(String lastError) {
+        this.lastError = lastError;
+        return this;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (o == null || !getClass().equals(o.getClass())) {
+            return false;
+        }
+
+        EmailOutboxMessage that = (EmailOutboxMessage) o;
+        return Objects.equals(id, that.id)
+                && Objects.equals(recipients, that.recipients)
+                && Objects.equals(subject, that.subject)
+                && Objects.equals(created, that.created);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, recipients, subject, created);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("id", id)
+                .add("recipients", recipients)
+                .add("cc", cc)
+                .add("subject", subject)
+                .add("template", template)
+                .add("status", status)
+                .add("attempts", attempts)
+                .add("nextAttemptAt", nextAttemptAt)
+                .toString();
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.services.email.model;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Repo object for the EmailOutboxMessage domain
+ */
+public interface EmailOutboxRepository extends JpaRepository<EmailOutboxMessage, Long> {
+
+    /**
+     * The emails that are due to be sent, oldest first. Only the ids are pulled back, the bodies get loaded by whichever
+     * sender manages to claim the email.
+     */
+    @Query("select m.id from EmailOutboxMessage m where m.status = :status and m.nextAttemptAt <= :now order by m.nextAttemptAt")
+    List<Long> findDueMessageIds(@Param("status") EmailOutboxStatus status, @Param("now") Date now, Pageable pageable);
+
+    /**
+     * Holds on to a due email until claimedUntil by pushing its next attempt back. Only one sender (across every gatekeeper
+     * instance) can claim an email, and should that sender go away before finishing the email gets picked up again after
+     * the claim runs out.
+     *
+     * @return 1 if the email was claimed, 0 if it was already claimed / sent
+     */
+    @Transactional
+    @Modifying
+    @Query("update EmailOutboxMessage m set m.nextAttemptAt = :claimedUntil " +
+            "where m.id = :id and m.status = org.finra.gatekeeper.services.email.model.EmailOutboxStatus.PENDING and m.nextAttemptAt <= :now")
+    int claim(@Param("id") Long id, @Param("now") Date now, @Param("claimedUntil") Date claimedUntil);
+
+    @Transactional
+    @Modifying
+    @Query("update EmailOutboxMessage m set m.status = org.finra.gatekeeper.services.email.model.EmailOutboxStatus.SENT, " +
+            "m.sentAt = :sentAt, m.lastError = null, m.body = null, m.attachment = null where m.id = :id")
+    int markSent(@Param("id") Long id, @Param("sentAt") Date sentAt);
+
+    @Transactional
+    @Modifying
+    @Query("update EmailOutboxMessage m set m.attempts = :attempts, m.nextAttemptAt = :nextAttemptAt, m.lastError = :lastError " +
+            "where m.id = :id")
+    int markRetry(@Param("id") Long id, @Param("attempts") Integer attempts, @Param("nextAttemptAt") Date nextAttemptAt, @Param("lastError") String lastError);
+
+    @Transactional
+    @Modifying
+    @Query("update EmailOutboxMessage m set m.status = org.finra.gatekeeper.services.email.model.EmailOutboxStatus.FAILED, " +
+            "m.attempts = :attempts, m.lastError = :lastError, m.body = null, m.attachment = null where m.id = :id")
+    int markFailed(@Param("id") Long id, @Param("attempts") Integer attempts, @Param("lastError") String lastError);
+}
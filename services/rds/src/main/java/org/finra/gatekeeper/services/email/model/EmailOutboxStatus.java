@@ -0,0 +1,44 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.services.email.model;
+
+/**
+ * Where an email in the outbox is at
+ */
+public enum EmailOutboxStatus {
+
+    PENDING("PENDING", "The email is waiting to be sent (or re-sent)"),
+    SENT("SENT", "The email was sent"),
+    FAILED("FAILED", "The email could not be sent after all of its attempts");
+
+    private final String value;
+    private final String description;
+
+    EmailOutboxStatus(String value, String description){
+        this.value = value;
+        this.description = description;
+    }
+
+    public String getValue(){
+        return value;
+    }
+    public String getDescription(){
+        return description;
+    }
+
+}
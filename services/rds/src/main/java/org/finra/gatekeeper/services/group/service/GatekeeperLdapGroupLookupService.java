@@ -124,9 +124,7 @@ public class GatekeeperLdapGroupLookupService implements IGatekeeperGroupLookupS
         public GatekeeperADGroupEntry mapFromAttributes(Attributes attributes) throws NamingException {
             Attribute nameAttr = attributes.get("name");
             String name = nameAttr != null ? ((String) nameAttr.get()).toUpperCase() : null;
-            String[] parsedAttributes = gatekeeperLdapParseService.parseADGroups(name);
-
-            return new GatekeeperADGroupEntry(parsedAttributes[0], parsedAttributes[1], parsedAttributes[2], name);
+            return gatekeeperLdapParseService.getADGroupEntry(name);
         }
 
     }
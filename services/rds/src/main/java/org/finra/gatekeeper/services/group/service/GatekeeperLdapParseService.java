@@ -16,22 +16,41 @@
  */
 package org.finra.gatekeeper.services.group.service;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import org.finra.gatekeeper.configuration.GatekeeperRdsAuthProperties;
+import org.finra.gatekeeper.services.group.model.GatekeeperADGroupEntry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * Parses restricted AD group names into their application, gatekeeper role and sdlc. The pattern is compiled once and
+ * the parsed groups are remembered, the same groups get parsed on every group and role reload. Safe to share between threads.
+ */
 @Component
 public class GatekeeperLdapParseService {
 
-    private GatekeeperRdsAuthProperties gatekeeperRdsAuthProperties;
+    private final Pattern adGroupPattern;
+
+    /* AD Group Name -> Parsed AD Group */
+    private final LoadingCache<String, GatekeeperADGroupEntry> adGroupCache = CacheBuilder.newBuilder()
+            .maximumSize(20000L)
+            .concurrencyLevel(10)
+            .build(new CacheLoader<String, GatekeeperADGroupEntry>() {
+                @Override
+                public GatekeeperADGroupEntry load(String adGroup) {
+                    String[] parsed = parseADGroups(adGroup);
+                    return new GatekeeperADGroupEntry(parsed[0], parsed[1], parsed[2], adGroup);
+                }
+            });
 
     @Autowired
     public GatekeeperLdapParseService(GatekeeperRdsAuthProperties gatekeeperRdsAuthProperties){
-
-        this.gatekeeperRdsAuthProperties = gatekeeperRdsAuthProperties;
+        this.adGroupPattern = Pattern.compile(gatekeeperRdsAuthProperties.getAdGroupsPattern());
     }
 
     /**
@@ -49,9 +68,7 @@ public class GatekeeperLdapParseService {
             return new String[] {"","",""};
         }
         ADgroup = ADgroup.toUpperCase();
-        String regex = gatekeeperRdsAuthProperties.getAdGroupsPattern();
-        Pattern pattern = Pattern.compile(regex);
-        Matcher matcher = pattern.matcher(ADgroup);
+        Matcher matcher = adGroupPattern.matcher(ADgroup);
 
         if(!matcher.find()){
             return new String[] {"","",""};
@@ -59,4 +76,18 @@ public class GatekeeperLdapParseService {
 
         return new String[] {matcher.group(1),matcher.group(2),matcher.group(3), matcher.group(0)};
     }
+
+    /**
+     * Gets the parsed AD group entry for the given (upper case) AD group name, groups that have been parsed before are
+     * handed back without parsing them again.
+     *
+     * @param adGroup - the upper case name of the AD group
+     * @return the AD group entry, with an empty application, role and sdlc if the group name is invalid
+     */
+    public GatekeeperADGroupEntry getADGroupEntry(String adGroup){
+        if(adGroup == null){
+            return new GatekeeperADGroupEntry("", "", "", null);
+        }
+        return adGroupCache.getUnchecked(adGroup);
+    }
 }
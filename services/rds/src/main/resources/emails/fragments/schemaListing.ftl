@@ -0,0 +1,11 @@
+<#list request.getAwsRdsInstances() as db>
+    <li><b>${db.getInstanceId()}</b> -- ${db.getName()?has_content?string(db.getName(), 'Unknown')} -- ${db.getEngine()}</li>
+    <b>Schemas/Tables Included: </b>
+    <#assign currentDb = schemaTables[db.getName()]>
+        <#if currentDb[role]??>
+            <#list currentDb[role] as schemaTable>
+                <ul>${schemaTable}</ul>
+            </#list>
+        </#if>
+
+</#list>
@@ -12,17 +12,7 @@
         Your password will be provided in another email denoting the request id + the role this message is associated with.
 
         <ul>
-            <#list request.getAwsRdsInstances() as db>
-                <li><b>${db.getInstanceId()}</b> -- ${db.getName()?has_content?string(db.getName(), 'Unknown')} -- ${db.getEngine()}</li>
-                <b>Schemas/Tables Included: </b>
-                <#assign currentDb = schemaTables[db.getName()]>
-                    <#if currentDb[role]??>
-                        <#list currentDb[role] as schemaTable>
-                            <ul>${schemaTable}</ul>
-                        </#list>
-                    </#if>
-
-            </#list>
+            ${schemaListing!}
         </ul>
 
     </div>
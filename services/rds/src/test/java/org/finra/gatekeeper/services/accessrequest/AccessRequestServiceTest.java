@@ -24,7 +24,6 @@ import org.activiti.engine.history.HistoricVariableInstance;
 import org.activiti.engine.history.HistoricVariableInstanceQuery;
 import org.activiti.engine.history.NativeHistoricVariableInstanceQuery;
 import org.activiti.engine.impl.persistence.entity.HistoricVariableInstanceEntity;
-import org.activiti.engine.impl.persistence.entity.VariableInstance;
 import org.activiti.engine.runtime.ProcessInstanceQuery;
 import org.activiti.engine.task.Task;
 import org.activiti.engine.task.TaskQuery;
@@ -34,6 +33,7 @@ import org.finra.gatekeeper.configuration.GatekeeperOverrideProperties;
 import org.finra.gatekeeper.configuration.GatekeeperProperties;
 import org.finra.gatekeeper.controllers.wrappers.AccessRequestWrapper;
 import org.finra.gatekeeper.controllers.wrappers.ActiveAccessRequestWrapper;
+import org.finra.gatekeeper.controllers.wrappers.CompletedAccessRequestPage;
 import org.finra.gatekeeper.controllers.wrappers.CompletedAccessRequestWrapper;
 import org.finra.gatekeeper.exception.GatekeeperException;
 import org.finra.gatekeeper.rds.interfaces.GKUserCredentialsProvider;
@@ -56,6 +56,7 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -139,10 +140,13 @@ public class AccessRequestServiceTest {
     private HistoricVariableInstanceEntity nonOwnerHistoricVariableInstanceAccessRequest;
 
     @Mock
-    private VariableInstance ownerOneTaskInstance;
+    private HistoricVariableInstanceEntity ownerOneTaskInstance;
 
     @Mock
-    private VariableInstance ownerTwoTaskInstance;
+    private HistoricVariableInstanceEntity ownerTwoTaskInstance;
+
+    @Mock
+    private NativeHistoricVariableInstanceQuery activeRequestVariablesQuery;
 
 
     @Mock
@@ -304,14 +308,19 @@ public class AccessRequestServiceTest {
         when(ownerTwoTask.getCreateTime()).thenReturn(testDate);
         when(ownerTwoTask.getId()).thenReturn("taskTwo");
 
+        when(ownerOneTask.getProcessInstanceId()).thenReturn("ownerOneProcess");
+        when(ownerTwoTask.getProcessInstanceId()).thenReturn("ownerTwoProcess");
+
+        when(ownerOneTaskInstance.getVariableName()).thenReturn("accessRequest");
+        when(ownerOneTaskInstance.getProcessInstanceId()).thenReturn("ownerOneProcess");
         when(ownerOneTaskInstance.getTextValue2()).thenReturn("1");
+        when(ownerTwoTaskInstance.getVariableName()).thenReturn("accessRequest");
+        when(ownerTwoTaskInstance.getProcessInstanceId()).thenReturn("ownerTwoProcess");
         when(ownerTwoTaskInstance.getTextValue2()).thenReturn("2");
 
         when(accessRequestRepository.getAccessRequestById(1L)).thenReturn(ownerRequest);
         when(accessRequestRepository.getAccessRequestById(2L)).thenReturn(nonOwnerRequest);
 
-        when(runtimeService.getVariableInstance("ownerOneTask", "accessRequest")).thenReturn(ownerOneTaskInstance);
-        when(runtimeService.getVariableInstance("ownerTwoTask", "accessRequest")).thenReturn(ownerTwoTaskInstance);
 
 
         List<Task> activeTasks = new ArrayList<>();
@@ -380,7 +389,11 @@ public class AccessRequestServiceTest {
 
         initMockAccount("dev");
         initApprovalThresholds(OWNER_APPLICATION, MOCK_MAXIMUM, MOCK_MAXIMUM, MOCK_MAXIMUM);
+        when(nativeHistoricVariableInstanceQuery.sql(ACTIVE_REQUEST_VARIABLES_QUERY)).thenReturn(activeRequestVariablesQuery);
+        when(activeRequestVariablesQuery.list()).thenReturn(Arrays.asList(ownerOneTaskInstance, ownerTwoTaskInstance));
         when(accessRequestRepository.getAccessRequestsByIdIn(Mockito.anyCollection())).thenReturn(Arrays.asList(ownerRequest, nonOwnerRequest));
+        when(accessRequestRepository.getAccessRequestCountsByIdIn(Mockito.anyCollection()))
+                .thenReturn(Arrays.asList(accessRequestCounts(1L, 1, 1), accessRequestCounts(2L, 1, 1)));
 
 
         Map<String, String> ownerMap = new HashMap<>();
@@ -418,6 +431,25 @@ public class AccessRequestServiceTest {
     }
 
 
+    private AccessRequestCounts accessRequestCounts(Long id, Integer userCount, Integer instanceCount) {
+        return new AccessRequestCounts() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Integer getUserCount() {
+                return userCount;
+            }
+
+            @Override
+            public Integer getInstanceCount() {
+                return instanceCount;
+            }
+        };
+    }
+
     /**
      * Test the command used within the workflow to determine whether or not
      * approval is needed.
@@ -742,6 +774,10 @@ public class AccessRequestServiceTest {
         Assert.assertEquals(nonOwnerRequest.getInstanceCount(), new Integer(1));
         Assert.assertEquals(nonOwnerRequest.getCreated().toString(), testDate.toString());
         Assert.assertEquals(nonOwnerRequest.getTaskId(), "taskTwo");
+
+        // everything gets loaded in one go rather than a request at a time
+        verify(accessRequestRepository, times(1)).getAccessRequestsByIdIn(new HashSet<>(Arrays.asList(1L, 2L)));
+        verify(accessRequestRepository, never()).getAccessRequestById(any());
     }
 
 
@@ -928,6 +964,92 @@ public class AccessRequestServiceTest {
     }
 
 
+    private List<Map<String, String>> completedRequestPage(int size) {
+        List<Map<String, String>> page = new ArrayList<>();
+        for(int i = size; i > 0; i--) {
+            Map<String, String> request = new HashMap<>();
+            request.put("id", String.valueOf(i));
+            request.put("requestorId", "owner");
+            request.put("status", "GRANTED");
+            request.put("created", "1969-12-29T00:00:00");
+            request.put("updated", String.valueOf(1000L * i));
+            page.add(request);
+        }
+        return page;
+    }
+
+    /**
+     * Test for checking that non approvers only get their own completed requests, and that the check is done in the query
+     */
+    @Test
+    public void testGetCompletedRequestsPageDev() throws Exception {
+        when(gatekeeperRoleService.getUserProfile()).thenReturn(ownerEntry);
+        when(gatekeeperRoleService.getRole()).thenReturn(GatekeeperRdsRole.DEV);
+        when(query.getResultList()).thenReturn(completedRequestPage(2));
+        doReturn(query).when(entityManager).createNativeQuery(anyString());
+
+        CompletedAccessRequestPage page = accessRequestService.getCompletedRequests(new CompletedAccessRequestFilter()
+                .setAccount("dev")
+                .setStatus(RequestStatus.GRANTED));
+
+        Assert.assertEquals(2, page.getRequests().size());
+        Assert.assertNull(page.getNextCursor());
+        verify(entityManager).createNativeQuery(Mockito.contains("summary.requestor_id = :current_user_id"));
+        verify(query).setParameter("current_user_id", "owner");
+        verify(query).setParameter("account", "DEV");
+        verify(query).setParameter("status", "GRANTED");
+        verify(query).setMaxResults(CompletedAccessRequestFilter.DEFAULT_LIMIT + 1);
+    }
+
+    /**
+     * Test for checking that approvers see everyone's completed requests, and that the cursor for the next page is handed back
+     */
+    @Test
+    public void testGetCompletedRequestsPageApprover() throws Exception {
+        when(gatekeeperRoleService.getRole()).thenReturn(GatekeeperRdsRole.APPROVER);
+        when(query.getResultList()).thenReturn(completedRequestPage(3));
+        doReturn(query).when(entityManager).createNativeQuery(anyString());
+
+        CompletedAccessRequestPage page = accessRequestService.getCompletedRequests(new CompletedAccessRequestFilter()
+                .setCursor("4000_4")
+                .setLimit(2));
+
+        Assert.assertEquals(2, page.getRequests().size());
+        Assert.assertEquals("2000_2", page.getNextCursor());
+        verify(entityManager, never()).createNativeQuery(Mockito.contains(":current_user_id"));
+        verify(query).setParameter("cursor_updated", new Date(4000L));
+        verify(query).setParameter("cursor_id", 4L);
+        verify(query).setMaxResults(3);
+    }
+
+    /**
+     * Test for checking the paged query can have a limit appended to it and filters on the normalized requestor id
+     */
+    @Test
+    public void testGetCompletedRequestsPageQuery() throws Exception {
+        when(gatekeeperRoleService.getRole()).thenReturn(GatekeeperRdsRole.APPROVER);
+        when(query.getResultList()).thenReturn(completedRequestPage(1));
+        doReturn(query).when(entityManager).createNativeQuery(anyString());
+
+        accessRequestService.getCompletedRequests(new CompletedAccessRequestFilter()
+                .setRequestorId("OWNER"));
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(entityManager).createNativeQuery(sql.capture());
+        Assert.assertTrue(sql.getValue().trim().endsWith("order by summary.updated desc, summary.access_request_id desc"));
+        Assert.assertFalse(sql.getValue().contains(";"));
+        Assert.assertFalse(sql.getValue().contains("lower("));
+        verify(query).setParameter("requestor_id", "owner");
+    }
+
+    @Test(expected = GatekeeperException.class)
+    public void testGetCompletedRequestsPageInvalidCursor() throws Exception {
+        when(gatekeeperRoleService.getRole()).thenReturn(GatekeeperRdsRole.AUDITOR);
+        doReturn(query).when(entityManager).createNativeQuery(anyString());
+
+        accessRequestService.getCompletedRequests(new CompletedAccessRequestFilter().setCursor("not-a-cursor"));
+    }
+
         /**
          * Tests that the status and taskID are passed to the taskService correctly
          * when the request is approved.
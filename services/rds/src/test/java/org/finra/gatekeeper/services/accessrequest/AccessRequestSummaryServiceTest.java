@@ -0,0 +1,106 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.services.accessrequest;
+
+import org.finra.gatekeeper.services.accessrequest.model.AWSRdsDatabase;
+import org.finra.gatekeeper.services.accessrequest.model.AccessRequest;
+import org.finra.gatekeeper.services.accessrequest.model.AccessRequestSummary;
+import org.finra.gatekeeper.services.accessrequest.model.AccessRequestSummaryRepository;
+import org.finra.gatekeeper.services.accessrequest.model.RequestStatus;
+import org.finra.gatekeeper.services.accessrequest.model.User;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Optional;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class AccessRequestSummaryServiceTest {
+
+    @Mock
+    private AccessRequestSummaryRepository accessRequestSummaryRepository;
+
+    private AccessRequestSummaryService accessRequestSummaryService;
+    private AccessRequest accessRequest;
+
+    @Before
+    public void setUp() {
+        accessRequest = new AccessRequest()
+                .setId(1L)
+                .setRequestorId("Requestor")
+                .setAccount("DEV")
+                .setAccountSdlc("dev")
+                .setUsers(Arrays.asList(new User("gk_one", "One", "one@gk.org"), new User("gk_two", "Two", "two@gk.org")))
+                .setAwsRdsInstances(Collections.singletonList(new AWSRdsDatabase()));
+        Mockito.when(accessRequestSummaryRepository.save(Mockito.any())).thenAnswer(invocation -> invocation.getArgument(0));
+        accessRequestSummaryService = new AccessRequestSummaryService(accessRequestSummaryRepository);
+    }
+
+    @Test
+    public void testRecordFirstStatus() {
+        Mockito.when(accessRequestSummaryRepository.findById(1L)).thenReturn(Optional.empty());
+
+        AccessRequestSummary summary = accessRequestSummaryService.recordStatus(accessRequest, RequestStatus.GRANTED);
+
+        Assert.assertEquals(Long.valueOf(1L), summary.getAccessRequestId());
+        Assert.assertEquals("requestor", summary.getRequestorId());
+        Assert.assertEquals("DEV", summary.getAccount());
+        Assert.assertEquals("dev", summary.getAccountSdlc());
+        Assert.assertEquals(RequestStatus.GRANTED, summary.getStatus());
+        Assert.assertEquals(Integer.valueOf(2), summary.getUserCount());
+        Assert.assertEquals(Integer.valueOf(1), summary.getInstanceCount());
+        Assert.assertEquals(summary.getCreated(), summary.getUpdated());
+        Mockito.verify(accessRequestSummaryRepository).save(summary);
+    }
+
+    @Test
+    public void testRecordStatusKeepsCreated() {
+        Date created = new Date(1000L);
+        Mockito.when(accessRequestSummaryRepository.findById(1L)).thenReturn(Optional.of(new AccessRequestSummary()
+                .setAccessRequestId(1L)
+                .setStatus(RequestStatus.APPROVAL_GRANTED)
+                .setCreated(created)
+                .setUpdated(created)));
+
+        AccessRequestSummary summary = accessRequestSummaryService.recordStatus(accessRequest, RequestStatus.APPROVAL_ERROR);
+
+        Assert.assertEquals(RequestStatus.APPROVAL_ERROR, summary.getStatus());
+        Assert.assertEquals(created, summary.getCreated());
+        Assert.assertTrue(summary.getUpdated().after(created));
+    }
+
+    @Test
+    public void testBackfillOnlyWhenSummariesAreMissing() {
+        // some summaries existing doesn't mean every request has one
+        Mockito.when(accessRequestSummaryRepository.count()).thenReturn(10L);
+        Mockito.when(accessRequestSummaryRepository.hasRequestsMissingSummaries()).thenReturn(true);
+        accessRequestSummaryService.backfillSummaries();
+        Mockito.verify(accessRequestSummaryRepository, Mockito.times(1)).backfillSummaries();
+
+        Mockito.when(accessRequestSummaryRepository.hasRequestsMissingSummaries()).thenReturn(false);
+        accessRequestSummaryService.backfillSummaries();
+        Mockito.verify(accessRequestSummaryRepository, Mockito.times(1)).backfillSummaries();
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.services.accessrequest;
+
+import org.finra.gatekeeper.services.accessrequest.model.AWSRdsDatabase;
+import org.finra.gatekeeper.services.accessrequest.model.AccessRequest;
+import org.finra.gatekeeper.services.accessrequest.model.AccessRequestRepository;
+import org.finra.gatekeeper.services.accessrequest.model.LiveGrant;
+import org.finra.gatekeeper.services.accessrequest.model.LiveGrantRepository;
+import org.finra.gatekeeper.services.accessrequest.model.User;
+import org.finra.gatekeeper.services.accessrequest.model.UserRole;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class LiveGrantServiceTest {
+
+    @Mock
+    private LiveGrantRepository liveGrantRepository;
+    @Mock
+    private AccessRequestRepository accessRequestRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private LiveGrantService liveGrantService;
+    private AccessRequest accessRequest;
+    private User user;
+    private UserRole role;
+    private AWSRdsDatabase database;
+
+    @Before
+    public void setUp() {
+        user = new User("gk_one", "One", "one@gk.org");
+        role = new UserRole().setRole("readonly");
+        database = new AWSRdsDatabase().setName("test-database");
+        accessRequest = new AccessRequest()
+                .setId(1L)
+                .setDays(2)
+                .setAccount("DEV")
+                .setUsers(Collections.singletonList(user))
+                .setRoles(Collections.singletonList(role))
+                .setAwsRdsInstances(Collections.singletonList(database));
+        Mockito.when(liveGrantRepository.save(Mockito.any())).thenAnswer(invocation -> invocation.getArgument(0));
+        liveGrantService = new LiveGrantService(liveGrantRepository, accessRequestRepository, new TransactionTemplate(transactionManager));
+    }
+
+    @Test
+    public void testRecordFirstGrant() {
+        Mockito.when(liveGrantRepository.findByUserIdAndAccountAndDbNameAndRole("gk_one", "DEV", "test-database", "readonly"))
+                .thenReturn(Optional.empty());
+
+        LiveGrant liveGrant = liveGrantService.recordGrant(accessRequest, user, role, database);
+
+        Assert.assertEquals("gk_one", liveGrant.getUserId());
+        Assert.assertEquals("DEV", liveGrant.getAccount());
+        Assert.assertEquals("test-database", liveGrant.getDbName());
+        Assert.assertEquals("readonly", liveGrant.getRole());
+        Assert.assertEquals(Integer.valueOf(1), liveGrant.getRefCount());
+        Assert.assertTrue(liveGrant.getExpiresAt().after(new Date()));
+        Mockito.verify(liveGrantRepository).upsert("gk_one", "DEV", "test-database", "readonly");
+    }
+
+    @Test
+    public void testRecordGrantTwiceCountsRequestOnce() {
+        LiveGrant existing = new LiveGrant().hold(1L, new Date(1000L));
+        Mockito.when(liveGrantRepository.findByUserIdAndAccountAndDbNameAndRole("gk_one", "DEV", "test-database", "readonly"))
+                .thenReturn(Optional.of(existing));
+
+        LiveGrant liveGrant = liveGrantService.recordGrant(accessRequest, user, role, database);
+
+        Assert.assertEquals(Integer.valueOf(1), liveGrant.getRefCount());
+        Assert.assertTrue(liveGrant.getExpiresAt().after(new Date(1000L)));
+    }
+
+    @Test
+    public void testReleaseLastHolderDeletesGrant() {
+        LiveGrant existing = new LiveGrant().hold(1L, new Date());
+        Mockito.when(liveGrantRepository.findByUserIdAndAccountAndDbNameAndRole("gk_one", "DEV", "test-database", "readonly"))
+                .thenReturn(Optional.of(existing));
+
+        Assert.assertTrue(liveGrantService.releaseGrant(accessRequest, user, role, database));
+        Mockito.verify(liveGrantRepository).delete(existing);
+    }
+
+    @Test
+    public void testReleaseWithOtherHolderKeepsGrant() {
+        Date laterExpiry = new Date(System.currentTimeMillis() + 100000L);
+        LiveGrant existing = new LiveGrant()
+                .hold(1L, new Date())
+                .hold(2L, laterExpiry);
+        Mockito.when(liveGrantRepository.findByUserIdAndAccountAndDbNameAndRole("gk_one", "DEV", "test-database", "readonly"))
+                .thenReturn(Optional.of(existing));
+
+        Assert.assertFalse(liveGrantService.releaseGrant(accessRequest, user, role, database));
+        Assert.assertEquals(Integer.valueOf(1), existing.getRefCount());
+        Assert.assertEquals(laterExpiry, existing.getExpiresAt());
+        Mockito.verify(liveGrantRepository).save(existing);
+        Mockito.verify(liveGrantRepository, Mockito.never()).delete(Mockito.any());
+    }
+
+    @Test
+    public void testReleaseUntrackedGrant() {
+        Mockito.when(liveGrantRepository.findByUserIdAndAccountAndDbNameAndRole("gk_one", "DEV", "test-database", "readonly"))
+                .thenReturn(Optional.empty());
+        Mockito.when(accessRequestRepository.getLiveAccessRequestsForUserAccountDbNameAndRole("gk_one", "DEV", "test-database", "readonly"))
+                .thenReturn(Collections.emptyList());
+
+        Assert.assertTrue(liveGrantService.releaseGrant(accessRequest, user, role, database));
+    }
+
+    @Test
+    public void testReleaseUntrackedGrantWithOverlappingRequest() {
+        Mockito.when(liveGrantRepository.findByUserIdAndAccountAndDbNameAndRole("gk_one", "DEV", "test-database", "readonly"))
+                .thenReturn(Optional.empty());
+        Mockito.when(accessRequestRepository.getLiveAccessRequestsForUserAccountDbNameAndRole("gk_one", "DEV", "test-database", "readonly"))
+                .thenReturn(Collections.singletonList(new AccessRequest().setId(2L)));
+
+        Assert.assertFalse(liveGrantService.releaseGrant(accessRequest, user, role, database));
+        Mockito.verify(liveGrantRepository, Mockito.never()).delete(Mockito.any());
+    }
+
+    @Test
+    public void testBackfillOncePerRequest() {
+        Date expiresAt = new Date(5000L);
+        Map<String, Object> expiration = new HashMap<>();
+        expiration.put("id", 1L);
+        expiration.put("expire_time", expiresAt);
+        Mockito.when(accessRequestRepository.getLiveAccessRequestExpirations()).thenReturn(Collections.singletonList(expiration));
+        Mockito.when(accessRequestRepository.findById(1L)).thenReturn(Optional.of(accessRequest));
+        Mockito.when(liveGrantRepository.getHoldingAccessRequestIds()).thenReturn(Collections.singleton(2L));
+        LiveGrant liveGrant = new LiveGrant().hold(2L, new Date(1000L));
+        Mockito.when(liveGrantRepository.findByUserIdAndAccountAndDbNameAndRole("gk_one", "DEV", "test-database", "readonly"))
+                .thenReturn(Optional.of(liveGrant));
+
+        liveGrantService.backfillLiveGrants();
+        ArgumentCaptor<LiveGrant> liveGrantCaptor = ArgumentCaptor.forClass(LiveGrant.class);
+        Mockito.verify(liveGrantRepository, Mockito.times(1)).save(liveGrantCaptor.capture());
+        Assert.assertEquals(Integer.valueOf(2), liveGrantCaptor.getValue().getRefCount());
+        Assert.assertEquals(expiresAt, liveGrantCaptor.getValue().getExpiresAt());
+        Mockito.verify(transactionManager, Mockito.times(1)).commit(Mockito.any());
+
+        // once the request holds its grants the next start up doesn't load it again
+        Mockito.when(liveGrantRepository.getHoldingAccessRequestIds()).thenReturn(new HashSet<>(Arrays.asList(1L, 2L)));
+        liveGrantService.backfillLiveGrants();
+        Mockito.verify(liveGrantRepository, Mockito.times(1)).save(Mockito.any());
+        Mockito.verify(accessRequestRepository, Mockito.times(1)).findById(1L);
+    }
+
+    @Test
+    public void testBackfillSkipsRequestsWithoutExpiration() {
+        Map<String, Object> expiration = new HashMap<>();
+        expiration.put("id", 1L);
+        expiration.put("expire_time", null);
+        Mockito.when(accessRequestRepository.getLiveAccessRequestExpirations()).thenReturn(Collections.singletonList(expiration));
+        Mockito.when(accessRequestRepository.findById(1L)).thenReturn(Optional.of(accessRequest));
+        Mockito.when(liveGrantRepository.getHoldingAccessRequestIds()).thenReturn(Collections.emptySet());
+
+        // holding the grant with a null expiry would break the expiry of the grant once a second request holds it
+        liveGrantService.backfillLiveGrants();
+        Mockito.verify(liveGrantRepository, Mockito.never()).save(Mockito.any());
+        Mockito.verify(liveGrantRepository, Mockito.never()).upsert(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.services.accessrequest.delegates;
+
+import org.activiti.engine.delegate.DelegateExecution;
+import org.finra.gatekeeper.exception.GatekeeperException;
+import org.finra.gatekeeper.rds.model.RdsUserGrant;
+import org.finra.gatekeeper.rds.model.RoleType;
+import org.finra.gatekeeper.services.accessrequest.LiveGrantService;
+import org.finra.gatekeeper.services.accessrequest.model.AWSRdsDatabase;
+import org.finra.gatekeeper.services.accessrequest.model.AccessRequest;
+import org.finra.gatekeeper.services.accessrequest.model.RequestStatus;
+import org.finra.gatekeeper.services.accessrequest.model.User;
+import org.finra.gatekeeper.services.accessrequest.model.UserRole;
+import org.finra.gatekeeper.services.db.DatabaseConnectionService;
+import org.finra.gatekeeper.services.email.EmailServiceWrapper;
+import org.finra.gatekeeper.services.passwords.PasswordGenerationService;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class GrantAccessServiceTaskTest {
+
+    @Mock
+    private DatabaseConnectionService databaseConnectionService;
+    @Mock
+    private PasswordGenerationService passwordGenerationService;
+    @Mock
+    private EmailServiceWrapper emailServiceWrapper;
+    @Mock
+    private LiveGrantService liveGrantService;
+    @Mock
+    private DelegateExecution execution;
+
+    private GrantAccessServiceTask grantAccessServiceTask;
+    private AccessRequest accessRequest;
+    private User userOne;
+    private User userTwo;
+    private AWSRdsDatabase database;
+
+    @Before
+    public void setUp() {
+        userOne = new User("gk_one", "One", "one@gk.org");
+        userTwo = new User("gk_two", "Two", "two@gk.org");
+        database = new AWSRdsDatabase().setName("test-database").setEngine("postgres");
+        accessRequest = new AccessRequest()
+                .setId(1L)
+                .setDays(1)
+                .setAccount("DEV")
+                .setRegion("us-east-1")
+                .setAccountSdlc("dev")
+                .setUsers(Arrays.asList(userOne, userTwo))
+                .setRoles(Arrays.asList(new UserRole().setRole("readonly"), new UserRole().setRole("datafix")))
+                .setAwsRdsInstances(Arrays.asList(database));
+
+        Mockito.when(execution.getVariable("accessRequest")).thenReturn(accessRequest);
+        Mockito.when(passwordGenerationService.generatePassword()).thenReturn("password");
+        grantAccessServiceTask = new GrantAccessServiceTask(databaseConnectionService, passwordGenerationService, emailServiceWrapper, liveGrantService);
+    }
+
+    private Map<String, Boolean> outcomes(boolean userTwoDatafix) {
+        Map<String, Boolean> outcomes = new HashMap<>();
+        outcomes.put("gk_one_ro", true);
+        outcomes.put("gk_one_df", true);
+        outcomes.put("gk_two_ro", true);
+        outcomes.put("gk_two_df", userTwoDatafix);
+        return outcomes;
+    }
+
+    @Test
+    public void testGrantsEveryUserAndRoleInOneBatch() throws Exception {
+        Mockito.when(databaseConnectionService.grantAccessBatch(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(outcomes(true));
+
+        grantAccessServiceTask.execute(execution);
+
+        ArgumentCaptor<List> grantsCaptor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(databaseConnectionService, Mockito.times(1)).grantAccessBatch(Mockito.eq(database), Mockito.any(), grantsCaptor.capture(), Mockito.eq(1));
+        Assert.assertEquals(Arrays.asList(
+                new RdsUserGrant("gk_one", "password", RoleType.READONLY),
+                new RdsUserGrant("gk_one", "password", RoleType.DATAFIX),
+                new RdsUserGrant("gk_two", "password", RoleType.READONLY),
+                new RdsUserGrant("gk_two", "password", RoleType.DATAFIX)), grantsCaptor.getValue());
+        Mockito.verify(databaseConnectionService, Mockito.never()).grantAccess(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+        Mockito.verify(liveGrantService, Mockito.times(4)).recordGrant(Mockito.eq(accessRequest), Mockito.any(), Mockito.any(), Mockito.eq(database));
+        // the schema listing is the same for everyone on the request so it only gets rendered once
+        Mockito.verify(emailServiceWrapper, Mockito.times(1)).renderSchemaListings(Mockito.eq(accessRequest), Mockito.any());
+        Mockito.verify(emailServiceWrapper, Mockito.times(4)).notifyOfCredentials(Mockito.eq(accessRequest), Mockito.any(), Mockito.any(), Mockito.eq("password"), Mockito.any());
+        Mockito.verify(execution).setVariable("requestStatus", RequestStatus.GRANTED);
+    }
+
+    @Test
+    public void testFailedUserFailsTheGrant() throws Exception {
+        Mockito.when(databaseConnectionService.grantAccessBatch(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(outcomes(false));
+
+        try {
+            grantAccessServiceTask.execute(execution);
+            Assert.fail("Expected the grant to fail");
+        } catch (GatekeeperException e) {
+            Assert.assertTrue(e.getMessage().contains("gk_two_df"));
+        }
+
+        // the users that did get created still get their credentials
+        Mockito.verify(emailServiceWrapper, Mockito.times(3)).notifyOfCredentials(Mockito.eq(accessRequest), Mockito.any(), Mockito.any(), Mockito.eq("password"), Mockito.any());
+        Mockito.verify(liveGrantService, Mockito.never()).recordGrant(accessRequest, userTwo, accessRequest.getRoles().get(1), database);
+        Mockito.verify(execution).setVariable("requestStatus", RequestStatus.APPROVAL_ERROR);
+    }
+
+    @Test
+    public void testSchemaListingFailureFailsBeforeGranting() throws Exception {
+        Mockito.when(emailServiceWrapper.renderSchemaListings(Mockito.eq(accessRequest), Mockito.any())).thenThrow(new IOException("bad template"));
+
+        try {
+            grantAccessServiceTask.execute(execution);
+            Assert.fail("Expected the grant to fail");
+        } catch (IOException e) {
+            Assert.assertEquals("bad template", e.getMessage());
+        }
+
+        Mockito.verify(databaseConnectionService, Mockito.never()).grantAccessBatch(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+        Mockito.verify(emailServiceWrapper, Mockito.never()).notifyOfCredentials(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+        Mockito.verify(execution).setVariable("requestStatus", RequestStatus.APPROVAL_ERROR);
+    }
+}
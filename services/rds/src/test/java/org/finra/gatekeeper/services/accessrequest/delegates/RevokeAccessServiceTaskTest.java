@@ -22,9 +22,10 @@ import org.activiti.engine.delegate.DelegateExecution;
 import org.activiti.engine.impl.JobQueryImpl;
 import org.activiti.engine.impl.persistence.entity.VariableInstance;
 import org.activiti.engine.runtime.Job;
+import org.finra.gatekeeper.exception.GatekeeperException;
 import org.finra.gatekeeper.rds.exception.GKUnsupportedDBException;
 import org.finra.gatekeeper.rds.model.RoleType;
-import org.finra.gatekeeper.services.accessrequest.AccessRequestService;
+import org.finra.gatekeeper.services.accessrequest.LiveGrantService;
 import org.finra.gatekeeper.services.accessrequest.model.AWSRdsDatabase;
 import org.finra.gatekeeper.services.accessrequest.model.AccessRequest;
 import org.finra.gatekeeper.services.accessrequest.model.User;
@@ -58,7 +59,7 @@ public class RevokeAccessServiceTaskTest {
     @Mock
     private ManagementService managementService;
     @Mock
-    private AccessRequestService accessRequestService;
+    private LiveGrantService liveGrantService;
     @Mock
     private MockDelegateExecution mockDelegateExecution;
     @Mock
@@ -108,6 +109,7 @@ public class RevokeAccessServiceTaskTest {
         Mockito.when(jobQuery.singleResult()).thenReturn(mockJob);
         Mockito.when(mockJob.getRetries()).thenReturn(4);
         Mockito.when(mockDelegateExecution.getVariable(Mockito.any())).thenReturn(testRequest);
+        Mockito.when(liveGrantService.releaseGrant(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(true);
     }
 
     @Test
@@ -134,31 +136,72 @@ public class RevokeAccessServiceTaskTest {
 
     }
 
+    @Test
+    public void testRevokeAccessSkippedWhenAnotherRequestHoldsGrant() throws Exception {
+        Mockito.when(liveGrantService.releaseGrant(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(false);
+
+        revokeAccessServiceTask.execute(mockDelegateExecution);
+
+        Mockito.verify(liveGrantService, Mockito.times(1)).releaseGrant(testRequest, testRequest.getUsers().get(0),
+                testRequest.getRoles().get(0), testRequest.getAwsRdsInstances().get(0));
+        Mockito.verify(databaseConnectionService, Mockito.never()).revokeAccessBatch(Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @Test(expected = GatekeeperException.class)
+    public void testRevokeAccessFailedUserRetries() throws Exception {
+        Mockito.when(databaseConnectionService.revokeAccessBatch(Mockito.any(), Mockito.any(), Mockito.any()))
+                .thenReturn(Collections.singletonMap("gk_test_ro", false));
+        Mockito.when(databaseConnectionService.revokeAccess(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(false);
+
+        revokeAccessServiceTask.execute(mockDelegateExecution);
+    }
+
+    @Test
+    public void testRevokeAccessFallsBackToSingleRevokes() throws Exception {
+        Mockito.when(databaseConnectionService.revokeAccessBatch(Mockito.any(), Mockito.any(), Mockito.any()))
+                .thenReturn(Collections.singletonMap("gk_test_ro", false));
+        Mockito.when(databaseConnectionService.revokeAccess(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(true);
+
+        revokeAccessServiceTask.execute(mockDelegateExecution);
+
+        Mockito.verify(databaseConnectionService, Mockito.times(1)).revokeAccess(testRequest.getAwsRdsInstances().get(0),
+                new AWSEnvironment(testRequest.getAccount(), testRequest.getRegion(), testRequest.getAccountSdlc()), RoleType.READONLY, "gk_test");
+    }
+
+    @Test
+    public void testRevokeAccessNoFallbackWhenBatchWorked() throws Exception {
+        Mockito.when(databaseConnectionService.revokeAccessBatch(Mockito.any(), Mockito.any(), Mockito.any()))
+                .thenReturn(Collections.singletonMap("gk_test_ro", true));
+
+        revokeAccessServiceTask.execute(mockDelegateExecution);
+
+        Mockito.verify(databaseConnectionService, Mockito.never()).revokeAccess(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
     private void verifyRevoke() throws GKUnsupportedDBException {
-        ArgumentCaptor<String> userIdCaptor = ArgumentCaptor.forClass(String.class);
-        ArgumentCaptor<String> accountNameCaptor = ArgumentCaptor.forClass(String.class);
-        ArgumentCaptor<String> databaseCaptor = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<AccessRequest> accessRequestCaptor = ArgumentCaptor.forClass(AccessRequest.class);
+        ArgumentCaptor<User> userCaptor = ArgumentCaptor.forClass(User.class);
         ArgumentCaptor<UserRole> roleCaptor = ArgumentCaptor.forClass(UserRole.class);
+        ArgumentCaptor<AWSRdsDatabase> databaseCaptor = ArgumentCaptor.forClass(AWSRdsDatabase.class);
 
-        Mockito.verify(accessRequestService, Mockito.times(1)).getLiveRequestsForUserOnDatabase(
-                userIdCaptor.capture(), accountNameCaptor.capture(), databaseCaptor.capture(), roleCaptor.capture());
+        Mockito.verify(liveGrantService, Mockito.times(1)).releaseGrant(
+                accessRequestCaptor.capture(), userCaptor.capture(), roleCaptor.capture(), databaseCaptor.capture());
 
-        Assert.assertEquals(testRequest.getUsers().get(0).getUserId(), userIdCaptor.getValue());
-        Assert.assertEquals(testRequest.getAccount(), accountNameCaptor.getValue());
-        Assert.assertEquals(testRequest.getAwsRdsInstances().get(0).getName(), databaseCaptor.getValue());
+        Assert.assertEquals(testRequest, accessRequestCaptor.getValue());
+        Assert.assertEquals(testRequest.getUsers().get(0), userCaptor.getValue());
+        Assert.assertEquals(testRequest.getAwsRdsInstances().get(0), databaseCaptor.getValue());
         Assert.assertEquals(testRequest.getRoles().get(0), roleCaptor.getValue());
 
         ArgumentCaptor<AWSRdsDatabase> dbArgumentCaptor = ArgumentCaptor.forClass(AWSRdsDatabase.class);
         ArgumentCaptor<AWSEnvironment> awsEnvironmentArgumentCaptor = ArgumentCaptor.forClass(AWSEnvironment.class);
-        ArgumentCaptor<RoleType> roleTypeArgumentCaptor = ArgumentCaptor.forClass(RoleType.class);
+        ArgumentCaptor<List> usersCaptor = ArgumentCaptor.forClass(List.class);
 
         Mockito.verify(databaseConnectionService, Mockito.times(1))
-                .revokeAccess(dbArgumentCaptor.capture(),awsEnvironmentArgumentCaptor.capture(),roleTypeArgumentCaptor.capture(),userIdCaptor.capture());
+                .revokeAccessBatch(dbArgumentCaptor.capture(),awsEnvironmentArgumentCaptor.capture(),usersCaptor.capture());
 
         Assert.assertEquals(testRequest.getAwsRdsInstances().get(0), dbArgumentCaptor.getValue());
         Assert.assertEquals(new AWSEnvironment(testRequest.getAccount(), testRequest.getRegion(), testRequest.getAccountSdlc()), awsEnvironmentArgumentCaptor.getValue());
-        Assert.assertEquals(testRequest.getRoles().get(0), roleCaptor.getValue());
-        Assert.assertEquals(testRequest.getUsers().get(0).getUserId(), userIdCaptor.getValue());
+        Assert.assertEquals(Collections.singletonList(testRequest.getUsers().get(0).getUserId() + "_ro"), usersCaptor.getValue());
     }
 
     private class MockDelegateExecution implements DelegateExecution {
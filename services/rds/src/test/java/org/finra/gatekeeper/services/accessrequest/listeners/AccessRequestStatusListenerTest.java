@@ -0,0 +1,80 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.services.accessrequest.listeners;
+
+import org.activiti.engine.RuntimeService;
+import org.activiti.engine.delegate.event.ActivitiEventType;
+import org.activiti.engine.delegate.event.ActivitiVariableEvent;
+import org.finra.gatekeeper.services.accessrequest.AccessRequestSummaryService;
+import org.finra.gatekeeper.services.accessrequest.model.AccessRequest;
+import org.finra.gatekeeper.services.accessrequest.model.RequestStatus;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class AccessRequestStatusListenerTest {
+
+    @Mock
+    private RuntimeService runtimeService;
+    @Mock
+    private AccessRequestSummaryService accessRequestSummaryService;
+    @Mock
+    private ActivitiVariableEvent event;
+
+    private AccessRequestStatusListener accessRequestStatusListener;
+    private AccessRequest accessRequest = new AccessRequest().setId(1L);
+
+    @Before
+    public void setUp() {
+        Mockito.when(event.getType()).thenReturn(ActivitiEventType.VARIABLE_UPDATED);
+        Mockito.when(event.getExecutionId()).thenReturn("execution");
+        Mockito.when(runtimeService.getVariable("execution", "accessRequest")).thenReturn(accessRequest);
+        accessRequestStatusListener = new AccessRequestStatusListener(runtimeService, accessRequestSummaryService);
+    }
+
+    @Test
+    public void testRegistersForVariableEvents() {
+        accessRequestStatusListener.register();
+        Mockito.verify(runtimeService).addEventListener(accessRequestStatusListener,
+                ActivitiEventType.VARIABLE_CREATED, ActivitiEventType.VARIABLE_UPDATED);
+    }
+
+    @Test
+    public void testRecordsRequestStatus() {
+        Mockito.when(event.getVariableName()).thenReturn("requestStatus");
+        Mockito.when(event.getVariableValue()).thenReturn(RequestStatus.APPROVAL_REJECTED);
+
+        accessRequestStatusListener.onEvent(event);
+
+        Mockito.verify(accessRequestSummaryService).recordStatus(accessRequest, RequestStatus.APPROVAL_REJECTED);
+    }
+
+    @Test
+    public void testIgnoresOtherVariables() {
+        Mockito.when(event.getVariableName()).thenReturn("attempts");
+        Mockito.when(event.getVariableValue()).thenReturn(2);
+
+        accessRequestStatusListener.onEvent(event);
+
+        Mockito.verify(accessRequestSummaryService, Mockito.never()).recordStatus(Mockito.any(), Mockito.any());
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.services.accessrequest.model;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy;
+import org.springframework.boot.orm.jpa.hibernate.SpringPhysicalNamingStrategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Guards the number of statements it takes to load access requests along with their users, roles and databases,
+ * so that a lazy collection slipping back into one query per request shows up as a failing test.
+ */
+public class AccessRequestFetchTest {
+
+    private static final int REQUEST_COUNT = 20;
+
+    private SessionFactory sessionFactory;
+    private Statistics statistics;
+    private List<Long> requestIds;
+
+    @Before
+    public void setUp() {
+        sessionFactory = new Configuration()
+                .addAnnotatedClass(AccessRequest.class)
+                .addAnnotatedClass(User.class)
+                .addAnnotatedClass(UserRole.class)
+                .addAnnotatedClass(AWSRdsDatabase.class)
+                .setProperty("hibernate.connection.driver_class", "org.h2.Driver")
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:fetch-test;DB_CLOSE_DELAY=-1")
+                .setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect")
+                .setProperty("hibernate.hbm2ddl.auto", "create-drop")
+                // the same table naming and batch fetching the application runs with
+                .setProperty("hibernate.physical_naming_strategy", SpringPhysicalNamingStrategy.class.getName())
+                .setProperty("hibernate.implicit_naming_strategy", SpringImplicitNamingStrategy.class.getName())
+                .setProperty("hibernate.batch_fetch_style", "dynamic")
+                .setProperty("hibernate.generate_statistics", "true")
+                .buildSessionFactory();
+        statistics = sessionFactory.getStatistics();
+
+        requestIds = new ArrayList<>();
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            for (int i = 0; i < REQUEST_COUNT; i++) {
+                // the all args constructor starts the collections off empty, so they're set afterwards
+                AccessRequest request = new AccessRequest(1, "DEV", "us-east-1", "dev", "req" + i, "Requestor " + i, "req" + i + "@company.com",
+                        null, null, null, "reason", null, null, null)
+                        .setRoles(new ArrayList<>(Arrays.asList(new UserRole().setRole("readonly"), new UserRole().setRole("datafix"))))
+                        .setUsers(new ArrayList<>(Arrays.asList(new User().setUserId("user" + i).setName("User " + i).setEmail("user" + i + "@company.com"),
+                                new User().setUserId("other" + i).setName("Other " + i).setEmail("other" + i + "@company.com"))))
+                        .setAwsRdsInstances(new ArrayList<>(Arrays.asList(new AWSRdsDatabase().setName("db" + i).setDbName("db" + i).setEngine("postgres"),
+                                new AWSRdsDatabase().setName("replica" + i).setDbName("replica" + i).setEngine("postgres"))));
+                session.persist(request);
+                requestIds.add(request.getId());
+            }
+            session.getTransaction().commit();
+        }
+        statistics.clear();
+    }
+
+    @After
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Test
+    public void testRequestsByIdLoadCollectionsInBatches() {
+        try (Session session = sessionFactory.openSession()) {
+            List<AccessRequest> requests = session.createQuery("from AccessRequest where id in :ids", AccessRequest.class)
+                    .setParameter("ids", requestIds)
+                    .getResultList();
+            Assert.assertEquals(REQUEST_COUNT, requests.size());
+            touchCollections(requests);
+        }
+
+        // one query for the requests and one per collection, regardless of how many requests came back
+        Assert.assertEquals(4, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testNativeRequestQueryLoadsCollectionsInBatches() {
+        try (Session session = sessionFactory.openSession()) {
+            List<AccessRequest> requests = session.createNativeQuery("select * from access_request", AccessRequest.class)
+                    .getResultList();
+            Assert.assertEquals(REQUEST_COUNT, requests.size());
+            touchCollections(requests);
+        }
+
+        Assert.assertEquals(4, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void testSingleRequestGraphJoinsUsers() {
+        try (Session session = sessionFactory.openSession()) {
+            AccessRequest request = session.createQuery("from AccessRequest where id = :id", AccessRequest.class)
+                    .setParameter("id", requestIds.get(0))
+                    .setHint("javax.persistence.fetchgraph", session.getEntityGraph(AccessRequest.WITH_USERS))
+                    .getSingleResult();
+            Assert.assertEquals(2, request.getUsers().size());
+            Assert.assertEquals(1, statistics.getPrepareStatementCount());
+
+            touchCollections(Arrays.asList(request));
+        }
+
+        Assert.assertEquals(3, statistics.getPrepareStatementCount());
+    }
+
+    private void touchCollections(List<AccessRequest> requests) {
+        for (AccessRequest request : requests) {
+            Assert.assertEquals(2, request.getUsers().size());
+            Assert.assertEquals(2, request.getRoles().size());
+            Assert.assertEquals(2, request.getAwsRdsInstances().size());
+        }
+    }
+}
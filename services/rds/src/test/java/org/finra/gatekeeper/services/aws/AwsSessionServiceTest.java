@@ -0,0 +1,152 @@
+/*
+ *
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.finra.gatekeeper.services.aws;
+
+import com.amazonaws.services.ec2.AmazonEC2Client;
+import com.amazonaws.services.lambda.AWSLambdaAsync;
+import com.amazonaws.services.rds.AmazonRDSClient;
+import com.amazonaws.services.securitytoken.AWSSecurityTokenServiceClient;
+import com.amazonaws.services.securitytoken.model.AssumeRoleResult;
+import com.amazonaws.services.securitytoken.model.Credentials;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.finra.gatekeeper.common.properties.GatekeeperAwsProperties;
+import org.finra.gatekeeper.common.services.account.AccountInformationService;
+import org.finra.gatekeeper.common.services.account.model.Account;
+import org.finra.gatekeeper.services.aws.factory.AwsSessionFactory;
+import org.finra.gatekeeper.services.aws.model.AWSEnvironment;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class AwsSessionServiceTest {
+
+    @Mock
+    private AccountInformationService accountInformationService;
+    @Mock
+    private AWSSecurityTokenServiceClient awsSecurityTokenServiceClient;
+    @Mock
+    private AwsSessionFactory awsSessionFactory;
+    @Mock
+    private AmazonRDSClient amazonRDSClient;
+    @Mock
+    private AmazonEC2Client amazonEC2Client;
+    @Mock
+    private AWSLambdaAsync awsLambda;
+
+    private AwsSessionService awsSessionService;
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private AWSEnvironment test;
+
+    @Before
+    public void setUp() {
+        test = new AWSEnvironment("Dev", "us-east-1", "dev");
+
+        Account account = new Account();
+        account.setAccountId("123");
+        account.setAlias("dev");
+        Mockito.when(accountInformationService.getAccountByAlias("Dev")).thenReturn(account);
+        Mockito.when(awsSecurityTokenServiceClient.assumeRole(Mockito.any())).thenReturn(new AssumeRoleResult()
+                .withCredentials(new Credentials()
+                        .withAccessKeyId("testing")
+                        .withSecretAccessKey("s3cr3t")
+                        .withSessionToken("s35510nt0k3n")));
+        Mockito.when(awsSessionFactory.createRdsSession(Mockito.any())).thenReturn(amazonRDSClient);
+        Mockito.when(awsSessionFactory.createEC2Session(Mockito.any())).thenReturn(amazonEC2Client);
+        Mockito.when(awsSessionFactory.createLambdaSession(Mockito.any())).thenReturn(awsLambda);
+
+        awsSessionService = new AwsSessionService(accountInformationService, awsSecurityTokenServiceClient, awsSessionFactory,
+                new GatekeeperAwsProperties()
+                        .setSessionTimeout(900000)
+                        .setSessionTimeoutPad(60000), meterRegistry);
+    }
+
+    @After
+    public void tearDown() {
+        awsSessionService.destroy();
+    }
+
+    @Test
+    public void testClientsAreReusedPerEnvironment() {
+        Assert.assertSame(awsSessionService.getRDSSession(test), awsSessionService.getRDSSession(test));
+        Assert.assertSame(awsSessionService.getEC2Session(test), awsSessionService.getEC2Session(test));
+
+        Mockito.verify(awsSessionFactory, Mockito.times(1)).createRdsSession(Mockito.any());
+        Mockito.verify(awsSessionFactory, Mockito.times(1)).createEC2Session(Mockito.any());
+        Mockito.verify(awsSecurityTokenServiceClient, Mockito.times(1)).assumeRole(Mockito.any());
+    }
+
+    @Test
+    public void testAssumeRoleMetrics() {
+        awsSessionService.getRDSSession(test);
+        Assert.assertEquals(1L, meterRegistry.get("gatekeeper.aws.sts.assumerole").timer().count());
+
+        AWSEnvironment other = new AWSEnvironment("Other", "us-east-1", "dev");
+        Mockito.when(accountInformationService.getAccountByAlias("Other")).thenReturn(new Account().setAccountId("456").setAlias("other"));
+        Mockito.when(awsSecurityTokenServiceClient.assumeRole(Mockito.any())).thenThrow(new IllegalStateException("STS is down"));
+        try {
+            awsSessionService.getRDSSession(other);
+            Assert.fail("Expected assuming the role to fail");
+        } catch (Exception e) {
+            Assert.assertEquals(1.0, meterRegistry.get("gatekeeper.aws.sts.assumerole.failures").counter().count(), 0.0);
+        }
+    }
+
+    @Test
+    public void testIdleEnvironmentsStopRenewing() throws Exception {
+        AwsSessionService shortSessionService = new AwsSessionService(accountInformationService, awsSecurityTokenServiceClient, awsSessionFactory,
+                new GatekeeperAwsProperties()
+                        .setSessionTimeout(200)
+                        .setSessionTimeoutPad(100), meterRegistry);
+        try {
+            shortSessionService.getRDSSession(test);
+            Thread.sleep(1000L);
+
+            // renewed once since it was used with the first credentials, nothing used the renewed ones
+            Mockito.verify(awsSecurityTokenServiceClient, Mockito.times(2)).assumeRole(Mockito.any());
+        } finally {
+            shortSessionService.destroy();
+        }
+    }
+
+    @Test
+    public void testLambdaClientsAreReusedPerRegion() {
+        awsSessionService.getAwsLambda("us-east-1");
+        awsSessionService.getAwsLambda("us-east-1");
+        awsSessionService.getAwsLambda("us-west-2");
+
+        Mockito.verify(awsSessionFactory, Mockito.times(1)).createLambdaSession("us-east-1");
+        Mockito.verify(awsSessionFactory, Mockito.times(1)).createLambdaSession("us-west-2");
+    }
+
+    @Test
+    public void testClientsAreShutdownOnDestroy() {
+        awsSessionService.getRDSSession(test);
+        awsSessionService.getAwsLambda("us-east-1");
+        awsSessionService.destroy();
+
+        Mockito.verify(amazonRDSClient).shutdown();
+        Mockito.verify(awsLambda).shutdown();
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ *
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.finra.gatekeeper.services.aws;
+
+import com.amazonaws.services.ec2.AmazonEC2Client;
+import com.amazonaws.services.rds.AmazonRDSClient;
+import com.amazonaws.services.resourcegroupstaggingapi.AWSResourceGroupsTaggingAPI;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.finra.gatekeeper.common.properties.GatekeeperAwsProperties;
+import org.finra.gatekeeper.services.aws.model.AWSEnvironment;
+
+/**
+ * Hands out the in-memory AWS clients for every account/region instead of assuming a role through STS
+ */
+public class InMemoryAwsSessionService extends AwsSessionService {
+
+    private final AmazonRDSClient rdsClient;
+    private final AmazonEC2Client ec2Client;
+    private final AWSResourceGroupsTaggingAPI taggingClient;
+
+    public InMemoryAwsSessionService(AmazonRDSClient rdsClient, AmazonEC2Client ec2Client, AWSResourceGroupsTaggingAPI taggingClient) {
+        super(null, null, null, new GatekeeperAwsProperties()
+                .setSessionTimeout(900000)
+                .setSessionTimeoutPad(60000), new SimpleMeterRegistry());
+        this.rdsClient = rdsClient;
+        this.ec2Client = ec2Client;
+        this.taggingClient = taggingClient;
+    }
+
+    @Override
+    public AmazonRDSClient getRDSSession(AWSEnvironment environment) {
+        return rdsClient;
+    }
+
+    @Override
+    public AmazonEC2Client getEC2Session(AWSEnvironment environment) {
+        return ec2Client;
+    }
+
+    @Override
+    public AWSResourceGroupsTaggingAPI getTaggingSession(AWSEnvironment environment) {
+        return taggingClient;
+    }
+}
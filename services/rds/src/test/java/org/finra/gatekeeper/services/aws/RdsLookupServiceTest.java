@@ -27,6 +27,7 @@ import org.finra.gatekeeper.services.aws.model.AWSEnvironment;
 import org.finra.gatekeeper.services.aws.model.GatekeeperRDSInstance;
 import org.finra.gatekeeper.services.aws.model.DatabaseType;
 import org.finra.gatekeeper.services.db.DatabaseConnectionService;
+import org.finra.gatekeeper.services.db.DatabaseProbeExecutor;
 import org.finra.gatekeeper.services.group.service.GatekeeperLdapGroupLookupService;
 import org.junit.Assert;
 import org.junit.Before;
@@ -39,6 +40,7 @@ import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import java.util.*;
+import java.util.stream.Collectors;
 
 @RunWith(MockitoJUnitRunner.Silent.class)
 public class RdsLookupServiceTest {
@@ -94,7 +96,9 @@ public class RdsLookupServiceTest {
 
         Mockito.when(rdsGroupLookupService.getLdapAdGroups()).thenReturn(new HashMap<>());
 
-        rdsLookupService = new RdsLookupService(awsSessionService, databaseConnectionService, sgLookupService, gatekeeperProperties, rdsGroupLookupService);
+        rdsLookupService = new RdsLookupService(awsSessionService, databaseConnectionService, sgLookupService, gatekeeperProperties, rdsGroupLookupService,
+                new DatabaseProbeExecutor(gatekeeperProperties), new RdsTagLookupService(awsSessionService, gatekeeperProperties),
+                new OptionGroupLookupService(awsSessionService, gatekeeperProperties));
         test = new AWSEnvironment("test", "test", "dev");
 
         Mockito.when(awsSessionService.getRDSSession(test)).thenReturn(amazonRDSClient);
@@ -114,16 +118,16 @@ public class RdsLookupServiceTest {
         Mockito.when(databaseConnectionService.checkDb(Mockito.eq(dbF), Mockito.any())).thenReturn("Gatekeeper user missing createrole");
         Mockito.when(databaseConnectionService.checkDb(Mockito.eq(dbG), Mockito.any())).thenReturn("");
         Mockito.when(databaseConnectionService.checkDb(Mockito.eq(dbH), Mockito.any())).thenReturn("");
-        Mockito.when(databaseConnectionService.checkDb(Mockito.eq(dbI), Mockito.any())).thenReturn("");
+        Mockito.when(databaseConnectionService.checkDb(Mockito.<DBInstance>argThat(db -> db != null && "gk-I-instance".equals(db.getDBInstanceIdentifier())), Mockito.any())).thenReturn("");
         Mockito.when(databaseConnectionService.getAvailableRolesForDb(Mockito.eq(dbA), Mockito.any())).thenReturn(roles);
-        Mockito.when(databaseConnectionService.getAvailableRolesForDb(Mockito.eq(dbI), Mockito.any())).thenReturn(roles);
+        Mockito.when(databaseConnectionService.getAvailableRolesForDb(Mockito.<DBInstance>argThat(db -> db != null && "gk-I-instance".equals(db.getDBInstanceIdentifier())), Mockito.any())).thenReturn(roles);
         Mockito.when(databaseConnectionService.getAvailableRolesForDb(Mockito.eq(dbG), Mockito.any())).thenThrow(new Exception("Unable to get roles"));
         Mockito.when(databaseConnectionService.getAvailableRolesForDb(Mockito.eq(dbH), Mockito.any())).thenThrow(new Exception("Unable to login: password authentication failed"));
 
         //AURORA
         Mockito.when(amazonRDSClient.describeDBClusters(Mockito.any())).thenReturn(initializeClusters());
-        Mockito.when(amazonRDSClient.listTagsForResource(Mockito.any())).thenReturn(initializeTags());
         Mockito.when(amazonRDSClient.describeGlobalClusters(Mockito.any())).thenReturn(initializeGlobalClusters());
+        Mockito.when(awsSessionService.getTaggingSession(test)).thenReturn(initializeTags());
         Mockito.when(sgLookupService.fetchSgsForAccountRegion(test)).thenReturn(Arrays.asList(SG_ONE, SG_TWO));
         Mockito.when(databaseConnectionService.checkDb(Mockito.eq(clusterA), Mockito.any())).thenReturn("");
         Mockito.when(databaseConnectionService.checkDb(Mockito.eq(clusterB), Mockito.any())).thenReturn("");
@@ -160,6 +164,77 @@ public class RdsLookupServiceTest {
         Assert.assertEquals(0, instances.size());
     }
 
+    @Test
+    public void rdsTestGetInstancesUsesCachedInventory() throws Exception {
+        List<GatekeeperRDSInstance> instances;
+
+        instances = rdsLookupService.getInstances(test, DatabaseType.RDS.toString(), "gk-A");
+        Assert.assertEquals(1, instances.size());
+        instances = rdsLookupService.getInstances(test, DatabaseType.RDS.toString(), "GK-C");
+        Assert.assertEquals(1, instances.size());
+        instances = rdsLookupService.getInstances(test, DatabaseType.RDS.toString(), "db-gk4");
+        Assert.assertEquals(1, instances.size());
+        Assert.assertEquals("gk-D-instance", instances.get(0).getName());
+
+        // the account's instances are only described once, each search filters that and only checks the instances it matched
+        Mockito.verify(amazonRDSClient, Mockito.times(1)).describeDBInstances(Mockito.any());
+        Mockito.verify(databaseConnectionService, Mockito.times(1)).checkDb(Mockito.eq(dbA), Mockito.any());
+        Mockito.verify(databaseConnectionService, Mockito.never()).checkDb(Mockito.eq(dbE), Mockito.any());
+    }
+
+    @Test
+    public void rdsTestGetInstancesServesInventoryWhileReloading() throws Exception {
+        gatekeeperProperties.getLookup().setInventoryRefresh(100);
+        RdsLookupService refreshingLookupService = new RdsLookupService(awsSessionService, databaseConnectionService, sgLookupService, gatekeeperProperties, rdsGroupLookupService,
+                new DatabaseProbeExecutor(gatekeeperProperties), new RdsTagLookupService(awsSessionService, gatekeeperProperties),
+                new OptionGroupLookupService(awsSessionService, gatekeeperProperties));
+        Assert.assertEquals(1, refreshingLookupService.getInstances(test, DatabaseType.RDS.toString(), "gk-A").size());
+
+        DescribeDBInstancesResult described = initializeInstances();
+        Mockito.when(amazonRDSClient.describeDBInstances(Mockito.any())).thenAnswer(invocation -> {
+            Thread.sleep(5000);
+            return described;
+        });
+        Thread.sleep(200);
+
+        // the inventory is due for a reload, the search still gets the last one instead of waiting on AWS
+        long start = System.currentTimeMillis();
+        Assert.assertEquals(1, refreshingLookupService.getInstances(test, DatabaseType.RDS.toString(), "gk-A").size());
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+        refreshingLookupService.destroy();
+    }
+
+    @Test
+    public void rdsTestGetInstancesDoesNotChangeInventory(){
+        List<GatekeeperRDSInstance> instances;
+
+        instances = rdsLookupService.getInstances(test, DatabaseType.RDS.toString(), "gk-I");
+        Assert.assertEquals("instance5:1234", instances.get(0).getEndpoint());
+        instances = rdsLookupService.getInstances(test, DatabaseType.RDS.toString(), "gk-I");
+        Assert.assertEquals("instance5:1234", instances.get(0).getEndpoint());
+
+        // the SSL port is only set on the copy that got checked, the described instance is left alone
+        Assert.assertEquals(Integer.valueOf(9999), dbI.getEndpoint().getPort());
+    }
+
+    @Test
+    public void rdsTestInvalidateInventoryForEndpoint(){
+        rdsLookupService.getInstances(test, DatabaseType.RDS.toString(), "gk-A");
+        rdsLookupService.getInstances(test, DatabaseType.AURORA_REGIONAL.toString(), "gk-A");
+
+        // only the inventory holding the database is described again
+        rdsLookupService.invalidateInventory("instance1:9999");
+        rdsLookupService.getInstances(test, DatabaseType.RDS.toString(), "gk-A");
+        rdsLookupService.getInstances(test, DatabaseType.AURORA_REGIONAL.toString(), "gk-A");
+        Mockito.verify(amazonRDSClient, Mockito.times(2)).describeDBInstances(Mockito.any());
+        Mockito.verify(amazonRDSClient, Mockito.times(1)).describeDBClusters(Mockito.any());
+
+        // host:9999 is a prefix of host:99999, that isn't the same database
+        rdsLookupService.invalidateInventory("instance1:99999");
+        rdsLookupService.getInstances(test, DatabaseType.RDS.toString(), "gk-A");
+        Mockito.verify(amazonRDSClient, Mockito.times(2)).describeDBInstances(Mockito.any());
+    }
+
     @Test
     public void rdsTestGetInstancesHappy(){
         List<GatekeeperRDSInstance> instances;
@@ -206,6 +281,67 @@ public class RdsLookupServiceTest {
         Assert.assertFalse(instance.getEnabled());
     }
 
+    @Test
+    public void rdsTestGetInstancesSortedByName(){
+        List<GatekeeperRDSInstance> instances;
+
+        instances = rdsLookupService.getInstances(test, DatabaseType.RDS.toString(), "gk");
+        Assert.assertEquals(Arrays.asList("gk-A-instance", "gk-C-instance", "gk-D-instance", "gk-E-instance",
+                "gk-F-instance", "gk-G-instance", "gk-H-instance", "gk-I-instance"),
+                instances.stream().map(GatekeeperRDSInstance::getName).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void rdsTestGetInstancesProbeTimeout() throws Exception {
+        gatekeeperProperties.getLookup().setProbeTimeout(100);
+        RdsLookupService timeoutLookupService = new RdsLookupService(awsSessionService, databaseConnectionService, sgLookupService, gatekeeperProperties, rdsGroupLookupService,
+                new DatabaseProbeExecutor(gatekeeperProperties), new RdsTagLookupService(awsSessionService, gatekeeperProperties),
+                new OptionGroupLookupService(awsSessionService, gatekeeperProperties));
+        Mockito.when(databaseConnectionService.checkDb(Mockito.eq(dbA), Mockito.any())).thenAnswer(invocation -> {
+            Thread.sleep(5000);
+            return "";
+        });
+
+        List<GatekeeperRDSInstance> instances = timeoutLookupService.getInstances(test, DatabaseType.RDS.toString(), "gk");
+        Assert.assertEquals(8, instances.size());
+        GatekeeperRDSInstance instance = instances.get(0);
+        Assert.assertEquals("gk-A-instance", instance.getName());
+        Assert.assertEquals(RdsLookupService.STATUS_TIMED_OUT, instance.getStatus());
+        Assert.assertFalse(instance.getEnabled());
+        Assert.assertEquals(RdsLookupService.STATUS_MISSING_SGS, instances.get(1).getStatus());
+    }
+
+    @Test
+    public void rdsTestGetInstancesProbeTimeoutWhileQueued() throws Exception {
+        // with a single probe thread the rest of the instances are still queued behind gk-A when the search gives up
+        gatekeeperProperties.getLookup().setProbeTimeout(100).setProbeThreads(1);
+        RdsLookupService timeoutLookupService = new RdsLookupService(awsSessionService, databaseConnectionService, sgLookupService, gatekeeperProperties, rdsGroupLookupService,
+                new DatabaseProbeExecutor(gatekeeperProperties), new RdsTagLookupService(awsSessionService, gatekeeperProperties),
+                new OptionGroupLookupService(awsSessionService, gatekeeperProperties));
+        Mockito.when(databaseConnectionService.checkDb(Mockito.eq(dbA), Mockito.any())).thenAnswer(invocation -> {
+            Thread.sleep(5000);
+            return "";
+        });
+
+        long start = System.currentTimeMillis();
+        List<GatekeeperRDSInstance> instances = timeoutLookupService.getInstances(test, DatabaseType.RDS.toString(), "gk");
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+        Assert.assertEquals(8, instances.size());
+        instances.forEach(instance -> Assert.assertEquals(RdsLookupService.STATUS_TIMED_OUT, instance.getStatus()));
+    }
+
+    @Test
+    public void rdsTestGetInstancesProbeFailure() throws Exception {
+        Mockito.when(databaseConnectionService.checkDb(Mockito.eq(dbA), Mockito.any())).thenThrow(new IllegalStateException("Connection reset"));
+
+        List<GatekeeperRDSInstance> instances = rdsLookupService.getInstances(test, DatabaseType.RDS.toString(), "gk");
+        Assert.assertEquals(8, instances.size());
+        Assert.assertEquals("gk-A-instance", instances.get(0).getName());
+        Assert.assertEquals(RdsLookupService.STATUS_CHECK_FAILED, instances.get(0).getStatus());
+        Assert.assertFalse(instances.get(0).getEnabled());
+        Assert.assertEquals(RdsLookupService.STATUS_MISSING_SGS, instances.get(1).getStatus());
+    }
+
     @Test
     public void rdsTestGetInstanceMisconfiguredUser(){
         List<GatekeeperRDSInstance> instances;
@@ -391,6 +527,21 @@ public class RdsLookupServiceTest {
         Assert.assertEquals(new HashSet<>(Arrays.asList("gk_readonly","gk_datafix","gk_dba")), new HashSet<>(instance.get().getAvailableRoles()));
     }
 
+    @Test
+    public void oracleTestGetOneInstanceUsesCachedOptionGroups(){
+        Mockito.when(amazonRDSClient.describeDBInstances(Mockito.any())).thenAnswer(invocation -> new DescribeDBInstancesResult().withDBInstances(
+                initializeInstance("instance5", RDS_ENGINE_ORACLE, "gk-I-instance", "db-gk9", STATUS_AVAILABLE, SG_TWO, null)));
+
+        for(int i = 0; i < 3; i++) {
+            Optional<GatekeeperRDSInstance> instance = rdsLookupService.getOneInstance(test, "gk-I-instance", "gk-I-instance", "RDS");
+            Assert.assertTrue(instance.isPresent());
+            Assert.assertEquals("instance5:1234", instance.get().getEndpoint());
+        }
+
+        // all of the option groups for the account get loaded once and are re-used for each lookup after that
+        Mockito.verify(amazonRDSClient, Mockito.times(1)).describeOptionGroups(Mockito.any());
+    }
+
     @Test
     public void auroraTestGetOneInstance(){
         Mockito.when(amazonRDSClient.describeDBClusters(Mockito.any())).thenReturn(
@@ -454,6 +605,7 @@ public class RdsLookupServiceTest {
                 .withEngine(engine)
                 .withDBName("postgres")
                 .withDBInstanceIdentifier(instanceId)
+                .withDBInstanceArn("arn:aws:rds:test:123456789012:db:" + instanceId)
                 .withDbiResourceId(dbiResourceId)
                 .withDBInstanceStatus(status)
                 .withVpcSecurityGroups(
@@ -475,6 +627,7 @@ public class RdsLookupServiceTest {
         return new DBCluster().withEndpoint(endpoint)
                 .withEngine(AURORA_ENGINE)
                 .withDBClusterIdentifier(clusterId)
+                .withDBClusterArn("arn:aws:rds:test:123456789012:cluster:" + clusterId)
                 .withDbClusterResourceId(clusterResourceId)
                 .withDatabaseName("postgres")
                 .withPort(5432)
@@ -511,9 +664,12 @@ public class RdsLookupServiceTest {
                             .withIsWriter(false)
                 );
     }
-    private ListTagsForResourceResult initializeTags(){
-        return new ListTagsForResourceResult().withTagList(
-                new Tag().withKey(APP_IDENTITY)
-                        .withValue("TEST"));
+    private StubResourceGroupsTaggingAPI initializeTags(){
+        StubResourceGroupsTaggingAPI taggingClient = new StubResourceGroupsTaggingAPI();
+        Arrays.asList(dbA, dbC, dbD, dbE, dbF, dbG, dbH, dbI)
+                .forEach(db -> taggingClient.withResource(db.getDBInstanceArn(), APP_IDENTITY, "TEST"));
+        Arrays.asList(clusterA, clusterB, clusterC, clusterD, clusterE, clusterF, clusterG, clusterH, clusterI, clusterJ)
+                .forEach(cluster -> taggingClient.withResource(cluster.getDBClusterArn(), APP_IDENTITY, "TEST"));
+        return taggingClient;
     }
 }
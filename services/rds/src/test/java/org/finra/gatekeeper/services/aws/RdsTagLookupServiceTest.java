@@ -0,0 +1,102 @@
+/*
+ *
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.finra.gatekeeper.services.aws;
+
+import com.amazonaws.services.rds.AmazonRDSClient;
+import com.amazonaws.services.rds.model.ListTagsForResourceRequest;
+import com.amazonaws.services.rds.model.ListTagsForResourceResult;
+import com.amazonaws.services.rds.model.Tag;
+import org.finra.gatekeeper.configuration.GatekeeperProperties;
+import org.finra.gatekeeper.services.aws.model.AWSEnvironment;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class RdsTagLookupServiceTest {
+
+    @Mock
+    private AwsSessionService awsSessionService;
+
+    @Mock
+    private AmazonRDSClient amazonRDSClient;
+
+    private StubResourceGroupsTaggingAPI taggingClient;
+    private RdsTagLookupService rdsTagLookupService;
+    private AWSEnvironment test;
+
+    @Before
+    public void setUp() {
+        test = new AWSEnvironment("test", "test", "dev");
+        taggingClient = new StubResourceGroupsTaggingAPI();
+        Mockito.when(awsSessionService.getTaggingSession(test)).thenReturn(taggingClient);
+        Mockito.when(awsSessionService.getRDSSession(test)).thenReturn(amazonRDSClient);
+        rdsTagLookupService = new RdsTagLookupService(awsSessionService, new GatekeeperProperties().setAppIdentityTag("Application"));
+    }
+
+    @Test
+    public void testGetApplicationTag() {
+        taggingClient.withResource("arn:aws:rds:test:123:db:db-a", "Application", "TEST")
+                .withResource("arn:aws:rds:test:123:cluster:cluster-a", "APPLICATION", "OTHER")
+                .withResource("arn:aws:rds:test:123:db:db-b", "Owner", "someone");
+
+        Assert.assertEquals("TEST", rdsTagLookupService.getApplicationTag(test, "arn:aws:rds:test:123:db:db-a"));
+        Assert.assertEquals("OTHER", rdsTagLookupService.getApplicationTag(test, "arn:aws:rds:test:123:cluster:cluster-a"));
+        Assert.assertEquals("NONE", rdsTagLookupService.getApplicationTag(test, "arn:aws:rds:test:123:db:db-b"));
+        Assert.assertEquals("NONE", rdsTagLookupService.getApplicationTag(test, "arn:aws:rds:test:123:db:db-c"));
+        Assert.assertEquals(1, taggingClient.getCalls());
+    }
+
+    @Test
+    public void testGetApplicationTagsPages() {
+        for(int i = 0; i < 250; i++){
+            taggingClient.withResource("arn:aws:rds:test:123:db:db-" + i, "Application", "APP" + i);
+        }
+
+        Assert.assertEquals(250, rdsTagLookupService.getApplicationTags(test).size());
+        Assert.assertEquals("APP249", rdsTagLookupService.getApplicationTag(test, "arn:aws:rds:test:123:db:db-249"));
+        Assert.assertEquals(3, taggingClient.getCalls());
+    }
+
+    @Test
+    public void testGetApplicationTagFallsBackToRdsWhenTaggingApiDenied() {
+        taggingClient.withAccessDenied();
+        Mockito.when(amazonRDSClient.listTagsForResource(new ListTagsForResourceRequest().withResourceName("arn:aws:rds:test:123:db:db-a")))
+                .thenReturn(new ListTagsForResourceResult().withTagList(new Tag().withKey("APPLICATION").withValue("TEST")));
+        Mockito.when(amazonRDSClient.listTagsForResource(new ListTagsForResourceRequest().withResourceName("arn:aws:rds:test:123:db:db-b")))
+                .thenReturn(new ListTagsForResourceResult().withTagList(new Tag().withKey("Owner").withValue("someone")));
+
+        Assert.assertEquals("TEST", rdsTagLookupService.getApplicationTag(test, "arn:aws:rds:test:123:db:db-a"));
+        Assert.assertEquals("NONE", rdsTagLookupService.getApplicationTag(test, "arn:aws:rds:test:123:db:db-b"));
+        Assert.assertTrue(rdsTagLookupService.getApplicationTags(test).isEmpty());
+        // the denial is remembered along with the rest of the inventory rather than retried for every database
+        Assert.assertEquals(1, taggingClient.getCalls());
+    }
+
+    @Test
+    public void testGetApplicationTagDoesNotAskRdsForUntaggedDatabases() {
+        taggingClient.withResource("arn:aws:rds:test:123:db:db-a", "Application", "TEST");
+
+        Assert.assertEquals("NONE", rdsTagLookupService.getApplicationTag(test, "arn:aws:rds:test:123:db:db-b"));
+        Mockito.verify(amazonRDSClient, Mockito.never()).listTagsForResource(Mockito.any());
+    }
+}
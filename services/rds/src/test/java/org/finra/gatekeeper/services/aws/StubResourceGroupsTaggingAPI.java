@@ -0,0 +1,81 @@
+/*
+ *
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.finra.gatekeeper.services.aws;
+
+import com.amazonaws.services.resourcegroupstaggingapi.AbstractAWSResourceGroupsTaggingAPI;
+import com.amazonaws.services.resourcegroupstaggingapi.model.AWSResourceGroupsTaggingAPIException;
+import com.amazonaws.services.resourcegroupstaggingapi.model.GetResourcesRequest;
+import com.amazonaws.services.resourcegroupstaggingapi.model.GetResourcesResult;
+import com.amazonaws.services.resourcegroupstaggingapi.model.ResourceTagMapping;
+import com.amazonaws.services.resourcegroupstaggingapi.model.Tag;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory stand in for the resource groups tagging API, pages through the resources it was given
+ * the same way AWS does (an empty pagination token once the last page has been returned)
+ */
+public class StubResourceGroupsTaggingAPI extends AbstractAWSResourceGroupsTaggingAPI {
+
+    private final List<ResourceTagMapping> resources = new ArrayList<>();
+    private final AtomicInteger calls = new AtomicInteger();
+    private boolean accessDenied;
+
+    public StubResourceGroupsTaggingAPI withResource(String arn, String tagKey, String tagValue) {
+        resources.add(new ResourceTagMapping()
+                .withResourceARN(arn)
+                .withTags(new Tag().withKey(tagKey).withValue(tagValue)));
+        return this;
+    }
+
+    public StubResourceGroupsTaggingAPI withResources(Map<String, String> applicationByArn, String tagKey) {
+        applicationByArn.forEach((arn, application) -> withResource(arn, tagKey, application));
+        return this;
+    }
+
+    public StubResourceGroupsTaggingAPI withAccessDenied() {
+        accessDenied = true;
+        return this;
+    }
+
+    public int getCalls() {
+        return calls.get();
+    }
+
+    @Override
+    public GetResourcesResult getResources(GetResourcesRequest request) {
+        calls.incrementAndGet();
+        if (accessDenied) {
+            AWSResourceGroupsTaggingAPIException denied = new AWSResourceGroupsTaggingAPIException("not authorized to perform: tag:GetResources");
+            denied.setErrorCode("AccessDeniedException");
+            denied.setStatusCode(400);
+            throw denied;
+        }
+        int pageSize = request.getResourcesPerPage() != null ? request.getResourcesPerPage() : 50;
+        int start = request.getPaginationToken() == null || request.getPaginationToken().isEmpty()
+                ? 0 : Integer.parseInt(request.getPaginationToken());
+        int end = Math.min(start + pageSize, resources.size());
+
+        return new GetResourcesResult()
+                .withResourceTagMappingList(new ArrayList<>(resources.subList(start, end)))
+                .withPaginationToken(end < resources.size() ? String.valueOf(end) : "");
+    }
+}
@@ -22,6 +22,7 @@ import com.amazonaws.services.rds.model.DBInstance;
 import com.amazonaws.services.rds.model.Endpoint;
 import org.finra.gatekeeper.common.services.account.AccountInformationService;
 import org.finra.gatekeeper.common.services.account.model.Account;
+import org.finra.gatekeeper.configuration.GatekeeperProperties;
 import org.finra.gatekeeper.exception.GatekeeperException;
 import org.finra.gatekeeper.rds.exception.GKUnsupportedDBException;
 import org.finra.gatekeeper.rds.model.*;
@@ -158,7 +159,8 @@ public class DatabaseConnectionServiceTest {
         Mockito.when(databaseConnectionFactory.getConnection(TEST_ENGINE)).thenReturn(mockDBConnection);
         Mockito.when(databaseConnectionFactory.getConnection(TEST_UNSUPPORTED_ENGINE)).thenThrow(new GKUnsupportedDBException("UnsupportedDB"));
         Mockito.when(accountInformationService.getAccountByAlias("test")).thenReturn(account);
-        databaseConnectionService = new DatabaseConnectionService(databaseConnectionFactory, accountInformationService);
+        databaseConnectionService = new DatabaseConnectionService(databaseConnectionFactory, accountInformationService,
+                new DatabaseProbeCache(new GatekeeperProperties()));
     }
 
     /*
@@ -199,6 +201,30 @@ public class DatabaseConnectionServiceTest {
         Assert.assertFalse(outcome);
     }
 
+    @Test
+    public void testGrantAccessBatch() throws Exception {
+        ArgumentCaptor<RdsGrantAccessBatchQuery> argumentCaptor = ArgumentCaptor.forClass(RdsGrantAccessBatchQuery.class);
+        List<RdsUserGrant> grants = Arrays.asList(
+                new RdsUserGrant("tstuserhappy", "testpassword", RoleType.READONLY),
+                new RdsUserGrant("tstuser", "testpassword2", RoleType.DBA));
+        Map<String, Boolean> outcomes = databaseConnectionService.grantAccessBatch(database, environment, grants, 1);
+        Mockito.verify(mockDBConnection).grantAccessBatch(argumentCaptor.capture());
+        RdsGrantAccessBatchQuery expectedBatchRequest = new RdsGrantAccessBatchQuery(account.getAlias(), account.getAccountId(), environment.getRegion(), environment.getSdlc(),
+                database.getEndpoint() + "/" + database.getDbName(), database.getName(), database.getEngine(), grants, 1);
+        Assert.assertEquals(expectedBatchRequest, argumentCaptor.getValue());
+        Assert.assertTrue(outcomes.get("tstuserhappy_ro"));
+        Assert.assertFalse(outcomes.get("tstuser_dba"));
+        Mockito.verify(mockDBConnection, Mockito.never()).grantAccess(Mockito.any());
+    }
+
+    @Test
+    public void testGrantAccessBatchUnsupported() throws Exception {
+        database.setEngine(TEST_UNSUPPORTED_ENGINE);
+        Map<String, Boolean> outcomes = databaseConnectionService.grantAccessBatch(database, environment,
+                Collections.singletonList(new RdsUserGrant("tstuserhappy", "testpassword", RoleType.READONLY)), 1);
+        Assert.assertFalse(outcomes.get("tstuserhappy_ro"));
+    }
+
     /*
      * Revoke Access
      */
@@ -235,6 +261,27 @@ public class DatabaseConnectionServiceTest {
         Assert.assertFalse(outcome);
     }
 
+    @Test
+    public void testRevokeAccessBatch() throws Exception {
+        ArgumentCaptor<RdsRevokeAccessBatchQuery> argumentCaptor = ArgumentCaptor.forClass(RdsRevokeAccessBatchQuery.class);
+        List<String> users = Arrays.asList("tstuserhappy_ro", "tstuser_dba");
+        Map<String, Boolean> outcomes = databaseConnectionService.revokeAccessBatch(database, environment, users);
+        Mockito.verify(mockDBConnection).revokeAccessBatch(argumentCaptor.capture());
+        RdsRevokeAccessBatchQuery expectedBatchRequest = new RdsRevokeAccessBatchQuery(account.getAlias(), account.getAccountId(), environment.getRegion(), environment.getSdlc(),
+                database.getEndpoint() + "/" + database.getDbName(), database.getName(), database.getEngine(), users);
+        Assert.assertEquals(expectedBatchRequest, argumentCaptor.getValue());
+        Assert.assertTrue(outcomes.get("tstuserhappy_ro"));
+        Assert.assertFalse(outcomes.get("tstuser_dba"));
+        Mockito.verify(mockDBConnection, Mockito.never()).revokeAccess(Mockito.any());
+    }
+
+    @Test
+    public void testRevokeAccessBatchUnsupportedDB() throws Exception {
+        database.setEngine(TEST_UNSUPPORTED_ENGINE);
+        Map<String, Boolean> outcomes = databaseConnectionService.revokeAccessBatch(database, environment, Collections.singletonList("tstuserhappy_ro"));
+        Assert.assertFalse(outcomes.get("tstuserhappy_ro"));
+    }
+
     /*
      * Force Revoke Access
      */
@@ -313,6 +360,29 @@ public class DatabaseConnectionServiceTest {
         Assert.assertEquals(result.size(), 5);
     }
 
+    @Test
+    public void testGetAvailableSchemasForDbCached() throws Exception {
+        Map<RoleType, List<String>> ui = databaseConnectionService.getAvailableSchemasForDb(supportedGatekeeperRDSInstance, environment);
+        Map<RoleType, List<String>> workflow = databaseConnectionService.getAvailableSchemasForDb(database, environment);
+        // the UI and the workflow look at the same database, so only one of them goes to it
+        Mockito.verify(mockDBConnection, Mockito.times(1)).getAvailableTables(Mockito.any());
+        Assert.assertEquals(ui, workflow);
+        Assert.assertEquals(Arrays.asList("ro_table1", "ro_table2"), workflow.get(RoleType.READONLY));
+    }
+
+    @Test
+    public void testGetAvailableSchemasForDbFailureNotCached() throws Exception {
+        Mockito.doThrow(new SQLException("no connection")).when(mockDBConnection).getAvailableTables(Mockito.any());
+        Map<RoleType, List<String>> result = databaseConnectionService.getAvailableSchemasForDb(database, environment);
+        Assert.assertEquals(5, result.size());
+        Assert.assertEquals(Collections.singletonList("Unable to get available schemas for role gk_readonly"), result.get(RoleType.READONLY));
+
+        Mockito.doCallRealMethod().when(mockDBConnection).getAvailableTables(Mockito.any());
+        result = databaseConnectionService.getAvailableSchemasForDb(database, environment);
+        Mockito.verify(mockDBConnection, Mockito.times(2)).getAvailableTables(Mockito.any());
+        Assert.assertEquals(Arrays.asList("ro_table1", "ro_table2"), result.get(RoleType.READONLY));
+    }
+
     /*
      * checkDb
      */
@@ -355,6 +425,55 @@ public class DatabaseConnectionServiceTest {
         Assert.assertEquals("Failed", result);
     }
 
+    @Test
+    public void testCheckDbIsRemembered() throws Exception {
+        databaseConnectionService.checkDb(rdsInstance, environment);
+        databaseConnectionService.checkDb(rdsInstance, environment);
+        Mockito.verify(mockDBConnection, Mockito.times(1)).checkDb(Mockito.any());
+
+        // once an approver clears out the remembered checks the database gets checked again
+        databaseConnectionService.invalidateProbeResults(endpoint + ":5432");
+        databaseConnectionService.checkDb(rdsInstance, environment);
+        Mockito.verify(mockDBConnection, Mockito.times(2)).checkDb(Mockito.any());
+    }
+
+    @Test
+    public void testInvalidateOnlyMatchesTheExactEndpoint() throws Exception {
+        DBInstance otherPort = rdsInstance.clone().withEndpoint(rdsInstance.getEndpoint().clone().withPort(54321));
+        databaseConnectionService.checkDb(rdsInstance, environment);
+        databaseConnectionService.checkDb(otherPort, environment);
+        Mockito.verify(mockDBConnection, Mockito.times(2)).checkDb(Mockito.any());
+
+        // host:5432 is a prefix of host:54321, but only the database on 5432 should be checked again
+        databaseConnectionService.invalidateProbeResults(endpoint + ":5432");
+        databaseConnectionService.checkDb(rdsInstance, environment);
+        databaseConnectionService.checkDb(otherPort, environment);
+        Mockito.verify(mockDBConnection, Mockito.times(3)).checkDb(Mockito.any());
+    }
+
+    @Test
+    public void testGetAvailableRolesFailureIsRemembered() throws Exception {
+        Mockito.doThrow(new SQLException("Connection refused")).when(mockDBConnection).getAvailableRoles(Mockito.any());
+        SQLException failure = null;
+        try {
+            databaseConnectionService.getAvailableRolesForDb(rdsInstance, environment);
+            Assert.fail("Expected the role lookup to fail");
+        } catch (SQLException e) {
+            failure = e;
+        }
+        // everyone after that gets their own exception around the remembered failure
+        for(int i = 0; i < 2; i++) {
+            try {
+                databaseConnectionService.getAvailableRolesForDb(rdsInstance, environment);
+                Assert.fail("Expected the role lookup to fail");
+            } catch (GatekeeperException e) {
+                Assert.assertEquals("Connection refused", e.getMessage());
+                Assert.assertSame(failure, e.getCause());
+            }
+        }
+        Mockito.verify(mockDBConnection, Mockito.times(1)).getAvailableRoles(Mockito.any());
+    }
+
     /*
      * getUsersForDb
      */
@@ -33,11 +33,25 @@ public class MockDBConnection implements DBConnection {
         return rdsGrantAccessQuery.getUser().contains("happy");
     }
 
+    @Override
+    public Map<String, Boolean> grantAccessBatch(RdsGrantAccessBatchQuery rdsGrantAccessBatchQuery) throws Exception {
+        Map<String, Boolean> outcomes = new LinkedHashMap<>();
+        rdsGrantAccessBatchQuery.getGrants().forEach(grant -> outcomes.put(grant.getDbUser(), grant.getUser().contains("happy")));
+        return outcomes;
+    }
+
     @Override
     public boolean revokeAccess(RdsRevokeAccessQuery rdsRevokeAccessQuery) throws Exception {
         return rdsRevokeAccessQuery.getUser().contains("happy");
     }
 
+    @Override
+    public Map<String, Boolean> revokeAccessBatch(RdsRevokeAccessBatchQuery rdsRevokeAccessBatchQuery) throws Exception {
+        Map<String, Boolean> outcomes = new LinkedHashMap<>();
+        rdsRevokeAccessBatchQuery.getUsers().forEach(user -> outcomes.put(user, user.contains("happy")));
+        return outcomes;
+    }
+
     @Override
     public Map<RoleType, List<String>> getAvailableTables(RdsQuery rdsQuery) throws Exception {
         Map<RoleType, List<String>> roleTypeListMap = new HashMap<>();
@@ -0,0 +1,204 @@
+/*
+ *
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.finra.gatekeeper.services.db.pool;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.finra.gatekeeper.configuration.GatekeeperProperties;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConnectionPoolRegistryTest {
+
+    private TestRegistry registry;
+
+    @Before
+    public void setUp() {
+        registry = new TestRegistry(new GatekeeperProperties.GatekeeperDbProperties.PoolProperties().setRetireDelay(0));
+    }
+
+    @Test
+    public void testPoolIsReusedForSameEndpointAndSecret() {
+        String first = registry.borrow("db-a:5432/app", "secret");
+        String second = registry.borrow("db-a:5432/app", "secret");
+
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, registry.created.get());
+        Assert.assertEquals(1, registry.size());
+    }
+
+    @Test
+    public void testPoolIsPerEndpoint() {
+        registry.borrow("db-a:5432/app", "secret");
+        registry.borrow("db-b:5432/app", "secret");
+
+        Assert.assertEquals(2, registry.created.get());
+        Assert.assertEquals(2, registry.size());
+    }
+
+    @Test
+    public void testRotatedSecretClosesOldPool() {
+        String first = registry.borrow("db-a:5432/app", "secret");
+        String second = registry.borrow("db-a:5432/app", "rotated");
+
+        Assert.assertNotEquals(first, second);
+        Assert.assertEquals(2, registry.created.get());
+        Assert.assertEquals(1, registry.size());
+        Assert.assertEquals(1, registry.closed.size());
+        Assert.assertEquals(first, registry.closed.get(0));
+    }
+
+    @Test
+    public void testRotatedPoolIsClosedAfterRetireDelay() throws Exception {
+        TestRegistry delayedRegistry = new TestRegistry(new GatekeeperProperties.GatekeeperDbProperties.PoolProperties().setRetireDelay(200));
+        try {
+            String first = delayedRegistry.borrow("db-a:5432/app", "secret");
+            delayedRegistry.borrow("db-a:5432/app", "rotated");
+
+            // something that borrowed the first pool may still be using it
+            Assert.assertTrue(delayedRegistry.closed.isEmpty());
+            Thread.sleep(1000L);
+            Assert.assertEquals(Collections.singletonList(first), delayedRegistry.closed);
+        } finally {
+            delayedRegistry.destroy();
+        }
+    }
+
+    @Test
+    public void testExpiredPoolIsClosedAfterRetireDelay() throws Exception {
+        TestRegistry delayedRegistry = new TestRegistry(new GatekeeperProperties.GatekeeperDbProperties.PoolProperties()
+                .setIdleTimeout(100)
+                .setRetireDelay(500));
+        try {
+            String first = delayedRegistry.borrow("db-a:5432/app", "secret");
+            Thread.sleep(200L);
+            // the next borrow replaces the idle pool, a grant that borrowed it before it went idle may still be running
+            String second = delayedRegistry.borrow("db-a:5432/app", "secret");
+            Assert.assertNotEquals(first, second);
+            Assert.assertTrue(delayedRegistry.closed.isEmpty());
+            Thread.sleep(1500L);
+            Assert.assertEquals(Collections.singletonList(first), delayedRegistry.closed);
+        } finally {
+            delayedRegistry.destroy();
+        }
+    }
+
+    @Test
+    public void testDestroyClosesRetiringPools() {
+        TestRegistry delayedRegistry = new TestRegistry(new GatekeeperProperties.GatekeeperDbProperties.PoolProperties().setRetireDelay(60000));
+        delayedRegistry.borrow("db-a:5432/app", "secret");
+        delayedRegistry.borrow("db-a:5432/app", "rotated");
+        delayedRegistry.destroy();
+
+        Assert.assertEquals(2, delayedRegistry.closed.size());
+    }
+
+    @Test
+    public void testInvalidateClosesPool() {
+        registry.borrow("db-a:5432/app", "secret");
+        registry.invalidate("db-a:5432/app");
+        registry.borrow("db-a:5432/app", "secret");
+
+        Assert.assertEquals(2, registry.created.get());
+        Assert.assertEquals(1, registry.closed.size());
+    }
+
+    @Test
+    public void testFailedPoolIsNotCached() {
+        try {
+            registry.borrow("fail:5432/app", "secret");
+            Assert.fail("Expected the pool creation to fail");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("Could not connect", e.getMessage());
+        }
+        Assert.assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void testDestroyClosesAllPools() {
+        registry.borrow("db-a:5432/app", "secret");
+        registry.borrow("db-b:5432/app", "secret");
+        registry.destroy();
+
+        Assert.assertEquals(0, registry.size());
+        Assert.assertEquals(2, registry.closed.size());
+    }
+
+    @Test
+    public void testPoolMetricsFollowThePool() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        registry.bindTo(meterRegistry);
+
+        registry.borrow("db-a:5432/app", "secret");
+        Assert.assertNotNull(meterRegistry.find("test.pool").tags("type", "test", "endpoint", "db-a:5432/app").gauge());
+        Assert.assertNotNull(meterRegistry.find("cache.size").tags("cache", "gatekeeper.db.pools", "type", "test").gauge());
+
+        registry.invalidate("db-a:5432/app");
+        Assert.assertNull(meterRegistry.find("test.pool").gauge());
+    }
+
+    @Test
+    public void testPoolMetricsAreSeparatePerPool() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        registry.bindTo(meterRegistry);
+
+        registry.borrow("db-a:5432/app", "secret");
+        String firstPool = meterRegistry.get("test.pool").tags("endpoint", "db-a:5432/app").gauge().getId().getTag("pool");
+        registry.borrow("db-a:5432/app", "rotated");
+
+        // only the gauges of the pool that replaced it are left, under a pool id of their own
+        Assert.assertEquals(1, meterRegistry.find("test.pool").tags("endpoint", "db-a:5432/app").gauges().size());
+        Assert.assertNotEquals(firstPool, meterRegistry.get("test.pool").tags("endpoint", "db-a:5432/app").gauge().getId().getTag("pool"));
+    }
+
+    private static class TestRegistry extends ConnectionPoolRegistry<String> {
+        private final AtomicInteger created = new AtomicInteger();
+        private final List<String> closed = new CopyOnWriteArrayList<>();
+
+        TestRegistry(GatekeeperProperties.GatekeeperDbProperties.PoolProperties poolProperties) {
+            super("test", poolProperties);
+        }
+
+        @Override
+        protected String createPool(PoolKey key, String secret) {
+            if(key.getAddress().startsWith("fail")){
+                throw new IllegalArgumentException("Could not connect");
+            }
+            return key.getAddress() + "#" + key.getCredentialVersion() + "#" + created.incrementAndGet();
+        }
+
+        @Override
+        protected void closePool(String pool) {
+            closed.add(pool);
+        }
+
+        @Override
+        protected List<Meter> bindPoolMetrics(MeterRegistry registry, String pool, Tags tags) {
+            return Collections.singletonList(Gauge.builder("test.pool", () -> 1).tags(tags).register(registry));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.services.email;
+
+import org.finra.gatekeeper.common.properties.GatekeeperEmailProperties;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EmailOutboxCipherTest {
+
+    private GatekeeperEmailProperties emailProperties;
+    private EmailOutboxCipher emailOutboxCipher;
+
+    @Before
+    public void setUp() {
+        emailProperties = new GatekeeperEmailProperties();
+        emailProperties.getOutbox().setEncryptionKey("outbox-key");
+        emailOutboxCipher = new EmailOutboxCipher(emailProperties);
+    }
+
+    @Test
+    public void testEncryptDecrypt() {
+        String encrypted = emailOutboxCipher.encrypt("password: hunter2");
+
+        Assert.assertFalse(encrypted.contains("hunter2"));
+        Assert.assertNotEquals(encrypted, emailOutboxCipher.encrypt("password: hunter2"));
+        Assert.assertEquals("password: hunter2", emailOutboxCipher.decrypt(encrypted));
+    }
+
+    @Test
+    public void testNullAndPlainValuesPassThrough() {
+        Assert.assertNull(emailOutboxCipher.encrypt(null));
+        Assert.assertNull(emailOutboxCipher.decrypt(null));
+        Assert.assertEquals("<html>queued before encryption</html>", emailOutboxCipher.decrypt("<html>queued before encryption</html>"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDecryptWithOtherKey() {
+        String encrypted = emailOutboxCipher.encrypt("password: hunter2");
+        emailProperties.getOutbox().setEncryptionKey("another-key");
+
+        new EmailOutboxCipher(emailProperties).decrypt(encrypted);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testKeyRequired() {
+        new EmailOutboxCipher(new GatekeeperEmailProperties());
+    }
+}
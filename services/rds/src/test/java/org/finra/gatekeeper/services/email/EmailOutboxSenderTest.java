@@ -0,0 +1,180 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.services.email;
+
+import com.amazonaws.AmazonServiceException;
+import org.finra.gatekeeper.common.properties.GatekeeperEmailProperties;
+import org.finra.gatekeeper.common.services.email.AWSEmailService;
+import org.finra.gatekeeper.common.services.email.JavaEmailService;
+import org.finra.gatekeeper.services.email.model.EmailOutboxMessage;
+import org.finra.gatekeeper.services.email.model.EmailOutboxRepository;
+import org.finra.gatekeeper.services.email.model.EmailOutboxStatus;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class EmailOutboxSenderTest {
+
+    @Mock
+    private EmailOutboxRepository emailOutboxRepository;
+    @Mock
+    private JavaEmailService javaEmailService;
+    @Mock
+    private AWSEmailService awsEmailService;
+
+    private GatekeeperEmailProperties emailProperties;
+    private EmailOutboxCipher emailOutboxCipher;
+    private EmailOutboxSender emailOutboxSender;
+    private EmailOutboxMessage message;
+
+    @Before
+    public void setUp() {
+        emailProperties = new GatekeeperEmailProperties();
+        emailProperties.getOutbox()
+                .setMaxSendRate(1000.0)
+                .setMaxAttempts(3)
+                .setInitialBackoff(1000)
+                .setMaxBackoff(60000)
+                .setEncryptionKey("outbox-key");
+        emailOutboxCipher = new EmailOutboxCipher(emailProperties);
+
+        message = new EmailOutboxMessage()
+                .setId(1L)
+                .setRecipients("user@gk.org")
+                .setSender("gk@gk.org")
+                .setSubject("Gatekeeper: Your Access has expired")
+                .setTemplate("accessExpired")
+                .setBody(emailOutboxCipher.encrypt("<html>expired</html>"))
+                .setAttempts(0);
+
+        when(emailOutboxRepository.findDueMessageIds(eq(EmailOutboxStatus.PENDING), any(), any())).thenReturn(Arrays.asList(1L));
+        when(emailOutboxRepository.claim(eq(1L), any(), any())).thenReturn(1);
+        when(emailOutboxRepository.findById(1L)).thenReturn(Optional.of(message));
+
+        emailOutboxSender = new EmailOutboxSender(emailOutboxRepository, javaEmailService, awsEmailService, emailOutboxCipher, emailProperties);
+    }
+
+    @After
+    public void tearDown() {
+        emailOutboxSender.destroy();
+    }
+
+    @Test
+    public void testSendDueMessages() throws Exception {
+        Assert.assertEquals(1, emailOutboxSender.sendDueMessages());
+
+        verify(javaEmailService, times(1)).sendRenderedEmail("user@gk.org", "gk@gk.org", null,
+                "Gatekeeper: Your Access has expired", "<html>expired</html>", null, null, null);
+        verify(awsEmailService, never()).sendRenderedEmail(any(), any(), any(), any(), any(), any(), any(), any());
+        verify(emailOutboxRepository, times(1)).markSent(eq(1L), any());
+    }
+
+    @Test
+    public void testSendDueMessagesSES() throws Exception {
+        emailProperties.setUseSES(true);
+        emailOutboxSender.destroy();
+        emailOutboxSender = new EmailOutboxSender(emailOutboxRepository, javaEmailService, awsEmailService, emailOutboxCipher, emailProperties);
+
+        emailOutboxSender.sendDueMessages();
+
+        verify(awsEmailService, times(1)).sendRenderedEmail("user@gk.org", "gk@gk.org", null,
+                "Gatekeeper: Your Access has expired", "<html>expired</html>", null, null, null);
+        verify(javaEmailService, never()).sendRenderedEmail(any(), any(), any(), any(), any(), any(), any(), any());
+        verify(emailOutboxRepository, times(1)).markSent(eq(1L), any());
+    }
+
+    @Test
+    public void testSendDueMessagesAlreadyClaimed() throws Exception {
+        when(emailOutboxRepository.claim(eq(1L), any(), any())).thenReturn(0);
+
+        emailOutboxSender.sendDueMessages();
+
+        verify(javaEmailService, never()).sendRenderedEmail(any(), any(), any(), any(), any(), any(), any(), any());
+        verify(emailOutboxRepository, never()).markSent(anyLong(), any());
+    }
+
+    @Test
+    public void testSendFailureRetries() throws Exception {
+        when(javaEmailService.sendRenderedEmail(any(), any(), any(), any(), any(), any(), any(), any()))
+                .thenThrow(new RuntimeException("mail server is down"));
+
+        long before = System.currentTimeMillis();
+        emailOutboxSender.sendDueMessages();
+
+        ArgumentCaptor<Date> nextAttempt = ArgumentCaptor.forClass(Date.class);
+        verify(emailOutboxRepository, times(1)).markRetry(eq(1L), eq(1), nextAttempt.capture(), contains("mail server is down"));
+        Assert.assertTrue(nextAttempt.getValue().getTime() >= before + 500);
+        verify(emailOutboxRepository, never()).markSent(anyLong(), any());
+        verify(emailOutboxRepository, never()).markFailed(anyLong(), anyInt(), anyString());
+    }
+
+    @Test
+    public void testSendFailureGivesUp() throws Exception {
+        message.setAttempts(2);
+        when(javaEmailService.sendRenderedEmail(any(), any(), any(), any(), any(), any(), any(), any()))
+                .thenThrow(new RuntimeException("mail server is down"));
+
+        emailOutboxSender.sendDueMessages();
+
+        verify(emailOutboxRepository, times(1)).markFailed(eq(1L), eq(3), contains("mail server is down"));
+        verify(emailOutboxRepository, never()).markRetry(anyLong(), anyInt(), any(), anyString());
+    }
+
+    @Test
+    public void testThrottledDoesNotUseAttempt() throws Exception {
+        message.setAttempts(2);
+        emailProperties.setUseSES(true);
+        emailOutboxSender.destroy();
+        emailOutboxSender = new EmailOutboxSender(emailOutboxRepository, javaEmailService, awsEmailService, emailOutboxCipher, emailProperties);
+
+        AmazonServiceException throttled = new AmazonServiceException("Maximum sending rate exceeded.");
+        throttled.setErrorCode("Throttling");
+        when(awsEmailService.sendRenderedEmail(any(), any(), any(), any(), any(), any(), any(), isNull()))
+                .thenThrow(throttled);
+
+        emailOutboxSender.sendDueMessages();
+
+        verify(emailOutboxRepository, times(1)).markRetry(eq(1L), eq(2), any(), anyString());
+        verify(emailOutboxRepository, never()).markFailed(anyLong(), anyInt(), anyString());
+    }
+
+    @Test
+    public void testBackoff() {
+        Assert.assertTrue(emailOutboxSender.getBackoff(1) >= 500 && emailOutboxSender.getBackoff(1) <= 1000);
+        Assert.assertTrue(emailOutboxSender.getBackoff(3) >= 2000 && emailOutboxSender.getBackoff(3) <= 4000);
+        Assert.assertTrue(emailOutboxSender.getBackoff(20) >= 30000 && emailOutboxSender.getBackoff(20) <= 60000);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2022. Gatekeeper Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.finra.gatekeeper.services.email;
+
+import freemarker.template.TemplateException;
+import org.finra.gatekeeper.common.properties.GatekeeperEmailProperties;
+import org.finra.gatekeeper.common.services.email.EmailTemplateService;
+import org.finra.gatekeeper.rds.model.RoleType;
+import org.finra.gatekeeper.services.accessrequest.model.AWSRdsDatabase;
+import org.finra.gatekeeper.services.accessrequest.model.AccessRequest;
+import org.finra.gatekeeper.services.accessrequest.model.User;
+import org.finra.gatekeeper.services.accessrequest.model.UserRole;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class EmailServiceWrapperTest {
+
+    @Mock
+    private EmailOutboxService emailOutboxService;
+
+    private EmailTemplateService emailTemplateService;
+    private EmailServiceWrapper emailServiceWrapper;
+    private AccessRequest accessRequest;
+    private User userOne;
+    private User userTwo;
+
+    @Before
+    public void setUp() {
+        GatekeeperEmailProperties emailProperties = new GatekeeperEmailProperties()
+                .setFrom("gk@gk.org")
+                .setApproverEmails("approvers@gk.org");
+        emailTemplateService = new EmailTemplateService(emailProperties.freemarkerConfig());
+        emailServiceWrapper = new EmailServiceWrapper(emailOutboxService, emailTemplateService, emailProperties);
+
+        userOne = new User("gk_one", "One", "one@gk.org");
+        userTwo = new User("gk_two", "Two", "two@gk.org");
+        accessRequest = new AccessRequest()
+                .setId(1L)
+                .setDays(1)
+                .setAccount("DEV")
+                .setUsers(Arrays.asList(userOne, userTwo))
+                .setRoles(Arrays.asList(new UserRole().setRole("readonly"), new UserRole().setRole("datafix")))
+                .setAwsRdsInstances(Collections.singletonList(new AWSRdsDatabase()
+                        .setInstanceId("db-1234")
+                        .setName("test-database")
+                        .setEngine("postgres")));
+    }
+
+    @Test
+    public void testRenderSchemaListings() throws Exception {
+        Map<RoleType, List<String>> schemas = new HashMap<>();
+        schemas.put(RoleType.READONLY, Arrays.asList("public.readable"));
+        schemas.put(RoleType.DATAFIX, Arrays.asList("public.fixable"));
+
+        Map<RoleType, String> schemaListings = emailServiceWrapper.renderSchemaListings(accessRequest,
+                Collections.singletonMap("test-database", schemas));
+
+        Assert.assertEquals(2, schemaListings.size());
+        Assert.assertTrue(schemaListings.get(RoleType.READONLY).contains("<ul>public.readable</ul>"));
+        Assert.assertFalse(schemaListings.get(RoleType.READONLY).contains("public.fixable"));
+        Assert.assertTrue(schemaListings.get(RoleType.DATAFIX).contains("<ul>public.fixable</ul>"));
+
+        emailServiceWrapper.notifyOfCredentials(accessRequest, userOne, RoleType.READONLY, "password", schemaListings);
+
+        ArgumentCaptor<Map> contentCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(emailOutboxService).enqueue(eq("one@gk.org"), eq("gk@gk.org"), isNull(), any(), eq("userGrant"), contentCaptor.capture());
+        String body = emailTemplateService.render("userGrant", contentCaptor.getValue());
+        Assert.assertTrue(body.contains("<b>db-1234</b> -- test-database -- postgres"));
+        Assert.assertTrue(body.contains("<ul>public.readable</ul>"));
+        Assert.assertTrue(body.contains("<b>gk_one_ro</b>"));
+    }
+
+    @Test(expected = TemplateException.class)
+    public void testRenderSchemaListingsFailure() throws Exception {
+        // no schemas for the request's database, the listing can't be rendered
+        emailServiceWrapper.renderSchemaListings(accessRequest, Collections.emptyMap());
+    }
+
+    @Test
+    public void testNotifyExpiredRendersOnce() {
+        emailServiceWrapper.notifyExpired(accessRequest);
+
+        ArgumentCaptor<String> bodyCaptor = ArgumentCaptor.forClass(String.class);
+        verify(emailOutboxService).enqueueRendered(eq("one@gk.org"), eq("gk@gk.org"), isNull(), any(), eq("accessExpired"), bodyCaptor.capture());
+        verify(emailOutboxService).enqueueRendered(eq("two@gk.org"), eq("gk@gk.org"), isNull(), any(), eq("accessExpired"), bodyCaptor.capture());
+        Assert.assertSame(bodyCaptor.getAllValues().get(0), bodyCaptor.getAllValues().get(1));
+        Assert.assertTrue(bodyCaptor.getValue().contains("approvers@gk.org"));
+    }
+}
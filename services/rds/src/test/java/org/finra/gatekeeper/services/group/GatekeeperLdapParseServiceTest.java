@@ -24,6 +24,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import static org.mockito.Mockito.when;
@@ -96,4 +97,30 @@ public class GatekeeperLdapParseServiceTest {
         String[] parsedAttributes = gatekeeperLdapParseService.parseADGroups("APP_GK_CCC_DBAC_E");
         Assert.assertArrayEquals(new String[]{"","",""}, parsedAttributes);
     }
+
+    @Test
+    public void testGetADGroupEntry(){
+        GatekeeperADGroupEntry entry = gatekeeperLdapParseService.getADGroupEntry("APP_GK_CCC_DBAC_P");
+        Assert.assertEquals("CCC", entry.getApplication());
+        Assert.assertEquals("DBAC", entry.getGkRole());
+        Assert.assertEquals("P", entry.getSdlc());
+        Assert.assertEquals("APP_GK_CCC_DBAC_P", entry.getName());
+        Assert.assertSame(entry, gatekeeperLdapParseService.getADGroupEntry("APP_GK_CCC_DBAC_P"));
+    }
+
+    @Test
+    public void testGetNullADGroupEntry(){
+        GatekeeperADGroupEntry entry = gatekeeperLdapParseService.getADGroupEntry(null);
+        Assert.assertEquals("", entry.getApplication());
+        Assert.assertEquals("", entry.getGkRole());
+        Assert.assertEquals("", entry.getSdlc());
+    }
+
+    @Test
+    public void testPatternIsOnlyCompiledOnce(){
+        gatekeeperLdapParseService.parseADGroups("APP_GK_CCC_DBAC_P");
+        gatekeeperLdapParseService.parseADGroups("APP_GK_DDD_RO_Q");
+        gatekeeperLdapParseService.getADGroupEntry("APP_GK_EEE_DF_D");
+        Mockito.verify(gatekeeperRdsAuthProperties, Mockito.times(1)).getAdGroupsPattern();
+    }
 }
@@ -29,6 +29,7 @@ import org.finra.gatekeeper.services.auth.GatekeeperRoleService;
 import org.finra.gatekeeper.services.auth.GatekeeperRdsRole;
 import org.finra.gatekeeper.services.auth.model.RoleMembership;
 import org.finra.gatekeeper.services.group.model.GatekeeperADGroupEntry;
+import org.finra.gatekeeper.services.group.service.GatekeeperLdapParseService;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -121,7 +122,8 @@ public class GatekeeperRoleServiceTest {
         gatekeeperRoleService = new GatekeeperRoleService(gatekeeperAuthorizationService,
                 gatekeeperAuthProperties,
                 gatekeeperRdsAuthProperties,
-                gatekeeperApprovalProperties);
+                gatekeeperApprovalProperties,
+                new GatekeeperLdapParseService(gatekeeperRdsAuthProperties));
 
     }
 